@@ -0,0 +1,356 @@
+package org.objectledge.coral;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hit, miss, load and eviction counters of a single cache.
+ * <p>
+ * The owner of the cache reports each lookup with {@link #hit()} or {@link #miss()}, each value
+ * loaded from the database with {@link #loaded(long)}, and each change of the cache contents with
+ * {@link #stored()}, {@link #removed(int)} and {@link #evicted(int)}. Hits are counted in per
+ * thread stripes of an array, so that concurrent lookups do not contend on a single counter.
+ * </p>
+ * <p>
+ * The number of entries is counted by the cache owner when it is able to do so, see
+ * {@link #countEntries()}. In that case the entries dropped by the cache itself, like the ones
+ * evicted by the cache policy or cleared by the garbage collector, are found as the difference
+ * between the entries stored, and the entries removed or still present. Otherwise the number of
+ * entries is computed from the reported changes.
+ * </p>
+ */
+public class CacheStatistics
+    implements CacheStatisticsMXBean
+{
+    /**
+     * Cache groups, reported together.
+     */
+    public enum Group
+    {
+        /** Entity registries: resource classes, attribute classes, roles, subjects... */
+        ENTITY,
+        /** Resource caches of the store. */
+        RESOURCE,
+        /** Associations between entities: attribute definitions, role implications... */
+        ASSOCIATION,
+        /** Permission information. */
+        PERMISSION,
+        /** Attribute values. */
+        ATTRIBUTE,
+        /** Resource instances tracked by the resource handlers. */
+        HANDLER;
+
+        /**
+         * Returns the name of the group.
+         *
+         * @return lower case name of the group.
+         */
+        public String getName()
+        {
+            return name().toLowerCase();
+        }
+    }
+
+    /** Number of hit counter stripes, the power of two not lower than the number of CPUs. */
+    private static final int STRIPES = Math.min(16,
+        Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    /** Distance between hit counter stripes, in array elements, to keep them on separate lines. */
+    private static final int PADDING = 8;
+
+    /** Upper bounds of the load time histogram ranges, in microseconds. */
+    private static final long[] LOAD_TIME_BOUNDS = { 16L, 64L, 256L, 1024L, 4096L, 16384L,
+                    65536L, 262144L, 1048576L };
+
+    private final Group group;
+
+    private final String name;
+
+    private final Map<?, ?> map;
+
+    private final Object lock;
+
+    private final AtomicLongArray hits = new AtomicLongArray(STRIPES * PADDING);
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong loads = new AtomicLong();
+
+    /** Total load time in nanoseconds. */
+    private final AtomicLong loadTime = new AtomicLong();
+
+    private final AtomicLongArray loadTimeHistogram = new AtomicLongArray(
+        LOAD_TIME_BOUNDS.length + 1);
+
+    private final AtomicLong stores = new AtomicLong();
+
+    private final AtomicLong removals = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates statistics of a cache that does not count its entries.
+     *
+     * @param group the group of the cache.
+     * @param name the name of the cache.
+     */
+    public CacheStatistics(Group group, String name)
+    {
+        this(group, name, null, null);
+    }
+
+    /**
+     * Creates statistics of a cache held in a map.
+     *
+     * @param group the group of the cache.
+     * @param name the name of the cache.
+     * @param map the map holding the cache entries.
+     * @param lock the object whose monitor guards the map.
+     */
+    public CacheStatistics(Group group, String name, Map<?, ?> map, Object lock)
+    {
+        this.group = group;
+        this.name = name;
+        this.map = map;
+        this.lock = lock;
+    }
+
+    // reporting ////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Reports a lookup that was served from the cache.
+     */
+    public final void hit()
+    {
+        hits.incrementAndGet(((int)Thread.currentThread().getId() & (STRIPES - 1)) * PADDING);
+    }
+
+    /**
+     * Reports a lookup that was not served from the cache.
+     */
+    public final void miss()
+    {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * Reports a value loaded from the database.
+     *
+     * @param startTime the value of {@link System#nanoTime()} when the load started.
+     */
+    public final void loaded(long startTime)
+    {
+        long time = System.nanoTime() - startTime;
+        loads.incrementAndGet();
+        loadTime.addAndGet(time);
+        loadTimeHistogram.incrementAndGet(bucket(time / 1000L));
+    }
+
+    /**
+     * Reports an entry put into the cache.
+     */
+    public final void stored()
+    {
+        stores.incrementAndGet();
+    }
+
+    /**
+     * Reports entries removed from the cache because the cached data changed.
+     *
+     * @param count the number of entries removed.
+     */
+    public final void removed(int count)
+    {
+        removals.addAndGet(count);
+    }
+
+    /**
+     * Reports entries dropped by the cache itself.
+     *
+     * @param count the number of entries dropped.
+     */
+    public final void evicted(int count)
+    {
+        evictions.addAndGet(count);
+    }
+
+    // CacheStatisticsMXBean interface //////////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getGroup()
+    {
+        return group.getName();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getHits()
+    {
+        long sum = 0L;
+        for(int i = 0; i < STRIPES; i++)
+        {
+            sum += hits.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getHitRatio()
+    {
+        long hitCount = getHits();
+        long lookups = hitCount + getMisses();
+        return lookups > 0 ? (double)hitCount / lookups : 0.0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getLoads()
+    {
+        return loads.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getAverageLoadTime()
+    {
+        long count = loads.get();
+        return count > 0 ? loadTime.get() / 1000.0 / count : 0.0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long[] getLoadTimeHistogram()
+    {
+        long[] result = new long[loadTimeHistogram.length()];
+        for(int i = 0; i < result.length; i++)
+        {
+            result[i] = loadTimeHistogram.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long[] getLoadTimeHistogramBounds()
+    {
+        return LOAD_TIME_BOUNDS.clone();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getStores()
+    {
+        return stores.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getRemovals()
+    {
+        return removals.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getEvictions()
+    {
+        int entries = countEntries();
+        if(entries < 0)
+        {
+            return evictions.get();
+        }
+        return Math.max(evictions.get(), stores.get() - removals.get() - entries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getEntries()
+    {
+        int entries = countEntries();
+        if(entries < 0)
+        {
+            return (int)Math.max(0L, stores.get() - removals.get() - evictions.get());
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the total load time.
+     *
+     * @return the total load time in nanoseconds.
+     */
+    public long getLoadTime()
+    {
+        return loadTime.get();
+    }
+
+    // implementation ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Counts the entries in the cache.
+     * <p>
+     * The default implementation returns the size of the map the statistics were created with, or
+     * -1 if there is none. Caches kept in other structures may override it.
+     * </p>
+     *
+     * @return the number of entries, or -1 if the cache does not count its entries.
+     */
+    protected int countEntries()
+    {
+        if(map == null)
+        {
+            return -1;
+        }
+        synchronized(lock)
+        {
+            return map.size();
+        }
+    }
+
+    /**
+     * Returns the index of the histogram range containing a load time.
+     *
+     * @param micros the load time in microseconds.
+     * @return the index of the histogram range.
+     */
+    private static int bucket(long micros)
+    {
+        if(micros < LOAD_TIME_BOUNDS[0])
+        {
+            return 0;
+        }
+        // the bounds grow fourfold from 2^4
+        int log2 = 63 - Long.numberOfLeadingZeros(micros);
+        return Math.min(LOAD_TIME_BOUNDS.length, (log2 - 4) / 2 + 1);
+    }
+}
@@ -0,0 +1,102 @@
+package org.objectledge.coral;
+
+/**
+ * Management interface of a single Coral cache.
+ *
+ * @see CacheStatisticsRegistry#export(javax.management.MBeanServer)
+ */
+public interface CacheStatisticsMXBean
+{
+    /**
+     * Returns the name of the cache.
+     *
+     * @return the name of the cache.
+     */
+    public String getName();
+
+    /**
+     * Returns the name of the group the cache belongs to.
+     *
+     * @return the name of the group the cache belongs to.
+     */
+    public String getGroup();
+
+    /**
+     * Returns the number of lookups that were served from the cache.
+     *
+     * @return the number of cache hits.
+     */
+    public long getHits();
+
+    /**
+     * Returns the number of lookups that were not served from the cache.
+     *
+     * @return the number of cache misses.
+     */
+    public long getMisses();
+
+    /**
+     * Returns the fraction of lookups that were served from the cache.
+     *
+     * @return the hit ratio, between 0.0 and 1.0, or 0.0 when there were no lookups.
+     */
+    public double getHitRatio();
+
+    /**
+     * Returns the number of values loaded from the database on cache miss.
+     *
+     * @return the number of loads.
+     */
+    public long getLoads();
+
+    /**
+     * Returns the average time spent loading a value.
+     *
+     * @return the average load time in microseconds.
+     */
+    public double getAverageLoadTime();
+
+    /**
+     * Returns the number of loads in each load time range.
+     *
+     * @return the number of loads in each range described by {@link #getLoadTimeHistogramBounds()},
+     *         followed by the number of loads that took longer than the last bound.
+     */
+    public long[] getLoadTimeHistogram();
+
+    /**
+     * Returns the upper bounds of the load time histogram ranges.
+     *
+     * @return exclusive upper bounds of the ranges, in microseconds.
+     */
+    public long[] getLoadTimeHistogramBounds();
+
+    /**
+     * Returns the number of entries put into the cache.
+     *
+     * @return the number of entries put into the cache.
+     */
+    public long getStores();
+
+    /**
+     * Returns the number of entries removed because the cached data changed.
+     *
+     * @return the number of entries removed explicitly.
+     */
+    public long getRemovals();
+
+    /**
+     * Returns the number of entries dropped by the cache itself, because of size limits or
+     * garbage collection.
+     *
+     * @return the number of evicted entries.
+     */
+    public long getEvictions();
+
+    /**
+     * Returns the number of entries in the cache.
+     *
+     * @return the number of entries in the cache.
+     */
+    public int getEntries();
+}
@@ -0,0 +1,194 @@
+package org.objectledge.coral;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Keeps the statistics of all caches of a Coral instance.
+ * <p>
+ * Components register the statistics of their caches when the caches are created. Once
+ * {@link #export(MBeanServer)} is called, the statistics of the caches registered so far, and of
+ * the ones registered later, are available as MXBeans named
+ * <code>org.objectledge.coral:type=Cache,instance=&lt;instance&gt;,group=&lt;group&gt;,name=&lt;name&gt;</code>
+ * until {@link #unexport()} is called. The instance qualifier keeps the MXBeans of several Coral
+ * instances in one JVM apart.
+ * </p>
+ */
+public class CacheStatisticsRegistry
+{
+    /** JMX domain of the cache MXBeans. */
+    public static final String DOMAIN = "org.objectledge.coral";
+
+    /** Source of default instance qualifiers. */
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    /** Statistics, keyed by cache name. */
+    private final Map<String, CacheStatistics> statistics =
+        new LinkedHashMap<String, CacheStatistics>();
+
+    /** Names of the exported MXBeans, keyed by cache name. */
+    private final Map<String, ObjectName> exported = new LinkedHashMap<String, ObjectName>();
+
+    /** The instance qualifier of the MXBean names. */
+    private final String instance;
+
+    /** The server the statistics are exported to, or <code>null</code>. */
+    private MBeanServer server;
+
+    /**
+     * Creates a registry with an instance qualifier unique within the JVM.
+     */
+    public CacheStatisticsRegistry()
+    {
+        this(Integer.toString(INSTANCES.incrementAndGet()));
+    }
+
+    /**
+     * Creates a registry.
+     *
+     * @param instance the instance qualifier of the MXBean names.
+     */
+    public CacheStatisticsRegistry(String instance)
+    {
+        this.instance = instance;
+    }
+
+    /**
+     * Returns the instance qualifier of the MXBean names.
+     *
+     * @return the instance qualifier.
+     */
+    public String getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Registers the statistics of a cache.
+     * <p>
+     * Statistics registered earlier with the same name are replaced.
+     * </p>
+     *
+     * @param cacheStatistics the statistics.
+     * @return the registered statistics.
+     */
+    public synchronized CacheStatistics register(CacheStatistics cacheStatistics)
+    {
+        statistics.put(cacheStatistics.getName(), cacheStatistics);
+        if(server != null)
+        {
+            exportOne(cacheStatistics);
+        }
+        return cacheStatistics;
+    }
+
+    /**
+     * Returns the statistics of a cache.
+     *
+     * @param name the name of the cache.
+     * @return the statistics, or <code>null</code> if none are registered under the name.
+     */
+    public synchronized CacheStatistics get(String name)
+    {
+        return statistics.get(name);
+    }
+
+    /**
+     * Returns the statistics of all registered caches.
+     *
+     * @return the statistics of all registered caches, in order of registration.
+     */
+    public synchronized List<CacheStatistics> getAll()
+    {
+        return new ArrayList<CacheStatistics>(statistics.values());
+    }
+
+    /**
+     * Exports the statistics of all caches to a MBean server.
+     * <p>
+     * If the statistics were already exported, they are moved to the new server.
+     * </p>
+     *
+     * @param server the MBean server.
+     */
+    public synchronized void export(MBeanServer server)
+    {
+        if(this.server != null)
+        {
+            unexport();
+        }
+        this.server = server;
+        for(CacheStatistics cacheStatistics : statistics.values())
+        {
+            exportOne(cacheStatistics);
+        }
+    }
+
+    /**
+     * Unregisters the exported statistics from the MBean server.
+     * <p>
+     * Statistics registered afterwards are not exported until {@link #export(MBeanServer)} is
+     * called again.
+     * </p>
+     */
+    public synchronized void unexport()
+    {
+        if(server == null)
+        {
+            return;
+        }
+        JMException failure = null;
+        for(ObjectName name : exported.values())
+        {
+            try
+            {
+                server.unregisterMBean(name);
+            }
+            catch(InstanceNotFoundException e)
+            {
+                // already gone
+            }
+            catch(JMException e)
+            {
+                failure = e;
+            }
+        }
+        exported.clear();
+        server = null;
+        if(failure != null)
+        {
+            throw new BackendException("failed to unregister cache statistics", failure);
+        }
+    }
+
+    private void exportOne(CacheStatistics cacheStatistics)
+    {
+        try
+        {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Cache,instance="
+                + ObjectName.quote(instance) + ",group=" + cacheStatistics.getGroup() + ",name="
+                + ObjectName.quote(cacheStatistics.getName()));
+            // statistics replaced under the same cache name
+            ObjectName previous = exported.remove(cacheStatistics.getName());
+            if(previous != null && server.isRegistered(previous))
+            {
+                server.unregisterMBean(previous);
+            }
+            server.registerMBean(cacheStatistics, name);
+            exported.put(cacheStatistics.getName(), name);
+        }
+        catch(JMException e)
+        {
+            throw new BackendException("failed to register statistics of cache "
+                + cacheStatistics.getName(), e);
+        }
+    }
+}
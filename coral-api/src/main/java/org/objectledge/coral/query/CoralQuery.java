@@ -30,6 +30,67 @@ public interface CoralQuery
      */
     public QueryResults executeQuery(ASTfindResourceStatement node)
     	throws MalformedQueryException;
+
+    /**
+     * Executes a query, returning the results incrementally.
+     * <p>
+     * This method is intended for queries returning large numbers of rows that need to be
+     * processed sequentially. The returned object must be closed when no longer needed.
+     * </p>
+     * 
+     * @param query the query.
+     * @param fetchSize the number of rows fetched from the data store, and resources loaded, at a
+     *        time.
+     * @return query results.
+     * @throws MalformedQueryException if the query has syntactic or semantic errors and thus cannot
+     *         be executed.
+     */
+    public StreamingQueryResults executeQueryStreaming(String query, int fetchSize)
+        throws MalformedQueryException;
+
+    /**
+     * Returns the number of rows a query would return.
+     * <p>
+     * Resources are not loaded.
+     * </p>
+     * 
+     * @param query the query.
+     * @return the number of rows in the query results.
+     * @throws MalformedQueryException if the query has syntactic or semantic errors and thus cannot
+     *         be executed.
+     */
+    public long count(String query)
+        throws MalformedQueryException;
+
+    /**
+     * Checks if a query would return any rows.
+     * <p>
+     * Resources are not loaded.
+     * </p>
+     * 
+     * @param query the query.
+     * @return <code>true</code> if the query results are not empty.
+     * @throws MalformedQueryException if the query has syntactic or semantic errors and thus cannot
+     *         be executed.
+     */
+    public boolean exists(String query)
+        throws MalformedQueryException;
+
+    /**
+     * Executes a query, returning the identifiers of the resources only.
+     * <p>
+     * Resources are not loaded. For queries with multiple columns, the identifiers are returned
+     * row by row, so that the identifier in column <code>c</code> (0 based) of row <code>r</code>
+     * is at position <code>r * columnCount + c</code>.
+     * </p>
+     * 
+     * @param query the query.
+     * @return identifiers of the resources in the query results.
+     * @throws MalformedQueryException if the query has syntactic or semantic errors and thus cannot
+     *         be executed.
+     */
+    public long[] executeIds(String query)
+        throws MalformedQueryException;
     
     /**
      * Prepares a query.
@@ -38,7 +99,10 @@ public interface CoralQuery
      * $&lt;NUMBER&gt;, with no intervening whitespace. The number must be greater or equal to 1.
      * The positional parameters can only be used on the right hand side of binary operators. When
      * the query is executed, all positional parameters must be set to non-null values. To test a
-     * resource's property for being defined (i.e. not null), use the DEFINED operator.
+     * resource's property for being defined (i.e. not null), use the DEFINED operator. To restrict
+     * a resource reference to a subtree, use <code>&lt;attribute&gt; DESCENDANT OF &lt;id&gt;</code>,
+     * where the right hand side is a resource id or a positional parameter. The condition may be
+     * negated with NOT, but may only be joined with the other conditions using AND.
      * </p>
      * 
      * @param query the query.
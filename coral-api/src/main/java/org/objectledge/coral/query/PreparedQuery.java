@@ -7,6 +7,11 @@ import org.objectledge.coral.schema.AttributeClass;
  * Represents a query that is prepared once, and may be executed multiple
  * times.
  *
+ * <p>The execution methods also throw <code>IllegalStateException</code> when
+ * a parameter value is not valid for the attribute it is compared with. The
+ * cause of the exception is then a {@link MalformedQueryException} describing
+ * the parameter.</p>
+ *
  * @author <a href="mailto:rkrzewsk@ngo.pl">Rafal Krzewski</a>
  * @version $Id: PreparedQuery.java,v 1.3 2004-05-14 11:19:10 fil Exp $
  */
@@ -35,6 +40,52 @@ public interface PreparedQuery
      */
     public QueryResults execute(Object[] parameters)
         throws IllegalStateException;
+
+    /**
+     * Execute the query, returning the results incrementally.
+     * 
+     * @param fetchSize the number of rows fetched from the data store, and resources loaded, at a
+     *        time.
+     * @return query results, that must be closed when no longer needed.
+     * @throws IllegalStateException when not all positional parameters in the
+     *         query have definite values.
+     * @see CoralQuery#executeQueryStreaming(String, int)
+     */
+    public StreamingQueryResults executeStreaming(int fetchSize)
+        throws IllegalStateException;
+
+    /**
+     * Returns the number of rows the query would return.
+     * 
+     * @return the number of rows in the query results.
+     * @throws IllegalStateException when not all positional parameters in the
+     *         query have definite values.
+     * @see CoralQuery#count(String)
+     */
+    public long count()
+        throws IllegalStateException;
+
+    /**
+     * Checks if the query would return any rows.
+     * 
+     * @return <code>true</code> if the query results are not empty.
+     * @throws IllegalStateException when not all positional parameters in the
+     *         query have definite values.
+     * @see CoralQuery#exists(String)
+     */
+    public boolean exists()
+        throws IllegalStateException;
+
+    /**
+     * Execute the query, returning the identifiers of the resources only.
+     * 
+     * @return identifiers of the resources in the query results.
+     * @throws IllegalStateException when not all positional parameters in the
+     *         query have definite values.
+     * @see CoralQuery#executeIds(String)
+     */
+    public long[] executeIds()
+        throws IllegalStateException;
     
     // value setting /////////////////////////////////////////////////////////
 
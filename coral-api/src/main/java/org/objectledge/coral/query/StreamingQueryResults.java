@@ -0,0 +1,29 @@
+package org.objectledge.coral.query;
+
+/**
+ * Represents the results of a query that are read from the underlying data store incrementally.
+ * <p>
+ * Streaming results can be traversed only once, in a forward direction. The rows are fetched and
+ * the Resources are loaded in pages, as the iteration advances, so that large results can be
+ * processed without keeping all of them in memory. {@link #getList()}, {@link #getArray(int)} and
+ * {@link #getList(int)} consume the results, and only one of them, or {@link #iterator()}, may be
+ * called on a given instance. {@link #rowCount()} is not supported.
+ * </p>
+ * <p>
+ * The results hold on to data store resources until all the rows are read or the results are
+ * closed, whichever happens first. Use a try-with-resources block to ensure the results are closed
+ * when the iteration is abandoned early.
+ * </p>
+ */
+public interface StreamingQueryResults
+    extends QueryResults, AutoCloseable
+{
+    /**
+     * Releases data store resources held by the results.
+     * <p>
+     * The method may be called any number of times. After the results are closed, the iteration
+     * ends.
+     * </p>
+     */
+    public void close();
+}
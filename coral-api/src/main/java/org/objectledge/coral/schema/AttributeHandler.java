@@ -1,6 +1,7 @@
 package org.objectledge.coral.schema;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.Comparator;
 import java.util.Map;
@@ -203,6 +204,18 @@ public interface AttributeHandler<T>
      */
     public String toExternalString(T value);
 
+    /**
+     * Binds an attribute value to a parameter of a <code>PreparedStatement</code>, the same way
+     * {@link #toExternalString(Object)} would represent it in a literal query.
+     *
+     * @param stmt the statement.
+     * @param position parameter position (1 based).
+     * @param value the value to bind.
+     * @throws SQLException if the parameter could not be set.
+     */
+    public void setParameter(PreparedStatement stmt, int position, T value)
+        throws SQLException;
+
     // value domain //////////////////////////////////////////////////////////
 
     /**
@@ -2,7 +2,10 @@ package org.objectledge.coral.schema;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.objectledge.coral.query.ResourceQueryHandler;
 import org.objectledge.coral.store.Resource;
@@ -62,6 +65,38 @@ public interface ResourceHandler<T extends Resource>
     public T retrieve(Resource delegate, Connection conn, Object data)
         throws SQLException;
 
+    /**
+     * Retrives a group of resources from the persistent storage.
+     *
+     * <p>All of the delegates must belong to the resource class associated with this handler.
+     * Implementations should load attribute data for the whole group using a bounded number of
+     * queries, rather than one query per resource.</p>
+     *
+     * @param delegates the security delegate {@link Resource} objects.
+     * @param conn the JDBC <code>Connection</code> to use. Needed to perform
+     *        the operation as a part of a JDBC transaction.
+     * @return the resource objects, in the iteration order of <code>delegates</code>.
+     * @throws SQLException in case of database problems. The caller metod
+     *         should consider rolling back the whole transaction.
+     */
+    public List<T> retrieveAll(Collection<Resource> delegates, Connection conn)
+        throws SQLException;
+
+    /**
+     * Loads the values of selected attributes of a group of resources.
+     *
+     * <p>All of the resources must belong to the resource class associated with this handler.
+     * Values that were already loaded or modified are left intact.</p>
+     *
+     * @param resources the resources.
+     * @param attributes the attributes to load.
+     * @param conn the JDBC <code>Connection</code> to use.
+     * @throws SQLException in case of database problems.
+     */
+    public void prefetch(Collection<Resource> resources, Set<AttributeDefinition<?>> attributes,
+        Connection conn)
+        throws SQLException;
+
 
     /**
      * Reverts the state of a resource from the persistent storage.
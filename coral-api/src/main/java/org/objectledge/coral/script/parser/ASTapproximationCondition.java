@@ -36,6 +36,11 @@ public class ASTapproximationCondition extends SimpleNode {
   	return literalRHS;
   }
 
+  public boolean isRHSParameter()
+  {
+  	return parameterRHS;
+  }
+
   public boolean isCaseSensitive()
   {
       return caseSensitive;
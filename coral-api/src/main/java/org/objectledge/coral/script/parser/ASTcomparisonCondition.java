@@ -32,6 +32,11 @@ public class ASTcomparisonCondition extends SimpleNode {
   	return literalRHS;
   }
 
+  public boolean isRHSParameter()
+  {
+  	return parameterRHS;
+  }
+
   public int getOperator()
   {
   	return operator;
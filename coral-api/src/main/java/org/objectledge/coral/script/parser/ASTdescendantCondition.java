@@ -0,0 +1,34 @@
+/* Generated By:JJTree: Do not edit this line. ASTdescendantCondition.java */
+
+package org.objectledge.coral.script.parser;
+
+public class ASTdescendantCondition extends SimpleNode {
+  public ASTdescendantCondition(int id) {
+    super(id);
+  }
+
+  public ASTdescendantCondition(RML p, int id) {
+    super(p, id);
+  }
+
+
+  /** Accept the visitor. **/
+  public Object jjtAccept(RMLVisitor visitor, Object data) {
+    return visitor.visit(this, data);
+  }
+
+  public String getLHS()
+  {
+  	return lhs;
+  }
+  
+  public String getRHS()
+  {
+  	return rhs;
+  }
+
+  public boolean isRHSParameter()
+  {
+  	return parameterRHS;
+  }
+}
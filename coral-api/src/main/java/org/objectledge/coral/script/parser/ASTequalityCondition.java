@@ -31,6 +31,11 @@ public class ASTequalityCondition extends SimpleNode {
   {
   	return literalRHS;
   }
+
+  public boolean isRHSParameter()
+  {
+  	return parameterRHS;
+  }
   
   public int getOperator()
   {
@@ -740,6 +740,14 @@ public class DefaultRMLVisitor
         return visit((SimpleNode)node, data);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Object visit(ASTdescendantCondition node, Object data)
+    {
+        return visit((SimpleNode)node, data);
+    }
+
     /**
      * {@inheritDoc}
      */
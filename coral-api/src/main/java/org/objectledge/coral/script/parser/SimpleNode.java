@@ -44,6 +44,7 @@ public class SimpleNode implements Node {
   String lhs;
   String rhs;
   boolean literalRHS;
+  boolean parameterRHS;
   int operator;
   String alias;
   boolean dir;
@@ -1,6 +1,7 @@
 package org.objectledge.coral.session;
 
 import java.security.Principal;
+import java.util.concurrent.Callable;
 
 import org.objectledge.coral.event.CoralEventWhiteboard;
 import org.objectledge.coral.query.CoralQuery;
@@ -101,6 +102,22 @@ public interface CoralSession
      */
     public CoralSession makeCurrent();
     
+    /**
+     * Runs a task on behalf of this session's user.
+     * 
+     * <p>For a scoped session, the session is bound to the calling thread for the duration of the
+     * task, and the previously current session is restored afterwards. This is needed when the
+     * task performs operations that are not invoked through the session, like
+     * {@link org.objectledge.coral.store.Resource#update()}. For other sessions the task is simply
+     * run.</p>
+     * 
+     * @param task the task.
+     * @return the value returned by the task.
+     * @throws Exception if thrown by the task.
+     */
+    public <T> T execute(Callable<T> task)
+        throws Exception;
+    
     /**
      * Returns a Throwable created in the scope of open() method invocation.
      * 
@@ -49,6 +49,29 @@ public interface CoralSessionFactory
      */
     public CoralSession getSession(Principal user)
         throws EntityDoesNotExistException;
+
+    /**
+     * Creates a scoped session for the specified user.
+     * <p>
+     * A scoped session is not associated with the calling thread, and does not become the current
+     * session. It can be passed to other threads and used concurrently, for example by tasks
+     * submitted to an executor, until it is closed. The session may be closed on any thread, once
+     * all tasks using it have completed.
+     * </p>
+     * <p>
+     * Store and security operations invoked through the session that modify data act on behalf
+     * of its user on any thread. Other work that depends on the acting user, like
+     * {@link org.objectledge.coral.store.Resource#update()}, needs to be run through
+     * {@link CoralSession#execute(java.util.concurrent.Callable)}, which binds the session to the
+     * calling thread once for the whole task.
+     * </p>
+     * 
+     * @param user the user.
+     * @return the session.
+     * @throws EntityDoesNotExistException if the user does not have a corresponding Coral Subject.
+     */
+    public CoralSession getScopedSession(Principal user)
+        throws EntityDoesNotExistException;
         
     /**
      * Creates a session for the superuser.
@@ -1,6 +1,8 @@
 package org.objectledge.coral.store;
 
+import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 
 import org.objectledge.coral.entity.AmbigousEntityNameException;
 import org.objectledge.coral.entity.EntityDoesNotExistException;
@@ -72,6 +74,34 @@ public interface CoralStore
     public <T> T getResource(long id, Class<T> clazz)
         throws EntityDoesNotExistException;
 
+    /**
+     * Retrieves the resources with the given identifiers.
+     *
+     * <p>Resources that are not cached are loaded using a bounded number of database queries,
+     * rather than one query per resource.</p>
+     *
+     * @param ids the identifiers.
+     * @return the <code>Resource</code>s, in the order of <code>ids</code>.
+     * @throws EntityDoesNotExistException if any of the <code>Resource</code>s
+     *         does not exist.
+     */
+    public Resource[] getResource(long[] ids)
+        throws EntityDoesNotExistException;
+
+    /**
+     * Loads the values of selected attributes of a group of resources.
+     *
+     * <p>Attribute values are normally loaded lazily, one at a time, when first accessed. This
+     * method loads the values of the specified attributes for all the resources using a bounded
+     * number of database queries, which is useful before accessing the same attributes of many
+     * resources, for example when displaying them in a table. Attributes that are not present in
+     * a resource's class are ignored.</p>
+     *
+     * @param resources the resources.
+     * @param attributes the attributes to load.
+     */
+    public void prefetch(Collection<Resource> resources, Set<AttributeDefinition<?>> attributes);
+
     /**
      * Returns all resourcees with the specified name.
      * 
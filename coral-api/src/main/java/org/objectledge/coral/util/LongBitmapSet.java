@@ -0,0 +1,1096 @@
+package org.objectledge.coral.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import bak.pcj.LongCollection;
+import bak.pcj.LongIterator;
+import bak.pcj.set.LongSet;
+
+/**
+ * A compressed bitmap set of long values.
+ * <p>
+ * The values are partitioned by their upper 48 bits. Each partition keeps the lower 16 bits of its
+ * values in a sorted array while it holds up to 4096 values, and in a 65536 bit bitmap when it
+ * grows larger, so that both sparse and dense sets of identifiers take a few bytes per value or
+ * less. Iteration returns the values in ascending order.
+ * </p>
+ * <p>
+ * {@link #and(LongBitmapSet, LongBitmapSet)}, {@link #or(LongBitmapSet, LongBitmapSet)} and
+ * {@link #andNot(LongBitmapSet, LongBitmapSet)} operate on whole partitions at a time, using word
+ * parallel operations on bitmap partitions. The sets are not thread safe.
+ * </p>
+ */
+public class LongBitmapSet
+    implements LongSet
+{
+    /** Maximum number of values kept in an array partition. */
+    private static final int ARRAY_MAX = 4096;
+
+    /** Partitions of at most this size are merged value by value by addAll. */
+    private static final int SMALL_MERGE = 16;
+
+    private static final long[] NO_KEYS = new long[0];
+
+    private static final Container[] NO_CONTAINERS = new Container[0];
+
+    /** Partition keys (upper 48 bits of the values), sorted. */
+    private long[] keys;
+
+    /** Partitions, in the order of keys. */
+    private Container[] containers;
+
+    /** Number of partitions in use. */
+    private int count;
+
+    /** Number of values in the set. */
+    private int size;
+
+    /**
+     * Creates an empty set.
+     */
+    public LongBitmapSet()
+    {
+        keys = NO_KEYS;
+        containers = NO_CONTAINERS;
+    }
+
+    /**
+     * Creates a set containing the given values.
+     *
+     * @param values the values.
+     */
+    public LongBitmapSet(long[] values)
+    {
+        this();
+        for(long value : values)
+        {
+            add(value);
+        }
+    }
+
+    /**
+     * Creates a copy of a set.
+     *
+     * @param set the set to copy.
+     */
+    public LongBitmapSet(LongBitmapSet set)
+    {
+        set = set.backing();
+        keys = Arrays.copyOf(set.keys, set.count);
+        containers = new Container[set.count];
+        for(int i = 0; i < set.count; i++)
+        {
+            containers[i] = set.containers[i].copy();
+        }
+        count = set.count;
+        size = set.size;
+    }
+
+    /**
+     * Returns an unmodifiable view of this set.
+     * <p>
+     * The view reflects subsequent changes to this set, and may be used as an operand of
+     * {@link #and(LongBitmapSet, LongBitmapSet)}, {@link #or(LongBitmapSet, LongBitmapSet)} and
+     * {@link #andNot(LongBitmapSet, LongBitmapSet)} without copying.
+     * </p>
+     *
+     * @return an unmodifiable view of this set.
+     */
+    public LongBitmapSet unmodifiableView()
+    {
+        return new UnmodifiableView(backing());
+    }
+
+    /**
+     * Returns the set holding the data, which is this set, unless it is a view.
+     *
+     * @return the set holding the data.
+     */
+    LongBitmapSet backing()
+    {
+        return this;
+    }
+
+    // set algebra //////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the intersection of two sets.
+     *
+     * @param a the first set.
+     * @param b the second set.
+     * @return a new set containing values present in both sets.
+     */
+    public static LongBitmapSet and(LongBitmapSet a, LongBitmapSet b)
+    {
+        a = a.backing();
+        b = b.backing();
+        LongBitmapSet result = new LongBitmapSet();
+        int i = 0;
+        int j = 0;
+        while(i < a.count && j < b.count)
+        {
+            if(a.keys[i] < b.keys[j])
+            {
+                i++;
+            }
+            else if(a.keys[i] > b.keys[j])
+            {
+                j++;
+            }
+            else
+            {
+                result.append(a.keys[i], a.containers[i].and(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the union of two sets.
+     *
+     * @param a the first set.
+     * @param b the second set.
+     * @return a new set containing values present in either set.
+     */
+    public static LongBitmapSet or(LongBitmapSet a, LongBitmapSet b)
+    {
+        a = a.backing();
+        b = b.backing();
+        LongBitmapSet result = new LongBitmapSet();
+        int i = 0;
+        int j = 0;
+        while(i < a.count || j < b.count)
+        {
+            if(j == b.count || (i < a.count && a.keys[i] < b.keys[j]))
+            {
+                result.append(a.keys[i], a.containers[i].copy());
+                i++;
+            }
+            else if(i == a.count || a.keys[i] > b.keys[j])
+            {
+                result.append(b.keys[j], b.containers[j].copy());
+                j++;
+            }
+            else
+            {
+                result.append(a.keys[i], a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the difference of two sets.
+     *
+     * @param a the first set.
+     * @param b the second set.
+     * @return a new set containing values present in the first set, but not in the second.
+     */
+    public static LongBitmapSet andNot(LongBitmapSet a, LongBitmapSet b)
+    {
+        a = a.backing();
+        b = b.backing();
+        LongBitmapSet result = new LongBitmapSet();
+        int j = 0;
+        for(int i = 0; i < a.count; i++)
+        {
+            while(j < b.count && b.keys[j] < a.keys[i])
+            {
+                j++;
+            }
+            if(j < b.count && b.keys[j] == a.keys[i])
+            {
+                result.append(a.keys[i], a.containers[i].andNot(b.containers[j]));
+            }
+            else
+            {
+                result.append(a.keys[i], a.containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    // LongSet interface ////////////////////////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean add(long value)
+    {
+        long key = value >> 16;
+        int i = find(key);
+        if(i < 0)
+        {
+            i = -i - 1;
+            insert(i, key, new ArrayContainer());
+        }
+        Container c = containers[i];
+        int before = c.cardinality;
+        containers[i] = c.add((char)value);
+        if(containers[i].cardinality > before)
+        {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean addAll(LongCollection c)
+    {
+        int before = size;
+        if(c instanceof LongBitmapSet)
+        {
+            LongBitmapSet other = ((LongBitmapSet)c).backing();
+            for(int j = 0; j < other.count; j++)
+            {
+                Container oc = other.containers[j];
+                int i = find(other.keys[j]);
+                if(i < 0)
+                {
+                    insert(-i - 1, other.keys[j], oc.copy());
+                    size += oc.cardinality;
+                }
+                else
+                {
+                    int partitionBefore = containers[i].cardinality;
+                    if(oc.cardinality <= SMALL_MERGE)
+                    {
+                        Container tc = containers[i];
+                        for(int v = oc.nextValue(0); v >= 0; v = v < 0xffff ? oc.nextValue(v + 1)
+                            : -1)
+                        {
+                            tc = tc.add((char)v);
+                        }
+                        containers[i] = tc;
+                    }
+                    else
+                    {
+                        containers[i] = containers[i].or(oc);
+                    }
+                    size += containers[i].cardinality - partitionBefore;
+                }
+            }
+        }
+        else
+        {
+            for(LongIterator i = c.iterator(); i.hasNext();)
+            {
+                add(i.next());
+            }
+        }
+        return size != before;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clear()
+    {
+        keys = NO_KEYS;
+        containers = NO_CONTAINERS;
+        count = 0;
+        size = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains(long value)
+    {
+        int i = find(value >> 16);
+        return i >= 0 && containers[i].contains((char)value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean containsAll(LongCollection c)
+    {
+        for(LongIterator i = c.iterator(); i.hasNext();)
+        {
+            if(!contains(i.next()))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public LongIterator iterator()
+    {
+        return new BitmapIterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean remove(long value)
+    {
+        int i = find(value >> 16);
+        if(i < 0)
+        {
+            return false;
+        }
+        Container c = containers[i];
+        int before = c.cardinality;
+        c = c.remove((char)value);
+        if(c.cardinality == before)
+        {
+            return false;
+        }
+        size--;
+        if(c.cardinality == 0)
+        {
+            System.arraycopy(keys, i + 1, keys, i, count - i - 1);
+            System.arraycopy(containers, i + 1, containers, i, count - i - 1);
+            count--;
+            containers[count] = null;
+        }
+        else
+        {
+            containers[i] = c;
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean removeAll(LongCollection c)
+    {
+        int before = size;
+        for(LongIterator i = c.iterator(); i.hasNext();)
+        {
+            remove(i.next());
+        }
+        return size != before;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean retainAll(LongCollection c)
+    {
+        int before = size;
+        LongBitmapSet other;
+        if(c instanceof LongBitmapSet)
+        {
+            other = (LongBitmapSet)c;
+        }
+        else
+        {
+            other = new LongBitmapSet(c.toArray());
+        }
+        LongBitmapSet product = and(this, other);
+        keys = product.keys;
+        containers = product.containers;
+        count = product.count;
+        size = product.size;
+        return size != before;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long[] toArray()
+    {
+        return toArray(new long[size()]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long[] toArray(long[] a)
+    {
+        if(a == null || a.length < size)
+        {
+            a = new long[size];
+        }
+        int pos = 0;
+        for(int i = 0; i < count; i++)
+        {
+            pos = containers[i].toArray(keys[i] << 16, a, pos);
+        }
+        return a;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void trimToSize()
+    {
+        keys = Arrays.copyOf(keys, count);
+        containers = Arrays.copyOf(containers, count);
+        for(int i = 0; i < count; i++)
+        {
+            containers[i] = containers[i].trim();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode()
+    {
+        int h = 0;
+        for(LongIterator i = iterator(); i.hasNext();)
+        {
+            long v = i.next();
+            h += (int)(v ^ (v >>> 32));
+        }
+        return h;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean equals(Object obj)
+    {
+        if(!(obj instanceof LongSet))
+        {
+            return false;
+        }
+        LongSet other = (LongSet)obj;
+        return other.size() == size() && containsAll(other);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString()
+    {
+        StringBuilder buff = new StringBuilder("[");
+        for(LongIterator i = iterator(); i.hasNext();)
+        {
+            buff.append(i.next());
+            if(i.hasNext())
+            {
+                buff.append(", ");
+            }
+        }
+        return buff.append("]").toString();
+    }
+
+    // implementation ///////////////////////////////////////////////////////////////////////////
+
+    private int find(long key)
+    {
+        return Arrays.binarySearch(keys, 0, count, key);
+    }
+
+    private void insert(int i, long key, Container c)
+    {
+        if(count == keys.length)
+        {
+            int capacity = count == 0 ? 1 : count * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, i, keys, i + 1, count - i);
+        System.arraycopy(containers, i, containers, i + 1, count - i);
+        keys[i] = key;
+        containers[i] = c;
+        count++;
+    }
+
+    /**
+     * Appends a partition with a key greater than all present keys, skipping empty ones.
+     */
+    private void append(long key, Container c)
+    {
+        if(c.cardinality > 0)
+        {
+            insert(count, key, c);
+            size += c.cardinality;
+        }
+    }
+
+    /**
+     * Iterates over the values in ascending order.
+     */
+    private class BitmapIterator
+        implements LongIterator
+    {
+        /** Index of the current partition. */
+        private int index = 0;
+
+        /** Lower bits of the next value in the current partition, or -1 when not known. */
+        private int next = -1;
+
+        /** The last returned value. */
+        private long last;
+
+        /** Whether remove() may be called. */
+        private boolean canRemove = false;
+
+        public boolean hasNext()
+        {
+            if(next < 0)
+            {
+                while(index < count)
+                {
+                    next = containers[index].nextValue(0);
+                    if(next >= 0)
+                    {
+                        break;
+                    }
+                    index++;
+                }
+            }
+            return next >= 0;
+        }
+
+        public long next()
+        {
+            if(!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            long key = keys[index];
+            last = (key << 16) | next;
+            canRemove = true;
+            next = next < 0xffff ? containers[index].nextValue(next + 1) : -1;
+            if(next < 0)
+            {
+                index++;
+            }
+            return last;
+        }
+
+        public void remove()
+        {
+            if(!canRemove)
+            {
+                throw new IllegalStateException();
+            }
+            canRemove = false;
+            LongBitmapSet.this.remove(last);
+            // relocate, as the partition might have been converted or dropped
+            long key = last >> 16;
+            int i = find(key);
+            if(i >= 0)
+            {
+                index = i;
+                int low = (int)(last & 0xffff);
+                next = low < 0xffff ? containers[i].nextValue(low + 1) : -1;
+                if(next < 0)
+                {
+                    index++;
+                }
+            }
+            else
+            {
+                index = -i - 1;
+                next = -1;
+            }
+        }
+    }
+
+    /**
+     * An unmodifiable view of a set.
+     */
+    private static final class UnmodifiableView
+        extends LongBitmapSet
+    {
+        private final LongBitmapSet set;
+
+        UnmodifiableView(LongBitmapSet set)
+        {
+            this.set = set;
+        }
+
+        LongBitmapSet backing()
+        {
+            return set;
+        }
+
+        public boolean add(long value)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean addAll(LongCollection c)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public void clear()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean contains(long value)
+        {
+            return set.contains(value);
+        }
+
+        public boolean isEmpty()
+        {
+            return set.isEmpty();
+        }
+
+        public LongIterator iterator()
+        {
+            final LongIterator i = set.iterator();
+            return new LongIterator()
+                {
+                    public boolean hasNext()
+                    {
+                        return i.hasNext();
+                    }
+
+                    public long next()
+                    {
+                        return i.next();
+                    }
+
+                    public void remove()
+                    {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+        }
+
+        public boolean remove(long value)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean removeAll(LongCollection c)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean retainAll(LongCollection c)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public int size()
+        {
+            return set.size();
+        }
+
+        public long[] toArray(long[] a)
+        {
+            return set.toArray(a);
+        }
+
+        public void trimToSize()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // partitions ///////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Holds the lower 16 bits of the values in a partition.
+     */
+    private abstract static class Container
+    {
+        /** Number of values in the partition. */
+        protected int cardinality;
+
+        abstract boolean contains(char low);
+
+        /** Adds a value, returns the container to use from now on. */
+        abstract Container add(char low);
+
+        /** Removes a value, returns the container to use from now on. */
+        abstract Container remove(char low);
+
+        /** Returns the smallest value greater or equal to from, or -1. */
+        abstract int nextValue(int from);
+
+        abstract int toArray(long base, long[] a, int pos);
+
+        abstract Container copy();
+
+        abstract Container trim();
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+    }
+
+    /**
+     * A sorted array of values.
+     */
+    private static final class ArrayContainer
+        extends Container
+    {
+        private char[] values;
+
+        ArrayContainer()
+        {
+            values = new char[2];
+        }
+
+        ArrayContainer(char[] values, int cardinality)
+        {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        boolean contains(char low)
+        {
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        Container add(char low)
+        {
+            int i = Arrays.binarySearch(values, 0, cardinality, low);
+            if(i >= 0)
+            {
+                return this;
+            }
+            if(cardinality == ARRAY_MAX)
+            {
+                return toBitmap().add(low);
+            }
+            i = -i - 1;
+            if(cardinality == values.length)
+            {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = low;
+            cardinality++;
+            return this;
+        }
+
+        Container remove(char low)
+        {
+            int i = Arrays.binarySearch(values, 0, cardinality, low);
+            if(i >= 0)
+            {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        int nextValue(int from)
+        {
+            int i = Arrays.binarySearch(values, 0, cardinality, (char)from);
+            if(i < 0)
+            {
+                i = -i - 1;
+            }
+            return i < cardinality ? values[i] : -1;
+        }
+
+        int toArray(long base, long[] a, int pos)
+        {
+            for(int i = 0; i < cardinality; i++)
+            {
+                a[pos++] = base | values[i];
+            }
+            return pos;
+        }
+
+        Container copy()
+        {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+
+        Container trim()
+        {
+            if(values.length > cardinality)
+            {
+                values = Arrays.copyOf(values, Math.max(cardinality, 1));
+            }
+            return this;
+        }
+
+        Container and(Container other)
+        {
+            char[] result = new char[cardinality];
+            int n = 0;
+            for(int i = 0; i < cardinality; i++)
+            {
+                if(other.contains(values[i]))
+                {
+                    result[n++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        Container or(Container other)
+        {
+            if(other instanceof BitmapContainer)
+            {
+                return other.or(this);
+            }
+            ArrayContainer that = (ArrayContainer)other;
+            char[] result = new char[cardinality + that.cardinality];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while(i < cardinality && j < that.cardinality)
+            {
+                if(values[i] < that.values[j])
+                {
+                    result[n++] = values[i++];
+                }
+                else if(values[i] > that.values[j])
+                {
+                    result[n++] = that.values[j++];
+                }
+                else
+                {
+                    result[n++] = values[i++];
+                    j++;
+                }
+            }
+            while(i < cardinality)
+            {
+                result[n++] = values[i++];
+            }
+            while(j < that.cardinality)
+            {
+                result[n++] = that.values[j++];
+            }
+            ArrayContainer union = new ArrayContainer(result, n);
+            return n > ARRAY_MAX ? union.toBitmap() : union;
+        }
+
+        Container andNot(Container other)
+        {
+            char[] result = new char[cardinality];
+            int n = 0;
+            for(int i = 0; i < cardinality; i++)
+            {
+                if(!other.contains(values[i]))
+                {
+                    result[n++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        private BitmapContainer toBitmap()
+        {
+            BitmapContainer bitmap = new BitmapContainer();
+            for(int i = 0; i < cardinality; i++)
+            {
+                bitmap.words[values[i] >>> 6] |= 1L << values[i];
+            }
+            bitmap.cardinality = cardinality;
+            return bitmap;
+        }
+    }
+
+    /**
+     * A bitmap of 65536 bits.
+     */
+    private static final class BitmapContainer
+        extends Container
+    {
+        private final long[] words;
+
+        BitmapContainer()
+        {
+            words = new long[1024];
+        }
+
+        BitmapContainer(long[] words)
+        {
+            this.words = words;
+            for(long w : words)
+            {
+                cardinality += Long.bitCount(w);
+            }
+        }
+
+        boolean contains(char low)
+        {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        Container add(char low)
+        {
+            long w = words[low >>> 6];
+            long bit = 1L << low;
+            if((w & bit) == 0)
+            {
+                words[low >>> 6] = w | bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        Container remove(char low)
+        {
+            long w = words[low >>> 6];
+            long bit = 1L << low;
+            if((w & bit) != 0)
+            {
+                words[low >>> 6] = w & ~bit;
+                cardinality--;
+                if(cardinality <= ARRAY_MAX / 2)
+                {
+                    return toArrayContainer();
+                }
+            }
+            return this;
+        }
+
+        int nextValue(int from)
+        {
+            int i = from >>> 6;
+            if(i >= words.length)
+            {
+                return -1;
+            }
+            long w = words[i] & (-1L << from);
+            while(true)
+            {
+                if(w != 0)
+                {
+                    return (i << 6) + Long.numberOfTrailingZeros(w);
+                }
+                if(++i == words.length)
+                {
+                    return -1;
+                }
+                w = words[i];
+            }
+        }
+
+        int toArray(long base, long[] a, int pos)
+        {
+            for(int i = 0; i < words.length; i++)
+            {
+                long w = words[i];
+                while(w != 0)
+                {
+                    a[pos++] = base | ((i << 6) + Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+            return pos;
+        }
+
+        Container copy()
+        {
+            return new BitmapContainer(words.clone());
+        }
+
+        Container trim()
+        {
+            return this;
+        }
+
+        Container and(Container other)
+        {
+            if(other instanceof ArrayContainer)
+            {
+                return other.and(this);
+            }
+            long[] result = new long[words.length];
+            long[] that = ((BitmapContainer)other).words;
+            for(int i = 0; i < words.length; i++)
+            {
+                result[i] = words[i] & that[i];
+            }
+            return new BitmapContainer(result).shrink();
+        }
+
+        Container or(Container other)
+        {
+            long[] result = words.clone();
+            if(other instanceof ArrayContainer)
+            {
+                ArrayContainer that = (ArrayContainer)other;
+                for(int i = 0; i < that.cardinality; i++)
+                {
+                    result[that.values[i] >>> 6] |= 1L << that.values[i];
+                }
+            }
+            else
+            {
+                long[] that = ((BitmapContainer)other).words;
+                for(int i = 0; i < words.length; i++)
+                {
+                    result[i] |= that[i];
+                }
+            }
+            return new BitmapContainer(result);
+        }
+
+        Container andNot(Container other)
+        {
+            long[] result = words.clone();
+            if(other instanceof ArrayContainer)
+            {
+                ArrayContainer that = (ArrayContainer)other;
+                for(int i = 0; i < that.cardinality; i++)
+                {
+                    result[that.values[i] >>> 6] &= ~(1L << that.values[i]);
+                }
+            }
+            else
+            {
+                long[] that = ((BitmapContainer)other).words;
+                for(int i = 0; i < words.length; i++)
+                {
+                    result[i] &= ~that[i];
+                }
+            }
+            return new BitmapContainer(result).shrink();
+        }
+
+        private Container shrink()
+        {
+            return cardinality <= ARRAY_MAX ? toArrayContainer() : this;
+        }
+
+        private ArrayContainer toArrayContainer()
+        {
+            char[] values = new char[Math.max(cardinality, 1)];
+            int n = 0;
+            for(int i = 0; i < words.length; i++)
+            {
+                long w = words[i];
+                while(w != 0)
+                {
+                    values[n++] = (char)((i << 6) + Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+    }
+}
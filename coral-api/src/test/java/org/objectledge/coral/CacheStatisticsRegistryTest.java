@@ -0,0 +1,67 @@
+package org.objectledge.coral;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.objectledge.test.LedgeTestCase;
+
+public class CacheStatisticsRegistryTest
+    extends LedgeTestCase
+{
+    private MBeanServer server;
+
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        server = MBeanServerFactory.newMBeanServer();
+    }
+
+    private int count(String instance)
+        throws Exception
+    {
+        return server.queryNames(
+            new ObjectName(CacheStatisticsRegistry.DOMAIN + ":type=Cache,instance="
+                + ObjectName.quote(instance) + ",*"), null).size();
+    }
+
+    public void testExportUnexport()
+        throws Exception
+    {
+        CacheStatisticsRegistry registry = new CacheStatisticsRegistry("a");
+        registry.register(new CacheStatistics(CacheStatistics.Group.RESOURCE, "resources"));
+        registry.export(server);
+        assertEquals(1, count("a"));
+        // registered after export
+        registry.register(new CacheStatistics(CacheStatistics.Group.ENTITY, "subjects"));
+        assertEquals(2, count("a"));
+        // replaced under the same cache name
+        registry.register(new CacheStatistics(CacheStatistics.Group.ATTRIBUTE, "subjects"));
+        assertEquals(2, count("a"));
+        registry.unexport();
+        assertEquals(0, count("a"));
+        // registered after unexport
+        registry.register(new CacheStatistics(CacheStatistics.Group.ENTITY, "roles"));
+        assertEquals(0, count("a"));
+        registry.unexport();
+    }
+
+    public void testInstances()
+        throws Exception
+    {
+        CacheStatisticsRegistry first = new CacheStatisticsRegistry();
+        CacheStatisticsRegistry second = new CacheStatisticsRegistry();
+        assertFalse(first.getInstance().equals(second.getInstance()));
+        first.register(new CacheStatistics(CacheStatistics.Group.RESOURCE, "resources"));
+        second.register(new CacheStatistics(CacheStatistics.Group.RESOURCE, "resources"));
+        first.export(server);
+        second.export(server);
+        assertEquals(1, count(first.getInstance()));
+        assertEquals(1, count(second.getInstance()));
+        first.unexport();
+        assertEquals(0, count(first.getInstance()));
+        assertEquals(1, count(second.getInstance()));
+        second.unexport();
+    }
+}
@@ -0,0 +1,65 @@
+package org.objectledge.coral;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.objectledge.test.LedgeTestCase;
+
+public class CacheStatisticsTest
+    extends LedgeTestCase
+{
+    public void testCounters()
+    {
+        CacheStatistics stats = new CacheStatistics(CacheStatistics.Group.RESOURCE, "test");
+        assertEquals("resource", stats.getGroup());
+        assertEquals(0.0, stats.getHitRatio(), 0.0);
+        stats.hit();
+        stats.hit();
+        stats.hit();
+        stats.miss();
+        assertEquals(3L, stats.getHits());
+        assertEquals(1L, stats.getMisses());
+        assertEquals(0.75, stats.getHitRatio(), 0.0);
+        stats.stored();
+        stats.stored();
+        stats.stored();
+        stats.removed(1);
+        stats.evicted(1);
+        // entries are computed from the reported changes
+        assertEquals(1, stats.getEntries());
+        assertEquals(1L, stats.getEvictions());
+    }
+
+    public void testCountedEntries()
+    {
+        Map<String, String> map = new HashMap<String, String>();
+        CacheStatistics stats = new CacheStatistics(CacheStatistics.Group.ENTITY, "test", map,
+            map);
+        map.put("a", "a");
+        map.put("b", "b");
+        map.put("c", "c");
+        stats.stored();
+        stats.stored();
+        stats.stored();
+        map.remove("a");
+        stats.removed(1);
+        // dropped by the map itself, without notice
+        map.remove("b");
+        assertEquals(1, stats.getEntries());
+        assertEquals(1L, stats.getRemovals());
+        assertEquals(1L, stats.getEvictions());
+    }
+
+    public void testLoadTimeHistogram()
+    {
+        CacheStatistics stats = new CacheStatistics(CacheStatistics.Group.ATTRIBUTE, "test");
+        stats.loaded(System.nanoTime());
+        stats.loaded(System.nanoTime() - 100000000000L);
+        assertEquals(2L, stats.getLoads());
+        long[] histogram = stats.getLoadTimeHistogram();
+        assertEquals(stats.getLoadTimeHistogramBounds().length + 1, histogram.length);
+        // an instant load falls into the first range, a 100s one into the last
+        assertEquals(1L, histogram[0]);
+        assertEquals(1L, histogram[histogram.length - 1]);
+    }
+}
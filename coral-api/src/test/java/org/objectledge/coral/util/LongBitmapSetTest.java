@@ -0,0 +1,147 @@
+package org.objectledge.coral.util;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.objectledge.test.LedgeTestCase;
+
+import bak.pcj.LongIterator;
+import bak.pcj.set.LongOpenHashSet;
+
+public class LongBitmapSetTest
+    extends LedgeTestCase
+{
+    public void testBasic()
+    {
+        LongBitmapSet set = new LongBitmapSet();
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(7L));
+        assertFalse(set.add(7L));
+        assertTrue(set.add(-3L));
+        assertTrue(set.add(1L << 40));
+        assertEquals(3, set.size());
+        assertTrue(set.contains(7L));
+        assertTrue(set.contains(-3L));
+        assertTrue(set.contains(1L << 40));
+        assertFalse(set.contains(8L));
+        assertTrue(Arrays.equals(new long[] { -3L, 7L, 1L << 40 }, set.toArray()));
+        assertTrue(set.remove(7L));
+        assertFalse(set.remove(7L));
+        assertEquals(2, set.size());
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.iterator().hasNext());
+    }
+
+    public void testDense()
+    {
+        LongBitmapSet set = new LongBitmapSet();
+        for(long i = 0; i < 10000; i++)
+        {
+            set.add(i * 3);
+        }
+        assertEquals(10000, set.size());
+        for(long i = 0; i < 30000; i++)
+        {
+            assertEquals(i % 3 == 0, set.contains(i));
+        }
+        for(long i = 0; i < 10000; i += 2)
+        {
+            set.remove(i * 3);
+        }
+        assertEquals(5000, set.size());
+        long prev = -1;
+        int n = 0;
+        for(LongIterator i = set.iterator(); i.hasNext(); n++)
+        {
+            long v = i.next();
+            assertTrue(v > prev);
+            assertEquals(3, v % 6);
+            prev = v;
+        }
+        assertEquals(5000, n);
+    }
+
+    public void testIteratorRemove()
+    {
+        LongBitmapSet set = new LongBitmapSet(new long[] { 1, 2, 3, 70000, 70001 });
+        for(LongIterator i = set.iterator(); i.hasNext();)
+        {
+            if(i.next() % 2 == 1)
+            {
+                i.remove();
+            }
+        }
+        assertTrue(Arrays.equals(new long[] { 2, 70000 }, set.toArray()));
+    }
+
+    public void testAlgebra()
+    {
+        Random random = new Random(42);
+        TreeSet<Long> a = new TreeSet<Long>();
+        TreeSet<Long> b = new TreeSet<Long>();
+        LongBitmapSet aSet = new LongBitmapSet();
+        LongBitmapSet bSet = new LongBitmapSet();
+        for(int i = 0; i < 20000; i++)
+        {
+            long va = random.nextInt(200000);
+            long vb = random.nextInt(1 << 20);
+            a.add(va);
+            aSet.add(va);
+            b.add(vb);
+            bSet.add(vb);
+        }
+        TreeSet<Long> expected = new TreeSet<Long>(a);
+        expected.retainAll(b);
+        assertContents(expected, LongBitmapSet.and(aSet, bSet));
+        expected = new TreeSet<Long>(a);
+        expected.addAll(b);
+        assertContents(expected, LongBitmapSet.or(aSet, bSet));
+        expected = new TreeSet<Long>(a);
+        expected.removeAll(b);
+        assertContents(expected, LongBitmapSet.andNot(aSet, bSet));
+    }
+
+    public void testUnmodifiableView()
+    {
+        LongBitmapSet set = new LongBitmapSet(new long[] { 1, 2, 3 });
+        LongBitmapSet view = set.unmodifiableView();
+        try
+        {
+            view.add(4);
+            fail("should throw the exception");
+        }
+        catch(UnsupportedOperationException e)
+        {
+            // OK
+        }
+        set.add(4);
+        assertEquals(4, view.size());
+        assertTrue(view.contains(4));
+        assertEquals(set, view);
+        LongBitmapSet sum = new LongBitmapSet(new long[] { 5 });
+        sum.addAll(view);
+        assertTrue(Arrays.equals(new long[] { 1, 2, 3, 4, 5 }, sum.toArray()));
+        assertEquals(2, LongBitmapSet.and(view, new LongBitmapSet(new long[] { 2, 3, 9 })).size());
+    }
+
+    public void testEquals()
+    {
+        LongBitmapSet set = new LongBitmapSet(new long[] { 5, 1, 100000 });
+        LongOpenHashSet other = new LongOpenHashSet(new long[] { 1, 5, 100000 });
+        assertEquals(set, other);
+        assertEquals(other.hashCode(), set.hashCode());
+    }
+
+    private void assertContents(TreeSet<Long> expected, LongBitmapSet actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        LongIterator i = actual.iterator();
+        for(Long v : expected)
+        {
+            assertEquals(v.longValue(), i.next());
+        }
+        assertFalse(i.hasNext());
+    }
+}
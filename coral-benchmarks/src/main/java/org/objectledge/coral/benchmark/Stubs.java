@@ -0,0 +1,103 @@
+package org.objectledge.coral.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates minimal interface implementations for the collaborators of benchmarked components.
+ * <p>
+ * A stub returns a fixed answer for each of the configured method names, regardless of the
+ * arguments, and <code>null</code>, zero or <code>false</code> for all other methods. Stubs are
+ * equal only to themselves. Unlike jMock proxies, stubs do not record invocations, so that they
+ * do not skew the measurements.
+ * </p>
+ */
+public final class Stubs
+{
+    private Stubs()
+    {
+        // static access only
+    }
+
+    /**
+     * Creates a stub.
+     *
+     * @param type the implemented interface.
+     * @param answers method names, each followed by the value it returns.
+     * @return the stub.
+     */
+    public static <T> T stub(final Class<T> type, Object... answers)
+    {
+        final Map<String, Object> map = new HashMap<String, Object>();
+        for(int i = 0; i < answers.length; i += 2)
+        {
+            map.put((String)answers[i], answers[i + 1]);
+        }
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+            new InvocationHandler()
+            {
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    String name = method.getName();
+                    if(name.equals("equals") && method.getParameterTypes().length == 1)
+                    {
+                        return proxy == args[0];
+                    }
+                    if(name.equals("hashCode") && method.getParameterTypes().length == 0)
+                    {
+                        return System.identityHashCode(proxy);
+                    }
+                    if(name.equals("toString") && method.getParameterTypes().length == 0)
+                    {
+                        return type.getSimpleName() + "@"
+                            + Integer.toHexString(System.identityHashCode(proxy));
+                    }
+                    if(map.containsKey(name))
+                    {
+                        return map.get(name);
+                    }
+                    return defaultValue(method.getReturnType());
+                }
+            }));
+    }
+
+    private static Object defaultValue(Class<?> type)
+    {
+        if(!type.isPrimitive() || type == Void.TYPE)
+        {
+            return null;
+        }
+        if(type == Boolean.TYPE)
+        {
+            return Boolean.FALSE;
+        }
+        if(type == Character.TYPE)
+        {
+            return Character.valueOf((char)0);
+        }
+        if(type == Byte.TYPE)
+        {
+            return Byte.valueOf((byte)0);
+        }
+        if(type == Short.TYPE)
+        {
+            return Short.valueOf((short)0);
+        }
+        if(type == Integer.TYPE)
+        {
+            return Integer.valueOf(0);
+        }
+        if(type == Long.TYPE)
+        {
+            return Long.valueOf(0L);
+        }
+        if(type == Float.TYPE)
+        {
+            return Float.valueOf(0f);
+        }
+        return Double.valueOf(0d);
+    }
+}
@@ -0,0 +1,118 @@
+package org.objectledge.coral.event;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jcontainer.dna.Logger;
+import org.objectledge.cache.CacheFactory;
+import org.objectledge.context.Context;
+import org.objectledge.coral.benchmark.Stubs;
+import org.objectledge.coral.schema.ResourceClass;
+import org.objectledge.coral.security.Subject;
+import org.objectledge.coral.store.Resource;
+import org.objectledge.event.EventWhiteboardFactory;
+import org.objectledge.threads.DefaultThreadPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the throughput of resource change event dispatch through
+ * {@link DirectCoralEventWhiteboard} with the reflective dispatch of
+ * {@link CoralEventWhiteboardImpl} over an {@link org.objectledge.event.EventWhiteboard}.
+ * <p>
+ * The same listeners are registered with both whiteboards: one for the changed resource, and
+ * <code>listeners</code> for all resources. The whiteboards are shared by the benchmark threads,
+ * as they are in a running Coral instance, so contention can be measured by running with
+ * <code>-t</code>.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EventDispatchBenchmark
+{
+    /** Number of listeners registered for all resources. */
+    @Param({ "1", "10" })
+    int listeners;
+
+    private DefaultThreadPool threadPool;
+
+    private CoralEventWhiteboard direct;
+
+    private CoralEventWhiteboard reflective;
+
+    private Resource resource;
+
+    private Subject subject;
+
+    @Setup
+    public void setUp()
+    {
+        Logger log = Stubs.stub(Logger.class);
+        threadPool = new DefaultThreadPool(null, new Context(), null, log);
+        EventWhiteboardFactory eventWhiteboardFactory = new EventWhiteboardFactory(null, log,
+            threadPool, Stubs.stub(CacheFactory.class));
+        direct = new DirectCoralEventWhiteboard(log);
+        reflective = new CoralEventWhiteboardImpl(eventWhiteboardFactory.newInstance());
+
+        ResourceClass<?> resourceClass = Stubs.stub(ResourceClass.class, "getParentClasses",
+            new ResourceClass<?>[0]);
+        resource = Stubs.stub(Resource.class, "getId", Long.valueOf(1L), "getResourceClass",
+            resourceClass);
+        subject = Stubs.stub(Subject.class, "getId", Long.valueOf(1L));
+
+        ResourceChangeListener listener = new CountingListener();
+        direct.addResourceChangeListener(listener, resource);
+        reflective.addResourceChangeListener(listener, resource);
+        for(int i = 0; i < listeners; i++)
+        {
+            listener = new CountingListener();
+            direct.addResourceChangeListener(listener, null);
+            reflective.addResourceChangeListener(listener, null);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        threadPool.stop();
+    }
+
+    @Benchmark
+    public void direct()
+    {
+        direct.fireResourceChangeEvent(resource, subject);
+    }
+
+    @Benchmark
+    public void reflective()
+    {
+        reflective.fireResourceChangeEvent(resource, subject);
+    }
+
+    /**
+     * A listener that counts the events, so that its invocation is not optimized away.
+     */
+    private static class CountingListener
+        implements ResourceChangeListener
+    {
+        private long count = 0;
+
+        public void resourceChanged(Resource resource, Subject subject)
+        {
+            count++;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.objectledge.coral.relation;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bak.pcj.LongIterator;
+
+/**
+ * Compares {@link BitmapRelationStorage} with the set based {@link HashRelationStorage}.
+ * <p>
+ * The storage holds {@link #KEYS} keys, each mapped to <code>mappingSize</code> ids drawn at
+ * random from a range four times as large, which is how the ids of resources created over time
+ * end up in large relations. Pair lookups and iteration over mapped sets are measured.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RelationStorageBenchmark
+{
+    /** Number of keys in the storage. */
+    static final int KEYS = 100;
+
+    /** Number of precomputed lookups, a power of two. */
+    static final int LOOKUPS = 1 << 16;
+
+    /** The storage implementation. */
+    @Param({ "hash", "bitmap" })
+    String storage;
+
+    /** Number of ids mapped to each key. */
+    @Param({ "1000", "100000" })
+    int mappingSize;
+
+    private RelationStorage rel;
+
+    private long[] lookupKeys;
+
+    private long[] lookupIds;
+
+    private int next = 0;
+
+    @Setup
+    public void setUp()
+    {
+        if(storage.equals("bitmap"))
+        {
+            rel = new BitmapRelationStorage(KEYS);
+        }
+        else
+        {
+            rel = new HashRelationStorage(KEYS);
+        }
+        Random random = new Random(0);
+        int range = mappingSize * 4;
+        for(int k = 0; k < KEYS; k++)
+        {
+            for(int count = 0; count < mappingSize;)
+            {
+                if(rel.add(k, random.nextInt(range)))
+                {
+                    count++;
+                }
+            }
+        }
+        if(rel instanceof BitmapRelationStorage)
+        {
+            ((BitmapRelationStorage)rel).trimToSize();
+        }
+        lookupKeys = new long[LOOKUPS];
+        lookupIds = new long[LOOKUPS];
+        for(int i = 0; i < LOOKUPS; i++)
+        {
+            lookupKeys[i] = random.nextInt(KEYS);
+            lookupIds[i] = random.nextInt(range);
+        }
+    }
+
+    @Benchmark
+    public boolean contains()
+    {
+        int i = next;
+        next = (next + 1) & (LOOKUPS - 1);
+        return rel.contains(lookupKeys[i], lookupIds[i]);
+    }
+
+    @Benchmark
+    public long iterate()
+    {
+        int i = next;
+        next = (next + 1) & (LOOKUPS - 1);
+        long sum = 0;
+        for(LongIterator it = rel.get(lookupKeys[i]).iterator(); it.hasNext();)
+        {
+            sum += it.next();
+        }
+        return sum;
+    }
+}
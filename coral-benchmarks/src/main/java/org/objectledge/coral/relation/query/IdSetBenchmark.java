@@ -0,0 +1,103 @@
+package org.objectledge.coral.relation.query;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.objectledge.coral.util.LongBitmapSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bak.pcj.set.LongOpenHashSet;
+import bak.pcj.set.LongSet;
+
+/**
+ * Compares the set operations of relation queries on {@link IdSet}, backed by
+ * {@link LongBitmapSet}, with the same operations on <code>LongOpenHashSet</code>, which the id
+ * sets used before.
+ * <p>
+ * Both operands hold <code>size</code> ids drawn at random from a range four times as large. The
+ * hash based variants copy the left operand first, as its set was modified in place, while the
+ * bitmap based id sets use the relation sets without copying.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IdSetBenchmark
+{
+    /** Number of ids in each operand. */
+    @Param({ "1000", "100000" })
+    int size;
+
+    private LongSet hashA;
+
+    private LongSet hashB;
+
+    private LongBitmapSet bitmapA;
+
+    private LongBitmapSet bitmapB;
+
+    @Setup
+    public void setUp()
+    {
+        Random random = new Random(0);
+        hashA = randomSet(random, size);
+        hashB = randomSet(random, size);
+        bitmapA = new LongBitmapSet(hashA.toArray());
+        bitmapB = new LongBitmapSet(hashB.toArray());
+    }
+
+    @Benchmark
+    public LongSet intersectHash()
+    {
+        LongSet result = new LongOpenHashSet(hashA);
+        result.retainAll(hashB);
+        return result;
+    }
+
+    @Benchmark
+    public LongSet intersectBitmap()
+    {
+        IdSet result = new IdSet(bitmapA);
+        result.intersect(new IdSet(bitmapB));
+        return result.getIds();
+    }
+
+    @Benchmark
+    public LongSet sumHash()
+    {
+        LongSet result = new LongOpenHashSet(hashA);
+        result.addAll(hashB);
+        return result;
+    }
+
+    @Benchmark
+    public LongSet sumBitmap()
+    {
+        IdSet result = new IdSet(bitmapA);
+        result.sum(new IdSet(bitmapB));
+        return result.getIds();
+    }
+
+    private static LongSet randomSet(Random random, int size)
+    {
+        LongSet set = new LongOpenHashSet(size);
+        while(set.size() < size)
+        {
+            set.add(random.nextInt(size * 4));
+        }
+        return set;
+    }
+}
@@ -0,0 +1,109 @@
+package org.objectledge.coral.security;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.jcontainer.dna.Logger;
+import org.objectledge.coral.CacheStatisticsRegistry;
+import org.objectledge.coral.CoralCore;
+import org.objectledge.coral.benchmark.Stubs;
+import org.objectledge.coral.entity.CoralRegistry;
+import org.objectledge.coral.event.CoralEventHub;
+import org.objectledge.coral.event.DirectCoralEventWhiteboard;
+import org.objectledge.coral.store.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Measures the cost of flushing the permission information of a branch of the resource tree, as
+ * the number of resources in the permission cache grows.
+ * <p>
+ * The tree consists of a root, and branches of {@link #BRANCH_SIZE} leaves each. Each operation
+ * flushes a single branch, and reloads the permission information of its leaves. With the entries
+ * indexed by their ancestors, the cost should not depend on the size of the cache.
+ * </p>
+ * <p>
+ * The cache is filled with {@link PermissionContainer#getPermissions(Resource)}, which does not
+ * compute the effective permission bitsets, so that only the permission information cache and
+ * its reverse index are exercised. The resources are strongly referenced by the benchmark state,
+ * so that cache entries are never evicted by the garbage collector.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PermissionFlushBenchmark
+{
+    /** Number of leaves in a branch. */
+    static final int BRANCH_SIZE = 100;
+
+    /** Number of cached leaves. */
+    @Param({ "1000", "10000", "100000" })
+    int cacheSize;
+
+    private PermissionContainer permissions;
+
+    private Resource[] branches;
+
+    private Resource[][] leaves;
+
+    private int next = 0;
+
+    @Setup
+    public void setUp()
+    {
+        CoralRegistry registry = Stubs.stub(CoralRegistry.class, "getPermissionAssignments",
+            Collections.emptySet());
+        CoralCore coral = Stubs.stub(CoralCore.class, "getCacheStatistics",
+            new CacheStatisticsRegistry(), "getRegistry", registry);
+        CoralEventHub hub = Stubs.stub(CoralEventHub.class, "getGlobal",
+            new DirectCoralEventWhiteboard(Stubs.stub(Logger.class)));
+        permissions = new RoleContainer(hub, coral, ImmutableSet.<Role> of()).getPermissions();
+
+        long id = 1;
+        Resource root = resource(id++, null);
+        branches = new Resource[cacheSize / BRANCH_SIZE];
+        leaves = new Resource[branches.length][BRANCH_SIZE];
+        for(int i = 0; i < branches.length; i++)
+        {
+            branches[i] = resource(id++, root);
+            for(int j = 0; j < BRANCH_SIZE; j++)
+            {
+                leaves[i][j] = resource(id++, branches[i]);
+                permissions.getPermissions(leaves[i][j]);
+            }
+        }
+    }
+
+    @Benchmark
+    public void flushBranch(Blackhole bh)
+    {
+        int i = next;
+        next = (next + 1) % branches.length;
+        permissions.flush(branches[i]);
+        for(Resource leaf : leaves[i])
+        {
+            bh.consume(permissions.getPermissions(leaf));
+        }
+    }
+
+    private static Resource resource(long id, Resource parent)
+    {
+        return Stubs.stub(Resource.class, "getId", Long.valueOf(id), "getParent", parent);
+    }
+}
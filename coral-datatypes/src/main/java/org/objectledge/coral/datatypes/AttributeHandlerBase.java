@@ -9,6 +9,7 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
@@ -79,6 +80,9 @@ public abstract class AttributeHandlerBase<T>
     /** call checkExists() on delete() */
     protected boolean deleteConsistencyCheck = false;
 
+    /** Number of rows fetched at once while preloading values. */
+    static final int PRELOAD_FETCH_SIZE = 1000;
+
     /**
      * The base constructor.
      * 
@@ -115,6 +119,7 @@ public abstract class AttributeHandlerBase<T>
             }
             stmt.execute("DELETE FROM " + getTable() + " WHERE data_key = " + id);
             releaseId(id);
+            uncacheValue(id);
         }
         finally
         {
@@ -134,6 +139,50 @@ public abstract class AttributeHandlerBase<T>
         // default implementation does noting
     }
 
+    /**
+     * Loads all values of a string valued attribute into a compact store.
+     * <p>
+     * The values are streamed from the database rather than loaded at once.
+     * </p>
+     * 
+     * @param conn database connection.
+     * @return the store.
+     * @throws SQLException if database operation fails.
+     */
+    StringValueStore preloadStrings(Connection conn)
+        throws SQLException
+    {
+        StringValueStore store = new StringValueStore(false);
+        // some drivers stream the results only outside of auto commit mode
+        boolean autoCommit = conn.getAutoCommit();
+        if(autoCommit)
+        {
+            conn.setAutoCommit(false);
+        }
+        Statement stmt = null;
+        ResultSet rs = null;
+        try
+        {
+            stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(PRELOAD_FETCH_SIZE);
+            rs = stmt.executeQuery("SELECT data_key, "+getDataColumn()+" FROM "+getTable());
+            while(rs.next())
+            {
+                store.put(rs.getLong(1), unescape(rs.getString(2)));
+            }
+        }
+        finally
+        {
+            DatabaseUtils.close(rs);
+            DatabaseUtils.close(stmt);
+            if(autoCommit)
+            {
+                conn.setAutoCommit(true);
+            }
+        }
+        return store;
+    }
+
     /**
      * Checks if an attribute value object had it's state modified since retrieval or most recent
      * update.
@@ -148,6 +197,260 @@ public abstract class AttributeHandlerBase<T>
         return false;
     }
 
+    // batched writes ////////////////////////////////////////////////////////
+
+    /**
+     * Creates a new attribute value as a part of a write batch.
+     *
+     * @param value the value.
+     * @param batch the write batch.
+     * @return the identifier of the value.
+     * @throws SQLException if database operation fails.
+     */
+    long create(T value, AttributeWriteBatch batch)
+        throws SQLException
+    {
+        // values that are retrieved after creation must be written immediately
+        if(!supportsBatchedWrites() || shouldRetrieveAfterCreate())
+        {
+            return create(value, batch.getConnection());
+        }
+        checkWrite(value);
+        long id = getNextId();
+        PreparedStatement stmt = batch.getStatement("INSERT INTO " + getTable() + "(data_key, "
+            + getDataColumn() + ") VALUES (?, ?)", false);
+        stmt.setLong(1, id);
+        setParameter(stmt, 2, value);
+        stmt.addBatch();
+        return id;
+    }
+
+    /**
+     * Modifies an existing attribute value as a part of a write batch.
+     * <p>
+     * Existence of the value is verified when the batch is flushed.
+     * </p>
+     *
+     * @param id the identifier of the value.
+     * @param value the value.
+     * @param batch the write batch.
+     * @throws EntityDoesNotExistException if the value does not exist.
+     * @throws SQLException if database operation fails.
+     */
+    void update(long id, T value, AttributeWriteBatch batch)
+        throws EntityDoesNotExistException, SQLException
+    {
+        if(!supportsBatchedWrites())
+        {
+            update(id, value, batch.getConnection());
+            return;
+        }
+        checkWrite(value);
+        PreparedStatement stmt = batch.getStatement("UPDATE " + getTable() + " SET "
+            + getDataColumn() + " = ? WHERE data_key = ?", true);
+        setParameter(stmt, 1, value);
+        stmt.setLong(2, id);
+        stmt.addBatch();
+        cacheValue(id, value);
+    }
+
+    /**
+     * Removes an existing attribute value as a part of a write batch.
+     *
+     * @param id the identifier of the value.
+     * @param batch the write batch.
+     * @throws EntityDoesNotExistException if the value does not exist.
+     * @throws SQLException if database operation fails.
+     */
+    void delete(long id, AttributeWriteBatch batch)
+        throws EntityDoesNotExistException, SQLException
+    {
+        if(!supportsBatchedWrites() || deleteConsistencyCheck)
+        {
+            delete(id, batch.getConnection());
+            return;
+        }
+        PreparedStatement stmt = batch.getStatement("DELETE FROM " + getTable()
+            + " WHERE data_key = ?", false);
+        stmt.setLong(1, id);
+        stmt.addBatch();
+        releaseId(id);
+        uncacheValue(id);
+    }
+
+    /**
+     * Returns <code>true</code> if the values are stored in a single data column of the attribute
+     * table, that may be written using {@link #setParameter(PreparedStatement, int, Object)}.
+     * <p>
+     * Handlers that do not support batched writes perform them immediately. The base
+     * implementation returns <code>false</code>.
+     * </p>
+     *
+     * @return <code>true</code> if the handler supports batched writes.
+     */
+    protected boolean supportsBatchedWrites()
+    {
+        return false;
+    }
+
+    /**
+     * Verifies that a value may be written to the database.
+     * <p>
+     * The base implementation accepts all values.
+     * </p>
+     *
+     * @param value the value.
+     */
+    protected void checkWrite(T value)
+    {
+        // default implementation does nothing
+    }
+
+    /**
+     * Stores an updated value in the handler's cache, if any.
+     *
+     * @param id the identifier of the value.
+     * @param value the value.
+     */
+    protected void cacheValue(long id, T value)
+    {
+        // default implementation does nothing
+    }
+
+    /**
+     * Drops a deleted value from the handler's cache, if any.
+     *
+     * @param id the identifier of the value.
+     */
+    protected void uncacheValue(long id)
+    {
+        // default implementation does nothing
+    }
+
+    // batched reads /////////////////////////////////////////////////////////
+
+    /**
+     * Retrieves a group of attribute values.
+     * <p>
+     * Values present in the handler's cache are not read from the database. If the handler
+     * supports batched reads, the remaining values are read using a bounded number of queries,
+     * otherwise they are retrieved one at a time.
+     * </p>
+     *
+     * @param ids the identifiers of the values.
+     * @param conn the database connection.
+     * @return the values, keyed by identifier.
+     * @throws EntityDoesNotExistException if any of the values does not exist.
+     * @throws SQLException if database operation fails.
+     */
+    Map<Long, T> retrieve(Collection<Long> ids, Connection conn)
+        throws EntityDoesNotExistException, SQLException
+    {
+        Map<Long, T> result = new HashMap<Long, T>(ids.size());
+        List<Long> missing = new ArrayList<Long>();
+        for(Long id : ids)
+        {
+            T value = getCachedValue(id);
+            if(value != null)
+            {
+                result.put(id, value);
+            }
+            else
+            {
+                missing.add(id);
+            }
+        }
+        if(!supportsBatchedReads())
+        {
+            for(Long id : missing)
+            {
+                result.put(id, retrieve(id, conn));
+            }
+            return result;
+        }
+        for(int start = 0; start < missing.size(); start += StandardResourceHandler.BATCH_SIZE)
+        {
+            List<Long> chunk = missing.subList(start,
+                Math.min(start + StandardResourceHandler.BATCH_SIZE, missing.size()));
+            PreparedStatement stmt = conn.prepareStatement("SELECT data_key, " + getDataColumn()
+                + " FROM " + getTable() + " WHERE data_key IN ("
+                + StandardResourceHandler.placeholders(chunk.size()) + ")");
+            ResultSet rs = null;
+            try
+            {
+                for(int i = 0; i < chunk.size(); i++)
+                {
+                    stmt.setLong(i + 1, chunk.get(i));
+                }
+                rs = stmt.executeQuery();
+                while(rs.next())
+                {
+                    long id = rs.getLong(1);
+                    T value = getValue(rs, 2);
+                    cacheValue(id, value);
+                    result.put(id, value);
+                }
+            }
+            finally
+            {
+                DatabaseUtils.close(rs);
+                DatabaseUtils.close(stmt);
+            }
+        }
+        for(Long id : missing)
+        {
+            if(!result.containsKey(id))
+            {
+                throw new EntityDoesNotExistException("Item #" + id + " does not exist in table "
+                    + getTable());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if the values are stored in a single data column of the attribute
+     * table, that may be read using {@link #getValue(ResultSet, int)}.
+     * <p>
+     * The base implementation returns <code>false</code>.
+     * </p>
+     *
+     * @return <code>true</code> if the handler supports batched reads.
+     */
+    protected boolean supportsBatchedReads()
+    {
+        return false;
+    }
+
+    /**
+     * Reads a value from the data column of a result set.
+     *
+     * @param rs the result set.
+     * @param column the index of the data column.
+     * @return the value.
+     * @throws EntityDoesNotExistException if the value refers to a missing entity.
+     * @throws SQLException if the value could not be read.
+     */
+    protected T getValue(ResultSet rs, int column)
+        throws EntityDoesNotExistException, SQLException
+    {
+        throw new UnsupportedOperationException("batched reads not supported for attribute class "
+            + attributeClass.getName());
+    }
+
+    /**
+     * Returns a value from the handler's cache, if any.
+     *
+     * @param id the identifier of the value.
+     * @return the value, or <code>null</code> if not cached.
+     * @throws EntityDoesNotExistException if the value refers to a missing entity.
+     */
+    protected T getCachedValue(long id)
+        throws EntityDoesNotExistException
+    {
+        return null;
+    }
+
     // meta information //////////////////////////////////////////////////////
 
     /**
@@ -456,14 +759,9 @@ public abstract class AttributeHandlerBase<T>
     }
 
     /**
-     * Insert attribute value into a PreparedStatement parameter slot.
-     * 
-     * @param stmt a PreparedStatement
-     * @param position parameter position
-     * @param value parameter value
-     * @throws SQLException
+     * {@inheritDoc}
      */
-    protected void setParameter(PreparedStatement stmt, int position, T value)
+    public void setParameter(PreparedStatement stmt, int position, T value)
         throws SQLException
     {
         throw new UnsupportedOperationException("not implemented");
@@ -0,0 +1,185 @@
+package org.objectledge.coral.datatypes;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectledge.coral.entity.EntityDoesNotExistException;
+import org.objectledge.coral.schema.AttributeHandler;
+import org.objectledge.database.DatabaseUtils;
+
+/**
+ * Collects attribute value writes performed within a single resource operation, and sends them to
+ * the database as JDBC batches.
+ * <p>
+ * Writes are grouped by statement, and thus by attribute table. Each distinct statement is
+ * prepared once per batch. Handlers that do not extend {@link AttributeHandlerBase}, or do not
+ * support batched writes, perform their writes immediately.
+ * </p>
+ * <p>
+ * A batch lives no longer than the connection it was created for, which is borrowed from the pool
+ * for a single resource operation, so the statements are not kept beyond it. Reuse across
+ * operations is left to the statement cache of the connection pool.
+ * </p>
+ */
+public class AttributeWriteBatch
+{
+    private final Connection conn;
+
+    /** Statements, by SQL text, in order of first use. */
+    private final Map<String, PreparedStatement> statements =
+        new LinkedHashMap<String, PreparedStatement>();
+
+    /** Statements where each batched command is expected to affect a row. */
+    private final Set<String> checked = new HashSet<String>();
+
+    /**
+     * Creates a new batch.
+     *
+     * @param conn the connection the writes will be performed on.
+     */
+    public AttributeWriteBatch(Connection conn)
+    {
+        this.conn = conn;
+    }
+
+    /**
+     * Returns the connection the writes are performed on.
+     *
+     * @return the connection.
+     */
+    public Connection getConnection()
+    {
+        return conn;
+    }
+
+    /**
+     * Returns a prepared statement to add batched commands to.
+     *
+     * @param sql the SQL text of the statement.
+     * @param checkUpdates <code>true</code> to verify on flush that each command affected a row.
+     * @return the prepared statement.
+     * @throws SQLException if the statement could not be prepared.
+     */
+    public PreparedStatement getStatement(String sql, boolean checkUpdates)
+        throws SQLException
+    {
+        PreparedStatement stmt = statements.get(sql);
+        if(stmt == null)
+        {
+            stmt = conn.prepareStatement(sql);
+            statements.put(sql, stmt);
+        }
+        if(checkUpdates)
+        {
+            checked.add(sql);
+        }
+        return stmt;
+    }
+
+    /**
+     * Creates an attribute value.
+     *
+     * @param handler the attribute handler.
+     * @param value the value.
+     * @return the identifier of the value.
+     * @throws SQLException if the value could not be created.
+     */
+    public <A> long create(AttributeHandler<A> handler, A value)
+        throws SQLException
+    {
+        if(handler instanceof AttributeHandlerBase)
+        {
+            @SuppressWarnings("unchecked")
+            final AttributeHandlerBase<A> base = (AttributeHandlerBase<A>)handler;
+            return base.create(value, this);
+        }
+        return handler.create(value, conn);
+    }
+
+    /**
+     * Updates an attribute value.
+     *
+     * @param handler the attribute handler.
+     * @param id the identifier of the value.
+     * @param value the value.
+     * @throws EntityDoesNotExistException if the value does not exist.
+     * @throws SQLException if the value could not be updated.
+     */
+    public <A> void update(AttributeHandler<A> handler, long id, A value)
+        throws EntityDoesNotExistException, SQLException
+    {
+        if(handler instanceof AttributeHandlerBase)
+        {
+            @SuppressWarnings("unchecked")
+            final AttributeHandlerBase<A> base = (AttributeHandlerBase<A>)handler;
+            base.update(id, value, this);
+        }
+        else
+        {
+            handler.update(id, value, conn);
+        }
+    }
+
+    /**
+     * Deletes an attribute value.
+     *
+     * @param handler the attribute handler.
+     * @param id the identifier of the value.
+     * @throws EntityDoesNotExistException if the value does not exist.
+     * @throws SQLException if the value could not be deleted.
+     */
+    public void delete(AttributeHandler<?> handler, long id)
+        throws EntityDoesNotExistException, SQLException
+    {
+        if(handler instanceof AttributeHandlerBase)
+        {
+            ((AttributeHandlerBase<?>)handler).delete(id, this);
+        }
+        else
+        {
+            handler.delete(id, conn);
+        }
+    }
+
+    /**
+     * Executes the collected commands.
+     *
+     * @throws SQLException if any of the commands fails, or a checked command did not affect a row.
+     */
+    public void flush()
+        throws SQLException
+    {
+        for(Map.Entry<String, PreparedStatement> entry : statements.entrySet())
+        {
+            int[] counts = entry.getValue().executeBatch();
+            if(checked.contains(entry.getKey()))
+            {
+                for(int count : counts)
+                {
+                    if(count == 0)
+                    {
+                        throw new SQLException("no rows affected by " + entry.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the statements.
+     */
+    public void close()
+    {
+        for(PreparedStatement stmt : statements.values())
+        {
+            DatabaseUtils.close(stmt);
+        }
+        statements.clear();
+        checked.clear();
+    }
+}
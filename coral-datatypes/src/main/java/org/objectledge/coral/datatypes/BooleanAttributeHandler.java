@@ -144,11 +144,7 @@ public class BooleanAttributeHandler
     public void update(long id, Boolean value, Connection conn)
         throws EntityDoesNotExistException, SQLException
     {
-        if(cache != null && id < cache.length())
-        {
-            cache.set((int)id, (value).booleanValue());
-            defined.set((int)id);
-        }
+        cacheValue(id, value);
         Statement stmt = conn.createStatement();
         try
         {
@@ -165,19 +161,70 @@ public class BooleanAttributeHandler
         }
     }
 
+    // batched writes ////////////////////////////////////////////////////////
+
     /**
      * {@inheritDoc}
      */
-    public void delete(long id, Connection conn)
-        throws EntityDoesNotExistException, SQLException
+    protected boolean supportsBatchedWrites()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void cacheValue(long id, Boolean value)
+    {
+        if(cache != null && id < cache.length())
+        {
+            cache.set((int)id, (value).booleanValue());
+            defined.set((int)id);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void uncacheValue(long id)
     {
-        super.delete(id, conn);
         if(cache != null && id < cache.length())
         {
             defined.clear((int)id);
         }
     }
 
+    // batched reads /////////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean supportsBatchedReads()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Boolean getValue(ResultSet rs, int column)
+        throws SQLException
+    {
+        return rs.getBoolean(column) ? Boolean.TRUE : Boolean.FALSE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Boolean getCachedValue(long id)
+    {
+        if(cache != null && id < cache.length() && defined.get((int)id))
+        {
+            return cache.get((int)id) ? Boolean.TRUE : Boolean.FALSE;
+        }
+        return null;
+    }
+
     // meta information //////////////////////////////////////////////////////
     
     /**
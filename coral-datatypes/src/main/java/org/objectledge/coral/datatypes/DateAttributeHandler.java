@@ -140,10 +140,7 @@ public class DateAttributeHandler
     public void update(long id, Date value, Connection conn)
         throws EntityDoesNotExistException, SQLException
     {
-        if(cache != null && id < cache.length)
-        {
-            cache[(int)id] = value;
-        }
+        cacheValue(id, value);
         Statement stmt = null;
         PreparedStatement pstmt = null;
         try
@@ -163,19 +160,69 @@ public class DateAttributeHandler
         }
     }
 
+    // batched writes ////////////////////////////////////////////////////////
+
     /**
      * {@inheritDoc}
      */
-    public void delete(long id, Connection conn)
-        throws EntityDoesNotExistException, SQLException
+    protected boolean supportsBatchedWrites()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void cacheValue(long id, Date value)
+    {
+        if(cache != null && id < cache.length)
+        {
+            cache[(int)id] = value;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void uncacheValue(long id)
     {
-        super.delete(id, conn);
         if(cache != null && id < cache.length)
         {
             cache[(int)id] = null;
         }
     }
-    
+
+    // batched reads /////////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean supportsBatchedReads()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Date getValue(ResultSet rs, int column)
+        throws SQLException
+    {
+        return new Date(rs.getTimestamp(column).getTime());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Date getCachedValue(long id)
+    {
+        if(cache != null && id < cache.length)
+        {
+            return cache[(int)id];
+        }
+        return null;
+    }
+
     // meta information //////////////////////////////////////////////////////
     
     /**
@@ -95,29 +95,6 @@ public abstract class EntityAttributeHandler<T extends Entity>
         }
     }
 
-    /**
-     * Removes an existing attribute.
-     *
-     * <p>This method is implemented here because it is identical for all
-     * generic attributes.</p>
-     *
-     * @param id the identifier of the attribute.
-     * @param conn the JDBC <code>Connection</code> to use. Needed to perform
-     *        the operation as a part of a JDBC transaction.
-     * @throws SQLException in case of database problems. The caller metod
-     *         should consider rolling back the whole transaction.
-     * @throws EntityDoesNotExistException if the attribute with specified id
-     *         does not exist. 
-     */
-    public void delete(long id, Connection conn) throws EntityDoesNotExistException, SQLException
-    {
-        super.delete(id, conn);
-        if(cache != null && id < cache.length)
-        {
-            defined.clear((int)id);
-        }
-    }
-
     /**
      * Creates a new attribute instance.
      * 
@@ -211,11 +188,7 @@ public abstract class EntityAttributeHandler<T extends Entity>
     public void update(long id, T value, Connection conn) throws EntityDoesNotExistException,
         SQLException
     {
-        if(cache != null && id < cache.length)
-        {
-            cache[(int)id] = ((Entity)value).getId();
-            defined.set((int)id);
-        }
+        cacheValue(id, value);
         Statement stmt = conn.createStatement();
         try
         {
@@ -229,6 +202,67 @@ public abstract class EntityAttributeHandler<T extends Entity>
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean supportsBatchedWrites()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void cacheValue(long id, T value)
+    {
+        if(cache != null && id < cache.length)
+        {
+            cache[(int)id] = ((Entity)value).getId();
+            defined.set((int)id);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void uncacheValue(long id)
+    {
+        if(cache != null && id < cache.length)
+        {
+            defined.clear((int)id);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean supportsBatchedReads()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected T getValue(ResultSet rs, int column)
+        throws EntityDoesNotExistException, SQLException
+    {
+        return instantiate(rs.getLong(column));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected T getCachedValue(long id)
+        throws EntityDoesNotExistException
+    {
+        if(cache != null && id < cache.length && defined.get((int)id))
+        {
+            return instantiate(cache[(int)id]);
+        }
+        return null;
+    }
+
     /**
      * Provides information about comparison operations supported by the
      * attribute type.
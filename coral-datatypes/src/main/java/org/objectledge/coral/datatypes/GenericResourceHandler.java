@@ -4,13 +4,16 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.jcontainer.dna.Logger;
 import org.objectledge.cache.CacheFactory;
 import org.objectledge.coral.BackendException;
+import org.objectledge.coral.CacheStatisticsRegistry;
 import org.objectledge.coral.Instantiator;
 import org.objectledge.coral.entity.EntityDoesNotExistException;
 import org.objectledge.coral.query.ResourceQueryHandler;
@@ -50,7 +53,27 @@ public class GenericResourceHandler<T extends Resource>
     public GenericResourceHandler(CoralSchema coralSchema, ResourceClass<T> resourceClass,
         Database database, Instantiator instantiator, CacheFactory cacheFactory, Logger logger)
     {
-        super(coralSchema, instantiator, resourceClass, database, cacheFactory, logger);
+        this(coralSchema, resourceClass, database, instantiator, cacheFactory,
+                        new CacheStatisticsRegistry(), logger);
+    }
+
+    /**
+     * The constructor.
+     * 
+     * @param coralSchema the coral schema.
+     * @param resourceClass the resource class.
+     * @param database the database.
+     * @param instantiator the instantiator.
+     * @param cacheFactory the cache factory.
+     * @param cacheStatistics the registry of cache statistics.
+     * @param logger the logger.
+     */
+    public GenericResourceHandler(CoralSchema coralSchema, ResourceClass<T> resourceClass,
+        Database database, Instantiator instantiator, CacheFactory cacheFactory,
+        CacheStatisticsRegistry cacheStatistics, Logger logger)
+    {
+        super(coralSchema, instantiator, resourceClass, database, cacheFactory, cacheStatistics,
+            logger);
         schemaHandler = new GenericSchemaHandler<T>(resourceClass);
     }
 
@@ -159,6 +182,70 @@ public class GenericResourceHandler<T extends Resource>
         }
     }
 
+    /**
+     * Retrieve the data keys for a group of resources.
+     * 
+     * @param delegates the delegate resources.
+     * @param conn the connection.
+     * @return the map of data keys.
+     * @throws SQLException if happens.
+     */
+    @Override
+    protected Object getData(Collection<Resource> delegates, Object prev,
+        Set<ResourceClass<?>> classess, Connection conn)
+        throws SQLException
+    {
+        Map<Long, Map<AttributeDefinition<?>, Long>> data;
+        if(prev == null)
+        {
+            data = new HashMap<Long, Map<AttributeDefinition<?>, Long>>();
+        }
+        else
+        {
+            @SuppressWarnings("unchecked")
+            final Map<Long, Map<AttributeDefinition<?>, Long>> cast = (Map<Long, Map<AttributeDefinition<?>, Long>>)prev;
+            data = cast;
+        }
+        for(Resource delegate : delegates)
+        {
+            if(!data.containsKey(delegate.getIdObject()))
+            {
+                data.put(delegate.getIdObject(), new HashMap<AttributeDefinition<?>, Long>());
+            }
+        }
+        for(List<Resource> chunk : chunks(delegates))
+        {
+            PreparedStatement stmt = conn
+                .prepareStatement("SELECT resource_id, attribute_definition_id, data_key FROM coral_generic_resource WHERE resource_id IN ("
+                    + placeholders(chunk.size()) + ")");
+            ResultSet rs = null;
+            try
+            {
+                int i = 1;
+                for(Resource delegate : chunk)
+                {
+                    stmt.setLong(i++, delegate.getId());
+                }
+                rs = stmt.executeQuery();
+                while(rs.next())
+                {
+                    data.get(rs.getLong(1)).put(coralSchema.getAttribute(rs.getLong(2)),
+                        rs.getLong(3));
+                }
+            }
+            catch(EntityDoesNotExistException e)
+            {
+                throw new BackendException("corrupted data", e);
+            }
+            finally
+            {
+                DatabaseUtils.close(rs);
+                DatabaseUtils.close(stmt);
+            }
+        }
+        return data;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -207,11 +294,12 @@ public class GenericResourceHandler<T extends Resource>
 
     @Override
     protected void create(Resource delegate, ResourceAttributesSupport instance,
-        Set<ResourceClass<?>> classes, Map<AttributeDefinition<?>, ?> attributes, Connection conn)
+        Set<ResourceClass<?>> classes, Map<AttributeDefinition<?>, ?> attributes,
+        AttributeWriteBatch batch)
         throws SQLException
     {
         GenericResourceHelper helper = new GenericResourceHelper(delegate, instance);
-        helper.create(classes, attributes, conn);
+        helper.create(classes, attributes, batch);
     }
 
     @Override
@@ -225,12 +313,12 @@ public class GenericResourceHandler<T extends Resource>
 
     @Override
     protected void update(Resource delegate, ResourceAttributesSupport instance,
-        Set<ResourceClass<?>> classes, Connection conn)
+        Set<ResourceClass<?>> classes, AttributeWriteBatch batch)
         throws SQLException
 
     {
         GenericResourceHelper helper = new GenericResourceHelper(delegate, instance);
-        helper.update(classes, conn);
+        helper.update(classes, batch);
     }
 
     @Override
@@ -244,10 +332,10 @@ public class GenericResourceHandler<T extends Resource>
 
     @Override
     protected void delete(Resource delegate, ResourceAttributesSupport instance,
-        Set<ResourceClass<?>> classes, Connection conn)
+        Set<ResourceClass<?>> classes, AttributeWriteBatch batch)
         throws SQLException
     {
         GenericResourceHelper helper = new GenericResourceHelper(delegate, instance);
-        helper.delete(classes, conn);
+        helper.delete(classes, batch);
     }
 }
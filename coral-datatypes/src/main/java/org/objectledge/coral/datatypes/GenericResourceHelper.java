@@ -13,7 +13,6 @@ import org.objectledge.coral.schema.AttributeFlags;
 import org.objectledge.coral.schema.AttributeHandler;
 import org.objectledge.coral.schema.ResourceClass;
 import org.objectledge.coral.store.Resource;
-import org.objectledge.database.DatabaseUtils;
 
 /**
  * A generic implementation of {@link Resource} interface.
@@ -23,6 +22,12 @@ import org.objectledge.database.DatabaseUtils;
  */
 public class GenericResourceHelper
 {
+    private static final String INSERT_DATA_KEY = "INSERT INTO coral_generic_resource "
+        + "(resource_id, attribute_definition_id, data_key) VALUES (?, ?, ?)";
+
+    private static final String DELETE_DATA_KEY = "DELETE FROM coral_generic_resource "
+        + "WHERE resource_id = ? AND attribute_definition_id = ?";
+
     private final Resource delegate;
 
     private final ResourceAttributesSupport instance;
@@ -79,62 +84,46 @@ public class GenericResourceHelper
     }
 
     public synchronized void create(Set<ResourceClass<?>> classes,
-        Map<AttributeDefinition<?>, ?> attributes, Connection conn)
+        Map<AttributeDefinition<?>, ?> attributes, AttributeWriteBatch batch)
         throws SQLException
     {
-        PreparedStatement stmt = null;
-        try
+        for(ResourceClass<?> rClass : classes)
         {
-            for(ResourceClass<?> rClass : classes)
+            for(AttributeDefinition<?> attr : rClass.getDeclaredAttributes())
             {
-                for(AttributeDefinition<?> attr : rClass.getDeclaredAttributes())
+                if((attr.getFlags() & AttributeFlags.BUILTIN) == 0)
                 {
-                    if((attr.getFlags() & AttributeFlags.BUILTIN) == 0)
+                    AttributeHandler<?> handler = attr.getAttributeClass().getHandler();
+                    Object value = attributes.get(attr);
+                    if(value != null)
                     {
-                        AttributeHandler<?> handler = attr.getAttributeClass().getHandler();
-                        Object value = attributes.get(attr);
-                        if(value != null)
+                        value = handler.toAttributeValue(value);
+                        long newId = createAttrValue(attr, value, batch);
+                        instance.setValueId(attr, newId);
+                        PreparedStatement stmt = batch.getStatement(INSERT_DATA_KEY, false);
+                        stmt.setLong(1, delegate.getId());
+                        stmt.setLong(2, attr.getId());
+                        stmt.setLong(3, newId);
+                        stmt.addBatch();
+                        if(handler.shouldRetrieveAfterCreate())
                         {
-                            value = handler.toAttributeValue(value);
-                            long newId = createAttrValue(attr, value, conn);
-                            instance.setValueId(attr, newId);
-                            if(stmt == null)
+                            try
                             {
-                                stmt = conn
-                                    .prepareStatement("INSERT INTO coral_generic_resource "
-                                        + "(resource_id, attribute_definition_id, data_key) VALUES (?, ?, ?)");
-                                stmt.setLong(1, delegate.getId());
-                            }
-                            stmt.setLong(2, attr.getId());
-                            stmt.setLong(3, newId);
-                            stmt.addBatch();
-                            if(handler.shouldRetrieveAfterCreate())
-                            {
-                                try
-                                {
-                                    setValue(attr, instance, handler.retrieve(newId, conn));
-                                }
-                                catch(EntityDoesNotExistException e)
-                                {
-                                    throw new BackendException("data integrity error", e);
-                                }
+                                setValue(attr, instance,
+                                    handler.retrieve(newId, batch.getConnection()));
                             }
-                            else
+                            catch(EntityDoesNotExistException e)
                             {
-                                setValue(attr, instance, value);
+                                throw new BackendException("data integrity error", e);
                             }
                         }
+                        else
+                        {
+                            setValue(attr, instance, value);
+                        }
                     }
                 }
             }
-            if(stmt != null)
-            {
-                stmt.executeBatch();
-            }
-        }
-        finally
-        {
-            DatabaseUtils.close(stmt);
         }
     }
 
@@ -148,99 +137,73 @@ public class GenericResourceHelper
     /**
      * Called from {@link GenericResourceHandler} and {@link #update()} method.
      * 
-     * @param conn the JDBC connection to use.
+     * @param batch the attribute write batch to use.
      */
-    public synchronized void update(Set<ResourceClass<?>> classes, Connection conn)
+    public synchronized void update(Set<ResourceClass<?>> classes, AttributeWriteBatch batch)
         throws SQLException
     {
-        PreparedStatement createStmt = null;
-        PreparedStatement deleteStmt = null;
-        try
+        for(ResourceClass<?> rClass : classes)
         {
-            for(ResourceClass<?> rClass : classes)
+            for(AttributeDefinition<?> attr : rClass.getDeclaredAttributes())
             {
-                for(AttributeDefinition<?> attr : rClass.getDeclaredAttributes())
+                if((attr.getFlags() & AttributeFlags.BUILTIN) == 0)
                 {
-                    if((attr.getFlags() & AttributeFlags.BUILTIN) == 0)
+                    if(instance.isValueModified(attr))
                     {
-                        if(instance.isValueModified(attr))
+                        Object value = instance.getValue(attr);
+                        long id = instance.getValueId(attr);
+                        if(value != null)
                         {
-                            Object value = instance.getValue(attr);
-                            long id = instance.getValueId(attr);
-                            if(value != null)
+                            if(id == -1L)
+                            {
+                                long newId = createAttrValue(attr, batch);
+                                PreparedStatement stmt = batch.getStatement(INSERT_DATA_KEY,
+                                    false);
+                                stmt.setLong(1, delegate.getId());
+                                stmt.setLong(2, attr.getId());
+                                stmt.setLong(3, newId);
+                                stmt.addBatch();
+                                instance.setValueId(attr, newId);
+                            }
+                            else
                             {
-                                if(id == -1L)
+                                try
                                 {
-                                    long newId = createAttrValue(attr, conn);
-                                    if(createStmt == null)
-                                    {
-                                        createStmt = conn
-                                            .prepareStatement("INSERT INTO coral_generic_resource "
-                                                + "(resource_id, attribute_definition_id, data_key) VALUES (?, ?, ?)");
-                                        createStmt.setLong(1, delegate.getId());
-                                    }
-                                    createStmt.setLong(2, attr.getId());
-                                    createStmt.setLong(3, newId);
-                                    createStmt.addBatch();
-                                    instance.setValueId(attr, newId);
+                                    updateAttrValue(attr, batch);
                                 }
-                                else
+                                catch(EntityDoesNotExistException e)
                                 {
-                                    try
-                                    {
-                                        updateAttrValue(attr, conn);
-                                    }
-                                    catch(EntityDoesNotExistException e)
-                                    {
-                                        throw new BackendException("Internal error", e);
-                                    }
+                                    throw new BackendException("Internal error", e);
                                 }
                             }
-                            else
+                        }
+                        else
+                        {
+                            if(id != -1L)
                             {
-                                if(id != -1L)
+                                try
                                 {
-                                    try
-                                    {
-                                        attr.getAttributeClass().getHandler().delete(id, conn);
-                                    }
-                                    catch(EntityDoesNotExistException e)
-                                    {
-                                        throw new BackendException("Internal error", e);
-                                    }
-                                    if(deleteStmt == null)
-                                    {
-                                        deleteStmt = conn
-                                            .prepareStatement("DELETE FROM coral_generic_resource WHERE resource_id = ? "
-                                                + "AND attribute_definition_id = ?");
-                                        deleteStmt.setLong(1, delegate.getId());
-                                    }
-                                    deleteStmt.setLong(2, attr.getId());
-                                    deleteStmt.addBatch();
-                                    instance.setValueId(attr, -1L);
+                                    batch.delete(attr.getAttributeClass().getHandler(), id);
                                 }
+                                catch(EntityDoesNotExistException e)
+                                {
+                                    throw new BackendException("Internal error", e);
+                                }
+                                PreparedStatement stmt = batch.getStatement(DELETE_DATA_KEY,
+                                    false);
+                                stmt.setLong(1, delegate.getId());
+                                stmt.setLong(2, attr.getId());
+                                stmt.addBatch();
+                                instance.setValueId(attr, -1L);
                             }
                         }
                     }
                 }
             }
-            if(createStmt != null)
-            {
-                createStmt.executeBatch();
-            }
-            if(deleteStmt != null)
-            {
-                deleteStmt.executeBatch();
-            }
-        }
-        finally
-        {
-            DatabaseUtils.close(createStmt);
-            DatabaseUtils.close(deleteStmt);
         }
     }
 
-    public synchronized void delete(Set<ResourceClass<?>> classes, Connection conn)
+    public synchronized void delete(Set<ResourceClass<?>> classes, AttributeWriteBatch batch)
         throws SQLException
     {
         for(ResourceClass<?> rClass : classes)
@@ -255,7 +218,7 @@ public class GenericResourceHelper
                     {
                         try
                         {
-                            attr.getAttributeClass().getHandler().delete(atId, conn);
+                            batch.delete(attr.getAttributeClass().getHandler(), atId);
                         }
                         catch(EntityDoesNotExistException e)
                         {
@@ -265,12 +228,10 @@ public class GenericResourceHelper
                 }
             }
         }
-        try (PreparedStatement stmt = conn
-            .prepareStatement("DELETE FROM coral_generic_resource WHERE resource_id = ?"))
-        {
-            stmt.setLong(1, delegate.getId());
-            stmt.execute();
-        }
+        PreparedStatement stmt = batch.getStatement(
+            "DELETE FROM coral_generic_resource WHERE resource_id = ?", false);
+        stmt.setLong(1, delegate.getId());
+        stmt.addBatch();
     }
 
     private Map<AttributeDefinition<?>, Long> getDataKeys(Object data)
@@ -280,28 +241,29 @@ public class GenericResourceHelper
         return dataKeyMap.get(delegate.getIdObject());
     }
 
-    private <A> long createAttrValue(AttributeDefinition<A> attr, Object rawValue, Connection conn)
+    private <A> long createAttrValue(AttributeDefinition<A> attr, Object rawValue,
+        AttributeWriteBatch batch)
         throws SQLException
     {
         AttributeHandler<A> handler = attr.getAttributeClass().getHandler();
         A value = handler.toAttributeValue(rawValue);
-        return handler.create(value, conn);
+        return batch.create(handler, value);
     }
 
-    private <A> long createAttrValue(AttributeDefinition<A> attr, Connection conn)
+    private <A> long createAttrValue(AttributeDefinition<A> attr, AttributeWriteBatch batch)
         throws SQLException
     {
         AttributeHandler<A> handler = attr.getAttributeClass().getHandler();
         A value = instance.getValue(attr);
-        return handler.create(value, conn);
+        return batch.create(handler, value);
     }
 
-    private <A> void updateAttrValue(AttributeDefinition<A> attr, Connection conn)
+    private <A> void updateAttrValue(AttributeDefinition<A> attr, AttributeWriteBatch batch)
         throws EntityDoesNotExistException, SQLException
     {
         AttributeHandler<A> handler = attr.getAttributeClass().getHandler();
         A value = instance.getValue(attr);
         long valueId = instance.getValueId(attr);
-        handler.update(valueId, value, conn);
+        batch.update(handler, valueId, value);
     }
 }
@@ -115,11 +115,7 @@ public class IntegerAttributeHandler
     public void update(long id, Integer value, Connection conn)
         throws EntityDoesNotExistException, SQLException
     {
-        if(cache != null && id < cache.length)
-        {
-            cache[(int)id] = (value).intValue();
-            defined.set((int)id);
-        }
+        cacheValue(id, value);
         Statement stmt = conn.createStatement();
         try
         {
@@ -136,19 +132,70 @@ public class IntegerAttributeHandler
         }
     }
 
+    // batched writes ////////////////////////////////////////////////////////
+
     /**
      * {@inheritDoc}
      */
-    public void delete(long id, Connection conn)
-        throws EntityDoesNotExistException, SQLException
+    protected boolean supportsBatchedWrites()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void cacheValue(long id, Integer value)
+    {
+        if(cache != null && id < cache.length)
+        {
+            cache[(int)id] = (value).intValue();
+            defined.set((int)id);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void uncacheValue(long id)
     {
-        super.delete(id, conn);
         if(cache != null && id < cache.length)
         {
             defined.clear((int)id);
         }
     }
-    
+
+    // batched reads /////////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean supportsBatchedReads()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Integer getValue(ResultSet rs, int column)
+        throws SQLException
+    {
+        return new Integer(rs.getInt(column));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Integer getCachedValue(long id)
+    {
+        if(cache != null && id < cache.length && defined.get((int)id))
+        {
+            return new Integer(cache[(int)id]);
+        }
+        return null;
+    }
+
     public void preload(Connection conn)
         throws SQLException
     {
@@ -111,6 +111,35 @@ public class LongAttributeHandler
         }
     }
     
+    // batched writes ////////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean supportsBatchedWrites()
+    {
+        return true;
+    }
+
+    // batched reads /////////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean supportsBatchedReads()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Long getValue(ResultSet rs, int column)
+        throws SQLException
+    {
+        return new Long(rs.getLong(column));
+    }
+
     // meta information //////////////////////////////////////////////////////
     
     /**
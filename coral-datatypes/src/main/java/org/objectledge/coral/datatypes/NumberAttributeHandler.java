@@ -113,6 +113,35 @@ public class NumberAttributeHandler
         }
     }
 
+    // batched writes ////////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean supportsBatchedWrites()
+    {
+        return true;
+    }
+
+    // batched reads /////////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean supportsBatchedReads()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected Number getValue(ResultSet rs, int column)
+        throws SQLException
+    {
+        return new BigDecimal(rs.getString(column));
+    }
+
     // meta information //////////////////////////////////////////////////////
     
     /**
@@ -0,0 +1,289 @@
+package org.objectledge.coral.datatypes;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectledge.coral.schema.AttributeDefinition;
+import org.objectledge.coral.schema.AttributeFlags;
+import org.objectledge.coral.schema.ResourceClass;
+
+/**
+ * A compiled query loading attribute data of a set of persistent resource classes.
+ * <p>
+ * The plan keeps the SQL text and the positions of attribute columns, so that rows are read by
+ * column index into a flat array shared by all classes. Queries for multiple resources are
+ * issued for a few fixed numbers of ids: the id list is padded to the next power of two by
+ * repeating the last id.
+ * </p>
+ * <p>
+ * Plans are immutable. A plan describing an outdated schema is detected by
+ * {@link #isValid()}.
+ * </p>
+ */
+class PersistentLoadPlan
+{
+    private final Layout[] layouts;
+
+    /** Number of attribute columns. */
+    private final int width;
+
+    private final String prefix;
+
+    /** Queries for 2^i ids. */
+    private final String[] queries;
+
+    /**
+     * Compiles a plan.
+     *
+     * @param classes the resource classes to load data for.
+     * @param maxCount maximum number of resources loaded with a single query.
+     * @throws SQLException if a class that declares attributes has no database table.
+     */
+    PersistentLoadPlan(Set<ResourceClass<?>> classes, int maxCount)
+        throws SQLException
+    {
+        List<Layout> layoutList = new ArrayList<Layout>(classes.size());
+        StringBuilder select = new StringBuilder("SELECT r.resource_id");
+        StringBuilder from = new StringBuilder("\nFROM coral_resource r");
+        int offset = 0;
+        int t = 1;
+        for(ResourceClass<?> rc : classes)
+        {
+            if(tableShouldExist(rc))
+            {
+                if(rc.getDbTable() == null)
+                {
+                    throw new SQLException("no database table defined for class " + rc.getName());
+                }
+                Layout layout = new Layout(rc, offset);
+                for(String column : layout.columns)
+                {
+                    select.append(", t").append(t).append('.').append(column);
+                }
+                from.append("\nLEFT OUTER JOIN ").append(rc.getDbTable()).append(" t").append(t);
+                from.append(" USING(resource_id)");
+                offset += layout.columns.length;
+                layoutList.add(layout);
+                t++;
+            }
+        }
+        layouts = layoutList.toArray(new Layout[layoutList.size()]);
+        width = offset;
+        prefix = select.append(from).append("\nWHERE r.resource_id IN (").toString();
+        int size = 1;
+        while(1 << (size - 1) < maxCount)
+        {
+            size++;
+        }
+        queries = new String[size];
+    }
+
+    /**
+     * Checks if the plan matches the current schema of its classes.
+     *
+     * @return <code>true</code> if the plan is up to date.
+     */
+    boolean isValid()
+    {
+        for(Layout layout : layouts)
+        {
+            if(!layout.isValid())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Loads the data of a group of resources.
+     *
+     * @param ids resource identifiers, at most the maximum count declared at compilation.
+     * @param data resource id -&gt; resource class -&gt; record map to put the records into.
+     *        Entries for all the requested resources must be present.
+     * @param conn the database connection.
+     * @throws SQLException if the query fails.
+     */
+    void load(long[] ids, Map<Long, Map<ResourceClass<?>, Record>> data, Connection conn)
+        throws SQLException
+    {
+        int bucket = 0;
+        while(1 << bucket < ids.length)
+        {
+            bucket++;
+        }
+        try(PreparedStatement stmt = conn.prepareStatement(getQuery(bucket)))
+        {
+            int count = 1 << bucket;
+            for(int i = 0; i < count; i++)
+            {
+                stmt.setLong(i + 1, ids[Math.min(i, ids.length - 1)]);
+            }
+            try(ResultSet rs = stmt.executeQuery())
+            {
+                while(rs.next())
+                {
+                    Map<ResourceClass<?>, Record> records = data.get(rs.getLong(1));
+                    Object[] row = new Object[width];
+                    for(int i = 0; i < width; i++)
+                    {
+                        row[i] = rs.getObject(i + 2);
+                    }
+                    for(Layout layout : layouts)
+                    {
+                        records.put(layout.resourceClass, new Record(layout, row));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the query for a number of ids.
+     *
+     * @param bucket base 2 logarithm of the number of ids.
+     * @return the query text.
+     */
+    String getQuery(int bucket)
+    {
+        // benign race - concurrent threads would compute the same string
+        String query = queries[bucket];
+        if(query == null)
+        {
+            query = prefix + StandardResourceHandler.placeholders(1 << bucket) + ")";
+            queries[bucket] = query;
+        }
+        return query;
+    }
+
+    private static boolean tableShouldExist(ResourceClass<?> rClass)
+    {
+        for(AttributeDefinition<?> attr : rClass.getDeclaredAttributes())
+        {
+            if((attr.getFlags() & AttributeFlags.BUILTIN) == 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<AttributeDefinition<?>> concreteAttributes(ResourceClass<?> rClass)
+    {
+        List<AttributeDefinition<?>> result = new ArrayList<AttributeDefinition<?>>();
+        for(AttributeDefinition<?> attr : rClass.getDeclaredAttributes())
+        {
+            if((attr.getFlags() & (AttributeFlags.BUILTIN | AttributeFlags.SYNTHETIC)) == 0)
+            {
+                result.add(attr);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Positions of the columns of a single resource class within the row.
+     */
+    static class Layout
+    {
+        private final ResourceClass<?> resourceClass;
+
+        private final String table;
+
+        private final AttributeDefinition<?>[] attributes;
+
+        private final String[] columns;
+
+        private final int offset;
+
+        Layout(ResourceClass<?> resourceClass, int offset)
+        {
+            this.resourceClass = resourceClass;
+            this.table = resourceClass.getDbTable();
+            this.offset = offset;
+            List<AttributeDefinition<?>> concrete = concreteAttributes(resourceClass);
+            attributes = concrete.toArray(new AttributeDefinition<?>[concrete.size()]);
+            columns = new String[attributes.length];
+            for(int i = 0; i < attributes.length; i++)
+            {
+                columns[i] = PersistentResourceHelper.getColumnName(attributes[i]);
+            }
+        }
+
+        private boolean isValid()
+        {
+            if(!table.equals(resourceClass.getDbTable()))
+            {
+                return false;
+            }
+            List<AttributeDefinition<?>> concrete = concreteAttributes(resourceClass);
+            if(concrete.size() != attributes.length)
+            {
+                return false;
+            }
+            for(int i = 0; i < attributes.length; i++)
+            {
+                if(!concrete.get(i).equals(attributes[i])
+                    || !columns[i].equals(PersistentResourceHelper.getColumnName(attributes[i])))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Column values of a single resource class, backed by a row shared with other classes.
+     */
+    static class Record
+    {
+        private final Layout layout;
+
+        private final Object[] row;
+
+        Record(Layout layout, Object[] row)
+        {
+            this.layout = layout;
+            this.row = row;
+        }
+
+        /**
+         * Returns the number of attributes in the record.
+         *
+         * @return the number of attributes in the record.
+         */
+        int size()
+        {
+            return layout.attributes.length;
+        }
+
+        /**
+         * Returns the attribute at a given position.
+         *
+         * @param i the position.
+         * @return the attribute.
+         */
+        AttributeDefinition<?> getAttribute(int i)
+        {
+            return layout.attributes[i];
+        }
+
+        /**
+         * Returns the value of the attribute at a given position.
+         *
+         * @param i the position.
+         * @return the column value, or <code>null</code> for SQL NULL.
+         */
+        Object getValue(int i)
+        {
+            return row[layout.offset + i];
+        }
+    }
+}
@@ -1,23 +1,26 @@
 package org.objectledge.coral.datatypes;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.jcontainer.dna.Logger;
 import org.objectledge.cache.CacheFactory;
+import org.objectledge.coral.CacheStatisticsRegistry;
 import org.objectledge.coral.Instantiator;
 import org.objectledge.coral.entity.Entity;
 import org.objectledge.coral.query.ResourceQueryHandler;
 import org.objectledge.coral.schema.AttributeDefinition;
-import org.objectledge.coral.schema.AttributeFlags;
 import org.objectledge.coral.schema.AttributeHandler;
 import org.objectledge.coral.schema.CoralSchema;
 import org.objectledge.coral.schema.ResourceClass;
@@ -25,8 +28,6 @@ import org.objectledge.coral.security.CoralSecurity;
 import org.objectledge.coral.store.Resource;
 import org.objectledge.coral.store.ValueRequiredException;
 import org.objectledge.database.Database;
-import org.objectledge.database.persistence.DefaultInputRecord;
-import org.objectledge.database.persistence.InputRecord;
 import org.objectledge.database.persistence.Persistence;
 
 /**
@@ -48,6 +49,10 @@ public class PersistentResourceHandler<T extends Resource>
 
     private final PersistentSchemaHandler<T> schemaHandler;
 
+    /** Compiled load plans, by set of resource classes. */
+    private final ConcurrentMap<Set<ResourceClass<?>>, PersistentLoadPlan> plans =
+        new ConcurrentHashMap<Set<ResourceClass<?>>, PersistentLoadPlan>();
+
     /**
      * Constructor.
      * 
@@ -65,7 +70,31 @@ public class PersistentResourceHandler<T extends Resource>
         Instantiator instantiator, CacheFactory cacheFactory, Logger logger)
         throws Exception
     {
-        super(coralSchema, instantiator, resourceClass, database, cacheFactory, logger);
+        this(coralSchema, coralSecurity, resourceClass, database, persistence, instantiator,
+                        cacheFactory, new CacheStatisticsRegistry(), logger);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param coralSchema the coral schema.
+     * @param resourceClass the resource class.
+     * @param database the database.
+     * @param persistence the persistence.
+     * @param instantiator the instantiator.
+     * @param cacheFactory the cache factory.
+     * @param cacheStatistics the registry of cache statistics.
+     * @param logger the logger.
+     * @throws Exception if there is a problem instantiating an resource object.
+     */
+    public PersistentResourceHandler(CoralSchema coralSchema, CoralSecurity coralSecurity,
+        ResourceClass<T> resourceClass, Database database, Persistence persistence,
+        Instantiator instantiator, CacheFactory cacheFactory,
+        CacheStatisticsRegistry cacheStatistics, Logger logger)
+        throws Exception
+    {
+        super(coralSchema, instantiator, resourceClass, database, cacheFactory, cacheStatistics,
+            logger);
         this.persistence = persistence;
         this.schemaHandler = new PersistentSchemaHandler<T>(resourceClass, persistence);
     }
@@ -92,6 +121,7 @@ public class PersistentResourceHandler<T extends Resource>
         throws ValueRequiredException, SQLException
     {
         schemaHandler.addAttribute(attribute, value, conn);
+        plans.clear();
         revert(resourceClass, conn);
     }
 
@@ -119,6 +149,7 @@ public class PersistentResourceHandler<T extends Resource>
         throws SQLException
     {
         schemaHandler.deleteAttribute(attribute, conn);
+        plans.clear();
         revert(resourceClass, conn);
     }
 
@@ -144,6 +175,7 @@ public class PersistentResourceHandler<T extends Resource>
         throws ValueRequiredException, SQLException
     {
         schemaHandler.addParentClass(parent, attributes, conn);
+        plans.clear();
         revert(resourceClass, conn);
     }
 
@@ -164,6 +196,7 @@ public class PersistentResourceHandler<T extends Resource>
         throws SQLException
     {
         schemaHandler.deleteParentClass(parent, conn);
+        plans.clear();
         revert(resourceClass, conn);
     }
 
@@ -172,6 +205,7 @@ public class PersistentResourceHandler<T extends Resource>
         throws SQLException
     {
         schemaHandler.setDbTable(oldTable, newTable);
+        plans.clear();
     }
 
     @Override
@@ -179,6 +213,7 @@ public class PersistentResourceHandler<T extends Resource>
         throws SQLException
     {
         schemaHandler.setDbColumn(attr, oldColumn, newColumn);
+        plans.clear();
     }
 
     public <A> A loadValue(AttributeDefinition<A> attribute, long aId)
@@ -194,119 +229,62 @@ public class PersistentResourceHandler<T extends Resource>
         }
     }
 
-    // implementation ////////////////////////////////////////////////////////
-
-    private boolean tableShouldExist(ResourceClass<?> rClass)
-    {
-        boolean tableShouldExist = false;
-        for(AttributeDefinition<?> attr : rClass.getDeclaredAttributes())
-        {
-            if((attr.getFlags() & AttributeFlags.BUILTIN) == 0)
-            {
-                tableShouldExist = true;
-            }
-        }
-        return tableShouldExist;
-    }
-
-    private String getColumnName(AttributeDefinition<?> attr)
-    {
-        String dbColumn = attr.getDbColumn();
-        return dbColumn != null ? dbColumn : attr.getName();
-    }
-
-    private boolean isConcrete(AttributeDefinition<?> ad)
-    {
-        return (ad.getFlags() & (AttributeFlags.BUILTIN | AttributeFlags.SYNTHETIC)) == 0;
-    }
-
-    private String buildQuery(Set<ResourceClass<?>> classes)
+    @Override
+    protected <A> Map<Long, A> loadValues(AttributeDefinition<A> attribute, Collection<Long> ids,
+        Connection conn)
         throws SQLException
     {
-        StringBuilder query = new StringBuilder();
-        query.append("SELECT r.resource_id, ");
-        int t = 1;
-        for(ResourceClass<?> rc : classes)
+        if(Entity.class.isAssignableFrom(attribute.getAttributeClass().getJavaClass()))
         {
-            if(tableShouldExist(rc))
+            AttributeHandler<A> handler = attribute.getAttributeClass().getHandler();
+            Map<Long, A> values = new HashMap<Long, A>(ids.size());
+            for(Long id : ids)
             {
-                if(rc.getDbTable() == null)
-                {
-                    throw new SQLException("no database table defined for class " + rc.getName());
-                }
-                for(AttributeDefinition<?> ad : rc.getDeclaredAttributes())
-                {
-                    if(isConcrete(ad))
-                    {
-                        query.append('t').append(t).append('.');
-                        query.append(getColumnName(ad)).append(", ");
-                    }
-                }
-                t++;
+                values.put(id, handler.toAttributeValue(id.toString()));
             }
+            return values;
         }
-        query.setLength(query.length() - 2); // strip last comma
-        t = 1;
-        query.append("\nFROM coral_resource r");
-        for(ResourceClass<?> rc : classes)
+        else
         {
-            if(tableShouldExist(rc))
-            {
-                query.append("\nLEFT OUTER JOIN ").append(rc.getDbTable()).append(" t").append(t);
-                query.append(" USING(resource_id)");
-                t++;
-            }
+            return super.loadValues(attribute, ids, conn);
         }
-        query.append("\nWHERE r.resource_id = ?");
-        return query.toString();
     }
 
-    private Map<ResourceClass<?>, InputRecord> getInputRecords(Resource delegate,
-        Set<ResourceClass<?>> classes)
+    // implementation ////////////////////////////////////////////////////////
+
+    /**
+     * Returns the load plan for a set of classes, compiling it if necessary.
+     *
+     * @param classes the resource classes.
+     * @return the load plan.
+     * @throws SQLException if the plan could not be compiled.
+     */
+    private PersistentLoadPlan getPlan(Set<ResourceClass<?>> classes)
         throws SQLException
     {
-        try(Connection conn = persistence.getDatabase().getConnection())
+        PersistentLoadPlan plan = plans.get(classes);
+        // the schema may also be changed through handlers of other classes in the hierarchy
+        if(plan == null || !plan.isValid())
         {
-            try(PreparedStatement stmt = conn.prepareStatement(buildQuery(classes)))
-            {
-                stmt.setLong(1, delegate.getId());
-                try(ResultSet rs = stmt.executeQuery())
-                {
-                    if(rs.next())
-                    {
-                        return splitInputRecords(rs, classes);
-                    }
-                    else
-                    {
-                        return Collections.emptyMap();
-                    }
-                }
-            }
+            plan = new PersistentLoadPlan(classes, BATCH_SIZE);
+            plans.put(new HashSet<ResourceClass<?>>(classes), plan);
         }
+        return plan;
     }
 
-    private Map<ResourceClass<?>, InputRecord> splitInputRecords(ResultSet rs,
-        Set<ResourceClass<?>> classes)
+    private void load(PersistentLoadPlan plan, Collection<Resource> delegates,
+        Map<Long, Map<ResourceClass<?>, PersistentLoadPlan.Record>> data, Connection conn)
         throws SQLException
     {
-        Map<ResourceClass<?>, InputRecord> records = new HashMap<>(classes.size());
-        for(ResourceClass<?> rc : classes)
+        for(List<Resource> chunk : chunks(delegates))
         {
-            if(tableShouldExist(rc))
+            long[] ids = new long[chunk.size()];
+            for(int i = 0; i < ids.length; i++)
             {
-                Map<String, Object> data = new HashMap<>();
-                for(AttributeDefinition<?> ad : rc.getDeclaredAttributes())
-                {
-                    if(isConcrete(ad))
-                    {
-                        String cn = getColumnName(ad);
-                        data.put(cn, rs.getObject(cn));
-                    }
-                }
-                records.put(rc, new DefaultInputRecord(data));
+                ids[i] = chunk.get(i).getId();
             }
+            plan.load(ids, data, conn);
         }
-        return records;
     }
 
     // StandardResourceHandler contract implementation //////////////////////
@@ -318,24 +296,37 @@ public class PersistentResourceHandler<T extends Resource>
         Connection conn)
         throws SQLException
     {
-        Map<Long, Map<ResourceClass<?>, InputRecord>> data;
+        return getData(Collections.singletonList(delegate), prev, classes, conn);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Object getData(Collection<Resource> delegates, Object prev,
+        Set<ResourceClass<?>> classes, Connection conn)
+        throws SQLException
+    {
+        Map<Long, Map<ResourceClass<?>, PersistentLoadPlan.Record>> data;
         if(prev == null)
         {
-            data = new HashMap<Long, Map<ResourceClass<?>, InputRecord>>();
+            data = new HashMap<Long, Map<ResourceClass<?>, PersistentLoadPlan.Record>>();
         }
         else
         {
             @SuppressWarnings("unchecked")
-            final Map<Long, Map<ResourceClass<?>, InputRecord>> cast = (Map<Long, Map<ResourceClass<?>, InputRecord>>)prev;
+            final Map<Long, Map<ResourceClass<?>, PersistentLoadPlan.Record>> cast = (Map<Long, Map<ResourceClass<?>, PersistentLoadPlan.Record>>)prev;
             data = cast;
         }
-        Map<ResourceClass<?>, InputRecord> resData = data.get(delegate.getIdObject());
-        if(resData == null)
+        for(Resource delegate : delegates)
         {
-            resData = new HashMap<>();
-            data.put(delegate.getIdObject(), resData);
+            if(!data.containsKey(delegate.getIdObject()))
+            {
+                data.put(delegate.getIdObject(),
+                    new HashMap<ResourceClass<?>, PersistentLoadPlan.Record>());
+            }
         }
-        resData.putAll(getInputRecords(delegate, classes));
+        load(getPlan(classes), delegates, data, conn);
         return data;
     }
 
@@ -350,7 +341,7 @@ public class PersistentResourceHandler<T extends Resource>
         {
             rset = cache.get(rc);
         }
-        Map<Long, Map<ResourceClass<?>, InputRecord>> data = new HashMap<Long, Map<ResourceClass<?>, InputRecord>>();
+        Map<Long, Map<ResourceClass<?>, PersistentLoadPlan.Record>> data = new HashMap<Long, Map<ResourceClass<?>, PersistentLoadPlan.Record>>();
         if(rset != null)
         {
             final Set<ResourceClass<?>> persistentRCs = new HashSet<>();
@@ -362,23 +353,17 @@ public class PersistentResourceHandler<T extends Resource>
                     persistentRCs.add(parentRc);
                 }
             }
-            try(PreparedStatement stmt = conn.prepareStatement(buildQuery(persistentRCs)))
+            // note that lock on rset is held by StandardResourceHandler.revert0 which is the
+            // sole invoker of this method
+            List<Resource> delegates = new ArrayList<Resource>(rset.size());
+            for(ResourceAttributesSupport r : rset.keySet())
             {
-                // note that lock on rset is held by StandardResourceHandler.revert0 which is the
-                // sole invoker of this method
-                for(ResourceAttributesSupport r : rset.keySet())
-                {
-                    stmt.setLong(1, r.getDelegate().getId());
-                    try(ResultSet rs = stmt.executeQuery())
-                    {
-                        while(rs.next())
-                        {
-                            data.put(rs.getLong("resource_id"),
-                                splitInputRecords(rs, persistentRCs));
-                        }
-                    }
-                }
+                Resource delegate = r.getDelegate();
+                delegates.add(delegate);
+                data.put(delegate.getIdObject(),
+                    new HashMap<ResourceClass<?>, PersistentLoadPlan.Record>());
             }
+            load(getPlan(persistentRCs), delegates, data, conn);
         }
         return data;
     }
@@ -391,14 +376,15 @@ public class PersistentResourceHandler<T extends Resource>
 
     @Override
     protected void create(Resource delegate, ResourceAttributesSupport instance,
-        Set<ResourceClass<?>> classes, Map<AttributeDefinition<?>, ?> attributes, Connection conn)
+        Set<ResourceClass<?>> classes, Map<AttributeDefinition<?>, ?> attributes,
+        AttributeWriteBatch batch)
         throws SQLException
     {
         PersistentResourceHelper helper = new PersistentResourceHelper(delegate, instance,
             persistence);
         for(ResourceClass<?> rClass : classes)
         {
-            helper.create(rClass, attributes, conn);
+            helper.create(rClass, attributes, batch.getConnection());
         }
     }
 
@@ -414,7 +400,7 @@ public class PersistentResourceHandler<T extends Resource>
 
     @Override
     protected void update(Resource delegate, ResourceAttributesSupport instance,
-        Set<ResourceClass<?>> classes, Connection conn)
+        Set<ResourceClass<?>> classes, AttributeWriteBatch batch)
         throws SQLException
 
     {
@@ -422,7 +408,7 @@ public class PersistentResourceHandler<T extends Resource>
             persistence);
         for(ResourceClass<?> rClass : classes)
         {
-            helper.update(rClass, conn);
+            helper.update(rClass, batch.getConnection());
         }
     }
 
@@ -438,14 +424,14 @@ public class PersistentResourceHandler<T extends Resource>
 
     @Override
     protected void delete(Resource delegate, ResourceAttributesSupport instance,
-        Set<ResourceClass<?>> classes, Connection conn)
+        Set<ResourceClass<?>> classes, AttributeWriteBatch batch)
         throws SQLException
     {
         PersistentResourceHelper helper = new PersistentResourceHelper(delegate, instance,
             persistence);
         for(ResourceClass<?> rClass : classes)
         {
-            helper.delete(rClass, conn);
+            helper.delete(rClass, batch);
         }
     }
 }
@@ -2,7 +2,6 @@ package org.objectledge.coral.datatypes;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -53,20 +52,20 @@ public class PersistentResourceHelper
     public synchronized void retrieve(Object data, Connection conn, Set<ResourceClass<?>> classes)
         throws SQLException
     {
-        Map<ResourceClass<?>, InputRecord> in = getInputRecords(data, classes);
+        Map<ResourceClass<?>, PersistentLoadPlan.Record> in = getRecords(data);
         if(in != null)
         {
-            setData(in, conn);
+            setData(in, classes, conn);
         }
     }
 
     public synchronized void revert(Object data, Connection conn, Set<ResourceClass<?>> classes)
         throws SQLException
     {
-        Map<ResourceClass<?>, InputRecord> in = getInputRecords(data, classes);
+        Map<ResourceClass<?>, PersistentLoadPlan.Record> in = getRecords(data);
         if(in != null)
         {
-            setData(in, conn);
+            setData(in, classes, conn);
         }
     }
 
@@ -119,7 +118,7 @@ public class PersistentResourceHelper
         }
     }
 
-    public synchronized void delete(ResourceClass<?> rClass, Connection conn)
+    public synchronized void delete(ResourceClass<?> rClass, AttributeWriteBatch batch)
         throws SQLException
     {
         for(AttributeDefinition<?> attr : rClass.getDeclaredAttributes())
@@ -132,7 +131,7 @@ public class PersistentResourceHelper
                 {
                     try
                     {
-                        attr.getAttributeClass().getHandler().delete(valueId, conn);
+                        batch.delete(attr.getAttributeClass().getHandler(), valueId);
                     }
                     catch(EntityDoesNotExistException e)
                     {
@@ -185,54 +184,38 @@ public class PersistentResourceHelper
         return dbColumn != null ? dbColumn : attr.getName();
     }
 
-    private Map<ResourceClass<?>, InputRecord> getInputRecords(Object data, Set<ResourceClass<?>> classes)
+    private Map<ResourceClass<?>, PersistentLoadPlan.Record> getRecords(Object data)
     {
         @SuppressWarnings("unchecked")
-        Map<Long, Map<ResourceClass<?>, InputRecord>> rMap = (Map<Long, Map<ResourceClass<?>, InputRecord>>)data;
-        Map<ResourceClass<?>, InputRecord> rcMap = rMap.get(delegate.getIdObject());
-        if(rcMap != null)
-        {
-            Map<ResourceClass<?>, InputRecord> records = new HashMap<>();
-            for(ResourceClass<?> rc : classes)
-            {
-                records.put(rc, rcMap.get(rc));
-            }
-            return records;
-        }
-        else
-        {
-            return null;
-        }
+        Map<Long, Map<ResourceClass<?>, PersistentLoadPlan.Record>> rMap = (Map<Long, Map<ResourceClass<?>, PersistentLoadPlan.Record>>)data;
+        return rMap.get(delegate.getIdObject());
     }
 
-    private void setData(Map<ResourceClass<?>, InputRecord> records, Connection conn)
+    private void setData(Map<ResourceClass<?>, PersistentLoadPlan.Record> records,
+        Set<ResourceClass<?>> classes, Connection conn)
         throws SQLException
     {
-        for(Map.Entry<ResourceClass<?>, InputRecord> entry : records.entrySet())
+        for(ResourceClass<?> rc : classes)
         {
-            InputRecord record = entry.getValue();
+            PersistentLoadPlan.Record record = records.get(rc);
             if(record != null)
             {
-                for(AttributeDefinition<?> attr : entry.getKey().getDeclaredAttributes())
+                for(int i = 0; i < record.size(); i++)
                 {
-                    if((attr.getFlags() & AttributeFlags.BUILTIN) == 0)
-                    {
-                        setAttribute(attr, record);
-                    }
+                    setAttribute(record.getAttribute(i), record.getValue(i));
                 }
             }
         }
     }
 
-    private <T> void setAttribute(AttributeDefinition<T> attr, InputRecord data)
+    private <T> void setAttribute(AttributeDefinition<T> attr, Object data)
         throws SQLException
     {
-        final String name = getColumnName(attr);
         if(attr.getAttributeClass().getHandler().supportsExternalString())
         {
-            if(!data.isNull(name))
+            if(data != null)
             {
-                setValue(attr, instance, data.getObject(name));
+                setValue(attr, instance, data);
             }
             else
             {
@@ -241,13 +224,13 @@ public class PersistentResourceHelper
         }
         else
         {
-            if(data.isNull(name))
+            if(data == null)
             {
                 instance.setValueId(attr, -1);
             }
             else
             {
-                instance.setValueId(attr, data.getLong(name));
+                instance.setValueId(attr, ((Number)data).longValue());
             }
         }
     }
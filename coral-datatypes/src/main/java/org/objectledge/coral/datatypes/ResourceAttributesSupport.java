@@ -132,6 +132,41 @@ public abstract class ResourceAttributesSupport
             && attr.getAttributeClass().getHandler().isModified(attributes[index]);
     }
 
+    /**
+     * Returns the identifier of an attribute value that is defined but was not loaded yet.
+     * 
+     * @param attr the attribute.
+     * @return the identifier, or -1 if the value is loaded, modified or undefined.
+     */
+    synchronized long getUnloadedValueId(AttributeDefinition<?> attr)
+    {
+        int index = delegate.getResourceClass().getAttributeIndex(attr);
+        if(modified.get(index) || attributes[index] != null)
+        {
+            return -1L;
+        }
+        return ids[index] - 1;
+    }
+
+    /**
+     * Sets an attribute value loaded ahead of access.
+     * <p>
+     * The value is ignored if the attribute was loaded, modified or reverted in the meantime.
+     * </p>
+     * 
+     * @param attr the attribute.
+     * @param id the identifier of the value.
+     * @param value the value.
+     */
+    synchronized <A> void setLoadedValue(AttributeDefinition<A> attr, long id, A value)
+    {
+        int index = delegate.getResourceClass().getAttributeIndex(attr);
+        if(!modified.get(index) && attributes[index] == null && ids[index] - 1 == id)
+        {
+            attributes[index] = value;
+        }
+    }
+
     /**
      * Resets the modification flags for all attributes.
      */
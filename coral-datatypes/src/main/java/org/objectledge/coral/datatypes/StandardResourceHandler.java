@@ -5,6 +5,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -15,7 +16,10 @@ import java.util.WeakHashMap;
 import org.jcontainer.dna.Logger;
 import org.objectledge.cache.CacheFactory;
 import org.objectledge.coral.BackendException;
+import org.objectledge.coral.CacheStatistics;
+import org.objectledge.coral.CacheStatisticsRegistry;
 import org.objectledge.coral.Instantiator;
+import org.objectledge.coral.entity.EntityDoesNotExistException;
 import org.objectledge.coral.schema.AttributeDefinition;
 import org.objectledge.coral.schema.AttributeFlags;
 import org.objectledge.coral.schema.AttributeHandler;
@@ -35,6 +39,9 @@ import org.objectledge.database.DatabaseUtils;
 public abstract class StandardResourceHandler<T extends Resource>
     implements ResourceHandler<T>
 {
+    /** Maximum number of resources whose data is fetched with a single query. */
+    protected static final int BATCH_SIZE = 256;
+
     /** The resource class this handler is responsible for. */
     protected ResourceClass<T> resourceClass;
 
@@ -55,6 +62,9 @@ public abstract class StandardResourceHandler<T extends Resource>
 
     private final CacheFactory cacheFactory;
 
+    /** Statistics of the resource sets. */
+    private final CacheStatistics statistics;
+
     /**
      * The base constructor.
      * 
@@ -67,6 +77,25 @@ public abstract class StandardResourceHandler<T extends Resource>
      */
     public StandardResourceHandler(CoralSchema coralSchema, Instantiator instantiator,
         ResourceClass<T> resourceClass, Database database, CacheFactory cacheFactory, Logger logger)
+    {
+        this(coralSchema, instantiator, resourceClass, database, cacheFactory,
+                        new CacheStatisticsRegistry(), logger);
+    }
+
+    /**
+     * The base constructor.
+     * 
+     * @param coralSchema the coral schema.
+     * @param instantiator the instantiator.
+     * @param resourceClass the resource class.
+     * @param database the database.
+     * @param cacheFactory the cache factory.
+     * @param cacheStatistics the registry of cache statistics.
+     * @param logger the logger.
+     */
+    public StandardResourceHandler(CoralSchema coralSchema, Instantiator instantiator,
+        ResourceClass<T> resourceClass, Database database, CacheFactory cacheFactory,
+        CacheStatisticsRegistry cacheStatistics, Logger logger)
     {
         this.coralSchema = coralSchema;
         this.instantiator = instantiator;
@@ -74,6 +103,28 @@ public abstract class StandardResourceHandler<T extends Resource>
         this.database = database;
         this.cacheFactory = cacheFactory;
         this.logger = logger;
+        this.statistics = cacheStatistics.register(new CacheStatistics(
+            CacheStatistics.Group.HANDLER, "coral.handler." + resourceClass.getName())
+            {
+                protected int countEntries()
+                {
+                    List<WeakHashMap<ResourceAttributesSupport, Object>> rsets;
+                    synchronized(cache)
+                    {
+                        rsets = new ArrayList<WeakHashMap<ResourceAttributesSupport, Object>>(
+                            cache.values());
+                    }
+                    int count = 0;
+                    for(WeakHashMap<ResourceAttributesSupport, Object> rset : rsets)
+                    {
+                        synchronized(rset)
+                        {
+                            count += rset.size();
+                        }
+                    }
+                    return count;
+                }
+            });
     }
 
     /**
@@ -98,9 +149,19 @@ public abstract class StandardResourceHandler<T extends Resource>
         instance.setDelegate(delegate);
         Map<ResourceHandler<?>, Set<ResourceClass<?>>> ch = partitionByHandler(delegate
             .getResourceClass());
-        for(ResourceHandler<?> h : ch.keySet())
+        AttributeWriteBatch batch = new AttributeWriteBatch(conn);
+        try
+        {
+            for(ResourceHandler<?> h : ch.keySet())
+            {
+                ((StandardResourceHandler<?>)h).create(delegate, instance, ch.get(h), attributes,
+                    batch);
+            }
+            batch.flush();
+        }
+        finally
         {
-            ((StandardResourceHandler<?>)h).create(delegate, instance, ch.get(h), attributes, conn);
+            batch.close();
         }
         addToCache(delegate.getResourceClass(), instance);
         return resource;
@@ -131,6 +192,43 @@ public abstract class StandardResourceHandler<T extends Resource>
         return resource;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public List<T> retrieveAll(Collection<Resource> delegates, Connection conn)
+        throws SQLException
+    {
+        List<T> result = new ArrayList<T>(delegates.size());
+        if(delegates.isEmpty())
+        {
+            return result;
+        }
+        for(Resource delegate : delegates)
+        {
+            checkDelegate(delegate);
+        }
+        Map<ResourceHandler<?>, Set<ResourceClass<?>>> ch = partitionByHandler(resourceClass);
+        Object data = null;
+        for(ResourceHandler<?> h : ch.keySet())
+        {
+            data = ((StandardResourceHandler<?>)h).getData(delegates, data, ch.get(h), conn);
+        }
+        for(Resource delegate : delegates)
+        {
+            T resource = instantiate();
+            StandardResource instance = (StandardResource)resource;
+            instance.setDelegate(delegate);
+            for(ResourceHandler<?> h : ch.keySet())
+            {
+                ((StandardResourceHandler<?>)h).retrieve(delegate, instance, ch.get(h), data,
+                    conn);
+            }
+            addToCache(delegate.getResourceClass(), instance);
+            result.add(resource);
+        }
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -140,10 +238,19 @@ public abstract class StandardResourceHandler<T extends Resource>
         checkResource(resource);
         Map<ResourceHandler<?>, Set<ResourceClass<?>>> ch = partitionByHandler(resource
             .getResourceClass());
-        for(ResourceHandler<?> h : ch.keySet())
+        AttributeWriteBatch batch = new AttributeWriteBatch(conn);
+        try
+        {
+            for(ResourceHandler<?> h : ch.keySet())
+            {
+                ((StandardResourceHandler<?>)h).update(resource.getDelegate(),
+                    (StandardResource)resource, ch.get(h), batch);
+            }
+            batch.flush();
+        }
+        finally
         {
-            ((StandardResourceHandler<?>)h).update(resource.getDelegate(),
-                (StandardResource)resource, ch.get(h), conn);
+            batch.close();
         }
         resource.getDelegate().update();
     }
@@ -183,10 +290,19 @@ public abstract class StandardResourceHandler<T extends Resource>
         checkDelegate(delegate);
         Map<ResourceHandler<?>, Set<ResourceClass<?>>> ch = partitionByHandler(resource
             .getResourceClass());
-        for(ResourceHandler<?> h : ch.keySet())
+        AttributeWriteBatch batch = new AttributeWriteBatch(conn);
+        try
+        {
+            for(ResourceHandler<?> h : ch.keySet())
+            {
+                ((StandardResourceHandler<?>)h).delete(delegate, (StandardResource)resource,
+                    ch.get(h), batch);
+            }
+            batch.flush();
+        }
+        finally
         {
-            ((StandardResourceHandler<?>)h).delete(delegate, (StandardResource)resource, ch.get(h),
-                conn);
+            batch.close();
         }
         dropFromCache(resource);
     }
@@ -218,10 +334,98 @@ public abstract class StandardResourceHandler<T extends Resource>
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void prefetch(Collection<Resource> resources, Set<AttributeDefinition<?>> attributes,
+        Connection conn)
+        throws SQLException
+    {
+        Set<AttributeDefinition<?>> classAttributes = new HashSet<AttributeDefinition<?>>(
+            Arrays.asList(resourceClass.getAllAttributes()));
+        for(AttributeDefinition<?> attribute : attributes)
+        {
+            int flags = attribute.getFlags();
+            if(classAttributes.contains(attribute)
+                && (flags & (AttributeFlags.BUILTIN | AttributeFlags.SYNTHETIC)) == 0)
+            {
+                prefetch(resources, attribute, conn);
+            }
+        }
+    }
+
+    private <A> void prefetch(Collection<Resource> resources, AttributeDefinition<A> attribute,
+        Connection conn)
+        throws SQLException
+    {
+        Map<ResourceAttributesSupport, Long> pending =
+            new HashMap<ResourceAttributesSupport, Long>();
+        Set<Long> ids = new HashSet<Long>();
+        for(Resource resource : resources)
+        {
+            if(resource instanceof ResourceAttributesSupport)
+            {
+                ResourceAttributesSupport instance = (ResourceAttributesSupport)resource;
+                long id = instance.getUnloadedValueId(attribute);
+                if(id != -1L)
+                {
+                    pending.put(instance, id);
+                    ids.add(id);
+                }
+            }
+        }
+        if(!ids.isEmpty())
+        {
+            Map<Long, A> values = loadValues(attribute, ids, conn);
+            for(Map.Entry<ResourceAttributesSupport, Long> entry : pending.entrySet())
+            {
+                entry.getKey().setLoadedValue(attribute, entry.getValue(),
+                    values.get(entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Loads a group of attribute values.
+     * 
+     * @param attribute the attribute definition.
+     * @param ids attribute value ids.
+     * @param conn database connection.
+     * @return attribute values, keyed by value id.
+     * @throws SQLException if the values could not be loaded.
+     */
+    protected <A> Map<Long, A> loadValues(AttributeDefinition<A> attribute, Collection<Long> ids,
+        Connection conn)
+        throws SQLException
+    {
+        AttributeHandler<A> handler = attribute.getAttributeClass().getHandler();
+        try
+        {
+            if(handler instanceof AttributeHandlerBase)
+            {
+                @SuppressWarnings("unchecked")
+                final AttributeHandlerBase<A> base = (AttributeHandlerBase<A>)handler;
+                return base.retrieve(ids, conn);
+            }
+            Map<Long, A> values = new HashMap<Long, A>(ids.size());
+            for(Long id : ids)
+            {
+                values.put(id, handler.retrieve(id, conn));
+            }
+            return values;
+        }
+        catch(EntityDoesNotExistException e)
+        {
+            throw new BackendException("failed to retrieve attribute values "
+                + "(attribute definition = " + attribute.getName() + ")", e);
+        }
+    }
+
     // ///////////////////////////////////////////////////////////////////////////////////////////
 
     protected abstract void create(Resource delegate, ResourceAttributesSupport instance,
-        Set<ResourceClass<?>> classes, Map<AttributeDefinition<?>, ?> attributes, Connection conn)
+        Set<ResourceClass<?>> classes, Map<AttributeDefinition<?>, ?> attributes,
+        AttributeWriteBatch batch)
         throws SQLException;
 
     protected abstract void retrieve(Resource delegate, ResourceAttributesSupport instance,
@@ -229,7 +433,7 @@ public abstract class StandardResourceHandler<T extends Resource>
         throws SQLException;
 
     protected abstract void update(Resource delegate, ResourceAttributesSupport instance,
-        Set<ResourceClass<?>> classes, Connection conn)
+        Set<ResourceClass<?>> classes, AttributeWriteBatch batch)
         throws SQLException;
 
     protected abstract void revert(Resource delegate, ResourceAttributesSupport instance,
@@ -237,7 +441,7 @@ public abstract class StandardResourceHandler<T extends Resource>
         throws SQLException;
 
     protected abstract void delete(Resource delegate, ResourceAttributesSupport instance,
-        Set<ResourceClass<?>> classes, Connection conn)
+        Set<ResourceClass<?>> classes, AttributeWriteBatch batch)
         throws SQLException;
 
     // ///////////////////////////////////////////////////////////////////////////////////////////
@@ -257,6 +461,76 @@ public abstract class StandardResourceHandler<T extends Resource>
         Set<ResourceClass<?>> classess, Connection conn)
         throws SQLException;
 
+    /**
+     * Retrieve attribute information for a group of resources.
+     * <p>
+     * The default implementation invokes {@link #getData(Resource, Object, Set, Connection)} for
+     * each of the resources in turn. Subclasses should override it to fetch the data for multiple
+     * resources at once.
+     * </p>
+     *
+     * @param delegates the security delegate objects.
+     * @param prev data produced by previous handler, or {@code null} if the handler is first one in
+     *        the chain.
+     * @param classess resource classes for which attribute data should be retrieved.
+     * @param conn database connection.
+     * @return opaque data object.
+     * @throws SQLException if information retrieval fails.
+     */
+    protected Object getData(Collection<Resource> delegates, Object prev,
+        Set<ResourceClass<?>> classess, Connection conn)
+        throws SQLException
+    {
+        Object data = prev;
+        for(Resource delegate : delegates)
+        {
+            data = getData(delegate, data, classess, conn);
+        }
+        return data;
+    }
+
+    /**
+     * Returns the delegates split into consecutive chunks of at most {@link #BATCH_SIZE} elements.
+     *
+     * @param delegates the security delegate objects.
+     * @return list of chunks.
+     */
+    protected static List<List<Resource>> chunks(Collection<Resource> delegates)
+    {
+        List<List<Resource>> result = new ArrayList<List<Resource>>();
+        List<Resource> chunk = null;
+        for(Resource delegate : delegates)
+        {
+            if(chunk == null || chunk.size() == BATCH_SIZE)
+            {
+                chunk = new ArrayList<Resource>(Math.min(BATCH_SIZE, delegates.size()));
+                result.add(chunk);
+            }
+            chunk.add(delegate);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a comma separated list of <code>count</code> JDBC parameter placeholders.
+     *
+     * @param count number of placeholders.
+     * @return placeholder list, suitable for an <code>IN (...)</code> clause.
+     */
+    protected static String placeholders(int count)
+    {
+        StringBuilder buff = new StringBuilder(count * 3);
+        for(int i = 0; i < count; i++)
+        {
+            if(i > 0)
+            {
+                buff.append(", ");
+            }
+            buff.append('?');
+        }
+        return buff.toString();
+    }
+
     /**
      * Retrieve attribute information for resources of a specific class.
      * 
@@ -505,7 +779,11 @@ public abstract class StandardResourceHandler<T extends Resource>
         }
         synchronized(rset)
         {
-            rset.put(res, null);
+            if(!rset.containsKey(res))
+            {
+                rset.put(res, null);
+                statistics.stored();
+            }
         }
     }
 
@@ -529,7 +807,11 @@ public abstract class StandardResourceHandler<T extends Resource>
         {
             synchronized(rset)
             {
-                rset.remove(res);
+                if(rset.containsKey(res))
+                {
+                    rset.remove(res);
+                    statistics.removed(1);
+                }
             }
         }
     }
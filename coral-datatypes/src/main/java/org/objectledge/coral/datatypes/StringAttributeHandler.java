@@ -6,6 +6,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
+import org.objectledge.coral.CacheStatistics;
+import org.objectledge.coral.CacheStatisticsRegistry;
 import org.objectledge.coral.entity.EntityDoesNotExistException;
 import org.objectledge.coral.schema.AttributeClass;
 import org.objectledge.coral.schema.CoralSchema;
@@ -25,7 +27,16 @@ public class StringAttributeHandler
     extends AttributeHandlerBase<String>
 {
     /** preloading cache. */
-    private String[] cache;
+    private volatile StringValueStore cache;
+
+    /**
+     * The largest data key that was preloaded. Values with greater keys are not cached, so that
+     * the cache does not outgrow the preloaded table.
+     */
+    private volatile long cacheLimit = -1L;
+
+    /** Statistics of the preloading cache. */
+    private final CacheStatistics statistics;
 
     /**
      * The constructor.
@@ -38,8 +49,35 @@ public class StringAttributeHandler
      */
     public StringAttributeHandler(Database database, CoralStore coralStore,
         CoralSecurity coralSecurity, CoralSchema coralSchema, AttributeClass<String> attributeClass)
+    {
+        this(database, coralStore, coralSecurity, coralSchema, new CacheStatisticsRegistry(),
+                        attributeClass);
+    }
+
+    /**
+     * The constructor.
+     * 
+     * @param database the database.
+     * @param coralStore the store.
+     * @param coralSecurity the security.
+     * @param coralSchema the scheam.
+     * @param cacheStatistics the registry of cache statistics.
+     * @param attributeClass the attribute class.
+     */
+    public StringAttributeHandler(Database database, CoralStore coralStore,
+        CoralSecurity coralSecurity, CoralSchema coralSchema,
+        CacheStatisticsRegistry cacheStatistics, AttributeClass<String> attributeClass)
     {
         super(database, coralStore, coralSecurity, coralSchema, attributeClass);
+        statistics = cacheStatistics.register(new CacheStatistics(
+            CacheStatistics.Group.ATTRIBUTE, "coral.attribute." + attributeClass.getName())
+            {
+                protected int countEntries()
+                {
+                    StringValueStore store = cache;
+                    return store != null ? store.size() : 0;
+                }
+            });
     }
     /////////////////////////////////////////////////////////////////////////////////////////////
     
@@ -49,28 +87,23 @@ public class StringAttributeHandler
     public void preload(Connection conn)
         throws SQLException
     {
-        Statement stmt = conn.createStatement();
-        ResultSet rs = null;
-        try
-        {
-            rs = stmt.executeQuery("SELECT max(data_key) from "+getTable());
-            rs.next();
-            int count = rs.getInt(1);
-            cache = new String[count+1];
-            rs.close();
-            rs = stmt.executeQuery("SELECT data_key, data from "+getTable());
-            while(rs.next())
-            {
-                cache[rs.getInt(1)] = unescape(rs.getString(2));
-            }            
-        }
-        finally
-        {
-            DatabaseUtils.close(rs);
-            DatabaseUtils.close(stmt);
-        }
+        StringValueStore store = preloadStrings(conn);
+        cacheLimit = store.getMaxKey();
+        cache = store;
     }    
     
+    /**
+     * Returns the estimated memory used by preloaded values.
+     * 
+     * @return the estimated memory used by preloaded values in bytes, or 0 if the values were not
+     *         preloaded.
+     */
+    public long getCacheMemoryUsage()
+    {
+        StringValueStore store = cache;
+        return store != null ? store.getMemoryUsage() : 0L;
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -78,13 +111,7 @@ public class StringAttributeHandler
         throws SQLException
     {
         String str = value;
-        if(str.length() > 255)
-        {
-            throw new IllegalArgumentException("maximum lenght of string attributes "+
-                                               "is 255 characters. Use text attributes "+
-                                               "wherever greater capacity is desired");
-        }
-
+        checkWrite(str);
         long id = getNextId();
         Statement stmt = conn.createStatement();
         try
@@ -107,14 +134,18 @@ public class StringAttributeHandler
     public String retrieve(long id, Connection conn)
         throws EntityDoesNotExistException, SQLException
     {
-        if(cache != null && id < cache.length)
+        StringValueStore store = cache;
+        if(store != null)
         {
-            String value = cache[(int)id];
+            String value = store.get(id);
             if(value != null)
             {
+                statistics.hit();
                 return value;
             }
+            statistics.miss();
         }
+        long startTime = System.nanoTime();
         Statement stmt = conn.createStatement();
         ResultSet rs = null;
         try
@@ -128,9 +159,11 @@ public class StringAttributeHandler
                     getTable());
             }
             String value = unescape(rs.getString(1));
-            if(cache != null && id < cache.length)
+            if(store != null && id <= cacheLimit)
             {
-                cache[(int)id] = value;
+                statistics.loaded(startTime);
+                store.put(id, value);
+                statistics.stored();
             }
             return value;
         }
@@ -148,16 +181,8 @@ public class StringAttributeHandler
         throws EntityDoesNotExistException, SQLException
     {
         String str = value;
-        if(str.length() > 255)
-        {
-            throw new IllegalArgumentException("maximum lenght of string attributes "+
-                                               "is 255 characters. Use text attributes "+
-                                               "wherever greater capacity is desired");
-        }
-        if(cache != null && id < cache.length)
-        {
-            cache[(int)id] = str;
-        }
+        checkWrite(str);
+        cacheValue(id, str);
         Statement stmt = conn.createStatement();
         try
         {
@@ -174,19 +199,97 @@ public class StringAttributeHandler
         }
     }
 
+    // batched writes ////////////////////////////////////////////////////////
+
     /**
      * {@inheritDoc}
      */
-    public void delete(long id, Connection conn)
-        throws EntityDoesNotExistException, SQLException
+    protected boolean supportsBatchedWrites()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void checkWrite(String value)
     {
-        super.delete(id, conn);
-        if(cache != null && id < cache.length)
+        if(value.length() > 255)
         {
-            cache[(int)id] = null;
+            throw new IllegalArgumentException("maximum lenght of string attributes "+
+                                               "is 255 characters. Use text attributes "+
+                                               "wherever greater capacity is desired");
         }
     }
-    
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void cacheValue(long id, String value)
+    {
+        StringValueStore store = cache;
+        if(store != null && id <= cacheLimit)
+        {
+            store.put(id, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void uncacheValue(long id)
+    {
+        StringValueStore store = cache;
+        if(store != null)
+        {
+            if(store.remove(id))
+            {
+                statistics.removed(1);
+            }
+        }
+    }
+
+    // batched reads /////////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean supportsBatchedReads()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected String getValue(ResultSet rs, int column)
+        throws SQLException
+    {
+        return unescape(rs.getString(column));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected String getCachedValue(long id)
+    {
+        StringValueStore store = cache;
+        if(store == null)
+        {
+            return null;
+        }
+        String value = store.get(id);
+        if(value != null)
+        {
+            statistics.hit();
+        }
+        else
+        {
+            statistics.miss();
+        }
+        return value;
+    }
+
     // meta information //////////////////////////////////////////////////////
     
     /**
@@ -0,0 +1,430 @@
+package org.objectledge.coral.datatypes;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import bak.pcj.list.IntArrayList;
+import bak.pcj.map.LongKeyIntMap;
+import bak.pcj.map.LongKeyIntOpenHashMap;
+
+/**
+ * A compact store of string attribute values, keyed by data keys.
+ * <p>
+ * Values are kept encoded in large byte buffers, in ISO-8859-1 when possible and in UTF-8
+ * otherwise, and decoded when accessed. Equal values are stored once and shared by all the keys
+ * mapping to them. Space of values that are no longer used is reclaimed by compacting the buffers,
+ * once it exceeds the space of live values.
+ * </p>
+ * <p>
+ * The store is safe for concurrent use, reads do not block each other.
+ * </p>
+ */
+class StringValueStore
+{
+    /** Default size of a storage buffer. */
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    /** Length flag: the value is encoded in UTF-8. */
+    private static final int UTF8 = 1;
+
+    /** Dedup index slot that was never used. */
+    private static final int FREE = 0;
+
+    /** Dedup index slot of a removed value. */
+    private static final int REMOVED = -1;
+
+    private final boolean direct;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Data key -&gt; value id + 1. */
+    private final LongKeyIntMap keys = new LongKeyIntOpenHashMap();
+
+    private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+
+    /** Value id -&gt; chunk index in upper, position in lower 32 bits. */
+    private long[] offsets = new long[64];
+
+    /** Value id -&gt; encoded length shifted left by one, ORed with encoding flag. */
+    private int[] lengths = new int[64];
+
+    /** Value id -&gt; number of keys mapping to the value, 0 for unused ids. */
+    private int[] references = new int[64];
+
+    /** Value id -&gt; hash code of the encoded value. */
+    private int[] hashes = new int[64];
+
+    /** Number of value ids allocated. */
+    private int valueCount = 0;
+
+    /** Value ids released for reuse. */
+    private final IntArrayList freeValues = new IntArrayList();
+
+    /** Open addressing hash table of value id + 1, by value hash. */
+    private int[] index = new int[128];
+
+    /** Number of index slots that are not {@link #FREE}. */
+    private int indexUsed = 0;
+
+    /** The largest key ever put into the store. */
+    private long maxKey = -1L;
+
+    /** Bytes used by live values. */
+    private long liveBytes = 0;
+
+    /** Bytes used by values that are no longer referenced. */
+    private long garbageBytes = 0;
+
+    /**
+     * Creates an empty store.
+     *
+     * @param direct <code>true</code> to allocate storage buffers outside of the Java heap.
+     */
+    StringValueStore(boolean direct)
+    {
+        this.direct = direct;
+    }
+
+    /**
+     * Returns the value associated with a key.
+     *
+     * @param key the key.
+     * @return the value, or <code>null</code> if not present.
+     */
+    String get(long key)
+    {
+        lock.readLock().lock();
+        try
+        {
+            int valueId = keys.get(key) - 1;
+            return valueId >= 0 ? decode(valueId) : null;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Associates a value with a key.
+     *
+     * @param key the key.
+     * @param value the value.
+     */
+    void put(long key, String value)
+    {
+        boolean latin1 = isLatin1(value);
+        byte[] bytes = value.getBytes(latin1 ? StandardCharsets.ISO_8859_1
+            : StandardCharsets.UTF_8);
+        int length = bytes.length << 1 | (latin1 ? 0 : UTF8);
+        int hash = Arrays.hashCode(bytes) * 31 + length;
+        lock.writeLock().lock();
+        try
+        {
+            int valueId = find(bytes, length, hash);
+            if(valueId < 0)
+            {
+                valueId = add(bytes, length, hash);
+            }
+            references[valueId]++;
+            maxKey = Math.max(maxKey, key);
+            int previous = keys.put(key, valueId + 1) - 1;
+            if(previous >= 0)
+            {
+                release(previous);
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the value associated with a key.
+     *
+     * @param key the key.
+     * @return <code>true</code> if a value was associated with the key.
+     */
+    boolean remove(long key)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            if(keys.containsKey(key))
+            {
+                release(keys.remove(key) - 1);
+                return true;
+            }
+            return false;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of keys in the store.
+     *
+     * @return the number of keys in the store.
+     */
+    int size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return keys.size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the largest key that was ever put into the store.
+     *
+     * @return the largest key that was ever put into the store, or -1 if the store was never
+     *         written.
+     */
+    long getMaxKey()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return maxKey;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of distinct values in the store.
+     *
+     * @return the number of distinct values in the store.
+     */
+    int getDistinctValues()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return valueCount - freeValues.size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the estimated memory used by the store, in bytes.
+     *
+     * @return the estimated memory used by the store, in bytes.
+     */
+    long getMemoryUsage()
+    {
+        lock.readLock().lock();
+        try
+        {
+            long size = 0;
+            for(ByteBuffer chunk : chunks)
+            {
+                size += chunk.capacity();
+            }
+            // per value id: offset, length, reference count and hash
+            size += offsets.length * 20L;
+            size += index.length * 4L;
+            // open hash map entry: key, value and state
+            size += keys.size() * 2L * 13;
+            return size;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    // implementation ////////////////////////////////////////////////////////
+
+    private static boolean isLatin1(String value)
+    {
+        for(int i = 0; i < value.length(); i++)
+        {
+            if(value.charAt(i) > 0xff)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decode(int valueId)
+    {
+        byte[] bytes = read(valueId);
+        return new String(bytes, (lengths[valueId] & UTF8) != 0 ? StandardCharsets.UTF_8
+            : StandardCharsets.ISO_8859_1);
+    }
+
+    private byte[] read(int valueId)
+    {
+        long offset = offsets[valueId];
+        // use a duplicate, to keep the shared buffer's position intact for concurrent readers
+        ByteBuffer chunk = chunks.get((int)(offset >>> 32)).duplicate();
+        chunk.position((int)offset);
+        byte[] bytes = new byte[lengths[valueId] >>> 1];
+        chunk.get(bytes);
+        return bytes;
+    }
+
+    private int find(byte[] bytes, int length, int hash)
+    {
+        int mask = index.length - 1;
+        for(int slot = hash & mask;; slot = (slot + 1) & mask)
+        {
+            int entry = index[slot];
+            if(entry == FREE)
+            {
+                return -1;
+            }
+            int valueId = entry - 1;
+            if(entry != REMOVED && hashes[valueId] == hash && lengths[valueId] == length
+                && Arrays.equals(bytes, read(valueId)))
+            {
+                return valueId;
+            }
+        }
+    }
+
+    private int add(byte[] bytes, int length, int hash)
+    {
+        int valueId;
+        if(!freeValues.isEmpty())
+        {
+            valueId = freeValues.removeElementAt(freeValues.size() - 1);
+        }
+        else
+        {
+            valueId = valueCount++;
+            if(valueId == offsets.length)
+            {
+                int capacity = offsets.length * 2;
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                references = Arrays.copyOf(references, capacity);
+                hashes = Arrays.copyOf(hashes, capacity);
+            }
+        }
+        offsets[valueId] = write(bytes);
+        lengths[valueId] = length;
+        hashes[valueId] = hash;
+        liveBytes += bytes.length;
+        if((indexUsed + 1) * 2 > index.length)
+        {
+            rebuildIndex();
+        }
+        insert(valueId);
+        return valueId;
+    }
+
+    private long write(byte[] bytes)
+    {
+        ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if(chunk == null || chunk.remaining() < bytes.length)
+        {
+            int capacity = Math.max(CHUNK_SIZE, bytes.length);
+            chunk = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+            chunks.add(chunk);
+        }
+        long offset = (long)(chunks.size() - 1) << 32 | chunk.position();
+        chunk.put(bytes);
+        return offset;
+    }
+
+    private void insert(int valueId)
+    {
+        int mask = index.length - 1;
+        int slot = hashes[valueId] & mask;
+        while(index[slot] != FREE)
+        {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = valueId + 1;
+        indexUsed++;
+    }
+
+    private void release(int valueId)
+    {
+        if(--references[valueId] > 0)
+        {
+            return;
+        }
+        int mask = index.length - 1;
+        int slot = hashes[valueId] & mask;
+        while(index[slot] != valueId + 1)
+        {
+            slot = (slot + 1) & mask;
+        }
+        // keep the slot occupied, so that probe sequences passing through it remain intact
+        index[slot] = REMOVED;
+        freeValues.add(valueId);
+        int size = lengths[valueId] >>> 1;
+        liveBytes -= size;
+        garbageBytes += size;
+        if(garbageBytes > CHUNK_SIZE && garbageBytes > liveBytes)
+        {
+            compact();
+        }
+    }
+
+    /**
+     * Rebuilds the dedup index, dropping removed entries and growing it if necessary.
+     */
+    private void rebuildIndex()
+    {
+        int live = valueCount - freeValues.size() + 1;
+        int capacity = index.length;
+        while(live * 4 > capacity)
+        {
+            capacity *= 2;
+        }
+        index = new int[capacity];
+        indexUsed = 0;
+        for(int valueId = 0; valueId < valueCount; valueId++)
+        {
+            if(references[valueId] > 0)
+            {
+                insert(valueId);
+            }
+        }
+    }
+
+    /**
+     * Copies live values to new buffers, releasing the space of unused values.
+     */
+    private void compact()
+    {
+        List<ByteBuffer> old = new ArrayList<ByteBuffer>(chunks);
+        chunks.clear();
+        for(int valueId = 0; valueId < valueCount; valueId++)
+        {
+            if(references[valueId] > 0)
+            {
+                long offset = offsets[valueId];
+                ByteBuffer chunk = old.get((int)(offset >>> 32)).duplicate();
+                chunk.position((int)offset);
+                byte[] bytes = new byte[lengths[valueId] >>> 1];
+                chunk.get(bytes);
+                offsets[valueId] = write(bytes);
+            }
+        }
+        garbageBytes = 0;
+    }
+}
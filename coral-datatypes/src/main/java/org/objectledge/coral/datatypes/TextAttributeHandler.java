@@ -112,6 +112,35 @@ public class TextAttributeHandler
         }
     }
 
+    // batched writes ////////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean supportsBatchedWrites()
+    {
+        return true;
+    }
+
+    // batched reads /////////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    protected boolean supportsBatchedReads()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected String getValue(ResultSet rs, int column)
+        throws SQLException
+    {
+        return unescape(rs.getString(column));
+    }
+
     // meta information //////////////////////////////////////////////////////
     
     /**
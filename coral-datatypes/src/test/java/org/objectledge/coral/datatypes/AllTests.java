@@ -53,10 +53,12 @@ public class AllTests
         suite.addTest(new TestSuite(NumberAttributeHandlerTest.class));
         suite.addTest(new TestSuite(ParametersAttributeHandlerTest.class));
         suite.addTest(new TestSuite(PermissionAttributeHandlerTest.class));
+        suite.addTest(new TestSuite(PersistentLoadPlanTest.class));
         suite.addTest(new TestSuite(ResourceAttributeHandlerTest.class));
         suite.addTest(new TestSuite(ResourceListAttributeHandlerTest.class));
         suite.addTest(new TestSuite(RoleAttributeHandlerTest.class));
         suite.addTest(new TestSuite(StringAttributeHandlerTest.class));
+        suite.addTest(new TestSuite(StringValueStoreTest.class));
         suite.addTest(new TestSuite(SubjectAttributeHandlerTest.class));
         suite.addTest(new TestSuite(TextAttributeHandlerTest.class));
         suite.addTest(new TestSuite(WeakResourceListAttributeHandlerTest.class));
@@ -0,0 +1,119 @@
+package org.objectledge.coral.datatypes;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.jmock.Mock;
+import org.objectledge.coral.schema.AttributeDefinition;
+import org.objectledge.coral.schema.AttributeFlags;
+import org.objectledge.coral.schema.ResourceClass;
+import org.objectledge.test.LedgeTestCase;
+
+public class PersistentLoadPlanTest
+    extends LedgeTestCase
+{
+    private Mock mockResourceClass;
+
+    private Mock mockTitle;
+
+    private Mock mockCount;
+
+    private Set<ResourceClass<?>> classes;
+
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        mockTitle = mock(AttributeDefinition.class, "title");
+        mockTitle.stubs().method("getFlags").will(returnValue(0));
+        mockTitle.stubs().method("getName").will(returnValue("title"));
+        mockTitle.stubs().method("getDbColumn").will(returnValue(null));
+        mockCount = mock(AttributeDefinition.class, "count");
+        mockCount.stubs().method("getFlags").will(returnValue(0));
+        mockCount.stubs().method("getName").will(returnValue("count"));
+        mockCount.stubs().method("getDbColumn").will(returnValue("cnt"));
+        Mock mockId = mock(AttributeDefinition.class, "id");
+        mockId.stubs().method("getFlags").will(returnValue(AttributeFlags.BUILTIN));
+        mockResourceClass = mock(ResourceClass.class);
+        mockResourceClass.stubs().method("getName").will(returnValue("document"));
+        mockResourceClass.stubs().method("getDbTable").will(returnValue("document"));
+        mockResourceClass.stubs().method("getDeclaredAttributes").will(
+            returnValue(new AttributeDefinition<?>[] { (AttributeDefinition<?>)mockId.proxy(),
+                            (AttributeDefinition<?>)mockTitle.proxy(),
+                            (AttributeDefinition<?>)mockCount.proxy() }));
+        classes = new LinkedHashSet<ResourceClass<?>>();
+        classes.add((ResourceClass<?>)mockResourceClass.proxy());
+    }
+
+    public void testQuery()
+        throws Exception
+    {
+        PersistentLoadPlan plan = new PersistentLoadPlan(classes, 256);
+        assertEquals("SELECT r.resource_id, t1.title, t1.cnt\nFROM coral_resource r\n"
+            + "LEFT OUTER JOIN document t1 USING(resource_id)\n"
+            + "WHERE r.resource_id IN (?, ?, ?, ?)", plan.getQuery(2));
+        assertSame(plan.getQuery(2), plan.getQuery(2));
+    }
+
+    public void testLoad()
+        throws Exception
+    {
+        PersistentLoadPlan plan = new PersistentLoadPlan(classes, 256);
+        Mock mockResultSet = mock(ResultSet.class);
+        mockResultSet.expects(exactly(3)).method("next").will(
+            onConsecutiveCalls(returnValue(true), returnValue(true), returnValue(false)));
+        mockResultSet.expects(exactly(2)).method("getLong").with(eq(1)).will(
+            onConsecutiveCalls(returnValue(1L), returnValue(3L)));
+        mockResultSet.expects(exactly(4)).method("getObject").will(
+            onConsecutiveCalls(returnValue("first"), returnValue(new Integer(7)),
+                returnValue("third"), returnValue(null)));
+        mockResultSet.expects(once()).method("close");
+        Mock mockPreparedStatement = mock(PreparedStatement.class);
+        // three ids are padded to four by repeating the last one
+        mockPreparedStatement.expects(once()).method("setLong").with(eq(1), eq(1L));
+        mockPreparedStatement.expects(once()).method("setLong").with(eq(2), eq(2L));
+        mockPreparedStatement.expects(once()).method("setLong").with(eq(3), eq(3L));
+        mockPreparedStatement.expects(once()).method("setLong").with(eq(4), eq(3L));
+        mockPreparedStatement.expects(once()).method("executeQuery").will(
+            returnValue(mockResultSet.proxy()));
+        mockPreparedStatement.expects(once()).method("close");
+        Mock mockConnection = mock(Connection.class);
+        mockConnection.expects(once()).method("prepareStatement").with(eq(plan.getQuery(2)))
+            .will(returnValue(mockPreparedStatement.proxy()));
+
+        Map<Long, Map<ResourceClass<?>, PersistentLoadPlan.Record>> data = new HashMap<Long, Map<ResourceClass<?>, PersistentLoadPlan.Record>>();
+        for(long id = 1; id <= 3; id++)
+        {
+            data.put(id, new HashMap<ResourceClass<?>, PersistentLoadPlan.Record>());
+        }
+        plan.load(new long[] { 1L, 2L, 3L }, data, (Connection)mockConnection.proxy());
+
+        PersistentLoadPlan.Record record = data.get(1L).get(mockResourceClass.proxy());
+        assertEquals(2, record.size());
+        assertSame(mockTitle.proxy(), record.getAttribute(0));
+        assertEquals("first", record.getValue(0));
+        assertEquals(new Integer(7), record.getValue(1));
+        assertTrue(data.get(2L).isEmpty());
+        record = data.get(3L).get(mockResourceClass.proxy());
+        assertEquals("third", record.getValue(0));
+        assertNull(record.getValue(1));
+    }
+
+    public void testValidity()
+        throws Exception
+    {
+        PersistentLoadPlan plan = new PersistentLoadPlan(classes, 256);
+        assertTrue(plan.isValid());
+        mockCount.stubs().method("getDbColumn").will(returnValue("count"));
+        assertFalse(plan.isValid());
+        plan = new PersistentLoadPlan(classes, 256);
+        assertTrue(plan.isValid());
+        mockResourceClass.stubs().method("getDbTable").will(returnValue("document_v2"));
+        assertFalse(plan.isValid());
+    }
+}
@@ -28,8 +28,12 @@
 package org.objectledge.coral.datatypes;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Map;
 
 import org.jmock.Mock;
 import org.objectledge.coral.entity.EntityDoesNotExistException;
@@ -158,6 +162,115 @@ public class StringAttributeHandlerTest extends LedgeTestCase
         }
     }
 
+    public void testBatchedWrites() throws Exception
+    {
+        Mock mockInsert = mock(PreparedStatement.class, "mockInsert");
+        mockConnection.stubs().method("prepareStatement")
+            .with(eq("INSERT INTO coral_attribute_string(data_key, data) VALUES (?, ?)"))
+            .will(returnValue(mockInsert.proxy()));
+        Mock mockUpdate = mock(PreparedStatement.class, "mockUpdate");
+        mockConnection.stubs().method("prepareStatement")
+            .with(eq("UPDATE coral_attribute_string SET data = ? WHERE data_key = ?"))
+            .will(returnValue(mockUpdate.proxy()));
+        mockInsert.stubs().method("setLong").isVoid();
+        mockInsert.expects(once()).method("setString").with(eq(2), eq("foo")).isVoid();
+        mockInsert.expects(once()).method("setString").with(eq(2), eq("bar")).isVoid();
+        mockInsert.expects(exactly(2)).method("addBatch").isVoid();
+        mockInsert.expects(once()).method("executeBatch").will(returnValue(new int[] { 1, 1 }));
+        mockInsert.expects(once()).method("close").isVoid();
+        mockUpdate.expects(once()).method("setString").with(eq(1), eq("baz")).isVoid();
+        mockUpdate.expects(once()).method("setLong").with(eq(2), eq(2L)).isVoid();
+        mockUpdate.expects(once()).method("addBatch").isVoid();
+        mockUpdate.expects(once()).method("executeBatch").will(returnValue(new int[] { 1 }));
+        mockUpdate.expects(once()).method("close").isVoid();
+        AttributeWriteBatch batch = new AttributeWriteBatch(connection);
+        try
+        {
+            assertEquals(1L, handler.create("foo", batch));
+            assertEquals(1L, handler.create("bar", batch));
+            handler.update(2L, "baz", batch);
+            try
+            {
+                handler.create(longString, batch);
+                fail("should throw the exception");
+            }
+            catch(IllegalArgumentException e)
+            {
+                //ok!
+            }
+            batch.flush();
+        }
+        finally
+        {
+            batch.close();
+        }
+    }
+
+    public void testBatchedUpdateMissing() throws Exception
+    {
+        Mock mockUpdate = mock(PreparedStatement.class);
+        mockConnection.stubs().method("prepareStatement").will(returnValue(mockUpdate.proxy()));
+        mockUpdate.stubs().method("setString").isVoid();
+        mockUpdate.stubs().method("setLong").isVoid();
+        mockUpdate.stubs().method("addBatch").isVoid();
+        mockUpdate.expects(once()).method("executeBatch").will(returnValue(new int[] { 0 }));
+        mockUpdate.expects(once()).method("close").isVoid();
+        AttributeWriteBatch batch = new AttributeWriteBatch(connection);
+        try
+        {
+            handler.update(2L, "baz", batch);
+            batch.flush();
+            fail("should throw the exception");
+        }
+        catch(SQLException e)
+        {
+            //ok!
+        }
+        finally
+        {
+            batch.close();
+        }
+    }
+
+    public void testBatchedRetrieve() throws Exception
+    {
+        Mock mockSelect = mock(PreparedStatement.class, "mockSelect");
+        mockConnection.expects(once()).method("prepareStatement")
+            .with(eq("SELECT data_key, data FROM coral_attribute_string WHERE data_key IN (?, ?)"))
+            .will(returnValue(mockSelect.proxy()));
+        mockSelect.expects(once()).method("setLong").with(eq(1), eq(1L)).isVoid();
+        mockSelect.expects(once()).method("setLong").with(eq(2), eq(3L)).isVoid();
+        mockSelect.expects(once()).method("executeQuery").will(returnValue(resultSet));
+        mockSelect.expects(once()).method("close").isVoid();
+        mockResultSet.expects(exactly(3)).method("next").will(
+            onConsecutiveCalls(returnValue(true), returnValue(true), returnValue(false)));
+        mockResultSet.expects(exactly(2)).method("getLong").with(eq(1)).will(
+            onConsecutiveCalls(returnValue(1L), returnValue(3L)));
+        mockResultSet.expects(exactly(2)).method("getString").with(eq(2)).will(
+            onConsecutiveCalls(returnValue("foo"), returnValue("bar")));
+        Map<Long, String> values = handler.retrieve(Arrays.asList(1L, 3L), connection);
+        assertEquals(2, values.size());
+        assertEquals("foo", values.get(1L));
+        assertEquals("bar", values.get(3L));
+
+        mockConnection.expects(once()).method("prepareStatement")
+            .with(eq("SELECT data_key, data FROM coral_attribute_string WHERE data_key IN (?)"))
+            .will(returnValue(mockSelect.proxy()));
+        mockSelect.expects(once()).method("setLong").with(eq(1), eq(2L)).isVoid();
+        mockSelect.expects(once()).method("executeQuery").will(returnValue(resultSet));
+        mockSelect.expects(once()).method("close").isVoid();
+        mockResultSet.expects(once()).method("next").will(returnValue(false));
+        try
+        {
+            handler.retrieve(Arrays.asList(2L), connection);
+            fail("should throw the exception");
+        }
+        catch(EntityDoesNotExistException e)
+        {
+            //ok!
+        }
+    }
+
     public void testRetrieveCreate() throws Exception
     {
         mockResultSet.expects(once()).method("next").will(returnValue(true));
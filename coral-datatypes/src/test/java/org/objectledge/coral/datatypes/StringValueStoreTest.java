@@ -0,0 +1,70 @@
+package org.objectledge.coral.datatypes;
+
+import org.objectledge.test.LedgeTestCase;
+
+public class StringValueStoreTest
+    extends LedgeTestCase
+{
+    public void testBasic()
+    {
+        StringValueStore store = new StringValueStore(false);
+        assertEquals(-1L, store.getMaxKey());
+        assertNull(store.get(1L));
+        store.put(1L, "ascii");
+        store.put(2L, "za\u017c\u00f3\u0142\u0107 \u20ac");
+        store.put(3L, "");
+        assertEquals("ascii", store.get(1L));
+        assertEquals("za\u017c\u00f3\u0142\u0107 \u20ac", store.get(2L));
+        assertEquals("", store.get(3L));
+        assertEquals(3, store.size());
+        store.put(1L, "changed");
+        assertEquals("changed", store.get(1L));
+        store.remove(1L);
+        assertNull(store.get(1L));
+        assertEquals(2, store.size());
+        store.remove(3L);
+        assertEquals(3L, store.getMaxKey());
+    }
+
+    public void testSharing()
+    {
+        StringValueStore store = new StringValueStore(false);
+        for(long key = 0; key < 10000; key++)
+        {
+            store.put(key, key % 2 == 0 ? "published" : "draft");
+        }
+        assertEquals(10000, store.size());
+        assertEquals(2, store.getDistinctValues());
+        assertEquals("draft", store.get(9999L));
+        for(long key = 0; key < 10000; key += 2)
+        {
+            store.remove(key);
+        }
+        assertEquals(1, store.getDistinctValues());
+        store.put(0L, "published");
+        assertEquals(2, store.getDistinctValues());
+        assertEquals("published", store.get(0L));
+    }
+
+    public void testCompaction()
+    {
+        StringValueStore store = new StringValueStore(true);
+        StringBuilder buff = new StringBuilder();
+        for(int i = 0; i < 1000; i++)
+        {
+            buff.append("0123456789");
+        }
+        String base = buff.toString();
+        // keep replacing the value of a few keys, so that garbage accumulates
+        for(int i = 0; i < 1000; i++)
+        {
+            store.put(i % 10, base + i);
+        }
+        for(int i = 990; i < 1000; i++)
+        {
+            assertEquals(base + i, store.get(i % 10));
+        }
+        assertEquals(10, store.getDistinctValues());
+        assertTrue(store.getMemoryUsage() < 4 * (1 << 20));
+    }
+}
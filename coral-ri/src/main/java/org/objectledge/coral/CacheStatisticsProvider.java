@@ -0,0 +1,317 @@
+package org.objectledge.coral;
+
+import java.lang.management.ManagementFactory;
+
+import org.objectledge.filesystem.FileSystem;
+import org.objectledge.statistics.AbstractMuninGraph;
+import org.objectledge.statistics.MuninGraph;
+import org.objectledge.statistics.StatisticsProvider;
+
+/**
+ * Reports the statistics of Coral caches.
+ * <p>
+ * The graphs show the caches summed up by group. The statistics of individual caches are exported
+ * to the platform MBean server, see
+ * {@link CacheStatisticsRegistry#export(javax.management.MBeanServer)}.
+ * </p>
+ */
+public class CacheStatisticsProvider
+    implements StatisticsProvider
+{
+    private static final CacheStatistics.Group[] GROUPS = CacheStatistics.Group.values();
+
+    private final CoralCore coral;
+
+    private final MuninGraph[] graphs;
+
+    /**
+     * Creates a statistics provider instance.
+     * 
+     * @param coral the Coral component hub.
+     * @param fileSystem the file system, for loading graph configuration.
+     */
+    public CacheStatisticsProvider(CoralCore coral, FileSystem fileSystem)
+    {
+        this.coral = coral;
+        coral.getCacheStatistics().export(ManagementFactory.getPlatformMBeanServer());
+        graphs = new MuninGraph[] { new CacheHitRatioGraph(fileSystem),
+                        new CacheLoadGraph(fileSystem), new CacheLoadTimeGraph(fileSystem),
+                        new CacheEntriesGraph(fileSystem), new CacheEvictionsGraph(fileSystem) };
+    }
+
+    @Override
+    public MuninGraph[] getGraphs()
+    {
+        return graphs;
+    }
+
+    /**
+     * Sums up the statistics of all caches by group.
+     */
+    private Totals getTotals()
+    {
+        Totals totals = new Totals();
+        for(CacheStatistics cache : coral.getCacheStatistics().getAll())
+        {
+            int i = CacheStatistics.Group.valueOf(cache.getGroup().toUpperCase()).ordinal();
+            totals.hits[i] += cache.getHits();
+            totals.misses[i] += cache.getMisses();
+            totals.loads[i] += cache.getLoads();
+            totals.loadTime[i] += cache.getLoadTime();
+            totals.entries[i] += cache.getEntries();
+            totals.evictions[i] += cache.getEvictions();
+        }
+        return totals;
+    }
+
+    private static class Totals
+    {
+        private final long[] hits = new long[GROUPS.length];
+
+        private final long[] misses = new long[GROUPS.length];
+
+        private final long[] loads = new long[GROUPS.length];
+
+        private final long[] loadTime = new long[GROUPS.length];
+
+        private final long[] entries = new long[GROUPS.length];
+
+        private final long[] evictions = new long[GROUPS.length];
+    }
+
+    /**
+     * Base class of graphs that report a counter for each cache group.
+     */
+    public abstract class CacheCounterGraph
+        extends AbstractMuninGraph
+    {
+        public CacheCounterGraph(FileSystem fs)
+        {
+            super(fs);
+        }
+
+        public long getEntity()
+        {
+            return getValue(CacheStatistics.Group.ENTITY);
+        }
+
+        public long getResource()
+        {
+            return getValue(CacheStatistics.Group.RESOURCE);
+        }
+
+        public long getAssociation()
+        {
+            return getValue(CacheStatistics.Group.ASSOCIATION);
+        }
+
+        public long getPermission()
+        {
+            return getValue(CacheStatistics.Group.PERMISSION);
+        }
+
+        public long getAttribute()
+        {
+            return getValue(CacheStatistics.Group.ATTRIBUTE);
+        }
+
+        public long getHandler()
+        {
+            return getValue(CacheStatistics.Group.HANDLER);
+        }
+
+        protected abstract long getValue(CacheStatistics.Group group);
+    }
+
+    public class CacheHitRatioGraph
+        extends AbstractMuninGraph
+    {
+        private final long[] lastHits = new long[GROUPS.length];
+
+        private final long[] lastMisses = new long[GROUPS.length];
+
+        public CacheHitRatioGraph(FileSystem fs)
+        {
+            super(fs);
+        }
+
+        @Override
+        public String getId()
+        {
+            return "coral_cache_hit_ratio";
+        }
+
+        public double getEntity()
+        {
+            return getHitRatio(CacheStatistics.Group.ENTITY);
+        }
+
+        public double getResource()
+        {
+            return getHitRatio(CacheStatistics.Group.RESOURCE);
+        }
+
+        public double getAssociation()
+        {
+            return getHitRatio(CacheStatistics.Group.ASSOCIATION);
+        }
+
+        public double getPermission()
+        {
+            return getHitRatio(CacheStatistics.Group.PERMISSION);
+        }
+
+        public double getAttribute()
+        {
+            return getHitRatio(CacheStatistics.Group.ATTRIBUTE);
+        }
+
+        public double getHandler()
+        {
+            return getHitRatio(CacheStatistics.Group.HANDLER);
+        }
+
+        /**
+         * Returns the percentage of lookups served from the caches of the group since the previous
+         * call.
+         */
+        private synchronized double getHitRatio(CacheStatistics.Group group)
+        {
+            Totals totals = getTotals();
+            int i = group.ordinal();
+            long hits = totals.hits[i] - lastHits[i];
+            long lookups = hits + totals.misses[i] - lastMisses[i];
+            lastHits[i] = totals.hits[i];
+            lastMisses[i] = totals.misses[i];
+            return lookups > 0 ? 100.0 * hits / lookups : 0.0;
+        }
+    }
+
+    public class CacheLoadGraph
+        extends CacheCounterGraph
+    {
+        public CacheLoadGraph(FileSystem fs)
+        {
+            super(fs);
+        }
+
+        @Override
+        public String getId()
+        {
+            return "coral_cache_loads";
+        }
+
+        @Override
+        protected long getValue(CacheStatistics.Group group)
+        {
+            return getTotals().loads[group.ordinal()];
+        }
+    }
+
+    public class CacheLoadTimeGraph
+        extends AbstractMuninGraph
+    {
+        private final long[] lastLoads = new long[GROUPS.length];
+
+        private final long[] lastLoadTime = new long[GROUPS.length];
+
+        public CacheLoadTimeGraph(FileSystem fs)
+        {
+            super(fs);
+        }
+
+        @Override
+        public String getId()
+        {
+            return "coral_cache_load_time";
+        }
+
+        public double getEntity()
+        {
+            return getLoadTime(CacheStatistics.Group.ENTITY);
+        }
+
+        public double getResource()
+        {
+            return getLoadTime(CacheStatistics.Group.RESOURCE);
+        }
+
+        public double getAssociation()
+        {
+            return getLoadTime(CacheStatistics.Group.ASSOCIATION);
+        }
+
+        public double getPermission()
+        {
+            return getLoadTime(CacheStatistics.Group.PERMISSION);
+        }
+
+        public double getAttribute()
+        {
+            return getLoadTime(CacheStatistics.Group.ATTRIBUTE);
+        }
+
+        public double getHandler()
+        {
+            return getLoadTime(CacheStatistics.Group.HANDLER);
+        }
+
+        /**
+         * Returns average load time of the caches of the group since the previous call, in
+         * microseconds.
+         */
+        private synchronized double getLoadTime(CacheStatistics.Group group)
+        {
+            Totals totals = getTotals();
+            int i = group.ordinal();
+            long count = totals.loads[i] - lastLoads[i];
+            double time = count > 0 ? (totals.loadTime[i] - lastLoadTime[i]) / 1000.0 / count
+                : 0.0;
+            lastLoads[i] = totals.loads[i];
+            lastLoadTime[i] = totals.loadTime[i];
+            return time;
+        }
+    }
+
+    public class CacheEntriesGraph
+        extends CacheCounterGraph
+    {
+        public CacheEntriesGraph(FileSystem fs)
+        {
+            super(fs);
+        }
+
+        @Override
+        public String getId()
+        {
+            return "coral_cache_entries";
+        }
+
+        @Override
+        protected long getValue(CacheStatistics.Group group)
+        {
+            return getTotals().entries[group.ordinal()];
+        }
+    }
+
+    public class CacheEvictionsGraph
+        extends CacheCounterGraph
+    {
+        public CacheEvictionsGraph(FileSystem fs)
+        {
+            super(fs);
+        }
+
+        @Override
+        public String getId()
+        {
+            return "coral_cache_evictions";
+        }
+
+        @Override
+        protected long getValue(CacheStatistics.Group group)
+        {
+            return getTotals().evictions[group.ordinal()];
+        }
+    }
+}
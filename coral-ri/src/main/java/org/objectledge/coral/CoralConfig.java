@@ -1,6 +1,8 @@
 package org.objectledge.coral;
 
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Set;
 
 import org.jcontainer.dna.Configuration;
@@ -26,8 +28,8 @@ public class CoralConfig
     private final int sessionPoolSizePerUser;
 
     /**
-     * Interval between idle object eviction runs, in seconds. A negative value disables eviction
-     * completely.
+     * Interval between idle session eviction runs, in seconds. Zero or a negative value disables
+     * eviction completely.
      * 
      * @see #DEFAULT_SESSION_EVICTION_INTERVAL
      */
@@ -39,10 +41,27 @@ public class CoralConfig
     private final int sessionEvictionThreashold;
 
     /**
-     * Number of sessions checked for eviction eligibility per single eviction run. When negative
-     * value n is provided roughly -1/n objects in the pool will be tested.
+     * Names of the relations that should keep their contents in compressed bitmaps.
      */
-    private final int sessionTestsPerEvictionRun;
+    private final Set<String> bitmapRelations;
+
+    /**
+     * Paths of the subtrees that should be preloaded on startup. All resources are preloaded when
+     * empty.
+     */
+    private final Set<String> preloadRoots;
+
+    /**
+     * Names of the resource classes that should be preloaded on startup. Resources of all classes
+     * are preloaded when empty.
+     */
+    private final Set<String> preloadResourceClasses;
+
+    /**
+     * Names of the resource classes whose instances should be queried in memory, rather than in the
+     * database.
+     */
+    private final Set<String> memoryResidentClasses;
 
     /**
      * Default pool size per user.
@@ -59,12 +78,6 @@ public class CoralConfig
      */
     private static final int DEFAULT_SESSION_EVICTION_THRESHOLD = 60;
 
-    /**
-     * Default Number of tests per eviction run.
-     */
-    private static final int DEFAULT_SESSION_TESTS_PER_EVICTION_RUN = -DEFAULT_SESSION_EVICTION_THRESHOLD
-        / DEFAULT_SESSION_EVICTION_INTERVAL;
-
     /**
      * Creates a default Coral configuration.
      */
@@ -74,30 +87,128 @@ public class CoralConfig
         sessionPoolSizePerUser = DEFAULT_SESSION_POOL_SIZE_PER_SUBJECT;
         sessionEvictionInterval = DEFAULT_SESSION_EVICTION_INTERVAL;
         sessionEvictionThreashold = DEFAULT_SESSION_EVICTION_THRESHOLD;
-        sessionTestsPerEvictionRun = DEFAULT_SESSION_TESTS_PER_EVICTION_RUN;
+        bitmapRelations = Collections.emptySet();
+        preloadRoots = Collections.emptySet();
+        preloadResourceClasses = Collections.emptySet();
+        memoryResidentClasses = Collections.emptySet();
     }
 
     /**
-     * Crate s a Coral configuration object.
+     * Creates a Coral configuration object with no compressed relations, preloading all
+     * resources and querying all classes in the database.
      * 
      * @param features Enabled features.
-     * @param sessionPoolSizePerUser Interval between idle object eviction runs, in seconds. A
-     *        negative value disables eviction completely.
-     * @param sessionEvictionInterval Minimum idle time after which session becomes eligible for
+     * @param sessionPoolSizePerUser Maximum number of idle sessions pooled per subject.
+     * @param sessionEvictionInterval Interval between idle session eviction runs, in seconds. Zero
+     *        or a negative value disables eviction completely.
+     * @param sessionEvictionThreashold Minimum idle time after which session becomes eligible for
      *        eviction, in seconds.
+     */
+    public CoralConfig(Set<Feature> features, int sessionPoolSizePerUser,
+        int sessionEvictionInterval, int sessionEvictionThreashold)
+    {
+        this(features, sessionPoolSizePerUser, sessionEvictionInterval, sessionEvictionThreashold,
+                        Collections.<String> emptySet());
+    }
+
+    /**
+     * Creates a Coral configuration object with no compressed relations, preloading all
+     * resources and querying all classes in the database.
+     * 
+     * @param features Enabled features.
+     * @param sessionPoolSizePerUser Maximum number of idle sessions pooled per subject.
+     * @param sessionEvictionInterval Interval between idle session eviction runs, in seconds. Zero
+     *        or a negative value disables eviction completely.
      * @param sessionEvictionThreashold Minimum idle time after which session becomes eligible for
      *        eviction, in seconds.
-     * @param sessionTestsPerEvictionRun Number of sessions checked for eviction eligibility per
-     *        single eviction run.
+     * @param sessionTestsPerEvictionRun ignored, the session pool examines all idle sessions on
+     *        each eviction run.
+     * @deprecated use {@link #CoralConfig(Set, int, int, int)}.
      */
+    @Deprecated
     public CoralConfig(Set<Feature> features, int sessionPoolSizePerUser,
         int sessionEvictionInterval, int sessionEvictionThreashold, int sessionTestsPerEvictionRun)
+    {
+        this(features, sessionPoolSizePerUser, sessionEvictionInterval, sessionEvictionThreashold);
+    }
+
+    /**
+     * Creates a Coral configuration object preloading all resources and querying all classes in
+     * the database.
+     * 
+     * @param features Enabled features.
+     * @param sessionPoolSizePerUser Maximum number of idle sessions pooled per subject.
+     * @param sessionEvictionInterval Interval between idle session eviction runs, in seconds. Zero
+     *        or a negative value disables eviction completely.
+     * @param sessionEvictionThreashold Minimum idle time after which session becomes eligible for
+     *        eviction, in seconds.
+     * @param bitmapRelations Names of the relations that should keep their contents in compressed
+     *        bitmaps.
+     */
+    public CoralConfig(Set<Feature> features, int sessionPoolSizePerUser,
+        int sessionEvictionInterval, int sessionEvictionThreashold, Set<String> bitmapRelations)
+    {
+        this(features, sessionPoolSizePerUser, sessionEvictionInterval, sessionEvictionThreashold,
+                        bitmapRelations, Collections.<String> emptySet(),
+                        Collections.<String> emptySet());
+    }
+
+    /**
+     * Creates a Coral configuration object querying all classes in the database.
+     * 
+     * @param features Enabled features.
+     * @param sessionPoolSizePerUser Maximum number of idle sessions pooled per subject.
+     * @param sessionEvictionInterval Interval between idle session eviction runs, in seconds. Zero
+     *        or a negative value disables eviction completely.
+     * @param sessionEvictionThreashold Minimum idle time after which session becomes eligible for
+     *        eviction, in seconds.
+     * @param bitmapRelations Names of the relations that should keep their contents in compressed
+     *        bitmaps.
+     * @param preloadRoots Paths of the subtrees that should be preloaded on startup, or empty set
+     *        to preload all resources.
+     * @param preloadResourceClasses Names of the resource classes that should be preloaded on
+     *        startup, or empty set to preload resources of all classes.
+     */
+    public CoralConfig(Set<Feature> features, int sessionPoolSizePerUser,
+        int sessionEvictionInterval, int sessionEvictionThreashold, Set<String> bitmapRelations,
+        Set<String> preloadRoots, Set<String> preloadResourceClasses)
+    {
+        this(features, sessionPoolSizePerUser, sessionEvictionInterval, sessionEvictionThreashold,
+                        bitmapRelations, preloadRoots, preloadResourceClasses,
+                        Collections.<String> emptySet());
+    }
+
+    /**
+     * Creates a Coral configuration object.
+     * 
+     * @param features Enabled features.
+     * @param sessionPoolSizePerUser Maximum number of idle sessions pooled per subject.
+     * @param sessionEvictionInterval Interval between idle session eviction runs, in seconds. Zero
+     *        or a negative value disables eviction completely.
+     * @param sessionEvictionThreashold Minimum idle time after which session becomes eligible for
+     *        eviction, in seconds.
+     * @param bitmapRelations Names of the relations that should keep their contents in compressed
+     *        bitmaps.
+     * @param preloadRoots Paths of the subtrees that should be preloaded on startup, or empty set
+     *        to preload all resources.
+     * @param preloadResourceClasses Names of the resource classes that should be preloaded on
+     *        startup, or empty set to preload resources of all classes.
+     * @param memoryResidentClasses Names of the resource classes whose instances should be queried
+     *        in memory.
+     */
+    public CoralConfig(Set<Feature> features, int sessionPoolSizePerUser,
+        int sessionEvictionInterval, int sessionEvictionThreashold, Set<String> bitmapRelations,
+        Set<String> preloadRoots, Set<String> preloadResourceClasses,
+        Set<String> memoryResidentClasses)
     {
         this.features = features;
         this.sessionPoolSizePerUser = sessionPoolSizePerUser;
         this.sessionEvictionInterval = sessionEvictionInterval;
         this.sessionEvictionThreashold = sessionEvictionThreashold;
-        this.sessionTestsPerEvictionRun = sessionTestsPerEvictionRun;
+        this.bitmapRelations = bitmapRelations;
+        this.preloadRoots = preloadRoots;
+        this.preloadResourceClasses = preloadResourceClasses;
+        this.memoryResidentClasses = memoryResidentClasses;
     }
 
     /**
@@ -132,8 +243,33 @@ public class CoralConfig
             DEFAULT_SESSION_EVICTION_INTERVAL);
         sessionEvictionThreashold = sessionPoolConfig.getChild("evictionThreshold")
             .getValueAsInteger(DEFAULT_SESSION_EVICTION_THRESHOLD);
-        sessionTestsPerEvictionRun = sessionPoolConfig.getChild("testPerEvictionRun")
-            .getValueAsInteger(DEFAULT_SESSION_TESTS_PER_EVICTION_RUN);
+        Set<String> relationSet = new HashSet<String>();
+        for(Configuration relationConfig : config.getChild("relations").getChildren(
+            "bitmapStorage"))
+        {
+            relationSet.add(relationConfig.getValue());
+        }
+        bitmapRelations = relationSet;
+        Configuration preloadConfig = config.getChild("resourcePreload");
+        Set<String> rootSet = new HashSet<String>();
+        for(Configuration rootConfig : preloadConfig.getChildren("root"))
+        {
+            rootSet.add(rootConfig.getValue());
+        }
+        preloadRoots = rootSet;
+        Set<String> classSet = new HashSet<String>();
+        for(Configuration classConfig : preloadConfig.getChildren("resourceClass"))
+        {
+            classSet.add(classConfig.getValue());
+        }
+        preloadResourceClasses = classSet;
+        Set<String> residentSet = new HashSet<String>();
+        for(Configuration classConfig : config.getChild("query").getChildren(
+            "memoryResidentClass"))
+        {
+            residentSet.add(classConfig.getValue());
+        }
+        memoryResidentClasses = residentSet;
     }
 
     /**
@@ -157,9 +293,10 @@ public class CoralConfig
     }
 
     /**
-     * Returns minimum idle time after which session becomes eligible for eviction, in seconds.
+     * Returns interval between idle session eviction runs, in seconds.
      * 
-     * @return minimum idle time after which session becomes eligible for eviction, in seconds.
+     * @return interval between idle session eviction runs, in seconds, negative when eviction is
+     *         disabled.
      */
     public int getSessionEvictionInterval()
     {
@@ -178,12 +315,45 @@ public class CoralConfig
     }
 
     /**
-     * Returns number of sessions checked for eviction eligibility per single eviction run.
+     * Returns names of the relations that should keep their contents in compressed bitmaps.
+     * 
+     * @return names of the relations that should keep their contents in compressed bitmaps.
+     */
+    public Set<String> getBitmapRelations()
+    {
+        return bitmapRelations;
+    }
+
+    /**
+     * Returns paths of the subtrees that should be preloaded on startup.
+     * 
+     * @return paths of the subtrees that should be preloaded on startup, empty when all resources
+     *         should be preloaded.
+     */
+    public Set<String> getPreloadRoots()
+    {
+        return preloadRoots;
+    }
+
+    /**
+     * Returns names of the resource classes that should be preloaded on startup.
+     * 
+     * @return names of the resource classes that should be preloaded on startup, empty when
+     *         resources of all classes should be preloaded.
+     */
+    public Set<String> getPreloadResourceClasses()
+    {
+        return preloadResourceClasses;
+    }
+
+    /**
+     * Returns names of the resource classes whose instances should be queried in memory.
      * 
-     * @return number of sessions checked for eviction eligibility per single eviction run.
+     * @return names of the resource classes whose instances should be queried in memory, rather
+     *         than in the database.
      */
-    public int getSessionTestsPerEvictionRun()
+    public Set<String> getMemoryResidentClasses()
     {
-        return sessionTestsPerEvictionRun;
+        return memoryResidentClasses;
     }
 }
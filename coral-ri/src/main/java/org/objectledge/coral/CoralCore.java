@@ -148,6 +148,13 @@ public interface CoralCore
      */
     public CacheFactory getCacheFactory();
 
+    /**
+     * Returns the statistics of Coral caches.
+     *
+     * @return the cache statistics registry.
+     */
+    public CacheStatisticsRegistry getCacheStatistics();
+
     /**
      * Returns the RMLParserFactory.
      * 
@@ -213,6 +220,18 @@ public interface CoralCore
     public Subject getCurrentSubject()
         throws IllegalStateException;
     
+    // startup //////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the scheduler used for startup data preloading.
+     * 
+     * <p>Preloading participants may use it to execute independent steps in parallel. The
+     * scheduler executes steps sequentially outside of startup preloading.</p>
+     * 
+     * @return the preload scheduler.
+     */
+    public PreloadScheduler getPreloadScheduler();
+    
     // utility //////////////////////////////////////////////////////////////
     
     /**
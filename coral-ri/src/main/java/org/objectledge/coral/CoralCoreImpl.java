@@ -27,6 +27,7 @@
 // 
 package org.objectledge.coral;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -113,8 +114,16 @@ public class CoralCoreImpl
 
     private final CacheFactory cacheFactory;
 
+    private final CacheStatisticsRegistry cacheStatistics = new CacheStatisticsRegistry();
+
     private final CoralConfig coralConfig;
 
+    private PreloadScheduler preloadScheduler;
+
+    /** Maximum number of threads used for startup data preloading. */
+    private static final int PRELOAD_THREADS = Math.min(4, Runtime.getRuntime()
+        .availableProcessors());
+
     /**
      * Constructs a Coral instance.
      * 
@@ -168,17 +177,19 @@ public class CoralCoreImpl
         CoralConfig coralConfig)
     {
         this.log = log;
+        preloadScheduler = new PreloadScheduler(0, log);
         container = new DefaultPicoContainer(new DefaultComponentAdapterFactory(), parentContainer);
         // register global dependencies
         container.registerComponentInstance(Persistence.class, persistence);
         container.registerComponentInstance(Database.class, persistence.getDatabase());
         container.registerComponentInstance(CacheFactory.class, cacheFactory);
+        container.registerComponentInstance(CacheStatisticsRegistry.class, cacheStatistics);
         container.registerComponentInstance(EventWhiteboardFactory.class, eventWhiteboardFactory);
         container.registerComponentInstance(Logger.class, log);
         // register self
         container.registerComponentInstance(CoralCore.class, this);
         // events
-        CoralEventHub coralEventHub = new CoralEventHubImpl(eventWhiteboardFactory, null);
+        CoralEventHub coralEventHub = new CoralEventHubImpl(eventWhiteboardFactory, null, log);
         container.registerComponentInstance(CoralEventHub.class, coralEventHub);
         coralEventWhiteboard = coralEventHub.getGlobal();
         // instantiator
@@ -238,6 +249,7 @@ public class CoralCoreImpl
                 participants.add((PreloadingParticipant)((ComponentAdapter)adapter)
                     .getComponentInstance(container));
             }
+            preloadScheduler = new PreloadScheduler(PRELOAD_THREADS, log);
             try
             {
                 preloadData(participants);
@@ -246,6 +258,10 @@ public class CoralCoreImpl
             {
                 throw new ComponentInitializationError("startup failed", e);
             }
+            finally
+            {
+                preloadScheduler.shutdown();
+            }
         }
     }
 
@@ -254,7 +270,7 @@ public class CoralCoreImpl
      */
     public void stop()
     {
-        // I wish Startable iterface was split back into Startable/Stoppable
+        cacheStatistics.unexport();
     }
 
     // configuration ////////////////////////////////////////////////////////////////////////////
@@ -365,6 +381,14 @@ public class CoralCoreImpl
         return cacheFactory;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public CacheStatisticsRegistry getCacheStatistics()
+    {
+        return cacheStatistics;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -479,21 +503,52 @@ public class CoralCoreImpl
 
     // startup //////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * {@inheritDoc}
+     */
+    public PreloadScheduler getPreloadScheduler()
+    {
+        return preloadScheduler;
+    }
+
     private void preloadData(Set<PreloadingParticipant> participants)
         throws Exception
     {
-        SortedMap<Integer, PreloadingParticipant> order = new TreeMap();
+        SortedMap<Integer, List<PreloadingParticipant>> order = new TreeMap<>();
         for(PreloadingParticipant participant : participants)
         {
             for(int phase : participant.getPhases())
             {
-                order.put(phase, participant);
+                List<PreloadingParticipant> phaseParticipants = order.get(phase);
+                if(phaseParticipants == null)
+                {
+                    phaseParticipants = new ArrayList<>();
+                    order.put(phase, phaseParticipants);
+                }
+                phaseParticipants.add(participant);
             }
         }
-        for(int phase : order.keySet())
+        long time = System.currentTimeMillis();
+        for(final int phase : order.keySet())
         {
-            order.get(phase).preloadData(phase);
+            List<PreloadScheduler.Step> steps = new ArrayList<>();
+            for(final PreloadingParticipant participant : order.get(phase))
+            {
+                steps.add(new PreloadScheduler.Step("phase" + phase + ":"
+                    + participant.getClass().getSimpleName())
+                    {
+                        public void run()
+                            throws Exception
+                        {
+                            participant.preloadData(phase);
+                        }
+                    });
+            }
+            // participants of the same phase are independent
+            preloadScheduler.execute(steps);
         }
+        time = System.currentTimeMillis() - time;
+        log.info("finished preloading in " + time + "ms");
     }
 
     public Logger getLog()
@@ -44,5 +44,11 @@ public enum Feature
     /**
      * Throwing exceptions when an attempt to create a resource with invalid name is made.
      */
-    RESOURCE_NAME_VALIDITY_ENFORCEMENT
+    RESOURCE_NAME_VALIDITY_ENFORCEMENT,
+
+    /**
+     * Bulk loading of resource instances into the caches on system startup. Takes effect together
+     * with {@link #PRELOAD}.
+     */
+    RESOURCE_PRELOAD
 }
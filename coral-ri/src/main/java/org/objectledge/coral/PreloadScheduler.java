@@ -0,0 +1,224 @@
+package org.objectledge.coral;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jcontainer.dna.Logger;
+
+/**
+ * Executes independent steps of startup data preloading in parallel, and records their timings.
+ * <p>
+ * Steps are submitted to a bounded thread pool. The thread waiting for a group of steps runs the
+ * steps not yet picked up by the pool itself, so that steps may submit nested groups without
+ * exhausting the pool. Once the scheduler is shut down, steps are executed sequentially by the
+ * calling thread.
+ * </p>
+ * <p>
+ * Steps that load data from the database should obtain their own connections.
+ * </p>
+ */
+public class PreloadScheduler
+{
+    private final Logger log;
+
+    private final ExecutorService executor;
+
+    /** Step name -&gt; execution time in milliseconds, in completion order. */
+    private final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+
+    /**
+     * Creates a scheduler instance.
+     *
+     * @param threads maximum number of threads used to run steps, 0 to run steps sequentially.
+     * @param log the logger.
+     */
+    public PreloadScheduler(int threads, Logger log)
+    {
+        this.log = log;
+        if(threads > 0)
+        {
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+                {
+                    private final AtomicInteger counter = new AtomicInteger();
+
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread thread = new Thread(r, "Coral preload " + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        }
+        else
+        {
+            executor = null;
+        }
+    }
+
+    /**
+     * Executes a single step in the calling thread.
+     *
+     * @param step the step.
+     * @throws Exception if the step fails.
+     */
+    public void execute(Step step)
+        throws Exception
+    {
+        new TimedStep(step).call();
+    }
+
+    /**
+     * Executes a group of independent steps, and waits for all of them to complete.
+     *
+     * @param steps the steps.
+     * @throws Exception the failure of the first failed step, after all steps have completed.
+     */
+    public void execute(List<? extends Step> steps)
+        throws Exception
+    {
+        List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(steps.size());
+        for(Step step : steps)
+        {
+            tasks.add(new FutureTask<Void>(new TimedStep(step)));
+        }
+        if(executor != null && !executor.isShutdown())
+        {
+            for(int i = 1; i < tasks.size(); i++)
+            {
+                executor.execute(tasks.get(i));
+            }
+        }
+        Exception failure = null;
+        for(FutureTask<Void> task : tasks)
+        {
+            // no-op if the task was already started by the pool
+            task.run();
+            try
+            {
+                task.get();
+            }
+            catch(ExecutionException e)
+            {
+                if(failure == null)
+                {
+                    failure = e.getCause() instanceof Exception ? (Exception)e.getCause()
+                        : new BackendException("preloading failed", e.getCause());
+                }
+            }
+        }
+        if(failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * Releases the threads of the scheduler. Steps executed afterwards are run sequentially.
+     */
+    public void shutdown()
+    {
+        if(executor != null)
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Returns the execution times of the completed steps.
+     *
+     * @return step name -&gt; execution time in milliseconds.
+     */
+    public Map<String, Long> getTimings()
+    {
+        synchronized(timings)
+        {
+            return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(timings));
+        }
+    }
+
+    /**
+     * Returns the execution time of a step.
+     *
+     * @param name the step name.
+     * @return execution time in milliseconds, or -1 if the step was not executed.
+     */
+    public long getTiming(String name)
+    {
+        synchronized(timings)
+        {
+            Long time = timings.get(name);
+            return time != null ? time.longValue() : -1L;
+        }
+    }
+
+    /**
+     * A step of data preloading.
+     */
+    public abstract static class Step
+    {
+        private final String name;
+
+        /**
+         * Creates a step.
+         *
+         * @param name the name of the step, used for logging and statistics.
+         */
+        public Step(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Returns the name of the step.
+         *
+         * @return the name of the step.
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Performs the step.
+         *
+         * @throws Exception if a fatal error occurs in preloading.
+         */
+        public abstract void run()
+            throws Exception;
+    }
+
+    private class TimedStep
+        implements Callable<Void>
+    {
+        private final Step step;
+
+        public TimedStep(Step step)
+        {
+            this.step = step;
+        }
+
+        public Void call()
+            throws Exception
+        {
+            long time = System.currentTimeMillis();
+            step.run();
+            time = System.currentTimeMillis() - time;
+            synchronized(timings)
+            {
+                timings.put(step.getName(), time);
+            }
+            log.info("preloaded " + step.getName() + " in " + time + "ms");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.objectledge.coral;
+
+import java.util.Map;
+
+import org.objectledge.filesystem.FileSystem;
+import org.objectledge.statistics.AbstractMuninGraph;
+import org.objectledge.statistics.MuninGraph;
+import org.objectledge.statistics.StatisticsProvider;
+
+/**
+ * Reports the timings of startup data preloading.
+ */
+public class PreloadStatistics
+    implements StatisticsProvider
+{
+    private final CoralCore coral;
+
+    private final MuninGraph[] graphs;
+
+    /**
+     * Creates a statistics provider instance.
+     * 
+     * @param coral the Coral component hub.
+     * @param fileSystem the file system, for loading graph configuration.
+     */
+    public PreloadStatistics(CoralCore coral, FileSystem fileSystem)
+    {
+        this.coral = coral;
+        graphs = new MuninGraph[] { new PreloadGraph(fileSystem) };
+    }
+
+    @Override
+    public MuninGraph[] getGraphs()
+    {
+        return graphs;
+    }
+
+    public class PreloadGraph
+        extends AbstractMuninGraph
+    {
+        public PreloadGraph(FileSystem fs)
+        {
+            super(fs);
+        }
+
+        @Override
+        public String getId()
+        {
+            return "coral_preload";
+        }
+
+        public long getPhase1()
+        {
+            return getPhase(1);
+        }
+
+        public long getPhase3()
+        {
+            return getPhase(3);
+        }
+
+        public long getPhase4()
+        {
+            return getPhase(4);
+        }
+
+        public long getPhase5()
+        {
+            return getPhase(5);
+        }
+
+        public long getPhase6()
+        {
+            return getPhase(6);
+        }
+
+        public long getAttributeClasses()
+        {
+            return getStep("attributeClasses");
+        }
+
+        public long getResourceClasses()
+        {
+            return getStep("resourceClasses");
+        }
+
+        public long getRoles()
+        {
+            return getStep("roles");
+        }
+
+        public long getSubjects()
+        {
+            return getStep("subjects");
+        }
+
+        public long getPermissions()
+        {
+            return getStep("permissions");
+        }
+
+        public long getAttributeDefinitions()
+        {
+            return getStep("attributeDefinitions");
+        }
+
+        public long getResourceClassInheritance()
+        {
+            return getStep("resourceClassInheritance");
+        }
+
+        public long getRoleImplications()
+        {
+            return getStep("roleImplications");
+        }
+
+        public long getRoleAssignments()
+        {
+            return getStep("roleAssignments");
+        }
+
+        public long getPermissionAssociations()
+        {
+            return getStep("permissionAssociations");
+        }
+
+        public long getPermissionAssignments()
+        {
+            return getStep("permissionAssignments");
+        }
+
+        private long getStep(String name)
+        {
+            return Math.max(0L, coral.getPreloadScheduler().getTiming(name));
+        }
+
+        /**
+         * Returns the longest time spent by a participant in the phase, which is the duration of
+         * the phase when the participants run in parallel.
+         */
+        private long getPhase(int phase)
+        {
+            String prefix = "phase" + phase + ":";
+            long time = 0L;
+            for(Map.Entry<String, Long> entry : coral.getPreloadScheduler().getTimings()
+                .entrySet())
+            {
+                if(entry.getKey().startsWith(prefix))
+                {
+                    time = Math.max(time, entry.getValue().longValue());
+                }
+            }
+            return time;
+        }
+    }
+}
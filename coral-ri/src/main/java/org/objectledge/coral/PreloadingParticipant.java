@@ -38,8 +38,8 @@ public interface PreloadingParticipant
     /**
      * Returns the identifiers of preloading phases the component participates in.
      * 
-     * <p>Lower phases are executed first. Components that specify the same phase identifier will
-     * be invoked in unspecified order.</p>
+     * <p>Lower phases are executed first. Components that specify the same phase identifier may
+     * be invoked concurrently, and must not depend on each other.</p>
      * 
      * @return the identifiers of preloading phases the component participates in.
      */
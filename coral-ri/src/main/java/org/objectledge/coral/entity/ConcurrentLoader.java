@@ -0,0 +1,139 @@
+package org.objectledge.coral.entity;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.objectledge.coral.BackendException;
+
+/**
+ * Loads entities missing from a cache, so that concurrent requests for the same entity are served
+ * by a single load.
+ * <p>
+ * The first thread requesting an entity that is not being loaded performs the load, while the
+ * other threads requesting the same entity wait for its outcome, including the exception, if any.
+ * Implementations should check their cache again in {@link #loadEntity(long)}, since the entity
+ * may have been cached by a load that completed just before.
+ * </p>
+ *
+ * @param <E> the entity type.
+ */
+public abstract class ConcurrentLoader<E extends Entity>
+{
+    /** Loads in progress. */
+    private final ConcurrentMap<Long, FutureTask<E>> pending = new ConcurrentHashMap<Long, FutureTask<E>>();
+
+    /** Number of loads performed. */
+    private final AtomicLong loadCount = new AtomicLong();
+
+    /** Number of requests that waited for a load performed by another thread. */
+    private final AtomicLong sharedLoadCount = new AtomicLong();
+
+    /**
+     * Returns the entity with the given identifier, loading it if another thread is not loading it
+     * already.
+     *
+     * @param id the identifier of the entity.
+     * @return the entity.
+     * @throws EntityDoesNotExistException if the entity does not exist.
+     */
+    public E load(final long id)
+        throws EntityDoesNotExistException
+    {
+        Long idObj = Long.valueOf(id);
+        FutureTask<E> task = pending.get(idObj);
+        if(task == null)
+        {
+            FutureTask<E> newTask = new FutureTask<E>(new Callable<E>()
+                {
+                    public E call()
+                        throws EntityDoesNotExistException
+                    {
+                        loadCount.incrementAndGet();
+                        return loadEntity(id);
+                    }
+                });
+            task = pending.putIfAbsent(idObj, newTask);
+            if(task == null)
+            {
+                try
+                {
+                    newTask.run();
+                }
+                finally
+                {
+                    pending.remove(idObj, newTask);
+                }
+                task = newTask;
+            }
+            else
+            {
+                sharedLoadCount.incrementAndGet();
+            }
+        }
+        else
+        {
+            sharedLoadCount.incrementAndGet();
+        }
+        try
+        {
+            return task.get();
+        }
+        catch(ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if(cause instanceof EntityDoesNotExistException)
+            {
+                throw (EntityDoesNotExistException)cause;
+            }
+            if(cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+            if(cause instanceof Error)
+            {
+                throw (Error)cause;
+            }
+            throw new BackendException("failed to load entity #" + id, cause);
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new BackendException("interrupted while loading entity #" + id, e);
+        }
+    }
+
+    /**
+     * Returns the number of loads performed.
+     *
+     * @return the number of loads performed.
+     */
+    public long getLoadCount()
+    {
+        return loadCount.get();
+    }
+
+    /**
+     * Returns the number of requests that were served by a load performed on behalf of another
+     * thread.
+     *
+     * @return the number of requests that were served by a shared load.
+     */
+    public long getSharedLoadCount()
+    {
+        return sharedLoadCount.get();
+    }
+
+    /**
+     * Loads the entity and puts it into the cache.
+     *
+     * @param id the identifier of the entity.
+     * @return the entity.
+     * @throws EntityDoesNotExistException if the entity does not exist.
+     */
+    protected abstract E loadEntity(long id)
+        throws EntityDoesNotExistException;
+}
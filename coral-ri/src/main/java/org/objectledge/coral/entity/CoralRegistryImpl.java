@@ -17,8 +17,11 @@ import org.objectledge.cache.CacheFactory;
 import org.objectledge.collections.ImmutableHashSet;
 import org.objectledge.collections.ImmutableSet;
 import org.objectledge.coral.BackendException;
+import org.objectledge.coral.CacheStatistics;
+import org.objectledge.coral.CacheStatisticsRegistry;
 import org.objectledge.coral.CoralCore;
 import org.objectledge.coral.Instantiator;
+import org.objectledge.coral.PreloadScheduler;
 import org.objectledge.coral.PreloadingParticipant;
 import org.objectledge.coral.event.CoralEventHub;
 import org.objectledge.coral.event.PermissionAssignmentChangeListener;
@@ -167,6 +170,33 @@ public class CoralRegistryImpl
      */
     private Map<Role, Set<PermissionAssignment>> permissionAssignmentByRole;
 
+    /** Statistics of attributeDefinitionByResourceClass. */
+    private CacheStatistics attributeDefinitionByResourceClassStatistics;
+
+    /** Statistics of resourceClassInheritanceByResourceClass. */
+    private CacheStatistics resourceClassInheritanceByResourceClassStatistics;
+
+    /** Statistics of roleImplicationByRole. */
+    private CacheStatistics roleImplicationByRoleStatistics;
+
+    /** Statistics of roleAssignmentBySubject. */
+    private CacheStatistics roleAssignmentBySubjectStatistics;
+
+    /** Statistics of roleAssignmentByRole. */
+    private CacheStatistics roleAssignmentByRoleStatistics;
+
+    /** Statistics of permissionAssociationByResourceClass. */
+    private CacheStatistics permissionAssociationByResourceClassStatistics;
+
+    /** Statistics of permissionAssociationByPermission. */
+    private CacheStatistics permissionAssociationByPermissionStatistics;
+
+    /** Statistics of permissionAssignmentByResource. */
+    private CacheStatistics permissionAssignmentByResourceStatistics;
+
+    /** Statistics of permissionAssignmentByRole. */
+    private CacheStatistics permissionAssignmentByRoleStatistics;
+
     // Registires
 
     /** <code>ResourceClass</code> registry. */
@@ -203,22 +233,43 @@ public class CoralRegistryImpl
     public CoralRegistryImpl(Persistence persistence, CacheFactory cacheFactory,
         CoralEventHub coralEventHub, CoralCore coral, Instantiator instantiator, Logger log)
         throws ConfigurationException
+    {
+        this(persistence, cacheFactory, new CacheStatisticsRegistry(), coralEventHub, coral,
+                        instantiator, log);
+    }
+
+    /**
+     * Constructs the {@link CoralRegistry} implementation.
+     * 
+     * @param persistence the persistence subsystem
+     * @param cacheFactory the cache factory.
+     * @param cacheStatistics the registry of cache statistics.
+     * @param coralEventHub the event hub.
+     * @param coral the component hub.
+     * @param instantiator component instantiator.
+     * @param log the logger.
+     * @throws ConfigurationException if the configuration is invalid.
+     */
+    public CoralRegistryImpl(Persistence persistence, CacheFactory cacheFactory,
+        CacheStatisticsRegistry cacheStatistics, CoralEventHub coralEventHub, CoralCore coral,
+        Instantiator instantiator, Logger log)
+        throws ConfigurationException
     {
         this.persistence = persistence;
         this.coralEventHub = coralEventHub;
         this.coral = coral;
         this.log = log;
 
-        setupCaches(cacheFactory);
+        setupCaches(cacheFactory, cacheStatistics);
         setupFactories(instantiator);
-        setupRegistries(cacheFactory, instantiator);
+        setupRegistries(cacheFactory, cacheStatistics, instantiator);
         setupListener();
     }
 
     /**
      * Sets up the instance chaces for reflection objects.
      */
-    private void setupCaches(CacheFactory cacheFactory)
+    private void setupCaches(CacheFactory cacheFactory, CacheStatisticsRegistry cacheStatistics)
     {
         attributeDefinitionByResourceClass = new WeakHashMap<>();
         resourceClassInheritanceByResourceClass = new WeakHashMap<>();
@@ -247,6 +298,36 @@ public class CoralRegistryImpl
             .registerForPeriodicExpunge((WeakHashMap<?, ?>)permissionAssociationByPermission);
         cacheFactory.registerForPeriodicExpunge((WeakHashMap<?, ?>)permissionAssignmentByRole);
         cacheFactory.registerForPeriodicExpunge((WeakHashMap<?, ?>)permissionAssignmentByResource);
+
+        attributeDefinitionByResourceClassStatistics = register(cacheStatistics,
+            "coral.attributeDefinitionByResourceClass", attributeDefinitionByResourceClass,
+            resourceClassLock);
+        resourceClassInheritanceByResourceClassStatistics = register(cacheStatistics,
+            "coral.resourceClassInheritanceByResourceClass",
+            resourceClassInheritanceByResourceClass, resourceClassLock);
+        roleImplicationByRoleStatistics = register(cacheStatistics,
+            "coral.roleImplicationByRole", roleImplicationByRole, roleLock);
+        roleAssignmentBySubjectStatistics = register(cacheStatistics,
+            "coral.roleAssignmentBySubject", roleAssignmentBySubject, roleLock);
+        roleAssignmentByRoleStatistics = register(cacheStatistics,
+            "coral.roleAssignmentByRole", roleAssignmentByRole, roleLock);
+        permissionAssociationByResourceClassStatistics = register(cacheStatistics,
+            "coral.permissionAssociationByResourceClass", permissionAssociationByResourceClass,
+            permissionLock);
+        permissionAssociationByPermissionStatistics = register(cacheStatistics,
+            "coral.permissionAssociationByPermission", permissionAssociationByPermission,
+            permissionLock);
+        permissionAssignmentByResourceStatistics = register(cacheStatistics,
+            "coral.permissionAssignmentByResource", permissionAssignmentByResource, permissionLock);
+        permissionAssignmentByRoleStatistics = register(cacheStatistics,
+            "coral.permissionAssignmentByRole", permissionAssignmentByRole, permissionLock);
+    }
+
+    private static CacheStatistics register(CacheStatisticsRegistry cacheStatistics, String name,
+        Map<?, ?> cache, Object lock)
+    {
+        return cacheStatistics.register(new CacheStatistics(CacheStatistics.Group.ASSOCIATION,
+            name, cache, lock));
     }
 
     private void setupFactories(Instantiator instantiator)
@@ -272,21 +353,23 @@ public class CoralRegistryImpl
      * Setup the entity registry.
      */
     @SuppressWarnings({ "unchecked", "rawtypes" })
-    private void setupRegistries(CacheFactory cacheFactory, Instantiator instantiator)
+    private void setupRegistries(CacheFactory cacheFactory,
+        CacheStatisticsRegistry cacheStatistics, Instantiator instantiator)
         throws ConfigurationException
     {
-        resourceClassRegistry = new EntityRegistry(persistence, cacheFactory, instantiator, log,
-            "resource class", ResourceClassImpl.class);
-        attributeClassRegistry = new EntityRegistry(persistence, cacheFactory, instantiator, log,
-            "attribute class", AttributeClassImpl.class);
-        attributeDefinitionRegistry = new EntityRegistry(persistence, cacheFactory, instantiator,
-            log, "attribute definition", AttributeDefinitionImpl.class);
-        permissionRegistry = new EntityRegistry<>(persistence, cacheFactory, instantiator, log,
-            "permission", PermissionImpl.class);
-        roleRegistry = new EntityRegistry<>(persistence, cacheFactory, instantiator, log, "role",
-            RoleImpl.class);
-        subjectRegistry = new EntityRegistry<>(persistence, cacheFactory, instantiator, log,
-            "subject", SubjectImpl.class);
+        resourceClassRegistry = new EntityRegistry(persistence, cacheFactory, cacheStatistics,
+            instantiator, log, "resource class", ResourceClassImpl.class);
+        attributeClassRegistry = new EntityRegistry(persistence, cacheFactory, cacheStatistics,
+            instantiator, log, "attribute class", AttributeClassImpl.class);
+        attributeDefinitionRegistry = new EntityRegistry(persistence, cacheFactory,
+            cacheStatistics, instantiator, log, "attribute definition",
+            AttributeDefinitionImpl.class);
+        permissionRegistry = new EntityRegistry<>(persistence, cacheFactory, cacheStatistics,
+            instantiator, log, "permission", PermissionImpl.class);
+        roleRegistry = new EntityRegistry<>(persistence, cacheFactory, cacheStatistics,
+            instantiator, log, "role", RoleImpl.class);
+        subjectRegistry = new EntityRegistry<>(persistence, cacheFactory, cacheStatistics,
+            instantiator, log, "subject", SubjectImpl.class);
     }
 
     /**
@@ -577,6 +660,8 @@ public class CoralRegistryImpl
             HashSet items = (HashSet)attributeDefinitionByResourceClass.get(owner);
             if(items == null)
             {
+                attributeDefinitionByResourceClassStatistics.miss();
+                long startTime = System.nanoTime();
                 try
                 {
                     List list = persistence.load(attributeDefinitionFactory,
@@ -584,6 +669,8 @@ public class CoralRegistryImpl
                     items = new HashSet<AttributeDefinition<?>>();
                     attributeDefinitionRegistry.resolve(list, items);
                     attributeDefinitionByResourceClass.put(owner, items);
+                    attributeDefinitionByResourceClassStatistics.loaded(startTime);
+                    attributeDefinitionByResourceClassStatistics.stored();
                 }
                 catch(SQLException e)
                 {
@@ -591,6 +678,10 @@ public class CoralRegistryImpl
                         e);
                 }
             }
+            else
+            {
+                attributeDefinitionByResourceClassStatistics.hit();
+            }
             return (Set<AttributeDefinition<?>>)items.clone();
         }
     }
@@ -612,6 +703,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     attributeDefinitionByResourceClass.put(owner, items);
+                    attributeDefinitionByResourceClassStatistics.stored();
                 }
                 items.add(def);
             }
@@ -642,6 +734,7 @@ public class CoralRegistryImpl
             {
                 items = new HashSet<>();
                 attributeDefinitionByResourceClass.put(owner, items);
+                attributeDefinitionByResourceClassStatistics.stored();
             }
             items.add(item);
         }
@@ -685,6 +778,8 @@ public class CoralRegistryImpl
                 .get(owner);
             if(items == null)
             {
+                resourceClassInheritanceByResourceClassStatistics.miss();
+                long startTime = System.nanoTime();
                 try
                 {
                     List<? extends ResourceClassInheritance> list = persistence.load(
@@ -692,6 +787,8 @@ public class CoralRegistryImpl
                         owner.getId());
                     items = new HashSet<>(list);
                     resourceClassInheritanceByResourceClass.put(owner, items);
+                    resourceClassInheritanceByResourceClassStatistics.loaded(startTime);
+                    resourceClassInheritanceByResourceClassStatistics.stored();
                 }
                 catch(SQLException e)
                 {
@@ -699,6 +796,10 @@ public class CoralRegistryImpl
                         + owner, e);
                 }
             }
+            else
+            {
+                resourceClassInheritanceByResourceClassStatistics.hit();
+            }
             return (Set<ResourceClassInheritance>)items.clone();
         }
     }
@@ -725,6 +826,7 @@ public class CoralRegistryImpl
             {
                 items = new HashSet<>();
                 resourceClassInheritanceByResourceClass.put(parent, items);
+                resourceClassInheritanceByResourceClassStatistics.stored();
             }
             items.add(item);
             ResourceClass<?> child = item.getChild();
@@ -733,6 +835,7 @@ public class CoralRegistryImpl
             {
                 items = new HashSet<>();
                 resourceClassInheritanceByResourceClass.put(child, items);
+                resourceClassInheritanceByResourceClassStatistics.stored();
             }
             items.add(item);
         }
@@ -1209,18 +1312,26 @@ public class CoralRegistryImpl
                 .get(owner);
             if(items == null)
             {
+                roleImplicationByRoleStatistics.miss();
+                long startTime = System.nanoTime();
                 try
                 {
                     List<? extends RoleImplication> list = persistence.load(roleImplicationFactory,
                         "super_role = ? OR sub_role = ?", owner.getId(), owner.getId());
                     items = new HashSet<>(list);
                     roleImplicationByRole.put(owner, items);
+                    roleImplicationByRoleStatistics.loaded(startTime);
+                    roleImplicationByRoleStatistics.stored();
                 }
                 catch(SQLException e)
                 {
                     throw new BackendException("Failed to load RoleImplications for " + owner, e);
                 }
             }
+            else
+            {
+                roleImplicationByRoleStatistics.hit();
+            }
             return (Set<RoleImplication>)items.clone();
         }
     }
@@ -1246,6 +1357,7 @@ public class CoralRegistryImpl
             {
                 items = new HashSet<>();
                 roleImplicationByRole.put(superRole, items);
+                roleImplicationByRoleStatistics.stored();
             }
             items.add(item);
             Role subRole = item.getSubRole();
@@ -1254,6 +1366,7 @@ public class CoralRegistryImpl
             {
                 items = new HashSet<>();
                 roleImplicationByRole.put(subRole, items);
+                roleImplicationByRoleStatistics.stored();
             }
             items.add(item);
         }
@@ -1304,18 +1417,26 @@ public class CoralRegistryImpl
                 .get(owner);
             if(items == null)
             {
+                roleAssignmentBySubjectStatistics.miss();
+                long startTime = System.nanoTime();
                 try
                 {
                     List<? extends RoleAssignment> list = persistence.load(roleAssignmentFactory,
                         "subject_id = ?", owner.getId());
                     items = new HashSet<>(list);
                     roleAssignmentBySubject.put(owner, items);
+                    roleAssignmentBySubjectStatistics.loaded(startTime);
+                    roleAssignmentBySubjectStatistics.stored();
                 }
                 catch(SQLException e)
                 {
                     throw new BackendException("Failed to load RoleAssignments for " + owner, e);
                 }
             }
+            else
+            {
+                roleAssignmentBySubjectStatistics.hit();
+            }
             return (Set<RoleAssignment>)items.clone();
         }
     }
@@ -1331,18 +1452,26 @@ public class CoralRegistryImpl
                 .get(owner);
             if(items == null)
             {
+                roleAssignmentByRoleStatistics.miss();
+                long startTime = System.nanoTime();
                 try
                 {
                     List<? extends RoleAssignment> list = persistence.load(roleAssignmentFactory,
                         "role_id = ?", owner.getId());
                     items = new HashSet<>(list);
                     roleAssignmentByRole.put(owner, items);
+                    roleAssignmentByRoleStatistics.loaded(startTime);
+                    roleAssignmentByRoleStatistics.stored();
                 }
                 catch(SQLException e)
                 {
                     throw new BackendException("Failed to load RoleAssignments for " + owner, e);
                 }
             }
+            else
+            {
+                roleAssignmentByRoleStatistics.hit();
+            }
             return (Set<RoleAssignment>)items.clone();
         }
     }
@@ -1418,12 +1547,16 @@ public class CoralRegistryImpl
                 .get(owner);
             if(items == null)
             {
+                permissionAssociationByResourceClassStatistics.miss();
+                long startTime = System.nanoTime();
                 try
                 {
                     List<? extends PermissionAssociation> list = persistence.load(
                         permissionAssociationFactory, "resource_class_id = ?", owner.getId());
                     items = new HashSet<>(list);
                     permissionAssociationByResourceClass.put(owner, items);
+                    permissionAssociationByResourceClassStatistics.loaded(startTime);
+                    permissionAssociationByResourceClassStatistics.stored();
                 }
                 catch(SQLException e)
                 {
@@ -1431,6 +1564,10 @@ public class CoralRegistryImpl
                         "Failed to load PermissionAssociations for " + owner, e);
                 }
             }
+            else
+            {
+                permissionAssociationByResourceClassStatistics.hit();
+            }
             return (Set<PermissionAssociation>)items.clone();
         }
     }
@@ -1446,12 +1583,16 @@ public class CoralRegistryImpl
                 .get(owner);
             if(items == null)
             {
+                permissionAssociationByPermissionStatistics.miss();
+                long startTime = System.nanoTime();
                 try
                 {
                     List<? extends PermissionAssociation> list = persistence.load(
                         permissionAssociationFactory, "permission_id = ?", owner.getId());
                     items = new HashSet<>(list);
                     permissionAssociationByPermission.put(owner, items);
+                    permissionAssociationByPermissionStatistics.loaded(startTime);
+                    permissionAssociationByPermissionStatistics.stored();
                 }
                 catch(SQLException e)
                 {
@@ -1459,6 +1600,10 @@ public class CoralRegistryImpl
                         "Failed to load PermissionAssociations for " + owner, e);
                 }
             }
+            else
+            {
+                permissionAssociationByPermissionStatistics.hit();
+            }
             return (Set<PermissionAssociation>)items.clone();
         }
     }
@@ -1538,12 +1683,16 @@ public class CoralRegistryImpl
                 .get(owner);
             if(items == null)
             {
+                permissionAssignmentByResourceStatistics.miss();
+                long startTime = System.nanoTime();
                 try
                 {
                     List<? extends PermissionAssignment> list = persistence.load(
                         permissionAssignmentFactory, "resource_id = ?", owner.getId());
                     items = new HashSet<>(list);
                     permissionAssignmentByResource.put(owner, items);
+                    permissionAssignmentByResourceStatistics.loaded(startTime);
+                    permissionAssignmentByResourceStatistics.stored();
                 }
                 catch(SQLException e)
                 {
@@ -1551,6 +1700,10 @@ public class CoralRegistryImpl
                         e);
                 }
             }
+            else
+            {
+                permissionAssignmentByResourceStatistics.hit();
+            }
             return (Set<PermissionAssignment>)items.clone();
         }
     }
@@ -1566,12 +1719,16 @@ public class CoralRegistryImpl
                 .get(owner);
             if(items == null)
             {
+                permissionAssignmentByRoleStatistics.miss();
+                long startTime = System.nanoTime();
                 try
                 {
                     List<? extends PermissionAssignment> list = persistence.load(
                         permissionAssignmentFactory, "role_id = ?", owner.getId());
                     items = new HashSet<>(list);
                     permissionAssignmentByRole.put(owner, items);
+                    permissionAssignmentByRoleStatistics.loaded(startTime);
+                    permissionAssignmentByRoleStatistics.stored();
                 }
                 catch(SQLException e)
                 {
@@ -1579,6 +1736,10 @@ public class CoralRegistryImpl
                         e);
                 }
             }
+            else
+            {
+                permissionAssignmentByRoleStatistics.hit();
+            }
             return (Set<PermissionAssignment>)items.clone();
         }
     }
@@ -1795,6 +1956,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     roleImplicationByRole.put(superRole, items);
+                    roleImplicationByRoleStatistics.stored();
                 }
                 items.add(item);
             }
@@ -1813,6 +1975,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     roleImplicationByRole.put(subRole, items);
+                    roleImplicationByRoleStatistics.stored();
                 }
                 items.add(item);
             }
@@ -1837,6 +2000,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     resourceClassInheritanceByResourceClass.put(parent, items);
+                    resourceClassInheritanceByResourceClassStatistics.stored();
                 }
                 items.add(item);
             }
@@ -1855,6 +2019,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     resourceClassInheritanceByResourceClass.put(child, items);
+                    resourceClassInheritanceByResourceClassStatistics.stored();
                 }
                 items.add(item);
             }
@@ -1885,6 +2050,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     attributeDefinitionByResourceClass.put(owner, items);
+                    attributeDefinitionByResourceClassStatistics.stored();
                 }
                 items.add(item);
             }
@@ -2019,6 +2185,7 @@ public class CoralRegistryImpl
      * {@inheritDoc}
      */
     public void preloadData(int phase)
+        throws Exception
     {
         if(phase == 1)
         {
@@ -2035,40 +2202,104 @@ public class CoralRegistryImpl
     }
 
     private void preloadRegistryPhase1()
+        throws Exception
     {
         long time = System.currentTimeMillis();
         log.info("preloading entity registry phase 1");
-        log.info("preloading attribute classes");
-        attributeClassRegistry.get();
-        log.info("preloading resource classes");
-        resourceClassRegistry.get();
-        log.info("preloading attribute definitions");
-        attributeDefinitionRegistry.get();
-        preloadAttributeDefinitions();
-        log.info("preloading resource class inheritance");
-        preloadResourceClassInheritance();
-        log.info("preloading roles");
-        roleRegistry.get();
-        log.info("preloading subjects");
-        subjectRegistry.get();
-        log.info("preloading permissions");
-        permissionRegistry.get();
-        log.info("preloading role implications");
-        preloadRoleImplications();
-        log.info("preloading role assignments");
-        preloadRoleAssignments();
-        log.info("preloading permission associations");
-        preloadPermissionAssociations();
+        PreloadScheduler scheduler = coral.getPreloadScheduler();
+        // entities that do not refer to each other
+        List<PreloadScheduler.Step> steps = new ArrayList<>();
+        steps.add(new PreloadScheduler.Step("attributeClasses")
+            {
+                public void run()
+                {
+                    attributeClassRegistry.get();
+                }
+            });
+        steps.add(new PreloadScheduler.Step("resourceClasses")
+            {
+                public void run()
+                {
+                    resourceClassRegistry.get();
+                }
+            });
+        steps.add(new PreloadScheduler.Step("roles")
+            {
+                public void run()
+                {
+                    roleRegistry.get();
+                }
+            });
+        steps.add(new PreloadScheduler.Step("subjects")
+            {
+                public void run()
+                {
+                    subjectRegistry.get();
+                }
+            });
+        steps.add(new PreloadScheduler.Step("permissions")
+            {
+                public void run()
+                {
+                    permissionRegistry.get();
+                }
+            });
+        scheduler.execute(steps);
+        // relationships between the entities loaded above
+        steps.clear();
+        steps.add(new PreloadScheduler.Step("attributeDefinitions")
+            {
+                public void run()
+                {
+                    attributeDefinitionRegistry.get();
+                    preloadAttributeDefinitions();
+                }
+            });
+        steps.add(new PreloadScheduler.Step("resourceClassInheritance")
+            {
+                public void run()
+                {
+                    preloadResourceClassInheritance();
+                }
+            });
+        steps.add(new PreloadScheduler.Step("roleImplications")
+            {
+                public void run()
+                {
+                    preloadRoleImplications();
+                }
+            });
+        steps.add(new PreloadScheduler.Step("roleAssignments")
+            {
+                public void run()
+                {
+                    preloadRoleAssignments();
+                }
+            });
+        steps.add(new PreloadScheduler.Step("permissionAssociations")
+            {
+                public void run()
+                {
+                    preloadPermissionAssociations();
+                }
+            });
+        scheduler.execute(steps);
         time = System.currentTimeMillis() - time;
         log.info("finished preloading registry phase 1 in " + time + "ms");
     }
 
     private void preloadRegistryPhase2()
+        throws Exception
     {
         long time = System.currentTimeMillis();
         log.info("preloading entity registry phase 2");
-        log.info("preloading permission assignments");
-        preloadPermissionAssignments();
+        coral.getPreloadScheduler().execute(new PreloadScheduler.Step("permissionAssignments")
+            {
+                public void run()
+                {
+                    preloadPermissionAssignments();
+                }
+            });
         time = System.currentTimeMillis() - time;
         log.info("finished preloading registry phase 2 in " + time + "ms");
     }
@@ -2096,6 +2327,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     resourceClassInheritanceByResourceClass.put(item.getParent(), items);
+                    resourceClassInheritanceByResourceClassStatistics.stored();
                 }
                 items.add(item);
                 items = resourceClassInheritanceByResourceClass.get(item.getChild());
@@ -2103,6 +2335,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     resourceClassInheritanceByResourceClass.put(item.getChild(), items);
+                    resourceClassInheritanceByResourceClassStatistics.stored();
                 }
                 items.add(item);
             }
@@ -2114,6 +2347,7 @@ public class CoralRegistryImpl
                 {
                     resourceClassInheritanceByResourceClass.put(rc,
                         new HashSet<ResourceClassInheritance>());
+                    resourceClassInheritanceByResourceClassStatistics.stored();
                 }
             }
         }
@@ -2134,6 +2368,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     attributeDefinitionByResourceClass.put(owner, items);
+                    attributeDefinitionByResourceClassStatistics.stored();
                 }
                 items.add(item);
             }
@@ -2145,6 +2380,7 @@ public class CoralRegistryImpl
                 {
                     attributeDefinitionByResourceClass.put(rc,
                         new HashSet<AttributeDefinition<?>>());
+                    attributeDefinitionByResourceClassStatistics.stored();
                 }
             }
         }
@@ -2172,6 +2408,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     roleImplicationByRole.put(item.getSubRole(), items);
+                    roleImplicationByRoleStatistics.stored();
                 }
                 items.add(item);
                 items = roleImplicationByRole.get(item.getSuperRole());
@@ -2179,6 +2416,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     roleImplicationByRole.put(item.getSuperRole(), items);
+                    roleImplicationByRoleStatistics.stored();
                 }
                 items.add(item);
             }
@@ -2189,6 +2427,7 @@ public class CoralRegistryImpl
                 if(!roleImplicationByRole.containsKey(r))
                 {
                     roleImplicationByRole.put(r, new HashSet<RoleImplication>());
+                    roleImplicationByRoleStatistics.stored();
                 }
             }
         }
@@ -2216,6 +2455,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     roleAssignmentBySubject.put(item.getSubject(), items);
+                    roleAssignmentBySubjectStatistics.stored();
                 }
                 items.add(item);
                 items = roleAssignmentByRole.get(item.getRole());
@@ -2223,6 +2463,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     roleAssignmentByRole.put(item.getRole(), items);
+                    roleAssignmentByRoleStatistics.stored();
                 }
                 items.add(item);
             }
@@ -2233,6 +2474,7 @@ public class CoralRegistryImpl
                 if(!roleAssignmentBySubject.containsKey(s))
                 {
                     roleAssignmentBySubject.put(s, new HashSet<RoleAssignment>());
+                    roleAssignmentBySubjectStatistics.stored();
                 }
             }
             Iterator<? extends Role> k = roleRegistry.get().iterator();
@@ -2242,6 +2484,7 @@ public class CoralRegistryImpl
                 if(!roleAssignmentByRole.containsKey(r))
                 {
                     roleAssignmentByRole.put(r, new HashSet<RoleAssignment>());
+                    roleAssignmentByRoleStatistics.stored();
                 }
             }
         }
@@ -2270,6 +2513,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     permissionAssociationByResourceClass.put(item.getResourceClass(), items);
+                    permissionAssociationByResourceClassStatistics.stored();
                 }
                 items.add(item);
                 items = permissionAssociationByPermission.get(item.getPermission());
@@ -2277,6 +2521,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     permissionAssociationByPermission.put(item.getPermission(), items);
+                    permissionAssociationByPermissionStatistics.stored();
                 }
                 items.add(item);
             }
@@ -2288,6 +2533,7 @@ public class CoralRegistryImpl
                 {
                     permissionAssociationByResourceClass.put(rc,
                         new HashSet<PermissionAssociation>());
+                    permissionAssociationByResourceClassStatistics.stored();
                 }
             }
             Iterator<? extends Permission> k = permissionRegistry.get().iterator();
@@ -2297,6 +2543,7 @@ public class CoralRegistryImpl
                 if(!permissionAssociationByPermission.containsKey(p))
                 {
                     permissionAssociationByPermission.put(p, new HashSet<PermissionAssociation>());
+                    permissionAssociationByPermissionStatistics.stored();
                 }
             }
         }
@@ -2325,6 +2572,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     permissionAssignmentByResource.put(item.getResource(), items);
+                    permissionAssignmentByResourceStatistics.stored();
                 }
                 items.add(item);
                 items = permissionAssignmentByRole.get(item.getRole());
@@ -2332,6 +2580,7 @@ public class CoralRegistryImpl
                 {
                     items = new HashSet<>();
                     permissionAssignmentByRole.put(item.getRole(), items);
+                    permissionAssignmentByRoleStatistics.stored();
                 }
                 items.add(item);
             }
@@ -2343,6 +2592,7 @@ public class CoralRegistryImpl
                 if(!permissionAssignmentByResource.containsKey(r))
                 {
                     permissionAssignmentByResource.put(r, new HashSet<PermissionAssignment>());
+                    permissionAssignmentByResourceStatistics.stored();
                 }
             }
             Iterator<? extends Role> k = roleRegistry.get().iterator();
@@ -2352,6 +2602,7 @@ public class CoralRegistryImpl
                 if(!permissionAssignmentByRole.containsKey(r))
                 {
                     permissionAssignmentByRole.put(r, new HashSet<PermissionAssignment>());
+                    permissionAssignmentByRoleStatistics.stored();
                 }
             }
         }
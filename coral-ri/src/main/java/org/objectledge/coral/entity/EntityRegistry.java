@@ -13,6 +13,8 @@ import org.jcontainer.dna.ConfigurationException;
 import org.jcontainer.dna.Logger;
 import org.objectledge.cache.CacheFactory;
 import org.objectledge.coral.BackendException;
+import org.objectledge.coral.CacheStatistics;
+import org.objectledge.coral.CacheStatisticsRegistry;
 import org.objectledge.coral.Instantiator;
 import org.objectledge.database.persistence.Persistence;
 import org.objectledge.database.persistence.Persistent;
@@ -52,6 +54,15 @@ public class EntityRegistry<E extends Persistent & Entity>
     /** The "all" to entity set map. */
     private Map<String, Set<E>> all;
 
+    /** Statistics of byId. */
+    private CacheStatistics byIdStatistics;
+
+    /** Statistics of byName. */
+    private CacheStatistics byNameStatistics;
+
+    /** Statistics of all. */
+    private CacheStatistics allStatistics;
+
     /** Objects added through addSynthetic() */
     private Set<E> synthetics = new HashSet<E>();
 
@@ -61,6 +72,19 @@ public class EntityRegistry<E extends Persistent & Entity>
     /** The setName(String) method. */
     private Method setName;
 
+    /** Recent deletions, checked before a loaded entity is put into byId. Guarded by byId. */
+    private final RemovalLog removals = new RemovalLog();
+
+    /** Loads entities missing from byId, one load per entity at a time. */
+    private final ConcurrentLoader<E> loader = new ConcurrentLoader<E>()
+        {
+            protected E loadEntity(long id)
+                throws EntityDoesNotExistException
+            {
+                return loadFromStorage(id);
+            }
+        };
+
     /**
      * Creates a registry for the specific entity type.
      * 
@@ -75,6 +99,27 @@ public class EntityRegistry<E extends Persistent & Entity>
     public EntityRegistry(Persistence persistence, CacheFactory cacheFactory,
         Instantiator instantiator, Logger log, String kind, final Class<E> type)
         throws ConfigurationException
+    {
+        this(persistence, cacheFactory, new CacheStatisticsRegistry(), instantiator, log, kind,
+                        type);
+    }
+
+    /**
+     * Creates a registry for the specific entity type.
+     * 
+     * @param persistence the Persistence subsystem.
+     * @param cacheFactory the CacheFactory.
+     * @param cacheStatistics the registry of cache statistics.
+     * @param instantiator the component instantiator.
+     * @param log the Logger to use.
+     * @param kind the semantic name of the entity type.
+     * @param type the entity implementation class.
+     * @throws ConfigurationException if the cache is not configured properly.
+     */
+    public EntityRegistry(Persistence persistence, CacheFactory cacheFactory,
+        CacheStatisticsRegistry cacheStatistics, Instantiator instantiator, Logger log,
+        String kind, final Class<E> type)
+        throws ConfigurationException
     {
         this.persistence = persistence;
         this.log = log;
@@ -112,10 +157,10 @@ public class EntityRegistry<E extends Persistent & Entity>
                 cl = cl.getSuperclass();
             }
         }
-        setupCache(cacheFactory, kind);
+        setupCache(cacheFactory, cacheStatistics, kind);
     }
 
-    private void setupCache(CacheFactory caching, String kind)
+    private void setupCache(CacheFactory caching, CacheStatisticsRegistry statistics, String kind)
         throws ConfigurationException
     {
         if(kind.indexOf(' ') > 0)
@@ -134,6 +179,12 @@ public class EntityRegistry<E extends Persistent & Entity>
         byId = caching.getInstance("coral." + kind + ".byId", "coral.byId");
         byName = caching.getInstance("coral." + kind + ".byName", "coral.byName");
         all = caching.getInstance("coral." + kind + ".all", "coral.all");
+        byIdStatistics = statistics.register(new CacheStatistics(CacheStatistics.Group.ENTITY,
+            "coral." + kind + ".byId", byId, byId));
+        byNameStatistics = statistics.register(new CacheStatistics(CacheStatistics.Group.ENTITY,
+            "coral." + kind + ".byName", byName, byName));
+        allStatistics = statistics.register(new CacheStatistics(CacheStatistics.Group.ENTITY,
+            "coral." + kind + ".all", all, all));
     }
 
     /**
@@ -149,17 +200,26 @@ public class EntityRegistry<E extends Persistent & Entity>
             es = all.get(ALL_KEY);
             if(es == null)
             {
+                allStatistics.miss();
+                long startTime = System.nanoTime();
                 es = new HashSet<E>();
                 all.put(ALL_KEY, es);
+                allStatistics.stored();
                 try
                 {
+                    long version = getRemovalVersion();
                     List<E> items = persistence.load(factory);
-                    resolve(items, es);
+                    resolve(items, es, version);
                 }
                 catch(SQLException ex)
                 {
                     throw new BackendException("failed to load " + kindPlural, ex);
                 }
+                allStatistics.loaded(startTime);
+            }
+            else
+            {
+                allStatistics.hit();
             }
         }
         synchronized(synthetics)
@@ -179,28 +239,21 @@ public class EntityRegistry<E extends Persistent & Entity>
     public Entity get(long id)
         throws EntityDoesNotExistException
     {
+        E e;
         synchronized(byId)
         {
-            Long idObj = new Long(id);
-            E e = byId.get(idObj);
-            if(e == null)
-            {
-                try
-                {
-                    e = persistence.load(factory, id);
-                }
-                catch(SQLException ex)
-                {
-                    throw new BackendException("failed to load " + kind + " #" + id, ex);
-                }
-                if(e == null)
-                {
-                    throw new EntityDoesNotExistException(kind + " #" + id + " does not exist");
-                }
-                byId.put(idObj, e);
-            }
-            return e;
+            e = byId.get(Long.valueOf(id));
         }
+        if(e == null)
+        {
+            byIdStatistics.miss();
+            e = loader.load(id);
+        }
+        else
+        {
+            byIdStatistics.hit();
+        }
+        return e;
     }
 
     /**
@@ -216,17 +269,26 @@ public class EntityRegistry<E extends Persistent & Entity>
             Set<E> es = byName.get(name);
             if(es == null)
             {
+                byNameStatistics.miss();
+                long startTime = System.nanoTime();
                 try
                 {
+                    long version = getRemovalVersion();
                     List<E> items = persistence.load(factory, "name = ?", name);
                     es = new HashSet<E>();
-                    resolve(items, es);
+                    resolve(items, es, version);
                     byName.put(name, es);
+                    byNameStatistics.stored();
                 }
                 catch(SQLException ex)
                 {
                     throw new BackendException("failed to load " + kindPlural, ex);
                 }
+                byNameStatistics.loaded(startTime);
+            }
+            else
+            {
+                byNameStatistics.hit();
             }
             return es;
         }
@@ -272,7 +334,10 @@ public class EntityRegistry<E extends Persistent & Entity>
         }
         synchronized(byId)
         {
-            byId.put(entity.getIdObject(), entity);
+            if(byId.put(entity.getIdObject(), entity) == null)
+            {
+                byIdStatistics.stored();
+            }
         }
         synchronized(byName)
         {
@@ -305,7 +370,10 @@ public class EntityRegistry<E extends Persistent & Entity>
     {
         synchronized(byId)
         {
-            byId.put(entity.getIdObject(), entity);
+            if(byId.put(entity.getIdObject(), entity) == null)
+            {
+                byIdStatistics.stored();
+            }
         }
         synchronized(byName)
         {
@@ -314,6 +382,7 @@ public class EntityRegistry<E extends Persistent & Entity>
             {
                 es = new HashSet<E>();
                 byName.put(entity.getName(), es);
+                byNameStatistics.stored();
             }
             es.add(entity);
         }
@@ -420,7 +489,11 @@ public class EntityRegistry<E extends Persistent & Entity>
         }
         synchronized(byId)
         {
-            byId.remove(entity.getIdObject());
+            if(byId.remove(entity.getIdObject()) != null)
+            {
+                byIdStatistics.removed(1);
+            }
+            removals.removed(entity.getId());
         }
         synchronized(byName)
         {
@@ -558,6 +631,96 @@ public class EntityRegistry<E extends Persistent & Entity>
         }
     }
 
+    /**
+     * Returns the number of entities loaded from the database one at a time, on cache miss.
+     * 
+     * @return the number of entity loads.
+     */
+    public long getLoadCount()
+    {
+        return loader.getLoadCount();
+    }
+
+    /**
+     * Returns the number of cache misses that were served by a load performed on behalf of another
+     * thread.
+     * 
+     * @return the number of shared entity loads.
+     */
+    public long getSharedLoadCount()
+    {
+        return loader.getSharedLoadCount();
+    }
+
+    /**
+     * Loads an entity from the database and puts it into byId.
+     * <p>
+     * An entity deleted while it was being loaded is returned, but not cached.
+     * </p>
+     * 
+     * @param id the id of the entity.
+     * @return the entity.
+     * @throws EntityDoesNotExistException if the entity with the specified id does not exist.
+     */
+    private E loadFromStorage(long id)
+        throws EntityDoesNotExistException
+    {
+        Long idObj = Long.valueOf(id);
+        long version;
+        synchronized(byId)
+        {
+            E e = byId.get(idObj);
+            if(e != null)
+            {
+                return e;
+            }
+            version = removals.getVersion();
+        }
+        E e;
+        long startTime = System.nanoTime();
+        try
+        {
+            e = persistence.load(factory, id);
+        }
+        catch(SQLException ex)
+        {
+            throw new BackendException("failed to load " + kind + " #" + id, ex);
+        }
+        if(e == null)
+        {
+            throw new EntityDoesNotExistException(kind + " #" + id + " does not exist");
+        }
+        byIdStatistics.loaded(startTime);
+        synchronized(byId)
+        {
+            E cached = byId.get(idObj);
+            if(cached != null)
+            {
+                return cached;
+            }
+            if(removals.isRemovedSince(id, version))
+            {
+                return e;
+            }
+            byId.put(idObj, e);
+            byIdStatistics.stored();
+        }
+        return e;
+    }
+
+    /**
+     * Returns the removal version, to be taken before entities are loaded from the database.
+     * 
+     * @return the removal version.
+     */
+    private long getRemovalVersion()
+    {
+        synchronized(byId)
+        {
+            return removals.getVersion();
+        }
+    }
+
     /**
      * Resolves a set of loaded objects against the caches.
      * 
@@ -565,6 +728,21 @@ public class EntityRegistry<E extends Persistent & Entity>
      * @param out equivalent entity set with new objects replaced with cached ones if possible.
      */
     public void resolve(List<E> in, Set<E> out)
+    {
+        resolve(in, out, getRemovalVersion());
+    }
+
+    /**
+     * Resolves a set of loaded objects against the caches.
+     * <p>
+     * Entities deleted since the objects were loaded are not cached.
+     * </p>
+     * 
+     * @param in entities loaded from the db
+     * @param out equivalent entity set with new objects replaced with cached ones if possible.
+     * @param version the removal version taken before the entities were loaded.
+     */
+    private void resolve(List<E> in, Set<E> out, long version)
     {
         synchronized(byName)
         {
@@ -576,14 +754,20 @@ public class EntityRegistry<E extends Persistent & Entity>
                     E e = i.next();
                     Long id = e.getIdObject();
                     E ee = byId.get(id);
-                    if(ee == null)
+                    if(ee == null && removals.isRemovedSince(e.getId(), version))
+                    {
+                        out.add(e);
+                    }
+                    else if(ee == null)
                     {
                         byId.put(id, e);
+                        byIdStatistics.stored();
                         Set<E> nameSet = byName.get(e.getName());
                         if(nameSet == null)
                         {
                             nameSet = new HashSet<E>();
                             byName.put(e.getName(), nameSet);
+                            byNameStatistics.stored();
                         }
                         nameSet.add(e);
                         out.add(e);
@@ -0,0 +1,108 @@
+package org.objectledge.coral.entity;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records recent entity removals, so that a load that overlaps with the removal of the entity does
+ * not put it back into the cache.
+ * <p>
+ * A loader takes the {@link #getVersion()} before reading the entity from storage, and checks
+ * {@link #isRemovedSince(long, long)} before putting it into the cache. Only a bounded number of
+ * removals is retained. When a removal that overlaps with the load might have been forgotten, the
+ * entity is reported as removed, and the loader merely skips caching it.
+ * </p>
+ * <p>
+ * The log is not thread safe. It must be guarded by the monitor that guards the cache it
+ * protects.
+ * </p>
+ */
+public class RemovalLog
+{
+    /** Default number of retained removals. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** Maximum number of retained removals. */
+    private final int capacity;
+
+    /** Entity id to the version of its removal, oldest first. */
+    private final Map<Long, Long> removals;
+
+    /** Number of removals recorded. */
+    private long version = 0;
+
+    /** The version of the most recent removal that was forgotten. */
+    private long forgotten = 0;
+
+    /**
+     * Creates a removal log with the default capacity.
+     */
+    public RemovalLog()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a removal log.
+     *
+     * @param capacity the maximum number of retained removals.
+     */
+    public RemovalLog(int capacity)
+    {
+        this.capacity = capacity;
+        this.removals = new LinkedHashMap<Long, Long>(16, 0.75f, false)
+            {
+                protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest)
+                {
+                    if(size() > RemovalLog.this.capacity)
+                    {
+                        forgotten = eldest.getValue().longValue();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+    }
+
+    /**
+     * Returns the current version, to be passed to {@link #isRemovedSince(long, long)}.
+     *
+     * @return the number of removals recorded so far.
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Records the removal of an entity.
+     *
+     * @param id the identifier of the entity.
+     */
+    public void removed(long id)
+    {
+        version++;
+        Long idObj = Long.valueOf(id);
+        // keep the entries in removal order
+        removals.remove(idObj);
+        removals.put(idObj, Long.valueOf(version));
+    }
+
+    /**
+     * Checks if an entity might have been removed after the given version was taken.
+     *
+     * @param id the identifier of the entity.
+     * @param since a version returned by {@link #getVersion()}.
+     * @return <code>true</code> if the entity was removed, or a removal that might concern it was
+     *         forgotten.
+     */
+    public boolean isRemovedSince(long id, long since)
+    {
+        if(forgotten > since)
+        {
+            return true;
+        }
+        Long removal = removals.get(Long.valueOf(id));
+        return removal != null && removal.longValue() > since;
+    }
+}
@@ -27,6 +27,7 @@
 // 
 package org.objectledge.coral.event;
 
+import org.jcontainer.dna.Logger;
 import org.objectledge.event.EventWhiteboard;
 import org.objectledge.event.EventWhiteboardFactory;
 import org.objectledge.event.InboundEventWhiteboard;
@@ -56,6 +57,23 @@ public class CoralEventHubImpl
      * @param bridge the event / notification bridge.
      */    
     public CoralEventHubImpl(EventWhiteboardFactory eventWhiteboardFactory, CoralEventBridge bridge)
+    {
+        this(eventWhiteboardFactory, bridge, null);
+    }
+
+    /**
+     * Creates an event hub.
+     * <p>
+     * When a logger is provided, local events are dispatched by {@link DirectCoralEventWhiteboard}
+     * instead of a reflection based {@link EventWhiteboard}.
+     * </p>
+     * 
+     * @param eventWhiteboardFactory the event whiteboard factory.
+     * @param bridge the event / notification bridge.
+     * @param log the logger, or <code>null</code>.
+     */
+    public CoralEventHubImpl(EventWhiteboardFactory eventWhiteboardFactory,
+        CoralEventBridge bridge, Logger log)
     {
         EventWhiteboard inbound = eventWhiteboardFactory.newInstance();
         inboundEvents = new CoralEventWhiteboardImpl(new InboundEventWhiteboard(inbound));
@@ -65,8 +83,15 @@ public class CoralEventHubImpl
             bridge.attach(inbound, outbound);
         }
         outboundEvents = new CoralEventWhiteboardImpl(new OutboundEventWhiteboard(outbound));
-        EventWhiteboard local = eventWhiteboardFactory.newInstance();
-        localEvents = new CoralEventWhiteboardImpl(local);
+        if(log != null)
+        {
+            localEvents = new DirectCoralEventWhiteboard(log);
+        }
+        else
+        {
+            EventWhiteboard local = eventWhiteboardFactory.newInstance();
+            localEvents = new CoralEventWhiteboardImpl(local);
+        }
         globalEvents = new CoralEventRedirector(inboundEvents, localEvents, outboundEvents);
     }    
 
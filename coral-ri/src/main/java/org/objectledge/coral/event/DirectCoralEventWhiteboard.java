@@ -0,0 +1,1139 @@
+package org.objectledge.coral.event;
+
+import org.jcontainer.dna.Logger;
+import org.objectledge.coral.schema.AttributeClass;
+import org.objectledge.coral.schema.AttributeDefinition;
+import org.objectledge.coral.schema.ResourceClass;
+import org.objectledge.coral.schema.ResourceClassInheritance;
+import org.objectledge.coral.security.Permission;
+import org.objectledge.coral.security.PermissionAssignment;
+import org.objectledge.coral.security.PermissionAssociation;
+import org.objectledge.coral.security.Role;
+import org.objectledge.coral.security.RoleAssignment;
+import org.objectledge.coral.security.RoleImplication;
+import org.objectledge.coral.security.Subject;
+import org.objectledge.coral.store.Resource;
+import org.objectledge.coral.store.ResourceInheritance;
+import org.objectledge.coral.store.ResourceOwnership;
+
+/**
+ * {@link CoralEventWhiteboard} implementation that dispatches events through direct listener
+ * interface calls.
+ * <p>
+ * Listeners are kept in a separate {@link ListenerRegistry} for each listener interface, so firing
+ * an event involves neither reflective invocation nor argument array allocation. Listeners
+ * registered for specific objects and for all objects are notified in the same order as in
+ * {@link CoralEventWhiteboardImpl}. An exception thrown by a listener is logged and does not
+ * prevent delivery of the event to the remaining listeners.
+ * </p>
+ * <p>
+ * This implementation does not interact with an {@link org.objectledge.event.EventWhiteboard}, and
+ * thus can't be connected to a {@link CoralEventBridge}. It is used for local events, while the
+ * inbound and outbound events are carried by {@link CoralEventWhiteboardImpl}.
+ * </p>
+ */
+public class DirectCoralEventWhiteboard
+    implements CoralEventWhiteboard
+{
+    // Member objects ////////////////////////////////////////////////////////
+
+    /** The logger. */
+    private final Logger log;
+
+    /** {@link PermissionAssignmentChangeListener} registry. */
+    private final ListenerRegistry<PermissionAssignmentChangeListener> permissionAssignmentChangeListeners =
+        new ListenerRegistry<PermissionAssignmentChangeListener>(PermissionAssignmentChangeListener.class);
+
+    /** {@link RoleAssignmentChangeListener} registry. */
+    private final ListenerRegistry<RoleAssignmentChangeListener> roleAssignmentChangeListeners =
+        new ListenerRegistry<RoleAssignmentChangeListener>(RoleAssignmentChangeListener.class);
+
+    /** {@link PermissionAssociationChangeListener} registry. */
+    private final ListenerRegistry<PermissionAssociationChangeListener> permissionAssociationChangeListeners =
+        new ListenerRegistry<PermissionAssociationChangeListener>(PermissionAssociationChangeListener.class);
+
+    /** {@link RoleImplicationChangeListener} registry. */
+    private final ListenerRegistry<RoleImplicationChangeListener> roleImplicationChangeListeners =
+        new ListenerRegistry<RoleImplicationChangeListener>(RoleImplicationChangeListener.class);
+
+    /** {@link ResourceClassInheritanceChangeListener} registry. */
+    private final ListenerRegistry<ResourceClassInheritanceChangeListener> resourceClassInheritanceChangeListeners =
+        new ListenerRegistry<ResourceClassInheritanceChangeListener>(ResourceClassInheritanceChangeListener.class);
+
+    /** {@link ResourceClassAttributesChangeListener} registry. */
+    private final ListenerRegistry<ResourceClassAttributesChangeListener> resourceClassAttributesChangeListeners =
+        new ListenerRegistry<ResourceClassAttributesChangeListener>(ResourceClassAttributesChangeListener.class);
+
+    /** {@link ResourceTreeChangeListener} registry. */
+    private final ListenerRegistry<ResourceTreeChangeListener> resourceTreeChangeListeners =
+        new ListenerRegistry<ResourceTreeChangeListener>(ResourceTreeChangeListener.class);
+
+    /** {@link ResourceOwnershipChangeListener} registry. */
+    private final ListenerRegistry<ResourceOwnershipChangeListener> resourceOwnershipChangeListeners =
+        new ListenerRegistry<ResourceOwnershipChangeListener>(ResourceOwnershipChangeListener.class);
+
+    /** {@link ResourceClassChangeListener} registry. */
+    private final ListenerRegistry<ResourceClassChangeListener> resourceClassChangeListeners =
+        new ListenerRegistry<ResourceClassChangeListener>(ResourceClassChangeListener.class);
+
+    /** {@link AttributeClassChangeListener} registry. */
+    private final ListenerRegistry<AttributeClassChangeListener> attributeClassChangeListeners =
+        new ListenerRegistry<AttributeClassChangeListener>(AttributeClassChangeListener.class);
+
+    /** {@link AttributeDefinitionChangeListener} registry. */
+    private final ListenerRegistry<AttributeDefinitionChangeListener> attributeDefinitionChangeListeners =
+        new ListenerRegistry<AttributeDefinitionChangeListener>(AttributeDefinitionChangeListener.class);
+
+    /** {@link ResourceCreationListener} registry. */
+    private final ListenerRegistry<ResourceCreationListener> resourceCreationListeners =
+        new ListenerRegistry<ResourceCreationListener>(ResourceCreationListener.class);
+
+    /** {@link ResourceChangeListener} registry. */
+    private final ListenerRegistry<ResourceChangeListener> resourceChangeListeners =
+        new ListenerRegistry<ResourceChangeListener>(ResourceChangeListener.class);
+
+    /** {@link ResourceDeletionListener} registry. */
+    private final ListenerRegistry<ResourceDeletionListener> resourceDeletionListeners =
+        new ListenerRegistry<ResourceDeletionListener>(ResourceDeletionListener.class);
+
+    /** {@link ResourceTreeDeletionListener} registry. */
+    private final ListenerRegistry<ResourceTreeDeletionListener> resourceTreeDeletionListeners =
+        new ListenerRegistry<ResourceTreeDeletionListener>(ResourceTreeDeletionListener.class);
+
+    /** {@link SubjectChangeListener} registry. */
+    private final ListenerRegistry<SubjectChangeListener> subjectChangeListeners =
+        new ListenerRegistry<SubjectChangeListener>(SubjectChangeListener.class);
+
+    /** {@link RoleChangeListener} registry. */
+    private final ListenerRegistry<RoleChangeListener> roleChangeListeners =
+        new ListenerRegistry<RoleChangeListener>(RoleChangeListener.class);
+
+    /** {@link PermissionChangeListener} registry. */
+    private final ListenerRegistry<PermissionChangeListener> permissionChangeListeners =
+        new ListenerRegistry<PermissionChangeListener>(PermissionChangeListener.class);
+
+    // Initialization ////////////////////////////////////////////////////////
+
+    /**
+     * Constructs the {@link CoralEventWhiteboard} implementation.
+     *
+     * @param log the logger.
+     */
+    public DirectCoralEventWhiteboard(Logger log)
+    {
+        this.log = log;
+    }
+
+    // CoralEventWhiteboard interface ///////////////////////////////////////////////////////////
+
+    // listener registration /////////////////////////////////////////////////
+
+    /**
+     * Adds a permission assignment change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addPermissionAssignmentChangeListener(
+        PermissionAssignmentChangeListener listener, Object object)
+    {
+        permissionAssignmentChangeListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a permission assignment change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removePermissionAssignmentChangeListener(
+        PermissionAssignmentChangeListener listener, Object object)
+    {
+        permissionAssignmentChangeListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a role assignment change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addRoleAssignmentChangeListener(
+        RoleAssignmentChangeListener listener, Object object)
+    {
+        roleAssignmentChangeListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a role assignment change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removeRoleAssignmentChangeListener(
+        RoleAssignmentChangeListener listener, Object object)
+    {
+        roleAssignmentChangeListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a permission association change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addPermissionAssociationChangeListener(
+        PermissionAssociationChangeListener listener, Object object)
+    {
+        permissionAssociationChangeListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a permission association change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removePermissionAssociationChangeListener(
+        PermissionAssociationChangeListener listener, Object object)
+    {
+        permissionAssociationChangeListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a role implication change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addRoleImplicationChangeListener(
+        RoleImplicationChangeListener listener, Object object)
+    {
+        roleImplicationChangeListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a role implication change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removeRoleImplicationChangeListener(
+        RoleImplicationChangeListener listener, Object object)
+    {
+        roleImplicationChangeListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a resource class inheritance change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addResourceClassInheritanceChangeListener(
+        ResourceClassInheritanceChangeListener listener, Object object)
+    {
+        resourceClassInheritanceChangeListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a resource class inheritance change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removeResourceClassInheritanceChangeListener(
+        ResourceClassInheritanceChangeListener listener, Object object)
+    {
+        resourceClassInheritanceChangeListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a resource class attributes change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addResourceClassAttributesChangeListener(
+        ResourceClassAttributesChangeListener listener, Object object)
+    {
+        resourceClassAttributesChangeListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a resource class attributes change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removeResourceClassAttributesChangeListener(
+        ResourceClassAttributesChangeListener listener, Object object)
+    {
+        resourceClassAttributesChangeListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a resource tree change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addResourceTreeChangeListener(
+        ResourceTreeChangeListener listener, Object object)
+    {
+        resourceTreeChangeListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a resource tree change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removeResourceTreeChangeListener(
+        ResourceTreeChangeListener listener, Object object)
+    {
+        resourceTreeChangeListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a resource ownership change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addResourceOwnershipChangeListener(
+        ResourceOwnershipChangeListener listener, Object object)
+    {
+        resourceOwnershipChangeListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a resource ownership change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removeResourceOwnershipChangeListener(
+        ResourceOwnershipChangeListener listener, Object object)
+    {
+        resourceOwnershipChangeListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a resource class change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addResourceClassChangeListener(
+        ResourceClassChangeListener listener, Object object)
+    {
+        resourceClassChangeListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a resource class change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removeResourceClassChangeListener(
+        ResourceClassChangeListener listener, Object object)
+    {
+        resourceClassChangeListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a attribute class change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addAttributeClassChangeListener(
+        AttributeClassChangeListener listener, Object object)
+    {
+        attributeClassChangeListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a attribute class change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removeAttributeClassChangeListener(
+        AttributeClassChangeListener listener, Object object)
+    {
+        attributeClassChangeListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a attribute definition change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addAttributeDefinitionChangeListener(
+        AttributeDefinitionChangeListener listener, Object object)
+    {
+        attributeDefinitionChangeListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a attribute definition change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removeAttributeDefinitionChangeListener(
+        AttributeDefinitionChangeListener listener, Object object)
+    {
+        attributeDefinitionChangeListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a resource creation listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addResourceCreationListener(
+        ResourceCreationListener listener, Object object)
+    {
+        resourceCreationListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a resource creation listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removeResourceCreationListener(
+        ResourceCreationListener listener, Object object)
+    {
+        resourceCreationListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a resource change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addResourceChangeListener(
+        ResourceChangeListener listener, Object object)
+    {
+        resourceChangeListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a resource change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removeResourceChangeListener(
+        ResourceChangeListener listener, Object object)
+    {
+        resourceChangeListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a resource deletion listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addResourceDeletionListener(
+        ResourceDeletionListener listener, Object object)
+    {
+        resourceDeletionListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a resource deletion listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removeResourceDeletionListener(
+        ResourceDeletionListener listener, Object object)
+    {
+        resourceDeletionListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a resource tree deletion listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addResourceTreeDeletionListener(
+        ResourceTreeDeletionListener listener, Object object)
+    {
+        resourceTreeDeletionListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a resource tree deletion listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removeResourceTreeDeletionListener(
+        ResourceTreeDeletionListener listener, Object object)
+    {
+        resourceTreeDeletionListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a subject change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addSubjectChangeListener(
+        SubjectChangeListener listener, Object object)
+    {
+        subjectChangeListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a subject change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removeSubjectChangeListener(
+        SubjectChangeListener listener, Object object)
+    {
+        subjectChangeListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a role change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addRoleChangeListener(
+        RoleChangeListener listener, Object object)
+    {
+        roleChangeListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a role change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removeRoleChangeListener(
+        RoleChangeListener listener, Object object)
+    {
+        roleChangeListeners.remove(listener, object);
+    }
+
+    /**
+     * Adds a permission change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void addPermissionChangeListener(
+        PermissionChangeListener listener, Object object)
+    {
+        permissionChangeListeners.add(listener, object);
+    }
+
+    /**
+     * Removes a permission change listener.
+     *
+     * @param listener the listener object.
+     * @param object the object the listener is recieving notifications on, or
+     *        <code>null</code> for all objects.
+     */
+    public void removePermissionChangeListener(
+        PermissionChangeListener listener, Object object)
+    {
+        permissionChangeListeners.remove(listener, object);
+    }
+
+    // event firing //////////////////////////////////////////////////////////
+
+    /**
+     * Fires a permission assignment change event.
+     *
+     * @param assignment the <code>PermissionAssignment</code>.
+     * @param added <code>true</code> if the assignment was added,
+     * <code>false</code> if removed.
+     */
+    public void firePermissionAssignmentChangeEvent(
+        PermissionAssignment assignment, boolean added)
+    {
+        permissionAssignmentChange(assignment.getResource(), assignment, added);
+        permissionAssignmentChange(assignment.getRole(), assignment, added);
+        permissionAssignmentChange(assignment.getPermission(), assignment, added);
+        permissionAssignmentChange(null, assignment, added);
+    }
+
+    /** 
+     * Fires a role assignment change envent.
+     *
+     * @param assignment the <code>RoleAssignment</code>.
+     * @param added <code>true</code> if the assignment was added,
+     * <code>false</code> if removed.
+     */
+    public void fireRoleAssignmentChangeEvent(
+        RoleAssignment assignment, boolean added)
+    {
+        roleAssignmentChange(assignment.getSubject(), assignment, added);
+        roleAssignmentChange(assignment.getRole(), assignment, added);
+        roleAssignmentChange(null, assignment, added);
+    }
+
+    /**
+     * Fires a permission association change event.
+     *
+     * @param association the <code>PermissionAssociation</code>.
+     * @param added <code>true</code> if the association was added,
+     * <code>false</code> if removed.
+     */
+    public void firePermissionAssociationChangeEvent(
+        PermissionAssociation association, boolean added)
+    {
+        permissionAssociationChange(association.getResourceClass(), association, added);
+        permissionAssociationChange(association.getPermission(), association, added);
+        permissionAssociationChange(null, association, added);
+    }
+
+    /** 
+     * Fires a role implication change envent.
+     *
+     * @param implication the <code>RoleImplication</code>.
+     * @param added <code>true</code> if the implication was added,
+     * <code>false</code> if removed.
+     */
+    public void fireRoleImplicationChangeEvent(
+        RoleImplication implication, boolean added)
+    {
+        roleImplicationChange(implication.getSuperRole(), implication, added);
+        roleImplicationChange(implication.getSubRole(), implication, added);
+        roleImplicationChange(null, implication, added);
+    }
+
+    /** 
+     * Fires a resource class inheritance change envent.
+     *
+     * @param inheritance the <code>ResourceClassInheritance</code>.
+     * @param added <code>true</code> if the inheritance was added,
+     * <code>false</code> if removed.
+     */
+    public void fireResourceClassInheritanceChangeEvent(
+        ResourceClassInheritance inheritance, boolean added)
+    {
+        resourceClassInheritanceChange(inheritance.getParent(), inheritance, added);
+        resourceClassInheritanceChange(inheritance.getChild(), inheritance, added);
+        resourceClassInheritanceChange(null, inheritance, added);
+    }
+
+    /** 
+     * Fires a resource class attributes change envent.
+     *
+     * @param attribute the <code>AttributesDefinition</code>.
+     * @param added <code>true</code> if the attributes was added, <code>false</code> if removed.
+     */
+    public void fireResourceClassAttributesChangeEvent(
+        AttributeDefinition<?> attribute, boolean added)
+    {
+        resourceClassAttributesChange(attribute.getDeclaringClass(), attribute, added);
+        resourceClassAttributesChange(null, attribute, added);
+    }
+
+    /**
+     * Fires a resource tree change event.
+     *
+     * @param inheritance inheritance information.
+     * @param added <code>true</code> if the inheritace record was added, <code>false</code> if
+     * removed.
+     */
+    public void fireResourceTreeChangeEvent(
+        ResourceInheritance inheritance, boolean added)
+    {
+        resourceTreeChange(inheritance.getParent(), inheritance, added);
+        resourceTreeChange(inheritance.getChild(), inheritance, added);
+        resourceTreeChange(null, inheritance, added);
+    }
+
+    /**
+     * Fires a resource ownership change event.
+     *
+     * @param ownership ownership information.
+     * @param added <code>true</code> if the ownership record was added, <code>false</code> if
+     * removed.
+     */
+    public void fireResourceOwnershipChangeEvent(
+        ResourceOwnership ownership, boolean added)
+    {
+        resourceOwnershipChange(ownership.getOwner(), ownership, added);
+        resourceOwnershipChange(ownership.getResource(), ownership, added);
+        resourceOwnershipChange(null, ownership, added);
+    }
+
+    /**
+     * Fires a subject change event.
+     *
+     * @param subject the subject.
+     */
+    public void fireSubjectChangeEvent(Subject subject)
+    {
+        subjectChange(subject, subject);
+        subjectChange(null, subject);
+    }
+
+    /**
+     * Fires a role change event.
+     *
+     * @param role the role.
+     */
+    public void fireRoleChangeEvent(Role role)
+    {
+        roleChange(role, role);
+        roleChange(null, role);
+    }
+
+    /**
+     * Fires a resource creation event.
+     *
+     * @param resource the resource.
+     */
+    public void fireResourceCreationEvent(Resource resource)
+    {
+        if(resource.getParent() != null)
+        {
+            resourceCreation(resource.getParent(), resource);
+        }
+        resourceCreation(resource.getResourceClass(), resource);
+        ResourceClass<?>[] parents = resource.getResourceClass().getParentClasses();
+        for(int i = 0; i < parents.length; i++)
+        {
+            resourceCreation(parents[i], resource);
+        }
+        resourceCreation(null, resource);
+    }
+
+    /**
+     * Fires a resource change event.
+     *
+     * @param resource the resource.
+     * @param subject the subject that performed the change.
+     */
+    public void fireResourceChangeEvent(Resource resource, Subject subject)
+    {
+        resourceChange(resource, resource, subject);
+        resourceChange(resource.getResourceClass(), resource, subject);
+        ResourceClass<?>[] parents = resource.getResourceClass().getParentClasses();
+        for(int i = 0; i < parents.length; i++)
+        {
+            resourceChange(parents[i], resource, subject);
+        }
+        resourceChange(null, resource, subject);
+    }
+
+    /**
+     * Fires a resource deletion event.
+     *
+     * @param resource the resource.
+     */
+    public void fireResourceDeletionEvent(Resource resource)
+    {
+        resourceDeletion(resource, resource);
+        resourceDeletion(resource.getResourceClass(), resource);
+        ResourceClass<?>[] parents = resource.getResourceClass().getParentClasses();
+        for(int i = 0; i < parents.length; i++)
+        {
+            resourceDeletion(parents[i], resource);
+        }
+        resourceDeletion(null, resource);
+    }
+
+    /**
+     * Fires a resource tree deletion event.
+     *
+     * @param resource the resource.
+     */
+    public void fireResourceTreeDeletionEvent(Resource resource)
+    {
+        resourceTreeDeletion(resource, resource);
+        resourceTreeDeletion(resource.getResourceClass(), resource);
+        ResourceClass<?>[] parents = resource.getResourceClass().getParentClasses();
+        for(int i = 0; i < parents.length; i++)
+        {
+            resourceTreeDeletion(parents[i], resource);
+        }
+        resourceTreeDeletion(null, resource);
+    }
+
+    /**
+     * Fires a permission change event.
+     *
+     * @param permission the permission.
+     */
+    public void firePermissionChangeEvent(Permission permission)
+    {
+        permissionChange(permission, permission);
+        permissionChange(null, permission);
+    }
+
+    /**
+     * Fires a resource class change event.
+     *
+     * @param resourceClass the resource class.
+     */
+    public void fireResourceClassChangeEvent(ResourceClass<?> resourceClass)
+    {
+        resourceClassChange(resourceClass, resourceClass);
+        resourceClassChange(null, resourceClass);
+    }
+
+    /**
+     * Fires a attribute class change event.
+     *
+     * @param attributeClass the attribute class.
+     */
+    public void fireAttributeClassChangeEvent(AttributeClass<?> attributeClass)
+    {
+        attributeClassChange(attributeClass, attributeClass);
+        attributeClassChange(null, attributeClass);
+    }
+
+    /**
+     * Fires a attribute definition change event.
+     *
+     * @param attributeDefinition the attribute definition.
+     */
+    public void fireAttributeDefinitionChangeEvent(AttributeDefinition<?> attributeDefinition)
+    {
+        attributeDefinitionChange(attributeDefinition, attributeDefinition);
+        attributeDefinitionChange(null, attributeDefinition);
+    }
+
+    // implementation ////////////////////////////////////////////////////////
+
+    private void permissionAssignmentChange(Object object,
+        PermissionAssignment assignment, boolean added)
+    {
+        for(PermissionAssignmentChangeListener listener : permissionAssignmentChangeListeners
+            .get(object))
+        {
+            try
+            {
+                listener.permissionsChanged(assignment, added);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in PermissionAssignmentChangeListener", e);
+            }
+        }
+    }
+
+    private void roleAssignmentChange(Object object, RoleAssignment assignment, boolean added)
+    {
+        for(RoleAssignmentChangeListener listener : roleAssignmentChangeListeners.get(object))
+        {
+            try
+            {
+                listener.rolesChanged(assignment, added);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in RoleAssignmentChangeListener", e);
+            }
+        }
+    }
+
+    private void permissionAssociationChange(Object object,
+        PermissionAssociation association, boolean added)
+    {
+        for(PermissionAssociationChangeListener listener : permissionAssociationChangeListeners
+            .get(object))
+        {
+            try
+            {
+                listener.permissionsChanged(association, added);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in PermissionAssociationChangeListener", e);
+            }
+        }
+    }
+
+    private void roleImplicationChange(Object object, RoleImplication implication, boolean added)
+    {
+        for(RoleImplicationChangeListener listener : roleImplicationChangeListeners.get(object))
+        {
+            try
+            {
+                listener.roleChanged(implication, added);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in RoleImplicationChangeListener", e);
+            }
+        }
+    }
+
+    private void resourceClassInheritanceChange(Object object,
+        ResourceClassInheritance inheritance, boolean added)
+    {
+        for(ResourceClassInheritanceChangeListener listener : resourceClassInheritanceChangeListeners
+            .get(object))
+        {
+            try
+            {
+                listener.inheritanceChanged(inheritance, added);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in ResourceClassInheritanceChangeListener", e);
+            }
+        }
+    }
+
+    private void resourceClassAttributesChange(Object object,
+        AttributeDefinition<?> attribute, boolean added)
+    {
+        for(ResourceClassAttributesChangeListener listener : resourceClassAttributesChangeListeners
+            .get(object))
+        {
+            try
+            {
+                listener.attributesChanged(attribute, added);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in ResourceClassAttributesChangeListener", e);
+            }
+        }
+    }
+
+    private void resourceTreeChange(Object object, ResourceInheritance inheritance, boolean added)
+    {
+        for(ResourceTreeChangeListener listener : resourceTreeChangeListeners.get(object))
+        {
+            try
+            {
+                listener.resourceTreeChanged(inheritance, added);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in ResourceTreeChangeListener", e);
+            }
+        }
+    }
+
+    private void resourceOwnershipChange(Object object, ResourceOwnership ownership, boolean added)
+    {
+        for(ResourceOwnershipChangeListener listener : resourceOwnershipChangeListeners.get(object))
+        {
+            try
+            {
+                listener.resourceOwnershipChanged(ownership, added);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in ResourceOwnershipChangeListener", e);
+            }
+        }
+    }
+
+    private void subjectChange(Object object, Subject subject)
+    {
+        for(SubjectChangeListener listener : subjectChangeListeners.get(object))
+        {
+            try
+            {
+                listener.subjectChanged(subject);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in SubjectChangeListener", e);
+            }
+        }
+    }
+
+    private void roleChange(Object object, Role role)
+    {
+        for(RoleChangeListener listener : roleChangeListeners.get(object))
+        {
+            try
+            {
+                listener.roleChanged(role);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in RoleChangeListener", e);
+            }
+        }
+    }
+
+    private void resourceCreation(Object object, Resource resource)
+    {
+        for(ResourceCreationListener listener : resourceCreationListeners.get(object))
+        {
+            try
+            {
+                listener.resourceCreated(resource);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in ResourceCreationListener", e);
+            }
+        }
+    }
+
+    private void resourceChange(Object object, Resource resource, Subject subject)
+    {
+        for(ResourceChangeListener listener : resourceChangeListeners.get(object))
+        {
+            try
+            {
+                listener.resourceChanged(resource, subject);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in ResourceChangeListener", e);
+            }
+        }
+    }
+
+    private void resourceDeletion(Object object, Resource resource)
+    {
+        for(ResourceDeletionListener listener : resourceDeletionListeners.get(object))
+        {
+            try
+            {
+                listener.resourceDeleted(resource);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in ResourceDeletionListener", e);
+            }
+        }
+    }
+
+    private void resourceTreeDeletion(Object object, Resource resource)
+    {
+        for(ResourceTreeDeletionListener listener : resourceTreeDeletionListeners.get(object))
+        {
+            try
+            {
+                listener.resourceTreeDeleted(resource);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in ResourceTreeDeletionListener", e);
+            }
+        }
+    }
+
+    private void permissionChange(Object object, Permission permission)
+    {
+        for(PermissionChangeListener listener : permissionChangeListeners.get(object))
+        {
+            try
+            {
+                listener.permissionChanged(permission);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in PermissionChangeListener", e);
+            }
+        }
+    }
+
+    private void resourceClassChange(Object object, ResourceClass<?> resourceClass)
+    {
+        for(ResourceClassChangeListener listener : resourceClassChangeListeners.get(object))
+        {
+            try
+            {
+                listener.resourceClassChanged(resourceClass);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in ResourceClassChangeListener", e);
+            }
+        }
+    }
+
+    private void attributeClassChange(Object object, AttributeClass<?> attributeClass)
+    {
+        for(AttributeClassChangeListener listener : attributeClassChangeListeners.get(object))
+        {
+            try
+            {
+                listener.attributeClassChanged(attributeClass);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in AttributeClassChangeListener", e);
+            }
+        }
+    }
+
+    private void attributeDefinitionChange(Object object,
+        AttributeDefinition<?> attributeDefinition)
+    {
+        for(AttributeDefinitionChangeListener listener : attributeDefinitionChangeListeners
+            .get(object))
+        {
+            try
+            {
+                listener.attributeDefinitionChanged(attributeDefinition);
+            }
+            catch(Exception e)
+            {
+                log.error("exception in AttributeDefinitionChangeListener", e);
+            }
+        }
+    }
+}
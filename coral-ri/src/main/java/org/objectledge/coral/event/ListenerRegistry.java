@@ -0,0 +1,227 @@
+package org.objectledge.coral.event;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Listeners of a single listener interface, registered for specific objects or for all objects.
+ * <p>
+ * Anchor objects are held weakly, listeners strongly. The listeners for each object are kept in a
+ * copy on write array, published through a concurrent map, so that events can be dispatched
+ * without taking any lock. Registration and removal of listeners are serialized by the registry
+ * monitor, and purge the entries of collected anchor objects.
+ * </p>
+ *
+ * @param <L> the listener interface.
+ */
+class ListenerRegistry<L>
+{
+    /** Anchor object, wrapped in a {@link WeakKey} -&gt; listeners. */
+    private final ConcurrentMap<Object, L[]> listeners = new ConcurrentHashMap<Object, L[]>();
+
+    /** Keys of the collected anchor objects. */
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+    /** The empty listener array. */
+    private final L[] empty;
+
+    /** Listeners registered for all objects. */
+    private volatile L[] global;
+
+    /**
+     * Creates a registry instance.
+     *
+     * @param type the listener interface.
+     */
+    @SuppressWarnings("unchecked")
+    ListenerRegistry(Class<L> type)
+    {
+        empty = (L[])Array.newInstance(type, 0);
+        global = empty;
+    }
+
+    /**
+     * Adds a listener. Adding a listener already registered for the object has no effect.
+     *
+     * @param listener the listener.
+     * @param object the object the listener is recieving notifications on, or <code>null</code>
+     *        for all objects.
+     */
+    synchronized void add(L listener, Object object)
+    {
+        expunge();
+        L[] current = get(object);
+        for(L l : current)
+        {
+            if(l == listener)
+            {
+                return;
+            }
+        }
+        L[] updated = copy(current, current.length + 1);
+        updated[current.length] = listener;
+        set(object, current, updated);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener.
+     * @param object the object the listener is recieving notifications on, or <code>null</code>
+     *        for all objects.
+     */
+    synchronized void remove(L listener, Object object)
+    {
+        expunge();
+        L[] current = get(object);
+        for(int i = 0; i < current.length; i++)
+        {
+            if(current[i] == listener)
+            {
+                L[] updated = copy(current, current.length - 1);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                set(object, current, updated);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the listeners registered for the object.
+     *
+     * @param object the object, or <code>null</code> for listeners registered for all objects.
+     * @return the listeners, possibly empty. The array must not be modified.
+     */
+    L[] get(Object object)
+    {
+        if(object == null)
+        {
+            return global;
+        }
+        L[] current = listeners.get(new Lookup(object));
+        return current != null ? current : empty;
+    }
+
+    /**
+     * Replaces the listeners registered for the object.
+     * <p>
+     * Caller must hold the registry monitor.
+     * </p>
+     *
+     * @param object the object, or <code>null</code> for all objects.
+     * @param current the listeners currently registered, as returned by {@link #get(Object)}.
+     * @param updated the new listeners.
+     */
+    private void set(Object object, L[] current, L[] updated)
+    {
+        if(object == null)
+        {
+            global = updated.length > 0 ? updated : empty;
+        }
+        else if(updated.length == 0)
+        {
+            listeners.remove(new Lookup(object));
+        }
+        else if(current.length == 0)
+        {
+            listeners.put(new WeakKey(object, queue), updated);
+        }
+        else
+        {
+            listeners.replace(new Lookup(object), updated);
+        }
+    }
+
+    /**
+     * Removes the entries of collected anchor objects.
+     * <p>
+     * Caller must hold the registry monitor.
+     * </p>
+     */
+    private void expunge()
+    {
+        Reference<?> key;
+        while((key = queue.poll()) != null)
+        {
+            listeners.remove(key);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private L[] copy(L[] source, int length)
+    {
+        L[] target = (L[])Array.newInstance(empty.getClass().getComponentType(), length);
+        System.arraycopy(source, 0, target, 0, Math.min(source.length, length));
+        return target;
+    }
+
+    /**
+     * Weakly held anchor object, used as a key of the map. Once the object is collected, the key
+     * is equal only to itself.
+     */
+    private static final class WeakKey
+        extends WeakReference<Object>
+    {
+        private final int hash;
+
+        WeakKey(Object object, ReferenceQueue<Object> queue)
+        {
+            super(object, queue);
+            hash = object.hashCode();
+        }
+
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        public boolean equals(Object other)
+        {
+            if(other == this)
+            {
+                return true;
+            }
+            Object object = get();
+            if(object == null)
+            {
+                return false;
+            }
+            if(other instanceof WeakKey)
+            {
+                return object.equals(((WeakKey)other).get());
+            }
+            return other instanceof Lookup && object.equals(((Lookup)other).object);
+        }
+    }
+
+    /**
+     * Strongly held anchor object, used to look up map entries without creating references.
+     */
+    private static final class Lookup
+    {
+        private final Object object;
+
+        Lookup(Object object)
+        {
+            this.object = object;
+        }
+
+        public int hashCode()
+        {
+            return object.hashCode();
+        }
+
+        public boolean equals(Object other)
+        {
+            if(other instanceof WeakKey)
+            {
+                return object.equals(((WeakKey)other).get());
+            }
+            return other instanceof Lookup && object.equals(((Lookup)other).object);
+        }
+    }
+}
@@ -6,7 +6,17 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.jcontainer.dna.Logger;
 import org.objectledge.coral.BackendException;
@@ -43,44 +53,155 @@ import org.objectledge.notification.NotificationReceiver;
 
 /**
  * The bridge between Notification service and CoralEventWhiteboard.
- *
+ * <p>
+ * Outbound events are queued and sent in batches, one notification per flush interval. Repeated
+ * events concerning the same entities are coalesced while they wait in the queue: only the latest
+ * one is sent, and pending resource change events are dropped when the resource is deleted. A batch
+ * is encoded as a count followed by the events, each one being a numeric type code, a flags byte
+ * and up to three entity identifiers.
+ * </p>
+ * <p>
+ * Received batches are applied with a bounded number of bulk loads: all resources referenced by the
+ * batch are retrieved at once, and added permission and role assignments are loaded with one query
+ * per batch of resources or subjects.
+ * </p>
  */
 public class NotificationEventBridgeImpl
     extends CoralEventListener
     implements NotificationReceiver, CoralEventBridge
 {
+    // constants /////////////////////////////////////////////////////////////
+
+    /** The channel prameter key. ('channel') */
+    public static final String CHANNEL_KEY = "channel";
+
+    /** The default notification channel. ('CORAL:2.0') */
+    public static final String CHANNEL_DEFAULT = "CORAL:2.0";
+
+    /** The default interval between outbound batches in milliseconds. */
+    public static final long FLUSH_INTERVAL_DEFAULT = 100L;
+
+    /** Number of queued events that triggers a flush before the interval elapses. */
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    /** Time to wait for a flush in progress to complete on detach, in milliseconds. */
+    private static final long SHUTDOWN_TIMEOUT = 5000L;
+
+    /** Maximum number of identifiers in a single IN (...) condition. */
+    private static final int QUERY_BATCH_SIZE = 256;
+
+    /** Flag: the 'added' argument of the event. */
+    private static final int FLAG_ADDED = 1;
+
+    /** Flag: second entity identifier present. */
+    private static final int FLAG_ENTITY2 = 2;
+
+    /** Flag: third entity identifier present. */
+    private static final int FLAG_ENTITY3 = 4;
+
+    private static final int PERMISSION_ASSOCIATION_CHANGE = 0;
+
+    private static final int PERMISSION_ASSIGNMENT_CHANGE = 1;
+
+    private static final int ROLE_ASSIGNMENT_CHANGE = 2;
+
+    private static final int ROLE_IMPLICATION_CHANGE = 3;
+
+    private static final int RESOURCE_CLASS_INHERITANCE_CHANGE = 4;
+
+    private static final int RESOURCE_CLASS_ATTRIBUTES_CHANGE = 5;
+
+    private static final int RESOURCE_TREE_CHANGE = 6;
+
+    private static final int RESOURCE_OWNERSHIP_CHANGE = 7;
+
+    private static final int SUBJECT_CHANGE = 8;
+
+    private static final int ROLE_CHANGE = 9;
+
+    private static final int PERMISSION_CHANGE = 10;
+
+    private static final int RESOURCE_CREATION = 11;
+
+    private static final int RESOURCE_CHANGE = 12;
+
+    private static final int RESOURCE_DELETION = 13;
+
+    private static final int RESOURCE_TREE_DELETION = 14;
+
+    private static final int RESOURCE_CLASS_CHANGE = 15;
+
+    private static final int ATTRIBUTE_CLASS_CHANGE = 16;
+
+    private static final int ATTRIBUTE_DEFINITION_CHANGE = 17;
+
+    /** Event type names, indexed by type codes. */
+    private static final String[] TYPES = { "PermissionAssociationChange",
+                    "PermissionAssignmentChange", "RoleAssignmentChange", "RoleImplicationChange",
+                    "ResourceClassInheritanceChange", "ResourceClassAttributesChange",
+                    "ResourceTreeChange", "ResourceOwnershipChange", "SubjectChange", "RoleChange",
+                    "PermissionChange", "ResourceCreation", "ResourceChange", "ResourceDeletion",
+                    "ResourceTreeDeletion", "ResourceClassChange", "AttributeClassChange",
+                    "AttributeDefinitionChange" };
+
+    /** Event type name -&gt; type code. */
+    private static final Map<String, Integer> CODES = new HashMap<String, Integer>();
+
+    static
+    {
+        for(int i = 0; i < TYPES.length; i++)
+        {
+            CODES.put(TYPES[i], Integer.valueOf(i));
+        }
+    }
+
     // member objects ////////////////////////////////////////////////////////
 
     /** The notification service. */
     private Notification notification;
-    
+
     /** The CoralEventWhiteboard */
     private CoralEventWhiteboard event;
 
     /** The Persistence subsystem. */
     private Persistence persistence;
-    
-    /** The component instantiator. */
-    private Instantiator instantiator;
-        
+
     /** The component hub. */
     private CoralCore coral;
-    
+
     /** The logger. */
     private Logger log;
-    
 
     /** The notification channel. */
     private String channel;
-    
-    /** The channel prameter key. ('channel') */
-    public static final String CHANNEL_KEY = "channel";
 
-    /** The default notification channel. ('CORAL:1.0') */
-    public static final String CHANNEL_DEFAULT = "CORAL:1.0";
+    /** Interval between outbound batches in milliseconds, 0 to send events immediately. */
+    private final long flushInterval;
+
+    /** Flow control variable. Outbound events are accepted under the pending queue lock. */
+    private volatile boolean connected = false;
+
+    /** Outbound events waiting to be sent, keyed by themselves for coalescing. */
+    private final Map<EventRecord, EventRecord> pending = new LinkedHashMap<EventRecord, EventRecord>();
 
-    /** Flow control variable. */
-    private boolean connected = false;
+    /** Sends the pending events periodically, replaced under the pending queue lock. */
+    private volatile ScheduledExecutorService flusher;
+
+    /** The task that sends the pending events. */
+    private final Runnable flushTask = new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    flush();
+                }
+                catch(RuntimeException e)
+                {
+                    log.error("failed to send Coral events", e);
+                }
+            }
+        };
 
     /** The <code>PersistentFactory</code> for <code>AttributeDefinition</code>
      * objects. */
@@ -95,33 +216,51 @@ public class NotificationEventBridgeImpl
     private PersistentFactory<? extends PermissionAssignment> permissionAssignmentFactory;
 
     // initialization ///////////////////////////////////////////////////////
-    
+
     /**
      * Constructs an event bridge instance.
-     * 
+     *
      * @param persistence the Peristence substem.
      * @param notification the Notification subsystem.
      * @param instantiator the component instantiator.
      * @param coral the component hub.
      * @param log the logger.
      */
-    public NotificationEventBridgeImpl(Persistence persistence, Notification notification, 
+    public NotificationEventBridgeImpl(Persistence persistence, Notification notification,
         Instantiator instantiator, CoralCore coral, Logger log)
     {
-        this.persistence = persistence;   
+        this(persistence, notification, instantiator, coral, log, FLUSH_INTERVAL_DEFAULT);
+    }
+
+    /**
+     * Constructs an event bridge instance.
+     *
+     * @param persistence the Peristence substem.
+     * @param notification the Notification subsystem.
+     * @param instantiator the component instantiator.
+     * @param coral the component hub.
+     * @param log the logger.
+     * @param flushInterval interval between outbound batches in milliseconds, 0 to send each
+     *        event immediately.
+     */
+    public NotificationEventBridgeImpl(Persistence persistence, Notification notification,
+        Instantiator instantiator, CoralCore coral, Logger log, long flushInterval)
+    {
+        this.persistence = persistence;
         this.notification = notification;
         this.coral = coral;
         this.log = log;
-        
+        this.flushInterval = flushInterval;
+
         this.attributeDefinitionFactory = instantiator.
-            getPersistentFactory(AttributeDefinitionImpl.class); 
+            getPersistentFactory(AttributeDefinitionImpl.class);
         this.roleAssignmentFactory = instantiator.
             getPersistentFactory(RoleAssignmentImpl.class);
         this.permissionAssignmentFactory = instantiator.
-            getPersistentFactory(PermissionAssignmentImpl.class);    
+            getPersistentFactory(PermissionAssignmentImpl.class);
         channel = CHANNEL_DEFAULT;
     }
-    
+
     /**
      * Attaches the provided event forwarders to the notification service.
      *
@@ -135,21 +274,65 @@ public class NotificationEventBridgeImpl
         event = new CoralEventWhiteboardImpl(in);
         this.register(new CoralEventWhiteboardImpl(out));
         notification.addReceiver(channel, this);
-        connected = true;
+        ScheduledExecutorService executor = null;
+        if(flushInterval > 0)
+        {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+                {
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread thread = new Thread(r, "Coral event bridge");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            executor.scheduleWithFixedDelay(flushTask, flushInterval, flushInterval,
+                TimeUnit.MILLISECONDS);
+        }
+        synchronized(pending)
+        {
+            flusher = executor;
+            connected = true;
+        }
     }
-    
+
     /**
      * Detachs the event forwarders from the notification service.
-     * 
+     *
+     * <p>Events queued before the call are sent out, after the periodic flusher has finished. No
+     * outbound events are accepted once the call begins.</p>
+     *
      * @see #attach(EventWhiteboard,EventWhiteboard)
      */
     public void detach()
     {
-        connected = false; 
+        ScheduledExecutorService executor;
+        synchronized(pending)
+        {
+            connected = false;
+            executor = flusher;
+            flusher = null;
+        }
         this.unregister();
         notification.removeReceiver(channel, this);
+        if(executor != null)
+        {
+            executor.shutdown();
+            try
+            {
+                if(!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS))
+                {
+                    log.warn("Coral event bridge flusher did not terminate in time");
+                }
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
     }
-    
+
     // NotificationReceiver interface ////////////////////////////////////////
 
     /**
@@ -164,26 +347,23 @@ public class NotificationEventBridgeImpl
         {
             return;
         }
+        List<EventRecord> batch;
         try
         {
-            ByteArrayInputStream bais = new ByteArrayInputStream(message);
-            DataInputStream in = new DataInputStream(bais);
-            String type = in.readUTF();
-            long entity1 = in.readLong();
-            long entity2 = in.readLong();
-            long entity3 = in.readLong();
-            boolean added = in.readBoolean();
-            receive(type, entity1, entity2, entity3, added);
+            batch = decode(message);
         }
         catch(IOException e)
         {
             throw new BackendException("failed to decode event", e);
         }
+        apply(batch);
     }
 
     /**
      * The event processing method to be implemented by concrete multiplexer
-     * classess. 
+     * classess.
+     *
+     * <p>The event is queued, and sent out with the next batch.</p>
      *
      * @param type the type of the event (same as the name of the interface
      *        with 'Listener' suffix removed).
@@ -197,28 +377,33 @@ public class NotificationEventBridgeImpl
     public void event(String type, long entity1, long entity2,
                       long entity3, boolean added)
     {
-        if(!connected)
+        EventRecord record = new EventRecord(code(type), entity1, entity2, entity3, added);
+        boolean flushNow;
+        synchronized(pending)
         {
-            return;
-        }
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        DataOutputStream out = new DataOutputStream(baos);
-        byte[] msg;
-        try
-        {
-            out.writeUTF(type);
-            out.writeLong(entity1);
-            out.writeLong(entity2);
-            out.writeLong(entity3);
-            out.writeBoolean(added);
-            out.flush();
-            msg = baos.toByteArray();
+            if(!connected)
+            {
+                return;
+            }
+            enqueue(pending, record);
+            if(flusher == null)
+            {
+                flushNow = true;
+            }
+            else
+            {
+                // submitted under the lock, so that detach() cannot shut the flusher down first
+                if(pending.size() >= MAX_BATCH_SIZE)
+                {
+                    flusher.execute(flushTask);
+                }
+                flushNow = false;
+            }
         }
-        catch(IOException e)
+        if(flushNow)
         {
-            throw new BackendException("failed to encode event", e);
+            flush();
         }
-        notification.sendNotification(channel, msg, false);
     }
 
     /**
@@ -236,179 +421,606 @@ public class NotificationEventBridgeImpl
     public void receive(String type, long entity1, long entity2,
                         long entity3, boolean added)
     {
-        // log
-        StringBuilder buff = new StringBuilder();
-        buff.append("Remote Coral event: ");
-        buff.append(type);
-        buff.append("(#");
-        buff.append(entity1);
-        if(entity2 != -1L)
-        {
-            buff.append(", #");
-            buff.append(entity2);
-            if(entity3 != -1)
+        List<EventRecord> batch = new ArrayList<EventRecord>(1);
+        batch.add(new EventRecord(code(type), entity1, entity2, entity3, added));
+        apply(batch);
+    }
+
+    // implementation ////////////////////////////////////////////////////////
+
+    /**
+     * Adds an event to a queue, coalescing it with a queued event concerning the same entities.
+     *
+     * @param queue the queue.
+     * @param record the event.
+     */
+    private static void enqueue(Map<EventRecord, EventRecord> queue, EventRecord record)
+    {
+        // re-insert to move the coalesced event to the end of the queue
+        queue.remove(record);
+        if(record.code == RESOURCE_DELETION || record.code == RESOURCE_TREE_DELETION)
+        {
+            queue.remove(new EventRecord(RESOURCE_CHANGE, record.entity1, -1L, -1L, false));
+        }
+        queue.put(record, record);
+    }
+
+    /**
+     * Sends the pending events in a single notification.
+     * <p>
+     * If the notification cannot be sent, the events are put back in front of the events queued
+     * in the meantime, and are sent with the next batch.
+     * </p>
+     */
+    private void flush()
+    {
+        List<EventRecord> batch;
+        synchronized(pending)
+        {
+            if(pending.isEmpty())
             {
-                buff.append(", #");
-                buff.append(entity3);
+                return;
             }
+            batch = new ArrayList<EventRecord>(pending.values());
+            pending.clear();
         }
-        buff.append(added ? ", true)" : ", false)");
-        log.info(buff.toString());
-        // dispatch
+        byte[] msg;
         try
         {
-            
-            if("PermissionAssociationChange".equals(type))
+            msg = encode(batch);
+        }
+        catch(IOException e)
+        {
+            throw new BackendException("failed to encode event", e);
+        }
+        try
+        {
+            notification.sendNotification(channel, msg, false);
+        }
+        catch(RuntimeException e)
+        {
+            requeue(batch);
+            throw e;
+        }
+    }
+
+    /**
+     * Puts back a batch of events that could not be sent.
+     *
+     * @param batch the events, to be sent before the events queued after they were taken.
+     */
+    private void requeue(List<EventRecord> batch)
+    {
+        synchronized(pending)
+        {
+            Map<EventRecord, EventRecord> queue = new LinkedHashMap<EventRecord, EventRecord>();
+            for(EventRecord record : batch)
             {
-                ResourceClass<?> rc = coral.getSchema().getResourceClass(entity1);
-                Permission p = coral.getSecurity().getPermission(entity2);
-                PermissionAssociation pa = 
-                    new PermissionAssociationImpl(coral, rc, p);
-                event.firePermissionAssociationChangeEvent(pa, added);
+                queue.put(record, record);
             }
-            else if("PermissionAssignmentChange".equals(type))
+            // newer events replace the returned ones
+            for(EventRecord record : pending.values())
             {
-                PermissionAssignment pa = null;
-                if(added)
-                {
-                    List<PermissionAssignment> paList = (List<PermissionAssignment>)persistence
-                        .load(permissionAssignmentFactory,
-                            "resource_id = ? AND role_id = ? AND permission_id = ?", entity1,
-                            entity2, entity3);
-                    // assert paList.size() == 1;
-                    pa = paList.get(0);
-                }
-                else
-                {
-                    Resource res = coral.getStore().getResource(entity1);
-                    Role r = coral.getSecurity().getRole(entity2);
-                    Permission p = coral.getSecurity().getPermission(entity3);
-                    pa = new PermissionAssignmentImpl(coral, 
-                        null, res, r, p, false);
-                }
-                event.firePermissionAssignmentChangeEvent(pa, added);
-            } 
-            else if("RoleAssignmentChange".equals(type)) 
-            {
-                RoleAssignment ra = null;
-                if(added)
-                {
-                    List<RoleAssignment> raList = (List<RoleAssignment>)persistence.load(
-                        roleAssignmentFactory,
-                        "subject_id = ? AND role_id = ?", entity1, entity2);
-                    // assert raList.size() == 1
-                    ra = raList.get(0);
-                }
-                else
-                {
-                    Subject s = coral.getSecurity().getSubject(entity1);
-                    Role r = coral.getSecurity().getRole(entity2);
-                    ra = new RoleAssignmentImpl(coral, null, s, r, false);
-                }
-                event.fireRoleAssignmentChangeEvent(ra, added);
+                enqueue(queue, record);
             }
-            else if("RoleImplicationChange".equals(type)) 
+            pending.clear();
+            pending.putAll(queue);
+        }
+    }
+
+    /**
+     * Applies a batch of events coming from the remote side.
+     *
+     * @param batch the events.
+     */
+    private void apply(List<EventRecord> batch)
+    {
+        Map<EventRecord, PermissionAssignment> permissionAssignments;
+        Map<EventRecord, RoleAssignment> roleAssignments;
+        try
+        {
+            preloadResources(batch);
+            permissionAssignments = loadPermissionAssignments(batch);
+            roleAssignments = loadRoleAssignments(batch);
+        }
+        catch(SQLException e)
+        {
+            throw new BackendException("failed to load event data", e);
+        }
+        for(EventRecord record : batch)
+        {
+            if(log.isDebugEnabled())
             {
-                Role sup = coral.getSecurity().getRole(entity1);
-                Role sub = coral.getSecurity().getRole(entity2);
-                RoleImplication ri = new RoleImplicationImpl(coral, sup, sub);
-                event.fireRoleImplicationChangeEvent(ri, added);
+                log.debug("Remote Coral event: " + record);
             }
-            else if("ResourceClassInheritanceChange".equals(type)) 
+            try
             {
-                ResourceClass<?> p = coral.getSchema().getResourceClass(entity1);
-                ResourceClass<?> c = coral.getSchema().getResourceClass(entity2);
-                ResourceClassInheritance rci = 
-                    new ResourceClassInheritanceImpl(coral, p, c);
-                event.fireResourceClassInheritanceChangeEvent(rci, added);
+                dispatch(record, permissionAssignments, roleAssignments);
             }
-            else if("ResourceClassAttributesChange".equals(type)) 
+            catch(Exception e)
             {
-                AttributeDefinition<?> a = persistence.load(attributeDefinitionFactory, entity1);
-                event.fireResourceClassAttributesChangeEvent(a, added);
+                log.error("failed to process remote Coral event " + record, e);
             }
-            else if("ResourceTreeChange".equals(type)) 
+        }
+    }
+
+    /**
+     * Loads all resources referenced by a batch of events into the resource cache.
+     *
+     * @param batch the events.
+     */
+    private void preloadResources(List<EventRecord> batch)
+    {
+        Set<Long> ids = new LinkedHashSet<Long>();
+        for(EventRecord record : batch)
+        {
+            switch(record.code)
             {
-                Resource p = coral.getStore().getResource(entity1);
-                Resource c = coral.getStore().getResource(entity2);
-                ResourceInheritance ri = 
-                    new ResourceInheritanceImpl(p, c);
-                event.fireResourceTreeChangeEvent(ri, added);
+            case PERMISSION_ASSIGNMENT_CHANGE:
+            case RESOURCE_CREATION:
+            case RESOURCE_CHANGE:
+            case RESOURCE_DELETION:
+            case RESOURCE_TREE_DELETION:
+                ids.add(record.entity1);
+                break;
+            case RESOURCE_TREE_CHANGE:
+                ids.add(record.entity1);
+                ids.add(record.entity2);
+                break;
+            case RESOURCE_OWNERSHIP_CHANGE:
+                ids.add(record.entity2);
+                break;
+            default:
+                // no resources involved
             }
-            else if("ResourceOwnershipChange".equals(type)) 
+        }
+        if(ids.isEmpty())
+        {
+            return;
+        }
+        long[] idArray = new long[ids.size()];
+        int i = 0;
+        for(Long id : ids)
+        {
+            idArray[i++] = id.longValue();
+        }
+        try
+        {
+            coral.getStore().getResource(idArray);
+        }
+        catch(EntityDoesNotExistException e)
+        {
+            // reported when the affected event is dispatched
+        }
+    }
+
+    /**
+     * Loads the permission assignments added by a batch of events.
+     *
+     * @param batch the events.
+     * @return the assignments, keyed by the events.
+     * @throws SQLException if the assignments could not be loaded.
+     */
+    private Map<EventRecord, PermissionAssignment> loadPermissionAssignments(
+        List<EventRecord> batch)
+        throws SQLException
+    {
+        Map<EventRecord, PermissionAssignment> result = new HashMap<EventRecord, PermissionAssignment>();
+        List<Long> resourceIds = new ArrayList<Long>(ids(batch, PERMISSION_ASSIGNMENT_CHANGE));
+        for(int start = 0; start < resourceIds.size(); start += QUERY_BATCH_SIZE)
+        {
+            List<Long> chunk = resourceIds.subList(start,
+                Math.min(start + QUERY_BATCH_SIZE, resourceIds.size()));
+            List<? extends PermissionAssignment> list = persistence.load(
+                permissionAssignmentFactory, inClause("resource_id", chunk.size()),
+                chunk.toArray());
+            for(PermissionAssignment pa : list)
             {
-                Subject s = coral.getSecurity().getSubject(entity1);
-                Resource r = coral.getStore().getResource(entity2);
-                ResourceOwnership ro = 
-                    new ResourceOwnershipImpl(s, r);
-                event.fireResourceOwnershipChangeEvent(ro, added);
+                result.put(new EventRecord(PERMISSION_ASSIGNMENT_CHANGE, pa.getResource().getId(),
+                    pa.getRole().getId(), pa.getPermission().getId(), true), pa);
             }
-            else if("SubjectChange".equals(type)) 
+        }
+        return result;
+    }
+
+    /**
+     * Loads the role assignments added by a batch of events.
+     *
+     * @param batch the events.
+     * @return the assignments, keyed by the events.
+     * @throws SQLException if the assignments could not be loaded.
+     */
+    private Map<EventRecord, RoleAssignment> loadRoleAssignments(List<EventRecord> batch)
+        throws SQLException
+    {
+        Map<EventRecord, RoleAssignment> result = new HashMap<EventRecord, RoleAssignment>();
+        List<Long> subjectIds = new ArrayList<Long>(ids(batch, ROLE_ASSIGNMENT_CHANGE));
+        for(int start = 0; start < subjectIds.size(); start += QUERY_BATCH_SIZE)
+        {
+            List<Long> chunk = subjectIds.subList(start,
+                Math.min(start + QUERY_BATCH_SIZE, subjectIds.size()));
+            List<? extends RoleAssignment> list = persistence.load(roleAssignmentFactory,
+                inClause("subject_id", chunk.size()), chunk.toArray());
+            for(RoleAssignment ra : list)
             {
-                Subject s = coral.getSecurity().getSubject(entity1);
-                event.fireSubjectChangeEvent(s);
+                result.put(new EventRecord(ROLE_ASSIGNMENT_CHANGE, ra.getSubject().getId(), ra
+                    .getRole().getId(), -1L, true), ra);
             }
-            else if("RoleChange".equals(type)) 
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first entity identifiers of the 'added' events of the given type.
+     *
+     * @param batch the events.
+     * @param code the event type code.
+     * @return the identifiers.
+     */
+    private Set<Long> ids(List<EventRecord> batch, int code)
+    {
+        Set<Long> ids = new LinkedHashSet<Long>();
+        for(EventRecord record : batch)
+        {
+            if(record.code == code && record.added)
             {
-                Role r = coral.getSecurity().getRole(entity1);
-                event.fireRoleChangeEvent(r);
+                ids.add(record.entity1);
             }
-            else if("PermissionChange".equals(type)) 
+        }
+        return ids;
+    }
+
+    private String inClause(String column, int count)
+    {
+        StringBuilder buff = new StringBuilder(column).append(" IN (");
+        for(int i = 0; i < count; i++)
+        {
+            buff.append(i == 0 ? "?" : ", ?");
+        }
+        return buff.append(")").toString();
+    }
+
+    /**
+     * Fires a remote event on the inbound whiteboard.
+     *
+     * @param record the event.
+     * @param permissionAssignments the added permission assignments of the batch.
+     * @param roleAssignments the added role assignments of the batch.
+     * @throws EntityDoesNotExistException if an entity involved in the event does not exist.
+     * @throws SQLException if the event data could not be loaded.
+     */
+    private void dispatch(EventRecord record,
+        Map<EventRecord, PermissionAssignment> permissionAssignments,
+        Map<EventRecord, RoleAssignment> roleAssignments)
+        throws EntityDoesNotExistException, SQLException
+    {
+        long entity1 = record.entity1;
+        long entity2 = record.entity2;
+        long entity3 = record.entity3;
+        boolean added = record.added;
+        switch(record.code)
+        {
+        case PERMISSION_ASSOCIATION_CHANGE:
+        {
+            ResourceClass<?> rc = coral.getSchema().getResourceClass(entity1);
+            Permission p = coral.getSecurity().getPermission(entity2);
+            PermissionAssociation pa =
+                new PermissionAssociationImpl(coral, rc, p);
+            event.firePermissionAssociationChangeEvent(pa, added);
+            break;
+        }
+        case PERMISSION_ASSIGNMENT_CHANGE:
+        {
+            PermissionAssignment pa = null;
+            if(added)
             {
-                Permission p = coral.getSecurity().getPermission(entity1);
-                event.firePermissionChangeEvent(p);
+                pa = permissionAssignments.get(record);
+                if(pa == null)
+                {
+                    throw new EntityDoesNotExistException("permission assignment " + record
+                        + " does not exist");
+                }
             }
-            else if("ResourceCreation".equals(type)) 
+            else
             {
-                Resource r = coral.getStore().getResource(entity1);
-                event.fireResourceCreationEvent(r);
+                Resource res = coral.getStore().getResource(entity1);
+                Role r = coral.getSecurity().getRole(entity2);
+                Permission p = coral.getSecurity().getPermission(entity3);
+                pa = new PermissionAssignmentImpl(coral,
+                    null, res, r, p, false);
             }
-            else if("ResourceChange".equals(type)) 
+            event.firePermissionAssignmentChangeEvent(pa, added);
+            break;
+        }
+        case ROLE_ASSIGNMENT_CHANGE:
+        {
+            RoleAssignment ra = null;
+            if(added)
             {
-                Resource r = coral.getStore().getResource(entity1);
-                if(entity2 != -1)
-                {
-					Subject s = coral.getSecurity().getSubject(entity2);
-					event.fireResourceChangeEvent(r, s);
-                }
-                else
+                ra = roleAssignments.get(record);
+                if(ra == null)
                 {
-                	event.fireResourceChangeEvent(r, null);
+                    throw new EntityDoesNotExistException("role assignment " + record
+                        + " does not exist");
                 }
             }
-			else if("ResourceDeletion".equals(type)) 
-			{
-				Resource r = coral.getStore().getResource(entity1);
-				event.fireResourceDeletionEvent(r);
-			}
-            else if("ResourceClassChange".equals(type)) 
+            else
             {
-                ResourceClass<?> rc = coral.getSchema().getResourceClass(entity1);
-                event.fireResourceClassChangeEvent(rc);
+                Subject s = coral.getSecurity().getSubject(entity1);
+                Role r = coral.getSecurity().getRole(entity2);
+                ra = new RoleAssignmentImpl(coral, null, s, r, false);
             }
-            else if("AttributeClassChange".equals(type)) 
+            event.fireRoleAssignmentChangeEvent(ra, added);
+            break;
+        }
+        case ROLE_IMPLICATION_CHANGE:
+        {
+            Role sup = coral.getSecurity().getRole(entity1);
+            Role sub = coral.getSecurity().getRole(entity2);
+            RoleImplication ri = new RoleImplicationImpl(coral, sup, sub);
+            event.fireRoleImplicationChangeEvent(ri, added);
+            break;
+        }
+        case RESOURCE_CLASS_INHERITANCE_CHANGE:
+        {
+            ResourceClass<?> p = coral.getSchema().getResourceClass(entity1);
+            ResourceClass<?> c = coral.getSchema().getResourceClass(entity2);
+            ResourceClassInheritance rci =
+                new ResourceClassInheritanceImpl(coral, p, c);
+            event.fireResourceClassInheritanceChangeEvent(rci, added);
+            break;
+        }
+        case RESOURCE_CLASS_ATTRIBUTES_CHANGE:
+        {
+            AttributeDefinition<?> a = persistence.load(attributeDefinitionFactory, entity1);
+            event.fireResourceClassAttributesChangeEvent(a, added);
+            break;
+        }
+        case RESOURCE_TREE_CHANGE:
+        {
+            Resource p = coral.getStore().getResource(entity1);
+            Resource c = coral.getStore().getResource(entity2);
+            ResourceInheritance ri =
+                new ResourceInheritanceImpl(p, c);
+            event.fireResourceTreeChangeEvent(ri, added);
+            break;
+        }
+        case RESOURCE_OWNERSHIP_CHANGE:
+        {
+            Subject s = coral.getSecurity().getSubject(entity1);
+            Resource r = coral.getStore().getResource(entity2);
+            ResourceOwnership ro =
+                new ResourceOwnershipImpl(s, r);
+            event.fireResourceOwnershipChangeEvent(ro, added);
+            break;
+        }
+        case SUBJECT_CHANGE:
+            event.fireSubjectChangeEvent(coral.getSecurity().getSubject(entity1));
+            break;
+        case ROLE_CHANGE:
+            event.fireRoleChangeEvent(coral.getSecurity().getRole(entity1));
+            break;
+        case PERMISSION_CHANGE:
+            event.firePermissionChangeEvent(coral.getSecurity().getPermission(entity1));
+            break;
+        case RESOURCE_CREATION:
+            event.fireResourceCreationEvent(coral.getStore().getResource(entity1));
+            break;
+        case RESOURCE_CHANGE:
+        {
+            Resource r = coral.getStore().getResource(entity1);
+            if(entity2 != -1)
             {
-                AttributeClass<?> ac = coral.getSchema().getAttributeClass(entity1);
-                event.fireAttributeClassChangeEvent(ac);
+                Subject s = coral.getSecurity().getSubject(entity2);
+                event.fireResourceChangeEvent(r, s);
             }
-            else if("AttributeDefinictionChange".equals(type)) 
+            else
             {
-                AttributeDefinition<?> a = persistence.load(attributeDefinitionFactory, entity1);
-                event.fireAttributeDefinitionChangeEvent(a);
+                event.fireResourceChangeEvent(r, null);
             }
-            else
+            break;
+        }
+        case RESOURCE_DELETION:
+            event.fireResourceDeletionEvent(coral.getStore().getResource(entity1));
+            break;
+        case RESOURCE_TREE_DELETION:
+            event.fireResourceTreeDeletionEvent(coral.getStore().getResource(entity1));
+            break;
+        case RESOURCE_CLASS_CHANGE:
+            event.fireResourceClassChangeEvent(coral.getSchema().getResourceClass(entity1));
+            break;
+        case ATTRIBUTE_CLASS_CHANGE:
+        {
+            AttributeClass<?> ac = coral.getSchema().getAttributeClass(entity1);
+            event.fireAttributeClassChangeEvent(ac);
+            break;
+        }
+        case ATTRIBUTE_DEFINITION_CHANGE:
+        {
+            AttributeDefinition<?> a = persistence.load(attributeDefinitionFactory, entity1);
+            event.fireAttributeDefinitionChangeEvent(a);
+            break;
+        }
+        default:
+            throw new BackendException("unknown event " + record.code);
+        }
+    }
+
+    /**
+     * Returns the type code of an event.
+     *
+     * @param type the event type name.
+     * @return the type code.
+     */
+    private static int code(String type)
+    {
+        Integer code = CODES.get(type);
+        if(code == null)
+        {
+            throw new BackendException("unknown event " + type);
+        }
+        return code.intValue();
+    }
+
+    /**
+     * Encodes a batch of events.
+     *
+     * @param batch the events.
+     * @return the message.
+     * @throws IOException if the events could not be encoded.
+     */
+    static byte[] encode(List<EventRecord> batch)
+        throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(4 + batch.size() * 26);
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeInt(batch.size());
+        for(EventRecord record : batch)
+        {
+            int flags = (record.added ? FLAG_ADDED : 0) | (record.entity2 != -1L ? FLAG_ENTITY2 : 0)
+                | (record.entity3 != -1L ? FLAG_ENTITY3 : 0);
+            out.writeByte(record.code);
+            out.writeByte(flags);
+            out.writeLong(record.entity1);
+            if((flags & FLAG_ENTITY2) != 0)
+            {
+                out.writeLong(record.entity2);
+            }
+            if((flags & FLAG_ENTITY3) != 0)
             {
-                throw new BackendException("unknown event "+type);
+                out.writeLong(record.entity3);
             }
         }
-        catch(EntityDoesNotExistException e)
+        out.flush();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Decodes a batch of events.
+     *
+     * @param message the message.
+     * @return the events.
+     * @throws IOException if the message is malformed.
+     */
+    static List<EventRecord> decode(byte[] message)
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+        int count = in.readInt();
+        List<EventRecord> batch = new ArrayList<EventRecord>(count);
+        for(int i = 0; i < count; i++)
         {
-            throw new BackendException("invalid entity id", e);
+            int code = in.readUnsignedByte();
+            int flags = in.readUnsignedByte();
+            long entity1 = in.readLong();
+            long entity2 = (flags & FLAG_ENTITY2) != 0 ? in.readLong() : -1L;
+            long entity3 = (flags & FLAG_ENTITY3) != 0 ? in.readLong() : -1L;
+            batch.add(new EventRecord(code, entity1, entity2, entity3, (flags & FLAG_ADDED) != 0));
         }
-        catch(SQLException e)
+        return batch;
+    }
+
+    /**
+     * A queued or received event.
+     * <p>
+     * Two records are equal when they concern the same entities, regardless of the 'added' flag,
+     * and resource change events are compared by resource only. This allows the later event to
+     * replace the earlier one in the outbound queue.
+     * </p>
+     */
+    static final class EventRecord
+    {
+        private final int code;
+
+        private final long entity1;
+
+        private final long entity2;
+
+        private final long entity3;
+
+        private final boolean added;
+
+        EventRecord(int code, long entity1, long entity2, long entity3, boolean added)
+        {
+            this.code = code;
+            this.entity1 = entity1;
+            this.entity2 = entity2;
+            this.entity3 = entity3;
+            this.added = added;
+        }
+
+        int getCode()
+        {
+            return code;
+        }
+
+        long getEntity1()
+        {
+            return entity1;
+        }
+
+        long getEntity2()
+        {
+            return entity2;
+        }
+
+        long getEntity3()
+        {
+            return entity3;
+        }
+
+        boolean isAdded()
+        {
+            return added;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if(!(obj instanceof EventRecord))
+            {
+                return false;
+            }
+            EventRecord other = (EventRecord)obj;
+            if(code != other.code || entity1 != other.entity1)
+            {
+                return false;
+            }
+            return code == RESOURCE_CHANGE
+                || (entity2 == other.entity2 && entity3 == other.entity3);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = code * 31 + (int)(entity1 ^ (entity1 >>> 32));
+            if(code != RESOURCE_CHANGE)
+            {
+                hash = hash * 31 + (int)(entity2 ^ (entity2 >>> 32));
+                hash = hash * 31 + (int)(entity3 ^ (entity3 >>> 32));
+            }
+            return hash;
+        }
+
+        @Override
+        public String toString()
         {
-            throw new BackendException("invalid entity id", e);
+            StringBuilder buff = new StringBuilder();
+            buff.append(code < TYPES.length ? TYPES[code] : Integer.toString(code));
+            buff.append("(#");
+            buff.append(entity1);
+            if(entity2 != -1L)
+            {
+                buff.append(", #");
+                buff.append(entity2);
+                if(entity3 != -1L)
+                {
+                    buff.append(", #");
+                    buff.append(entity3);
+                }
+            }
+            buff.append(added ? ", true)" : ", false)");
+            return buff.toString();
         }
     }
 }
-
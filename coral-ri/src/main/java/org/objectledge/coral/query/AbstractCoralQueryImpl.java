@@ -24,6 +24,7 @@ import org.objectledge.coral.script.parser.ASTclassAndAliasSpecifierList;
 import org.objectledge.coral.script.parser.ASTcomparisonCondition;
 import org.objectledge.coral.script.parser.ASTconditionalExpression;
 import org.objectledge.coral.script.parser.ASTdefinedCondition;
+import org.objectledge.coral.script.parser.ASTdescendantCondition;
 import org.objectledge.coral.script.parser.ASTequalityCondition;
 import org.objectledge.coral.script.parser.ASTfindResourceStatement;
 import org.objectledge.coral.script.parser.ASTorderByList;
@@ -93,7 +94,10 @@ public abstract class AbstractCoralQueryImpl
      * $&lt;NUMBER&gt;, with no intervening whitespace. The number must be greater or equal to 1.
      * The positional parameters can only be used on the right hand side of binary operators. When
      * the query is executed, all positional parameters must be set to non-null values. To test a
-     * resource's property for being defined (i.e. not null), use the DEFINED operator.
+     * resource's property for being defined (i.e. not null), use the DEFINED operator. To restrict
+     * a resource reference to a subtree, use <code>&lt;attribute&gt; DESCENDANT OF &lt;id&gt;</code>,
+     * where the right hand side is a resource id or a positional parameter. The condition may be
+     * negated with NOT, but may only be joined with the other conditions using AND.
      * </p>
      * 
      * @param query the query.
@@ -434,7 +438,7 @@ public abstract class AbstractCoralQueryImpl
      * @param query the query
      * @return a parsed FIND RESOURCE statement.
      */
-    private ASTfindResourceStatement parseQuery(String query)
+    protected ASTfindResourceStatement parseQuery(String query)
         throws MalformedQueryException
     {
         RMLParser parser = coral.getRMLParserFactory().getParser(new StringReader(query));
@@ -486,6 +490,46 @@ public abstract class AbstractCoralQueryImpl
                     return data;
                 }
 
+                public Object visit(ASTdescendantCondition node, Object data)
+                {
+                    try
+                    {
+                        AttributeDefinition<?> lhs = ((ResultColumnAttribute<?, ?>)parseOperand(
+                            node.getLHS(), true, false, columnMap)).getAttribute();
+                        if((lhs.getFlags() & AttributeFlags.SYNTHETIC) != 0)
+                        {
+                            throw new MalformedQueryException("SYNTHETIC attribute "
+                                + lhs.getName() + "cannot be used in WHERE clause");
+                        }
+                        boolean isId = (lhs.getFlags() & AttributeFlags.BUILTIN) != 0
+                            && lhs.getName().equals("id");
+                        if(!isId
+                            && !Resource.class.isAssignableFrom(lhs.getAttributeClass()
+                                .getJavaClass()))
+                        {
+                            throw new MalformedQueryException(lhs.getName()
+                                + " is not a Resource reference");
+                        }
+                        if(!node.isRHSParameter())
+                        {
+                            try
+                            {
+                                Long.parseLong(node.getRHS());
+                            }
+                            catch(NumberFormatException e)
+                            {
+                                throw new MalformedQueryException("invalid resource id "
+                                    + node.getRHS(), e);
+                            }
+                        }
+                    }
+                    catch(MalformedQueryException e)
+                    {
+                        throw new WrappedMalformedQueryException(e);
+                    }
+                    return data;
+                }
+
                 public Object visit(ASTequalityCondition node, Object data)
                 {
                     try
@@ -508,6 +552,11 @@ public abstract class AbstractCoralQueryImpl
                         {
                             rhs = node.getRHS();
                         }
+                        else if(node.isRHSParameter())
+                        {
+                            // value provided on execution
+                            rhs = null;
+                        }
                         else
                         {
                             rhs = parseOperand(node.getRHS(), false, false, columnMap);
@@ -598,6 +647,11 @@ public abstract class AbstractCoralQueryImpl
                         {
                             rhs = node.getRHS();
                         }
+                        else if(node.isRHSParameter())
+                        {
+                            // value provided on execution
+                            rhs = null;
+                        }
                         else
                         {
                             rhs = parseOperand(node.getRHS(), false, false, columnMap);
@@ -661,6 +715,11 @@ public abstract class AbstractCoralQueryImpl
                         {
                             rhs = node.getRHS();
                         }
+                        else if(node.isRHSParameter())
+                        {
+                            // value provided on execution
+                            rhs = null;
+                        }
                         else
                         {
                             rhs = parseOperand(node.getRHS(), false, false, columnMap);
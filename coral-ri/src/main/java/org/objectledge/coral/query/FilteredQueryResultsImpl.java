@@ -2,9 +2,11 @@ package org.objectledge.coral.query;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.objectledge.coral.entity.EntityDoesNotExistException;
 import org.objectledge.coral.schema.AttributeClass;
@@ -240,6 +242,27 @@ public class FilteredQueryResultsImpl
         return columnAttribute[index-1].getAttributeClass();
     }
 
+    // implementation ////////////////////////////////////////////////////////
+
+    /**
+     * Returns the attributes selected from a column of the underlying results.
+     *
+     * @param index the index of the column of the underlying results (1 based).
+     * @return the attributes selected from the column, possibly empty.
+     */
+    Set<AttributeDefinition<?>> getSelectedAttributes(int index)
+    {
+        Set<AttributeDefinition<?>> result = new HashSet<AttributeDefinition<?>>();
+        for(int i=0; i<select.length; i++)
+        {
+            if(columnIndex[i] == index)
+            {
+                result.add(columnAttribute[i]);
+            }
+        }
+        return result;
+    }
+
     // row class /////////////////////////////////////////////////////////////
     
     /**
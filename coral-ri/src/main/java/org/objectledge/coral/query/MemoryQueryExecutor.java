@@ -0,0 +1,1442 @@
+package org.objectledge.coral.query;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.objectledge.coral.BackendException;
+import org.objectledge.coral.CoralConfig;
+import org.objectledge.coral.CoralCore;
+import org.objectledge.coral.entity.Entity;
+import org.objectledge.coral.entity.EntityDoesNotExistException;
+import org.objectledge.coral.event.CoralEventHub;
+import org.objectledge.coral.event.ResourceChangeListener;
+import org.objectledge.coral.event.ResourceCreationListener;
+import org.objectledge.coral.event.ResourceDeletionListener;
+import org.objectledge.coral.query.ResourceQueryHandler.ResultColumn;
+import org.objectledge.coral.query.ResourceQueryHandler.ResultColumnAttribute;
+import org.objectledge.coral.schema.AttributeDefinition;
+import org.objectledge.coral.schema.AttributeFlags;
+import org.objectledge.coral.schema.ResourceClass;
+import org.objectledge.coral.script.parser.ASTandExpression;
+import org.objectledge.coral.script.parser.ASTapproximationCondition;
+import org.objectledge.coral.script.parser.ASTcomparisonCondition;
+import org.objectledge.coral.script.parser.ASTconditionalExpression;
+import org.objectledge.coral.script.parser.ASTdefinedCondition;
+import org.objectledge.coral.script.parser.ASTdescendantCondition;
+import org.objectledge.coral.script.parser.ASTequalityCondition;
+import org.objectledge.coral.script.parser.ASTfindResourceStatement;
+import org.objectledge.coral.script.parser.ASTnotExpression;
+import org.objectledge.coral.script.parser.ASTorExpression;
+import org.objectledge.coral.script.parser.ASTorderBySpecifier;
+import org.objectledge.coral.script.parser.DefaultRMLVisitor;
+import org.objectledge.coral.script.parser.RMLOperator;
+import org.objectledge.coral.script.parser.RMLVisitor;
+import org.objectledge.coral.script.parser.SimpleNode;
+import org.objectledge.coral.security.Subject;
+import org.objectledge.coral.store.CoralStore;
+import org.objectledge.coral.store.Resource;
+import org.objectledge.database.Database;
+import org.objectledge.database.DatabaseUtils;
+
+import bak.pcj.LongIterator;
+import bak.pcj.map.LongKeyMap;
+import bak.pcj.map.LongKeyOpenHashMap;
+import bak.pcj.set.LongOpenHashSet;
+import bak.pcj.set.LongSet;
+
+/**
+ * Evaluates queries over the cached instances of memory-resident resource classes.
+ * <p>
+ * A query is evaluated in memory when all the classes in its FROM clause are listed as
+ * memory-resident in the {@link CoralConfig}. The identifiers of the instances of each such
+ * class, including instances of its subclasses, are read from the database when first needed,
+ * and kept current by resource creation and deletion events. The resources themselves are
+ * retrieved from the store, where they remain cached. Conditions are evaluated using the
+ * comparators of the attribute handlers, and follow the SQL rules for undefined values: a
+ * comparison involving an undefined value is neither true nor false.
+ * </p>
+ * <p>
+ * An equality condition on a concrete attribute that restricts the whole WHERE clause is answered
+ * from an index mapping attribute values to the resources holding them. Indexes are built on first
+ * use. When a resource changes, its entries are moved aside into a set of resources that are
+ * checked by every lookup, until the index gets rebuilt.
+ * </p>
+ * <p>
+ * Results are the same as the results of the SQL translation: queries see attribute values stored
+ * with {@link Resource#update()}. When an attribute involved in the query holds a modification
+ * that was not stored yet, evaluation is abandoned and the query is executed in the database.
+ * Such resources are never entered into the indexes.
+ * </p>
+ */
+class MemoryQueryExecutor
+    implements ResourceCreationListener, ResourceDeletionListener, ResourceChangeListener
+{
+    /** Number of attempts to load a consistent instance set while resources are being created. */
+    private static final int LOAD_ATTEMPTS = 3;
+
+    /** Minimum number of changed resources, after which an index is rebuilt. */
+    static final int MIN_STALE_ENTRIES = 64;
+
+    private final AbstractCoralQueryImpl query;
+
+    private final CoralCore coral;
+
+    private final Database database;
+
+    /** Resource class to LongSet of instance ids. Guarded by this object's monitor. */
+    private final Map<ResourceClass<?>, LongSet> instances =
+        new HashMap<ResourceClass<?>, LongSet>();
+
+    /** Resource class to attribute to index. Guarded by this object's monitor. */
+    private final Map<ResourceClass<?>, Map<AttributeDefinition<?>, AttributeIndex>> indexes =
+        new HashMap<ResourceClass<?>, Map<AttributeDefinition<?>, AttributeIndex>>();
+
+    /**
+     * Incremented when the instances of memory-resident classes change. Guarded by this object's
+     * monitor.
+     */
+    private long modCount = 0;
+
+    /**
+     * Creates an executor.
+     *
+     * @param query the query implementation the executor is attached to.
+     * @param coral the coral core.
+     * @param database the database.
+     * @param coralEventHub the event hub.
+     */
+    MemoryQueryExecutor(AbstractCoralQueryImpl query, CoralCore coral, Database database,
+        CoralEventHub coralEventHub)
+    {
+        this.query = query;
+        this.coral = coral;
+        this.database = database;
+        coralEventHub.getGlobal().addResourceCreationListener(this, null);
+        coralEventHub.getGlobal().addResourceDeletionListener(this, null);
+        coralEventHub.getGlobal().addResourceChangeListener(this, null);
+    }
+
+    /**
+     * Compiles a query for evaluation in memory.
+     *
+     * @param statement the AST node representing a FIND RESOURCE statement.
+     * @param columns the result columns.
+     * @param columnMap the result columns keyed by alias.
+     * @return the plan, or <code>null</code> if the query involves classes that are not
+     *         memory-resident.
+     * @throws MalformedQueryException if the query has semantic errors and thus cannot be executed.
+     */
+    Plan compile(ASTfindResourceStatement statement, List<ResultColumn<?>> columns,
+        Map<String, ResultColumn<?>> columnMap)
+        throws MalformedQueryException
+    {
+        if(statement.getFrom() == null)
+        {
+            return null;
+        }
+        ResourceClass<?>[] classes = new ResourceClass<?>[columns.size()];
+        for(int i = 0; i < classes.length; i++)
+        {
+            classes[i] = columns.get(i).getRClass();
+            if(!isMemoryResident(classes[i]))
+            {
+                return null;
+            }
+        }
+        Condition condition = null;
+        if(statement.getWhere() != null)
+        {
+            condition = compileCondition(statement.getWhere(), columnMap);
+        }
+        OrderBy[] orderBy = new OrderBy[0];
+        if(statement.getOrderBy() != null)
+        {
+            ASTorderBySpecifier[] items = query.getItems(statement.getOrderBy());
+            orderBy = new OrderBy[items.length];
+            for(int i = 0; i < items.length; i++)
+            {
+                ResultColumnAttribute<?, ?> rca = (ResultColumnAttribute<?, ?>)query.parseOperand(
+                    items[i].getAttribute(), true, false, columnMap);
+                orderBy[i] = new OrderBy(new AttributeValue(rca), items[i].getDirection());
+            }
+        }
+        return new Plan(classes, condition, getLookups(condition, classes.length), orderBy,
+            statement.getLimit(), statement.getOffset());
+    }
+
+    /**
+     * Executes a compiled query.
+     *
+     * @param plan the plan.
+     * @param parameters positional parameter values, all non-null.
+     * @return resource identifiers, one array per row, or <code>null</code> if the query involves
+     *         attribute modifications that were not stored yet, and needs to be executed in the
+     *         database.
+     * @throws MalformedQueryException if a parameter value is not valid for the attribute it is
+     *         compared with.
+     */
+    List<long[]> execute(Plan plan, Object[] parameters)
+        throws MalformedQueryException
+    {
+        try
+        {
+            return evaluate(plan, parameters);
+        }
+        catch(UnstoredModificationException e)
+        {
+            return null;
+        }
+        catch(InvalidParameterException e)
+        {
+            throw e.getException();
+        }
+    }
+
+    private List<long[]> evaluate(Plan plan, Object[] parameters)
+    {
+        int width = plan.classes.length;
+        Resource[][] candidates = new Resource[width][];
+        for(int i = 0; i < width; i++)
+        {
+            Lookup lookup = plan.lookups[i];
+            long[] ids = null;
+            if(lookup != null)
+            {
+                ids = lookup(plan.classes[i], lookup.attribute.attribute,
+                    lookup.value.value(null, parameters));
+            }
+            if(ids == null)
+            {
+                ids = getInstances(plan.classes[i]);
+            }
+            candidates[i] = resolve(ids);
+        }
+        List<Resource[]> rows = new ArrayList<Resource[]>();
+        collect(plan, candidates, new Resource[width], 0, parameters, rows);
+        Collections.sort(rows, ID_ORDER);
+        if(plan.orderBy.length > 0)
+        {
+            Collections.sort(rows, new RowComparator(plan.orderBy, parameters));
+        }
+        int from = Math.min(plan.offset, rows.size());
+        int to = plan.limit > 0 ? Math.min(from + plan.limit, rows.size()) : rows.size();
+        List<long[]> result = new ArrayList<long[]>(to - from);
+        for(Resource[] row : rows.subList(from, to))
+        {
+            long[] ids = new long[width];
+            for(int i = 0; i < width; i++)
+            {
+                ids[i] = row[i].getId();
+            }
+            result.add(ids);
+        }
+        return result;
+    }
+
+    /**
+     * Drops all instance sets and indexes.
+     */
+    synchronized void clear()
+    {
+        instances.clear();
+        indexes.clear();
+        modCount++;
+    }
+
+    // event listeners //////////////////////////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    public void resourceCreated(Resource resource)
+    {
+        if(isTracked(resource.getResourceClass()))
+        {
+            synchronized(this)
+            {
+                modCount++;
+                for(Map.Entry<ResourceClass<?>, LongSet> entry : instances.entrySet())
+                {
+                    if(isInstance(resource, entry.getKey()))
+                    {
+                        entry.getValue().add(resource.getId());
+                        markChanged(entry.getKey(), resource.getId());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void resourceDeleted(Resource resource)
+    {
+        if(isTracked(resource.getResourceClass()))
+        {
+            synchronized(this)
+            {
+                modCount++;
+                for(Map.Entry<ResourceClass<?>, LongSet> entry : instances.entrySet())
+                {
+                    entry.getValue().remove(resource.getId());
+                }
+                for(Map<AttributeDefinition<?>, AttributeIndex> classIndexes : indexes.values())
+                {
+                    for(AttributeIndex index : classIndexes.values())
+                    {
+                        index.remove(resource.getId());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void resourceChanged(Resource resource, Subject subject)
+    {
+        if(isTracked(resource.getResourceClass()))
+        {
+            synchronized(this)
+            {
+                modCount++;
+                for(ResourceClass<?> rc : indexes.keySet())
+                {
+                    if(isInstance(resource, rc))
+                    {
+                        markChanged(rc, resource.getId());
+                    }
+                }
+            }
+        }
+    }
+
+    // instances and indexes ////////////////////////////////////////////////////////////////////
+
+    /**
+     * Checks if a resource class is configured as memory-resident.
+     *
+     * @param rc the resource class.
+     * @return <code>true</code> if the class is memory-resident.
+     */
+    private boolean isMemoryResident(ResourceClass<?> rc)
+    {
+        // configuration is set after the components are created
+        CoralConfig config = coral.getConfig();
+        return config != null && config.getMemoryResidentClasses().contains(rc.getName());
+    }
+
+    /**
+     * Checks if instances of a resource class belong to any memory-resident class.
+     *
+     * @param rc the resource class.
+     * @return <code>true</code> if the class or one of its parent classes is memory-resident.
+     */
+    private boolean isTracked(ResourceClass<?> rc)
+    {
+        if(isMemoryResident(rc))
+        {
+            return true;
+        }
+        for(ResourceClass<?> parent : rc.getParentClasses())
+        {
+            if(isMemoryResident(parent))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isInstance(Resource resource, ResourceClass<?> rc)
+    {
+        return rc.equals(resource.getResourceClass()) || rc.isParent(resource.getResourceClass());
+    }
+
+    /**
+     * Moves a changed resource out of the indexes of a class.
+     */
+    private void markChanged(ResourceClass<?> rc, long id)
+    {
+        Map<AttributeDefinition<?>, AttributeIndex> classIndexes = indexes.get(rc);
+        if(classIndexes != null)
+        {
+            for(AttributeIndex index : classIndexes.values())
+            {
+                index.markChanged(id);
+            }
+        }
+    }
+
+    /**
+     * Returns the identifiers of the instances of a memory-resident class.
+     *
+     * @param rc the resource class.
+     * @return the identifiers.
+     */
+    private long[] getInstances(ResourceClass<?> rc)
+    {
+        LongSet ids = null;
+        for(int attempt = 0; attempt < LOAD_ATTEMPTS; attempt++)
+        {
+            long version;
+            synchronized(this)
+            {
+                LongSet cached = instances.get(rc);
+                if(cached != null)
+                {
+                    return cached.toArray();
+                }
+                version = modCount;
+            }
+            ids = loadInstances(rc);
+            synchronized(this)
+            {
+                // resources might have been created or deleted while the ids were being read
+                if(version == modCount)
+                {
+                    instances.put(rc, ids);
+                    return ids.toArray();
+                }
+            }
+        }
+        return ids.toArray();
+    }
+
+    /**
+     * Reads the identifiers of the instances of a class from the database.
+     */
+    private LongSet loadInstances(ResourceClass<?> rc)
+    {
+        StringBuilder sql = new StringBuilder(
+            "SELECT resource_id FROM coral_resource WHERE resource_class_id IN (");
+        sql.append(rc.getIdString());
+        for(ResourceClass<?> child : rc.getChildClasses())
+        {
+            sql.append(", ").append(child.getIdString());
+        }
+        sql.append(")");
+        LongSet ids = new LongOpenHashSet();
+        Connection conn = null;
+        try
+        {
+            conn = database.getConnection();
+            try(Statement stmt = conn.createStatement())
+            {
+                try(ResultSet rs = stmt.executeQuery(sql.toString()))
+                {
+                    while(rs.next())
+                    {
+                        ids.add(rs.getLong(1));
+                    }
+                }
+            }
+        }
+        catch(SQLException e)
+        {
+            throw new BackendException("failed to read instances of " + rc.getName(), e);
+        }
+        finally
+        {
+            DatabaseUtils.close(conn);
+        }
+        return ids;
+    }
+
+    /**
+     * Looks up instances of a class by attribute value.
+     *
+     * @param rc the resource class.
+     * @param attribute the attribute.
+     * @param value the value.
+     * @return identifiers of the instances that may hold the value, or <code>null</code> if the
+     *         index is not available.
+     */
+    private long[] lookup(ResourceClass<?> rc, AttributeDefinition<?> attribute, Object value)
+    {
+        if(value == null)
+        {
+            return new long[0];
+        }
+        long version;
+        synchronized(this)
+        {
+            Map<AttributeDefinition<?>, AttributeIndex> classIndexes = indexes.get(rc);
+            AttributeIndex index = classIndexes != null ? classIndexes.get(attribute) : null;
+            if(index != null && !index.isOutdated())
+            {
+                return index.get(key(value));
+            }
+            version = modCount;
+        }
+        AttributeIndex index = new AttributeIndex();
+        for(Resource resource : resolve(getInstances(rc)))
+        {
+            Object key = key(resource.get(attribute));
+            if(resource.isModified(attribute))
+            {
+                // the stored value is not known, the resource needs to be checked by every lookup
+                index.markChanged(resource.getId());
+            }
+            else
+            {
+                index.put(resource.getId(), key);
+            }
+        }
+        synchronized(this)
+        {
+            // resources might have changed while the values were being read
+            if(version != modCount)
+            {
+                return null;
+            }
+            Map<AttributeDefinition<?>, AttributeIndex> classIndexes = indexes.get(rc);
+            if(classIndexes == null)
+            {
+                classIndexes = new HashMap<AttributeDefinition<?>, AttributeIndex>();
+                indexes.put(rc, classIndexes);
+            }
+            classIndexes.put(attribute, index);
+            return index.get(key(value));
+        }
+    }
+
+    /**
+     * Retrieves resources from the store, skipping the ones that were deleted.
+     */
+    private Resource[] resolve(long[] ids)
+    {
+        CoralStore store = coral.getStore();
+        try
+        {
+            return store.getResource(ids);
+        }
+        catch(EntityDoesNotExistException e)
+        {
+            List<Resource> existing = new ArrayList<Resource>(ids.length);
+            for(long id : ids)
+            {
+                try
+                {
+                    existing.add(store.getResource(id));
+                }
+                catch(EntityDoesNotExistException ee)
+                {
+                    // deleted concurrently
+                }
+            }
+            return existing.toArray(new Resource[existing.size()]);
+        }
+    }
+
+    // evaluation ///////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Collects the rows of the cartesian product of the candidates that satisfy the condition.
+     */
+    private void collect(Plan plan, Resource[][] candidates, Resource[] row, int column,
+        Object[] parameters, List<Resource[]> rows)
+    {
+        if(column == row.length)
+        {
+            if(plan.condition == null
+                || Boolean.TRUE.equals(plan.condition.evaluate(row, parameters)))
+            {
+                rows.add(row.clone());
+            }
+            return;
+        }
+        for(Resource resource : candidates[column])
+        {
+            row[column] = resource;
+            collect(plan, candidates, row, column + 1, parameters, rows);
+        }
+    }
+
+    /**
+     * Returns the value used as an index key.
+     */
+    private static Object key(Object value)
+    {
+        return value instanceof Entity ? (Object)((Entity)value).getIdObject() : value;
+    }
+
+    /**
+     * Compares two defined values.
+     * <p>
+     * Entities are compared by identifier, as in the database.
+     * </p>
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static int compare(Comparator comparator, Object v1, Object v2)
+    {
+        if(v1 instanceof Entity && v2 instanceof Entity)
+        {
+            long id1 = ((Entity)v1).getId();
+            long id2 = ((Entity)v2).getId();
+            return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+        }
+        if(comparator != null)
+        {
+            return comparator.compare(v1, v2);
+        }
+        if(v1 instanceof Comparable)
+        {
+            return ((Comparable)v1).compareTo(v2);
+        }
+        return v1.toString().compareTo(v2.toString());
+    }
+
+    /**
+     * Translates an SQL LIKE pattern into a regular expression.
+     *
+     * @param pattern the LIKE pattern.
+     * @param caseSensitive <code>false</code> for case insensitive matching.
+     * @return the regular expression.
+     */
+    static Pattern likePattern(String pattern, boolean caseSensitive)
+    {
+        StringBuilder regex = new StringBuilder();
+        int start = 0;
+        for(int i = 0; i < pattern.length(); i++)
+        {
+            char c = pattern.charAt(i);
+            if(c == '%' || c == '_')
+            {
+                if(i > start)
+                {
+                    regex.append(Pattern.quote(pattern.substring(start, i)));
+                }
+                regex.append(c == '%' ? ".*" : ".");
+                start = i + 1;
+            }
+        }
+        if(start < pattern.length())
+        {
+            regex.append(Pattern.quote(pattern.substring(start)));
+        }
+        return Pattern.compile(regex.toString(), caseSensitive ? Pattern.DOTALL
+            : Pattern.DOTALL | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    // compilation //////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Translates a WHERE clause into a condition tree.
+     *
+     * @param expr the WHERE clause.
+     * @param columnMap the result columns keyed by alias.
+     * @return the condition.
+     */
+    private Condition compileCondition(ASTconditionalExpression expr,
+        final Map<String, ResultColumn<?>> columnMap)
+        throws MalformedQueryException
+    {
+        RMLVisitor visitor = new DefaultRMLVisitor()
+            {
+                /** Number of distinct positional parameters seen so far. */
+                private int count = 0;
+
+                public Object visit(ASTconditionalExpression node, Object data)
+                {
+                    return node.jjtGetChild(0).jjtAccept(this, data);
+                }
+
+                public Object visit(ASTorExpression node, Object data)
+                {
+                    return new Or(children(node, data));
+                }
+
+                public Object visit(ASTandExpression node, Object data)
+                {
+                    return new And(children(node, data));
+                }
+
+                public Object visit(ASTnotExpression node, Object data)
+                {
+                    return new Not((Condition)node.jjtGetChild(0).jjtAccept(this, data));
+                }
+
+                public Object visit(ASTdefinedCondition node, Object data)
+                {
+                    return new Defined(attribute(node.getRHS()));
+                }
+
+                public Object visit(ASTdescendantCondition node, Object data)
+                {
+                    Operand root = node.isRHSParameter() ? new Parameter(
+                        parameter(node.getRHS()), null) : new Literal(Long.valueOf(node.getRHS()));
+                    return new Descendant(attribute(node.getLHS()), root, coral);
+                }
+
+                public Object visit(ASTequalityCondition node, Object data)
+                {
+                    AttributeValue lhs = attribute(node.getLHS());
+                    return new Equality(lhs, operand(node.getRHS(), node.isRHSLiteral(),
+                        node.isRHSParameter(), lhs.attribute),
+                        node.getOperator() == RMLOperator.EQUALS);
+                }
+
+                public Object visit(ASTcomparisonCondition node, Object data)
+                {
+                    AttributeValue lhs = attribute(node.getLHS());
+                    return new Comparison(lhs, operand(node.getRHS(), node.isRHSLiteral(),
+                        node.isRHSParameter(), lhs.attribute), node.getOperator());
+                }
+
+                public Object visit(ASTapproximationCondition node, Object data)
+                {
+                    AttributeValue lhs = attribute(node.getLHS());
+                    Operand rhs;
+                    if(node.isRHSLiteral())
+                    {
+                        // the pattern is not an attribute value
+                        rhs = new Literal(node.getRHS());
+                    }
+                    else
+                    {
+                        rhs = operand(node.getRHS(), false, node.isRHSParameter(), null);
+                    }
+                    return new Approximation(lhs, rhs, node.isCaseSensitive());
+                }
+
+                private Condition[] children(SimpleNode node, Object data)
+                {
+                    Condition[] children = new Condition[node.jjtGetNumChildren()];
+                    for(int i = 0; i < children.length; i++)
+                    {
+                        children[i] = (Condition)node.jjtGetChild(i).jjtAccept(this, data);
+                    }
+                    return children;
+                }
+
+                private AttributeValue attribute(String operand)
+                {
+                    try
+                    {
+                        return new AttributeValue((ResultColumnAttribute<?, ?>)query.parseOperand(
+                            operand, true, false, columnMap));
+                    }
+                    catch(MalformedQueryException e)
+                    {
+                        throw query.new WrappedMalformedQueryException(e);
+                    }
+                }
+
+                private Operand operand(String operand, boolean literal, boolean parameter,
+                    AttributeDefinition<?> type)
+                {
+                    if(parameter)
+                    {
+                        return new Parameter(parameter(operand), type);
+                    }
+                    Object rhs;
+                    try
+                    {
+                        rhs = literal ? operand : query.parseOperand(operand, false, false,
+                            columnMap);
+                    }
+                    catch(MalformedQueryException e)
+                    {
+                        throw query.new WrappedMalformedQueryException(e);
+                    }
+                    if(rhs instanceof ResultColumnAttribute)
+                    {
+                        return new AttributeValue((ResultColumnAttribute<?, ?>)rhs);
+                    }
+                    if(rhs instanceof ResultColumn)
+                    {
+                        return new ColumnValue(((ResultColumn<?>)rhs).getIndex() - 1);
+                    }
+                    return new Literal(type != null ? toAttributeValue(type, rhs) : rhs);
+                }
+
+                /**
+                 * Returns the index of a positional parameter, numbered in the same way as the
+                 * statement parameters of the SQL translation.
+                 */
+                private int parameter(String token)
+                {
+                    if(token.equals("?"))
+                    {
+                        return ++count;
+                    }
+                    int index = Integer.parseInt(token.substring(1));
+                    count = Math.max(count, index);
+                    return index;
+                }
+            };
+        try
+        {
+            return (Condition)expr.jjtAccept(visitor, null);
+        }
+        catch(AbstractCoralQueryImpl.WrappedMalformedQueryException e)
+        {
+            throw e.getException();
+        }
+    }
+
+    /**
+     * Finds equality conditions that can be answered from the indexes.
+     *
+     * @param condition the WHERE condition.
+     * @param width the number of result columns.
+     * @return lookups, by column, with <code>null</code> for columns that require a full scan.
+     */
+    private static Lookup[] getLookups(Condition condition, int width)
+    {
+        Lookup[] lookups = new Lookup[width];
+        Condition[] conjuncts;
+        if(condition instanceof And)
+        {
+            conjuncts = ((And)condition).children;
+        }
+        else
+        {
+            conjuncts = new Condition[] { condition };
+        }
+        for(Condition conjunct : conjuncts)
+        {
+            if(conjunct instanceof Equality)
+            {
+                Equality equality = (Equality)conjunct;
+                AttributeValue lhs = equality.lhs;
+                if(equality.equals && lookups[lhs.column] == null
+                    && (lhs.attribute.getFlags() & AttributeFlags.BUILTIN) == 0
+                    && (equality.rhs instanceof Literal || equality.rhs instanceof Parameter))
+                {
+                    lookups[lhs.column] = new Lookup(lhs, equality.rhs);
+                }
+            }
+        }
+        return lookups;
+    }
+
+    private static <A> A toAttributeValue(AttributeDefinition<A> type, Object value)
+    {
+        return type.getAttributeClass().getHandler().toAttributeValue(value);
+    }
+
+    // plan //////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A FIND RESOURCE statement compiled for evaluation in memory.
+     */
+    static class Plan
+    {
+        private final ResourceClass<?>[] classes;
+
+        private final Condition condition;
+
+        private final Lookup[] lookups;
+
+        private final OrderBy[] orderBy;
+
+        private final int limit;
+
+        private final int offset;
+
+        Plan(ResourceClass<?>[] classes, Condition condition, Lookup[] lookups, OrderBy[] orderBy,
+            int limit, int offset)
+        {
+            this.classes = classes;
+            this.condition = condition;
+            this.lookups = lookups;
+            this.orderBy = orderBy;
+            this.limit = limit;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * An equality condition on a column answered from an index.
+     */
+    private static class Lookup
+    {
+        private final AttributeValue attribute;
+
+        private final Operand value;
+
+        Lookup(AttributeValue attribute, Operand value)
+        {
+            this.attribute = attribute;
+            this.value = value;
+        }
+    }
+
+    /**
+     * An ORDER BY item.
+     */
+    private static class OrderBy
+    {
+        private final AttributeValue attribute;
+
+        private final boolean ascending;
+
+        OrderBy(AttributeValue attribute, boolean ascending)
+        {
+            this.attribute = attribute;
+            this.ascending = ascending;
+        }
+    }
+
+    /** Orders rows by resource identifiers, column by column. */
+    private static final Comparator<Resource[]> ID_ORDER = new Comparator<Resource[]>()
+        {
+            public int compare(Resource[] r1, Resource[] r2)
+            {
+                for(int i = 0; i < r1.length; i++)
+                {
+                    int result = MemoryQueryExecutor.compare(null, r1[i], r2[i]);
+                    if(result != 0)
+                    {
+                        return result;
+                    }
+                }
+                return 0;
+            }
+        };
+
+    /**
+     * Orders rows according to an ORDER BY clause. Undefined values sort after defined values in
+     * ascending order, as they do in the database.
+     */
+    private static class RowComparator
+        implements Comparator<Resource[]>
+    {
+        private final OrderBy[] orderBy;
+
+        private final Object[] parameters;
+
+        RowComparator(OrderBy[] orderBy, Object[] parameters)
+        {
+            this.orderBy = orderBy;
+            this.parameters = parameters;
+        }
+
+        public int compare(Resource[] r1, Resource[] r2)
+        {
+            for(OrderBy item : orderBy)
+            {
+                Object v1 = item.attribute.value(r1, parameters);
+                Object v2 = item.attribute.value(r2, parameters);
+                int result;
+                if(v1 == null || v2 == null)
+                {
+                    result = v1 == null ? (v2 == null ? 0 : 1) : -1;
+                }
+                else
+                {
+                    result = MemoryQueryExecutor.compare(item.attribute.comparator, v1, v2);
+                }
+                if(result != 0)
+                {
+                    return item.ascending ? result : -result;
+                }
+            }
+            return 0;
+        }
+    }
+
+    // operands /////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A value a condition operates on.
+     */
+    private interface Operand
+    {
+        /**
+         * Returns the value.
+         *
+         * @param row the resources of the row being evaluated.
+         * @param parameters positional parameter values.
+         * @return the value, or <code>null</code> if undefined.
+         */
+        Object value(Resource[] row, Object[] parameters);
+    }
+
+    /**
+     * The value of an attribute of a resource in the row.
+     */
+    private static class AttributeValue
+        implements Operand
+    {
+        private final int column;
+
+        private final AttributeDefinition<?> attribute;
+
+        private final Comparator<?> comparator;
+
+        AttributeValue(ResultColumnAttribute<?, ?> rca)
+        {
+            this.column = rca.getColumn().getIndex() - 1;
+            this.attribute = rca.getAttribute();
+            this.comparator = attribute.getAttributeClass().getHandler().getComparator();
+        }
+
+        public Object value(Resource[] row, Object[] parameters)
+        {
+            Object value = row[column].get(attribute);
+            // checked after reading, so that a concurrent modification is not missed
+            if(row[column].isModified(attribute))
+            {
+                throw UnstoredModificationException.INSTANCE;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * A resource in the row.
+     */
+    private static class ColumnValue
+        implements Operand
+    {
+        private final int column;
+
+        ColumnValue(int column)
+        {
+            this.column = column;
+        }
+
+        public Object value(Resource[] row, Object[] parameters)
+        {
+            return row[column];
+        }
+    }
+
+    /**
+     * A literal value.
+     */
+    private static class Literal
+        implements Operand
+    {
+        private final Object value;
+
+        Literal(Object value)
+        {
+            this.value = value;
+        }
+
+        public Object value(Resource[] row, Object[] parameters)
+        {
+            return value;
+        }
+    }
+
+    /**
+     * A positional parameter, converted to the type of the attribute it is compared with.
+     */
+    private static class Parameter
+        implements Operand
+    {
+        private final int index;
+
+        private final AttributeDefinition<?> type;
+
+        Parameter(int index, AttributeDefinition<?> type)
+        {
+            this.index = index;
+            this.type = type;
+        }
+
+        public Object value(Resource[] row, Object[] parameters)
+        {
+            Object value = parameters[index - 1];
+            if(type == null)
+            {
+                return value;
+            }
+            try
+            {
+                return toAttributeValue(type, value);
+            }
+            catch(IllegalArgumentException e)
+            {
+                throw new InvalidParameterException(SQLCoralQueryImpl.invalidParameter(index,
+                    value, type, e));
+            }
+        }
+    }
+
+    // conditions ///////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A node of the WHERE condition tree.
+     */
+    interface Condition
+    {
+        /**
+         * Evaluates the condition.
+         *
+         * @param row the resources of the row being evaluated.
+         * @param parameters positional parameter values.
+         * @return the value of the condition, or <code>null</code> if unknown.
+         */
+        Boolean evaluate(Resource[] row, Object[] parameters);
+    }
+
+    static class And
+        implements Condition
+    {
+        private final Condition[] children;
+
+        And(Condition[] children)
+        {
+            this.children = children;
+        }
+
+        public Boolean evaluate(Resource[] row, Object[] parameters)
+        {
+            Boolean result = Boolean.TRUE;
+            for(Condition child : children)
+            {
+                Boolean value = child.evaluate(row, parameters);
+                if(Boolean.FALSE.equals(value))
+                {
+                    return Boolean.FALSE;
+                }
+                if(value == null)
+                {
+                    result = null;
+                }
+            }
+            return result;
+        }
+    }
+
+    static class Or
+        implements Condition
+    {
+        private final Condition[] children;
+
+        Or(Condition[] children)
+        {
+            this.children = children;
+        }
+
+        public Boolean evaluate(Resource[] row, Object[] parameters)
+        {
+            Boolean result = Boolean.FALSE;
+            for(Condition child : children)
+            {
+                Boolean value = child.evaluate(row, parameters);
+                if(Boolean.TRUE.equals(value))
+                {
+                    return Boolean.TRUE;
+                }
+                if(value == null)
+                {
+                    result = null;
+                }
+            }
+            return result;
+        }
+    }
+
+    static class Not
+        implements Condition
+    {
+        private final Condition child;
+
+        Not(Condition child)
+        {
+            this.child = child;
+        }
+
+        public Boolean evaluate(Resource[] row, Object[] parameters)
+        {
+            Boolean value = child.evaluate(row, parameters);
+            return value != null ? Boolean.valueOf(!value.booleanValue()) : null;
+        }
+    }
+
+    private static class Defined
+        implements Condition
+    {
+        private final AttributeValue attribute;
+
+        Defined(AttributeValue attribute)
+        {
+            this.attribute = attribute;
+        }
+
+        public Boolean evaluate(Resource[] row, Object[] parameters)
+        {
+            return Boolean.valueOf(attribute.value(row, parameters) != null);
+        }
+    }
+
+    private static class Equality
+        implements Condition
+    {
+        private final AttributeValue lhs;
+
+        private final Operand rhs;
+
+        private final boolean equals;
+
+        Equality(AttributeValue lhs, Operand rhs, boolean equals)
+        {
+            this.lhs = lhs;
+            this.rhs = rhs;
+            this.equals = equals;
+        }
+
+        public Boolean evaluate(Resource[] row, Object[] parameters)
+        {
+            Object v1 = lhs.value(row, parameters);
+            Object v2 = rhs.value(row, parameters);
+            if(v1 == null || v2 == null)
+            {
+                return null;
+            }
+            return Boolean.valueOf((compare(lhs.comparator, v1, v2) == 0) == equals);
+        }
+    }
+
+    private static class Comparison
+        implements Condition
+    {
+        private final AttributeValue lhs;
+
+        private final Operand rhs;
+
+        private final int operator;
+
+        Comparison(AttributeValue lhs, Operand rhs, int operator)
+        {
+            this.lhs = lhs;
+            this.rhs = rhs;
+            this.operator = operator;
+        }
+
+        public Boolean evaluate(Resource[] row, Object[] parameters)
+        {
+            Object v1 = lhs.value(row, parameters);
+            Object v2 = rhs.value(row, parameters);
+            if(v1 == null || v2 == null)
+            {
+                return null;
+            }
+            int result = compare(lhs.comparator, v1, v2);
+            switch(operator)
+            {
+            case RMLOperator.LESSER:
+                return Boolean.valueOf(result < 0);
+            case RMLOperator.LESSER_EQUALS:
+                return Boolean.valueOf(result <= 0);
+            case RMLOperator.GREATER_EQUALS:
+                return Boolean.valueOf(result >= 0);
+            default:
+                return Boolean.valueOf(result > 0);
+            }
+        }
+    }
+
+    private static class Approximation
+        implements Condition
+    {
+        private final AttributeValue lhs;
+
+        private final Operand rhs;
+
+        private final boolean caseSensitive;
+
+        /** The compiled pattern, if the pattern is a literal. */
+        private final Pattern pattern;
+
+        Approximation(AttributeValue lhs, Operand rhs, boolean caseSensitive)
+        {
+            this.lhs = lhs;
+            this.rhs = rhs;
+            this.caseSensitive = caseSensitive;
+            this.pattern = rhs instanceof Literal ? likePattern(
+                rhs.value(null, null).toString(), caseSensitive) : null;
+        }
+
+        public Boolean evaluate(Resource[] row, Object[] parameters)
+        {
+            Object v1 = lhs.value(row, parameters);
+            Object v2 = pattern == null ? rhs.value(row, parameters) : pattern;
+            if(v1 == null || v2 == null)
+            {
+                return null;
+            }
+            Pattern p = pattern != null ? pattern : likePattern(v2.toString(), caseSensitive);
+            return Boolean.valueOf(p.matcher(v1.toString()).matches());
+        }
+    }
+
+    private static class Descendant
+        implements Condition
+    {
+        private final AttributeValue lhs;
+
+        private final Operand root;
+
+        private final CoralCore coral;
+
+        Descendant(AttributeValue lhs, Operand root, CoralCore coral)
+        {
+            this.lhs = lhs;
+            this.root = root;
+            this.coral = coral;
+        }
+
+        public Boolean evaluate(Resource[] row, Object[] parameters)
+        {
+            Object value = lhs.value(row, parameters);
+            if(value == null)
+            {
+                return null;
+            }
+            CoralStore store = coral.getStore();
+            try
+            {
+                Resource ancestor = store.getResource(SQLCoralQueryImpl.toRootId(root.value(row,
+                    parameters)));
+                Resource resource = value instanceof Resource ? (Resource)value : store
+                    .getResource(((Number)value).longValue());
+                return Boolean.valueOf(store.isAncestor(ancestor, resource));
+            }
+            catch(EntityDoesNotExistException e)
+            {
+                return Boolean.FALSE;
+            }
+            catch(MalformedQueryException e)
+            {
+                throw new InvalidParameterException(e);
+            }
+        }
+    }
+
+    /**
+     * Thrown when evaluation encounters an attribute modification that was not stored yet.
+     */
+    private static class UnstoredModificationException
+        extends RuntimeException
+    {
+        private static final long serialVersionUID = 0L;
+
+        private static final UnstoredModificationException INSTANCE =
+            new UnstoredModificationException();
+
+        private UnstoredModificationException()
+        {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Thrown when evaluation encounters a parameter value that is not valid for the attribute it
+     * is compared with.
+     */
+    private static class InvalidParameterException
+        extends RuntimeException
+    {
+        private static final long serialVersionUID = 0L;
+
+        private final MalformedQueryException e;
+
+        InvalidParameterException(MalformedQueryException e)
+        {
+            super(null, null, false, false);
+            this.e = e;
+        }
+
+        MalformedQueryException getException()
+        {
+            return e;
+        }
+    }
+
+    /**
+     * Identifiers of the instances of a class, keyed by the value of an attribute.
+     * <p>
+     * Instances that changed since the index was built are kept aside, and returned by every
+     * lookup.
+     * </p>
+     */
+    static class AttributeIndex
+    {
+        /** Value key to LongSet of instance ids. */
+        private final Map<Object, LongSet> ids = new HashMap<Object, LongSet>();
+
+        /** Instance id to value key. */
+        private final LongKeyMap keys = new LongKeyOpenHashMap();
+
+        /** Instances that changed since the index was built. */
+        private final LongSet changed = new LongOpenHashSet();
+
+        void put(long id, Object key)
+        {
+            keys.put(id, key);
+            if(key != null)
+            {
+                LongSet set = ids.get(key);
+                if(set == null)
+                {
+                    set = new LongOpenHashSet();
+                    ids.put(key, set);
+                }
+                set.add(id);
+            }
+        }
+
+        void remove(long id)
+        {
+            changed.remove(id);
+            if(keys.containsKey(id))
+            {
+                Object key = keys.remove(id);
+                LongSet set = key != null ? ids.get(key) : null;
+                if(set != null)
+                {
+                    set.remove(id);
+                    if(set.isEmpty())
+                    {
+                        ids.remove(key);
+                    }
+                }
+            }
+        }
+
+        void markChanged(long id)
+        {
+            remove(id);
+            changed.add(id);
+        }
+
+        boolean isOutdated()
+        {
+            return changed.size() > Math.max(MIN_STALE_ENTRIES, keys.size() / 4);
+        }
+
+        long[] get(Object key)
+        {
+            LongSet set = ids.get(key);
+            if(set == null)
+            {
+                return changed.toArray();
+            }
+            LongSet result = new LongOpenHashSet(set);
+            for(LongIterator i = changed.iterator(); i.hasNext();)
+            {
+                result.add(i.next());
+            }
+            return result.toArray();
+        }
+    }
+}
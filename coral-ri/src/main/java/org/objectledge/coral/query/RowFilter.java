@@ -0,0 +1,116 @@
+package org.objectledge.coral.query;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.objectledge.coral.entity.EntityDoesNotExistException;
+import org.objectledge.coral.store.CoralStore;
+import org.objectledge.coral.store.Resource;
+
+/**
+ * Applies the DESCENDANT OF conditions of a query, and its OFFSET and LIMIT, to the rows of the
+ * results as they are read from the database.
+ * <p>
+ * The value each condition tests is selected after the resource id columns of the row. The
+ * condition is evaluated with {@link CoralStore#isAncestor(Resource, Resource)}, which uses the
+ * in-memory resource hierarchy index. A <code>NULL</code> value matches neither the condition
+ * nor its negation, like the other comparisons do in SQL.
+ * </p>
+ * <p>
+ * A filter keeps count of the rows it accepted, and is used for a single execution.
+ * </p>
+ */
+class RowFilter
+{
+    /** The Coral store. */
+    private final CoralStore store;
+
+    /** Number of resource id columns that precede the tested values. */
+    private final int width;
+
+    /** Root resources of the conditions, <code>null</code> for roots that do not exist. */
+    private final Resource[] roots;
+
+    /** Negation flags of the conditions. */
+    private final boolean[] negated;
+
+    /** Number of matching rows to skip. */
+    private final int offset;
+
+    /** Maximum number of rows to accept, or 0 for no limit. */
+    private final int limit;
+
+    /** Number of matching rows seen. */
+    private int matched = 0;
+
+    /**
+     * Creates a filter.
+     *
+     * @param store the Coral store.
+     * @param width the number of resource id columns that precede the tested values.
+     * @param roots root resources of the conditions, <code>null</code> for roots that do not
+     *        exist.
+     * @param negated negation flags of the conditions.
+     * @param offset number of matching rows to skip.
+     * @param limit maximum number of rows to accept, or 0 for no limit.
+     */
+    RowFilter(CoralStore store, int width, Resource[] roots, boolean[] negated, int offset,
+        int limit)
+    {
+        this.store = store;
+        this.width = width;
+        this.roots = roots;
+        this.negated = negated;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Checks if the current row of a result set belongs to the results.
+     *
+     * @param rs the result set.
+     * @return <code>true</code> if the row matches all conditions, and falls within OFFSET and
+     *         LIMIT.
+     * @throws SQLException if the row could not be read.
+     */
+    boolean accept(ResultSet rs)
+        throws SQLException
+    {
+        for(int i = 0; i < roots.length; i++)
+        {
+            long id = rs.getLong(width + i + 1);
+            if(rs.wasNull() || isDescendant(roots[i], id) == negated[i])
+            {
+                return false;
+            }
+        }
+        matched++;
+        return matched > offset && (limit == 0 || matched - offset <= limit);
+    }
+
+    /**
+     * Checks if the filter will not accept any more rows.
+     *
+     * @return <code>true</code> if LIMIT rows were accepted.
+     */
+    boolean isComplete()
+    {
+        return limit > 0 && matched - offset >= limit;
+    }
+
+    private boolean isDescendant(Resource root, long id)
+    {
+        if(root == null)
+        {
+            return false;
+        }
+        try
+        {
+            return store.isAncestor(root, store.getResource(id));
+        }
+        catch(EntityDoesNotExistException e)
+        {
+            return false;
+        }
+    }
+}
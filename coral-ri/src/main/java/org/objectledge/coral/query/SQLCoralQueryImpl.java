@@ -1,48 +1,94 @@
 package org.objectledge.coral.query;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.objectledge.coral.BackendException;
 import org.objectledge.coral.CoralCore;
 import org.objectledge.coral.entity.EntityDoesNotExistException;
+import org.objectledge.coral.event.AttributeDefinitionChangeListener;
+import org.objectledge.coral.event.CoralEventHub;
+import org.objectledge.coral.event.ResourceClassAttributesChangeListener;
+import org.objectledge.coral.event.ResourceClassChangeListener;
+import org.objectledge.coral.event.ResourceClassInheritanceChangeListener;
 import org.objectledge.coral.query.ResourceQueryHandler.ResultColumn;
 import org.objectledge.coral.query.ResourceQueryHandler.ResultColumnAttribute;
 import org.objectledge.coral.schema.AttributeDefinition;
 import org.objectledge.coral.schema.AttributeFlags;
 import org.objectledge.coral.schema.AttributeHandler;
 import org.objectledge.coral.schema.ResourceClass;
+import org.objectledge.coral.schema.ResourceClassInheritance;
 import org.objectledge.coral.script.parser.ASTandExpression;
 import org.objectledge.coral.script.parser.ASTapproximationCondition;
 import org.objectledge.coral.script.parser.ASTcomparisonCondition;
 import org.objectledge.coral.script.parser.ASTconditionalExpression;
 import org.objectledge.coral.script.parser.ASTdefinedCondition;
+import org.objectledge.coral.script.parser.ASTdescendantCondition;
 import org.objectledge.coral.script.parser.ASTequalityCondition;
 import org.objectledge.coral.script.parser.ASTfindResourceStatement;
 import org.objectledge.coral.script.parser.ASTnotExpression;
 import org.objectledge.coral.script.parser.ASTorExpression;
 import org.objectledge.coral.script.parser.ASTorderBySpecifier;
 import org.objectledge.coral.script.parser.DefaultRMLVisitor;
+import org.objectledge.coral.script.parser.Node;
 import org.objectledge.coral.script.parser.RMLVisitor;
 import org.objectledge.coral.script.parser.SimpleNode;
+import org.objectledge.coral.store.CoralStore;
+import org.objectledge.coral.store.Resource;
 import org.objectledge.database.Database;
 import org.objectledge.database.DatabaseUtils;
 
+import bak.pcj.list.LongArrayList;
+import bak.pcj.list.LongList;
+
 /**
  * A QueryService implementation that uses the underlying relational database.
+ * <p>
+ * Queries are compiled into SQL statements with JDBC parameter placeholders standing for the
+ * positional parameters. Compiled statements are kept in a bounded LRU cache keyed by query text,
+ * so that repeated execution of the same query, or preparing it again, does not involve parsing
+ * and SQL generation. The cache is cleared whenever the schema changes.
+ * </p>
+ * <p>
+ * DESCENDANT OF conditions are not translated into SQL. The tested values are selected along
+ * with the resource ids, and the rows read are filtered in memory by a {@link RowFilter}, using
+ * the resource hierarchy index of the store. LIMIT and OFFSET of such queries are applied by the
+ * filter too. The conditions may thus appear only as conjuncts of the WHERE clause, optionally
+ * negated.
+ * </p>
+ * <p>
+ * The {@link #count(String)}, {@link #exists(String)} and {@link #executeIds(String)} methods
+ * reuse the FROM and WHERE clauses of the compiled statement, and do not touch the store.
+ * </p>
+ * <p>
+ * Queries whose FROM clause lists only memory-resident classes are evaluated over the cached
+ * resources by a {@link MemoryQueryExecutor}, without accessing the database. Such queries
+ * return the same results as in the database: they fall back to SQL when they involve attribute
+ * modifications that were not stored yet. Streaming execution always uses the database.
+ * </p>
  * 
  * @author <a href="rkrzewsk@ngo.pl">Rafal Krzewski</a>
  * @version $Id: SQLCoralQueryImpl.java,v 1.11 2008-06-05 17:17:03 rafal Exp $
  */
 public class SQLCoralQueryImpl
     extends AbstractCoralQueryImpl
+    implements ResourceClassChangeListener, ResourceClassAttributesChangeListener,
+    ResourceClassInheritanceChangeListener, AttributeDefinitionChangeListener
 {
+    /** Maximum number of compiled queries retained in the cache. */
+    private static final int COMPILED_QUERY_CACHE_SIZE = 256;
+
+    /** Empty positional parameter array. */
+    private static final Object[] NO_PARAMETERS = new Object[0];
+
     /** the parser syntax */
     private static Map<String, String> builtinAttrNames = new HashMap<String, String>();
 
@@ -64,6 +110,22 @@ public class SQLCoralQueryImpl
     /** The database service */
     private Database database;
 
+    /** Evaluates queries over memory-resident classes. */
+    private final MemoryQueryExecutor memoryExecutor;
+
+    /** Compiled queries, keyed by query text, in access order. */
+    private final Map<String, CompiledQuery> compiledQueries = new LinkedHashMap<String, CompiledQuery>(
+        16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledQuery> eldest)
+            {
+                return size() > COMPILED_QUERY_CACHE_SIZE;
+            }
+        };
+
+    /** Incremented on each schema change, guarded by compiledQueries. */
+    private long schemaVersion = 0;
+
     // initialization ////////////////////////////////////////////////////////
 
     /**
@@ -71,16 +133,83 @@ public class SQLCoralQueryImpl
      * 
      * @param database the database to use.
      * @param coral the coral core.
-     * @param logger the logger.
+     * @param coralEventHub the event hub.
      */
-    public SQLCoralQueryImpl(Database database, CoralCore coral)
+    public SQLCoralQueryImpl(Database database, CoralCore coral, CoralEventHub coralEventHub)
     {
         super(coral);
         this.database = database;
+        this.memoryExecutor = new MemoryQueryExecutor(this, coral, database, coralEventHub);
+        coralEventHub.getGlobal().addResourceClassChangeListener(this, null);
+        coralEventHub.getGlobal().addResourceClassAttributesChangeListener(this, null);
+        coralEventHub.getGlobal().addResourceClassInheritanceChangeListener(this, null);
+        coralEventHub.getGlobal().addAttributeDefinitionChangeListener(this, null);
     }
 
     // QueryService interface ////////////////////////////////////////////////
 
+    /**
+     * {@inheritDoc}
+     */
+    public QueryResults executeQuery(String query)
+        throws MalformedQueryException
+    {
+        return execute(getCompiledQuery(query));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public StreamingQueryResults executeQueryStreaming(String query, int fetchSize)
+        throws MalformedQueryException
+    {
+        CompiledQuery compiled = getCompiledQuery(query);
+        checkNoParameters(compiled);
+        return executeStreaming(compiled, NO_PARAMETERS, fetchSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long count(String query)
+        throws MalformedQueryException
+    {
+        CompiledQuery compiled = getCompiledQuery(query);
+        checkNoParameters(compiled);
+        return count(compiled, NO_PARAMETERS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean exists(String query)
+        throws MalformedQueryException
+    {
+        CompiledQuery compiled = getCompiledQuery(query);
+        checkNoParameters(compiled);
+        return exists(compiled, NO_PARAMETERS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long[] executeIds(String query)
+        throws MalformedQueryException
+    {
+        CompiledQuery compiled = getCompiledQuery(query);
+        checkNoParameters(compiled);
+        return executeIds(compiled, NO_PARAMETERS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public PreparedQuery prepareQuery(String query)
+        throws MalformedQueryException
+    {
+        return new SQLPreparedQueryImpl(this, getCompiledQuery(query));
+    }
+
     /**
      * Executes a pre-parsed query.
      * 
@@ -90,6 +219,113 @@ public class SQLCoralQueryImpl
      */
     public QueryResults executeQuery(ASTfindResourceStatement statement)
         throws MalformedQueryException
+    {
+        return execute(compile(statement));
+    }
+
+    /**
+     * Prepares a pre-parsed query.
+     * 
+     * @param statement the AST node representing a FIND RESOURCE statement.
+     * @return query results.
+     * @throws MalformedQueryException if the query has semantic errors and thus cannot be executed.
+     */
+    protected PreparedQuery prepareQuery(ASTfindResourceStatement statement)
+        throws MalformedQueryException
+    {
+        return new SQLPreparedQueryImpl(this, compile(statement));
+    }
+
+    // schema change listeners ///////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    public void resourceClassChanged(ResourceClass<?> resourceClass)
+    {
+        invalidateCompiledQueries();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void attributesChanged(AttributeDefinition<?> attribute, boolean added)
+    {
+        invalidateCompiledQueries();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void inheritanceChanged(ResourceClassInheritance inheritance, boolean added)
+    {
+        invalidateCompiledQueries();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void attributeDefinitionChanged(AttributeDefinition<?> attributeDefinition)
+    {
+        invalidateCompiledQueries();
+    }
+
+    // compiled queries //////////////////////////////////////////////////////
+
+    /**
+     * Returns a compiled query for the given query text, using the cache when possible.
+     * 
+     * @param query the query.
+     * @return compiled query.
+     * @throws MalformedQueryException if the query has syntactic or semantic errors.
+     */
+    private CompiledQuery getCompiledQuery(String query)
+        throws MalformedQueryException
+    {
+        long version;
+        synchronized(compiledQueries)
+        {
+            CompiledQuery compiled = compiledQueries.get(query);
+            if(compiled != null)
+            {
+                return compiled;
+            }
+            version = schemaVersion;
+        }
+        CompiledQuery compiled = compile(parseQuery(query));
+        synchronized(compiledQueries)
+        {
+            // don't cache queries compiled against a schema that changed in the meantime
+            if(version == schemaVersion)
+            {
+                compiledQueries.put(query, compiled);
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Drops all cached compiled queries.
+     */
+    private void invalidateCompiledQueries()
+    {
+        synchronized(compiledQueries)
+        {
+            compiledQueries.clear();
+            schemaVersion++;
+        }
+        memoryExecutor.clear();
+    }
+
+    /**
+     * Translates a FIND RESOURCE statement into SQL.
+     * 
+     * @param statement the AST node representing a FIND RESOURCE statement.
+     * @return compiled query.
+     * @throws MalformedQueryException if the query has semantic errors and thus cannot be executed.
+     */
+    private CompiledQuery compile(ASTfindResourceStatement statement)
+        throws MalformedQueryException
     {
         ResourceClass<?> rootRClass;
         try
@@ -115,6 +351,7 @@ public class SQLCoralQueryImpl
         }
 
         StringBuilder query = new StringBuilder();
+        Parameters parameters = new Parameters();
         // SELECT
         for(int i = 0; i < columns.size(); i++)
         {
@@ -122,6 +359,7 @@ public class SQLCoralQueryImpl
             query.append("r").append(columns.get(i).getIndex()).append(".resource_id");
         }
         // FROM
+        int bodyStart = query.length();
         for(int i = 0; i < columns.size(); i++)
         {
             query.append(i == 0 ? " FROM\n" : ",\n");
@@ -135,8 +373,20 @@ public class SQLCoralQueryImpl
         if(statement.getWhere() != null)
         {
             query.append("\nWHERE ");
-            appendCondition(statement.getWhere(), columnMap, query);
+            appendCondition(statement.getWhere(), columnMap, query, parameters);
+        }
+        if(!parameters.descendants.isEmpty())
+        {
+            // values tested by DESCENDANT OF conditions follow the resource ids
+            StringBuilder tested = new StringBuilder();
+            for(Descendants restriction : parameters.descendants)
+            {
+                tested.append(", ").append(restriction.getColumn());
+            }
+            query.insert(bodyStart, tested);
+            bodyStart += tested.length();
         }
+        int bodyEnd = query.length();
         // ORDER BY
         if(statement.getOrderBy() != null)
         {
@@ -155,35 +405,117 @@ public class SQLCoralQueryImpl
                 }
             }
         }
-        if(statement.getLimit() > 0)
+        // with DESCENDANT OF conditions, LIMIT and OFFSET are applied to the filtered rows
+        if(statement.getLimit() > 0 && parameters.descendants.isEmpty())
         {
             query.append(" LIMIT ").append(statement.getLimit());
         }
-        if(statement.getOffset() > 0)
+        if(statement.getOffset() > 0 && parameters.descendants.isEmpty())
         {
             query.append(" OFFSET ").append(statement.getOffset());
         }
 
+        String[][] from = new String[columns.size()][];
+        for(int i = 0; i < columns.size(); i++)
+        {
+            ResultColumn<?> rcm = columns.get(i);
+            from[i] = new String[2];
+            from[i][0] = rcm.getRClass() != null ? rcm.getRClass().getName() : null;
+            from[i][1] = rcm.getAlias();
+        }
+        String[] select = statement.getSelect() != null ? getItems(statement.getSelect()) : null;
+        MemoryQueryExecutor.Plan plan = memoryExecutor.compile(statement, columns, columnMap);
+        return new CompiledQuery(query.toString(), bodyStart, bodyEnd, statement.getLimit(),
+            statement.getOffset(), from, select, parameters.bindings, parameters.descendants,
+            parameters.count, plan);
+    }
+
+    /**
+     * Executes a compiled query that contains no positional parameters.
+     * 
+     * @param compiled the compiled query.
+     * @return query results.
+     * @throws MalformedQueryException if the query contains positional parameters.
+     */
+    private QueryResults execute(CompiledQuery compiled)
+        throws MalformedQueryException
+    {
+        checkNoParameters(compiled);
+        return execute(compiled, NO_PARAMETERS);
+    }
+
+    /**
+     * Verifies that a compiled query contains no positional parameters.
+     * 
+     * @param compiled the compiled query.
+     * @throws MalformedQueryException if the query contains positional parameters.
+     */
+    private void checkNoParameters(CompiledQuery compiled)
+        throws MalformedQueryException
+    {
+        if(compiled.getParameterCount() > 0)
+        {
+            throw new MalformedQueryException("positional parameters may only be used in "
+                + "prepared queries");
+        }
+    }
+
+    /**
+     * Evaluates a compiled query in memory, if possible.
+     * 
+     * @param compiled the compiled query.
+     * @param parameters positional parameter values, all non-null.
+     * @return resource identifiers, one array per row, or <code>null</code> if the query needs
+     *         to be executed in the database.
+     * @throws MalformedQueryException if a parameter value is not valid for the attribute it is
+     *         compared with.
+     */
+    private List<long[]> executeInMemory(CompiledQuery compiled, Object[] parameters)
+        throws MalformedQueryException
+    {
+        if(compiled.getPlan() == null)
+        {
+            return null;
+        }
+        return memoryExecutor.execute(compiled.getPlan(), parameters);
+    }
+
+    /**
+     * Executes a compiled query.
+     * 
+     * @param compiled the compiled query.
+     * @param parameters positional parameter values, all non-null.
+     * @return query results.
+     * @throws MalformedQueryException if a parameter value is not valid for the attribute it is
+     *         compared with.
+     */
+    QueryResults execute(CompiledQuery compiled, Object[] parameters)
+        throws MalformedQueryException
+    {
+        List<long[]> rows = executeInMemory(compiled, parameters);
+        if(rows != null)
+        {
+            return new SQLQueryResultsImpl(coral.getSchema(), coral.getStore(), rows,
+                compiled.getFrom(), compiled.getSelect());
+        }
+        RowFilter filter = getRowFilter(compiled, parameters);
         Connection conn = null;
-        Statement stmt = null;
+        PreparedStatement stmt = null;
         ResultSet results = null;
         try
         {
             conn = database.getConnection();
-            stmt = conn.createStatement();
-            results = stmt.executeQuery(query.toString());
-            String[][] from = new String[columns.size()][];
-            for(int i = 0; i < columns.size(); i++)
+            stmt = conn.prepareStatement(compiled.getSql());
+            bind(stmt, compiled, parameters);
+            results = stmt.executeQuery();
+            if(filter != null)
             {
-                ResultColumn<?> rcm = columns.get(i);
-                from[i] = new String[2];
-                from[i][0] = rcm.getRClass() != null ? rcm.getRClass().getName() : null;
-                from[i][1] = rcm.getAlias();
+                return new SQLQueryResultsImpl(coral.getSchema(), coral.getStore(), readRows(
+                    results, compiled.getFrom().length, filter), compiled.getFrom(),
+                    compiled.getSelect());
             }
-            String[] select = statement.getSelect() != null ? getItems(statement.getSelect())
-                : null;
             QueryResults queryResults = new SQLQueryResultsImpl(coral.getSchema(),
-                coral.getStore(), results, from, select);
+                coral.getStore(), results, compiled.getFrom(), compiled.getSelect());
             return queryResults;
         }
         catch(SQLException e)
@@ -199,16 +531,445 @@ public class SQLCoralQueryImpl
     }
 
     /**
-     * Prepares a pre-parsed query.
+     * Executes a compiled query, returning a forward-only cursor over the results.
+     * <p>
+     * The connection is switched out of auto-commit mode for the lifetime of the results, because
+     * some JDBC drivers (notably PostgreSQL) ignore the fetch size otherwise, and read the whole
+     * result set into memory.
+     * </p>
      * 
-     * @param statement the AST node representing a FIND RESOURCE statement.
+     * @param compiled the compiled query.
+     * @param parameters positional parameter values, all non-null.
+     * @param fetchSize the number of rows read at a time.
      * @return query results.
-     * @throws MalformedQueryException if the query has semantic errors and thus cannot be executed.
+     * @throws MalformedQueryException if a parameter value is not valid for the attribute it is
+     *         compared with.
      */
-    protected PreparedQuery prepareQuery(ASTfindResourceStatement statement)
+    StreamingQueryResults executeStreaming(CompiledQuery compiled, Object[] parameters,
+        int fetchSize)
         throws MalformedQueryException
     {
-        throw new UnsupportedOperationException("not implemented");
+        if(fetchSize < 1)
+        {
+            throw new IllegalArgumentException("fetchSize must be positive");
+        }
+        RowFilter filter = getRowFilter(compiled, parameters);
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet results = null;
+        boolean autoCommit = false;
+        boolean opened = false;
+        try
+        {
+            conn = database.getConnection();
+            autoCommit = conn.getAutoCommit();
+            if(autoCommit)
+            {
+                conn.setAutoCommit(false);
+            }
+            stmt = conn.prepareStatement(compiled.getSql(), ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(fetchSize);
+            bind(stmt, compiled, parameters);
+            results = stmt.executeQuery();
+            opened = true;
+        }
+        catch(SQLException e)
+        {
+            throw new BackendException("failed to execute query", e);
+        }
+        finally
+        {
+            if(!opened)
+            {
+                DatabaseUtils.close(results);
+                DatabaseUtils.close(stmt);
+                if(conn != null && autoCommit)
+                {
+                    try
+                    {
+                        conn.rollback();
+                        conn.setAutoCommit(true);
+                    }
+                    catch(SQLException ee)
+                    {
+                        // connection is closed anyway
+                    }
+                }
+                DatabaseUtils.close(conn);
+            }
+        }
+        return new SQLStreamingQueryResultsImpl(coral.getSchema(), coral.getStore(), conn,
+            autoCommit, stmt, results, compiled.getFrom(), compiled.getSelect(), fetchSize, filter);
+    }
+
+    /**
+     * Counts the rows of a compiled query.
+     * <p>
+     * LIMIT and OFFSET are applied to the count of all matching rows, so that ORDER BY can be
+     * omitted from the statement. Queries with DESCENDANT OF conditions count the filtered rows.
+     * </p>
+     * 
+     * @param compiled the compiled query.
+     * @param parameters positional parameter values, all non-null.
+     * @return the number of rows.
+     * @throws MalformedQueryException if a parameter value is not valid for the attribute it is
+     *         compared with.
+     */
+    long count(CompiledQuery compiled, Object[] parameters)
+        throws MalformedQueryException
+    {
+        List<long[]> rows = executeInMemory(compiled, parameters);
+        if(rows != null)
+        {
+            return rows.size();
+        }
+        RowFilter filter = getRowFilter(compiled, parameters);
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet results = null;
+        try
+        {
+            conn = database.getConnection();
+            if(filter != null)
+            {
+                stmt = conn.prepareStatement(compiled.getSql().substring(0, compiled.getBodyEnd()));
+                bind(stmt, compiled, parameters);
+                results = stmt.executeQuery();
+                long count = 0;
+                while(!filter.isComplete() && results.next())
+                {
+                    if(filter.accept(results))
+                    {
+                        count++;
+                    }
+                }
+                return count;
+            }
+            stmt = conn.prepareStatement("SELECT COUNT(*)" + getBody(compiled));
+            bind(stmt, compiled, parameters);
+            results = stmt.executeQuery();
+            results.next();
+            long count = Math.max(0, results.getLong(1) - compiled.getOffset());
+            return compiled.getLimit() > 0 ? Math.min(count, compiled.getLimit()) : count;
+        }
+        catch(SQLException e)
+        {
+            throw new BackendException("failed to execute query", e);
+        }
+        finally
+        {
+            DatabaseUtils.close(results);
+            DatabaseUtils.close(stmt);
+            DatabaseUtils.close(conn);
+        }
+    }
+
+    /**
+     * Checks if a compiled query returns any rows.
+     * 
+     * @param compiled the compiled query.
+     * @param parameters positional parameter values, all non-null.
+     * @return <code>true</code> if the query returns any rows.
+     * @throws MalformedQueryException if a parameter value is not valid for the attribute it is
+     *         compared with.
+     */
+    boolean exists(CompiledQuery compiled, Object[] parameters)
+        throws MalformedQueryException
+    {
+        List<long[]> rows = executeInMemory(compiled, parameters);
+        if(rows != null)
+        {
+            return !rows.isEmpty();
+        }
+        RowFilter filter = getRowFilter(compiled, parameters);
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet results = null;
+        try
+        {
+            conn = database.getConnection();
+            if(filter != null)
+            {
+                stmt = conn.prepareStatement(compiled.getSql().substring(0, compiled.getBodyEnd()));
+                bind(stmt, compiled, parameters);
+                results = stmt.executeQuery();
+                while(!filter.isComplete() && results.next())
+                {
+                    if(filter.accept(results))
+                    {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            String sql = compiled.getSql();
+            StringBuilder query = new StringBuilder(sql.length() + 32);
+            query.append(sql, 0, compiled.getBodyStart()).append(getBody(compiled));
+            query.append(" LIMIT 1");
+            if(compiled.getOffset() > 0)
+            {
+                query.append(" OFFSET ").append(compiled.getOffset());
+            }
+            stmt = conn.prepareStatement(query.toString());
+            stmt.setMaxRows(1);
+            bind(stmt, compiled, parameters);
+            results = stmt.executeQuery();
+            return results.next();
+        }
+        catch(SQLException e)
+        {
+            throw new BackendException("failed to execute query", e);
+        }
+        finally
+        {
+            DatabaseUtils.close(results);
+            DatabaseUtils.close(stmt);
+            DatabaseUtils.close(conn);
+        }
+    }
+
+    /**
+     * Executes a compiled query, returning resource identifiers only.
+     * 
+     * @param compiled the compiled query.
+     * @param parameters positional parameter values, all non-null.
+     * @return resource identifiers, row by row.
+     * @throws MalformedQueryException if a parameter value is not valid for the attribute it is
+     *         compared with.
+     */
+    long[] executeIds(CompiledQuery compiled, Object[] parameters)
+        throws MalformedQueryException
+    {
+        List<long[]> rows = executeInMemory(compiled, parameters);
+        if(rows != null)
+        {
+            LongList ids = new LongArrayList();
+            for(long[] row : rows)
+            {
+                for(long id : row)
+                {
+                    ids.add(id);
+                }
+            }
+            return ids.toArray();
+        }
+        RowFilter filter = getRowFilter(compiled, parameters);
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet results = null;
+        try
+        {
+            conn = database.getConnection();
+            stmt = conn.prepareStatement(compiled.getSql());
+            bind(stmt, compiled, parameters);
+            results = stmt.executeQuery();
+            int width = compiled.getFrom().length;
+            LongList ids = new LongArrayList();
+            while((filter == null || !filter.isComplete()) && results.next())
+            {
+                if(filter != null && !filter.accept(results))
+                {
+                    continue;
+                }
+                for(int i = 1; i <= width; i++)
+                {
+                    ids.add(results.getLong(i));
+                }
+            }
+            return ids.toArray();
+        }
+        catch(SQLException e)
+        {
+            throw new BackendException("failed to execute query", e);
+        }
+        finally
+        {
+            DatabaseUtils.close(results);
+            DatabaseUtils.close(stmt);
+            DatabaseUtils.close(conn);
+        }
+    }
+
+    /**
+     * Returns the FROM and WHERE clauses of the SQL statement of a compiled query.
+     * 
+     * @param compiled the compiled query.
+     * @return the FROM and WHERE clauses.
+     */
+    private static String getBody(CompiledQuery compiled)
+    {
+        return compiled.getSql().substring(compiled.getBodyStart(), compiled.getBodyEnd());
+    }
+
+    /**
+     * Creates the filter that applies the DESCENDANT OF conditions of a query to the rows read.
+     * 
+     * @param compiled the compiled query.
+     * @param parameters positional parameter values, all non-null.
+     * @return the filter, or <code>null</code> if the query has no DESCENDANT OF conditions.
+     * @throws MalformedQueryException if a root parameter value is not a resource identifier.
+     */
+    private RowFilter getRowFilter(CompiledQuery compiled, Object[] parameters)
+        throws MalformedQueryException
+    {
+        List<Descendants> descendants = compiled.getDescendants();
+        if(descendants.isEmpty())
+        {
+            return null;
+        }
+        CoralStore store = coral.getStore();
+        Resource[] roots = new Resource[descendants.size()];
+        boolean[] negated = new boolean[descendants.size()];
+        for(int i = 0; i < roots.length; i++)
+        {
+            Descendants restriction = descendants.get(i);
+            long root = restriction.getIndex() > 0 ? toRootId(parameters[restriction.getIndex()
+                - 1]) : restriction.getRoot();
+            try
+            {
+                roots[i] = store.getResource(root);
+            }
+            catch(EntityDoesNotExistException e)
+            {
+                // no resource is a descendant of a missing one
+                roots[i] = null;
+            }
+            negated[i] = restriction.isNegated();
+        }
+        return new RowFilter(store, compiled.getFrom().length, roots, negated,
+            compiled.getOffset(), compiled.getLimit());
+    }
+
+    /**
+     * Reads the rows of a result set accepted by a filter.
+     * 
+     * @param results the result set.
+     * @param width the number of resource id columns.
+     * @param filter the filter.
+     * @return resource identifiers, one array per row.
+     * @throws SQLException if the rows could not be read.
+     */
+    private static List<long[]> readRows(ResultSet results, int width, RowFilter filter)
+        throws SQLException
+    {
+        List<long[]> rows = new ArrayList<long[]>();
+        while(!filter.isComplete() && results.next())
+        {
+            if(filter.accept(results))
+            {
+                long[] row = new long[width];
+                for(int i = 0; i < width; i++)
+                {
+                    row[i] = results.getLong(i + 1);
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Converts a DESCENDANT OF parameter value into a resource identifier.
+     * 
+     * @param value a Resource, a Number or the String representation of an identifier.
+     * @return the resource identifier.
+     */
+    static long toResourceId(Object value)
+    {
+        if(value instanceof Resource)
+        {
+            return ((Resource)value).getId();
+        }
+        if(value instanceof Number)
+        {
+            return ((Number)value).longValue();
+        }
+        return Long.parseLong(value.toString());
+    }
+
+    /**
+     * Binds positional parameter values to statement parameters.
+     * 
+     * @param stmt the statement.
+     * @param compiled the compiled query.
+     * @param parameters positional parameter values, all non-null.
+     * @throws SQLException if the parameters could not be set.
+     * @throws MalformedQueryException if a parameter value is not valid for the attribute it is
+     *         compared with.
+     */
+    private void bind(PreparedStatement stmt, CompiledQuery compiled, Object[] parameters)
+        throws SQLException, MalformedQueryException
+    {
+        int position = 1;
+        for(Binding binding : compiled.getBindings())
+        {
+            bind(stmt, position++, binding.getType(), binding.getIndex(), parameters);
+        }
+    }
+
+    /**
+     * Binds a positional parameter value to a statement parameter.
+     * 
+     * @param stmt the statement.
+     * @param position the statement parameter position.
+     * @param type the attribute the parameter is compared with.
+     * @param index the positional parameter index.
+     * @param parameters positional parameter values.
+     * @throws SQLException if the parameter could not be set.
+     * @throws MalformedQueryException if the value is not valid for the attribute.
+     */
+    private <A> void bind(PreparedStatement stmt, int position, AttributeDefinition<A> type,
+        int index, Object[] parameters)
+        throws SQLException, MalformedQueryException
+    {
+        AttributeHandler<A> h = type.getAttributeClass().getHandler();
+        A value;
+        try
+        {
+            value = h.toAttributeValue(parameters[index - 1]);
+        }
+        catch(IllegalArgumentException e)
+        {
+            throw invalidParameter(index, parameters[index - 1], type, e);
+        }
+        h.setParameter(stmt, position, value);
+    }
+
+    /**
+     * Creates the exception reporting a parameter value that is not valid for an attribute.
+     * 
+     * @param index the positional parameter index.
+     * @param value the parameter value.
+     * @param type the attribute the parameter is compared with.
+     * @param cause the conversion failure.
+     * @return the exception.
+     */
+    static MalformedQueryException invalidParameter(int index, Object value,
+        AttributeDefinition<?> type, IllegalArgumentException cause)
+    {
+        return new MalformedQueryException("invalid value of parameter $" + index + " (" + value
+            + ") for attribute " + type.getName(), cause);
+    }
+
+    /**
+     * Converts a DESCENDANT OF parameter value into a resource identifier.
+     * 
+     * @param value a Resource, a Number or the String representation of an identifier.
+     * @return the resource identifier.
+     * @throws MalformedQueryException if the value is not a resource identifier.
+     */
+    static long toRootId(Object value)
+        throws MalformedQueryException
+    {
+        try
+        {
+            return toResourceId(value);
+        }
+        catch(NumberFormatException e)
+        {
+            throw new MalformedQueryException("invalid DESCENDANT OF root " + value, e);
+        }
     }
 
     // implementation ////////////////////////////////////////////////////////
@@ -256,9 +1017,11 @@ public class SQLCoralQueryImpl
      * @param expr the WHERE clause.
      * @param columnMap the map containing ResultColum objects keyed by alias.
      * @param out the buffer to write expression to.
+     * @param parameters collects the positional parameters encountered.
      */
-    private void appendCondition(ASTconditionalExpression expr,
-        final Map<String, ResultColumn<?>> columnMap, final StringBuilder out)
+    private void appendCondition(final ASTconditionalExpression expr,
+        final Map<String, ResultColumn<?>> columnMap, final StringBuilder out,
+        final Parameters parameters)
         throws MalformedQueryException
     {
         RMLVisitor visitor = new DefaultRMLVisitor()
@@ -339,6 +1102,44 @@ public class SQLCoralQueryImpl
                     }
                 }
 
+                public Object visit(ASTdescendantCondition node, Object data)
+                {
+                    try
+                    {
+                        boolean negated = node.jjtGetParent() instanceof ASTnotExpression;
+                        Node parent = negated ? node.jjtGetParent().jjtGetParent() : node
+                            .jjtGetParent();
+                        while(parent instanceof ASTandExpression)
+                        {
+                            parent = parent.jjtGetParent();
+                        }
+                        if(parent != expr)
+                        {
+                            throw new MalformedQueryException("DESCENDANT OF condition may only "
+                                + "be joined with other conditions using AND");
+                        }
+                        // the condition is applied to the rows read; the statement selects the
+                        // tested value and holds a placeholder that is true, with or without NOT
+                        StringBuilder column = new StringBuilder();
+                        appendAttribute(node.getLHS(), columnMap, column);
+                        if(node.isRHSParameter())
+                        {
+                            parameters.addDescendants(column.toString(), node.getRHS(), negated);
+                        }
+                        else
+                        {
+                            parameters.addDescendants(column.toString(),
+                                Long.parseLong(node.getRHS()), negated);
+                        }
+                        out.append(negated ? "1 = 0" : "1 = 1");
+                        return data;
+                    }
+                    catch(MalformedQueryException e)
+                    {
+                        throw new WrappedMalformedQueryException(e);
+                    }
+                }
+
                 public Object visit(ASTequalityCondition node, Object data)
                 {
                     try
@@ -348,6 +1149,12 @@ public class SQLCoralQueryImpl
                         appendAttribute(node.getLHS(), columnMap, out);
                         String[] ops = { " <> ", " = " };
                         out.append(ops[node.getOperator()]);
+                        if(node.isRHSParameter())
+                        {
+                            parameters.add(node.getRHS(), lhs);
+                            out.append("?");
+                            return data;
+                        }
                         Object rhs = parseOperand(node.getRHS(), false, false, columnMap);
                         if(rhs instanceof ResultColumnAttribute)
                         {
@@ -379,6 +1186,12 @@ public class SQLCoralQueryImpl
                         appendAttribute(node.getLHS(), columnMap, out);
                         String[] ops = { " < ", " <= ", " >= ", " > " };
                         out.append(ops[node.getOperator()]);
+                        if(node.isRHSParameter())
+                        {
+                            parameters.add(node.getRHS(), lhs);
+                            out.append("?");
+                            return data;
+                        }
                         Object rhs = parseOperand(node.getRHS(), false, false, columnMap);
                         if(rhs instanceof ResultColumnAttribute)
                         {
@@ -413,6 +1226,12 @@ public class SQLCoralQueryImpl
                             out.append(")");
                         }
                         out.append(" LIKE ");
+                        if(node.isRHSParameter())
+                        {
+                            parameters.add(node.getRHS(), lhs);
+                            out.append(node.isCaseSensitive() ? "?" : " LOWER(?)");
+                            return data;
+                        }
                         Object rhs = parseOperand(node.getRHS(), false, false, columnMap);
                         if(rhs instanceof ResultColumnAttribute)
                         {
@@ -451,4 +1270,347 @@ public class SQLCoralQueryImpl
             throw e.getException();
         }
     }
+
+    /**
+     * Collects positional parameters encountered during query compilation.
+     */
+    private static class Parameters
+    {
+        /** Parameter bindings in statement order. */
+        private final List<Binding> bindings = new ArrayList<Binding>();
+
+        /** DESCENDANT OF conditions in statement order. */
+        private final List<Descendants> descendants = new ArrayList<Descendants>();
+
+        /** Number of distinct positional parameters. */
+        private int count = 0;
+
+        /** <code>true</code> if ? parameters were used, <code>false</code> if $N were used. */
+        private Boolean anonymous = null;
+
+        /**
+         * Records a positional parameter.
+         * 
+         * @param token the parameter token, either <code>?</code> or <code>$N</code>.
+         * @param type the attribute the parameter is compared with.
+         * @throws MalformedQueryException if the parameter is invalid.
+         */
+        public void add(String token, AttributeDefinition<?> type)
+            throws MalformedQueryException
+        {
+            bindings.add(new Binding(index(token), type));
+        }
+
+        /**
+         * Records a DESCENDANT OF condition with a positional parameter.
+         * 
+         * @param column the column expression the condition applies to.
+         * @param token the parameter token, either <code>?</code> or <code>$N</code>.
+         * @param negated <code>true</code> if the condition is negated.
+         * @throws MalformedQueryException if the parameter is invalid.
+         */
+        public void addDescendants(String column, String token, boolean negated)
+            throws MalformedQueryException
+        {
+            descendants.add(new Descendants(column, -1L, index(token), negated));
+        }
+
+        /**
+         * Records a DESCENDANT OF condition with a literal resource identifier.
+         * 
+         * @param column the column expression the condition applies to.
+         * @param root the identifier of the root resource.
+         * @param negated <code>true</code> if the condition is negated.
+         */
+        public void addDescendants(String column, long root, boolean negated)
+        {
+            descendants.add(new Descendants(column, root, 0, negated));
+        }
+
+        private int index(String token)
+            throws MalformedQueryException
+        {
+            boolean isAnonymous = token.equals("?");
+            if(anonymous != null && anonymous.booleanValue() != isAnonymous)
+            {
+                throw new MalformedQueryException("? and $N parameters cannot be mixed");
+            }
+            anonymous = Boolean.valueOf(isAnonymous);
+            int index;
+            if(isAnonymous)
+            {
+                index = count + 1;
+            }
+            else
+            {
+                try
+                {
+                    index = Integer.parseInt(token.substring(1));
+                }
+                catch(NumberFormatException e)
+                {
+                    throw new MalformedQueryException("invalid parameter " + token, e);
+                }
+                if(index < 1)
+                {
+                    throw new MalformedQueryException("invalid parameter " + token);
+                }
+            }
+            count = Math.max(count, index);
+            return index;
+        }
+    }
+
+    /**
+     * Associates a statement parameter with a positional query parameter.
+     */
+    static class Binding
+    {
+        private final int index;
+
+        private final AttributeDefinition<?> type;
+
+        Binding(int index, AttributeDefinition<?> type)
+        {
+            this.index = index;
+            this.type = type;
+        }
+
+        /**
+         * Returns the positional parameter index (1 based).
+         * 
+         * @return the positional parameter index.
+         */
+        public int getIndex()
+        {
+            return index;
+        }
+
+        /**
+         * Returns the attribute the parameter is compared with.
+         * 
+         * @return the attribute definition.
+         */
+        public AttributeDefinition<?> getType()
+        {
+            return type;
+        }
+    }
+
+    /**
+     * A DESCENDANT OF condition, applied to the rows read from the database.
+     */
+    static class Descendants
+    {
+        private final String column;
+
+        private final long root;
+
+        private final int index;
+
+        private final boolean negated;
+
+        Descendants(String column, long root, int index, boolean negated)
+        {
+            this.column = column;
+            this.root = root;
+            this.index = index;
+            this.negated = negated;
+        }
+
+        /**
+         * Returns the column expression the condition applies to.
+         * 
+         * @return the column expression.
+         */
+        public String getColumn()
+        {
+            return column;
+        }
+
+        /**
+         * Returns the identifier of the root resource, if given literally.
+         * 
+         * @return the identifier of the root resource.
+         */
+        public long getRoot()
+        {
+            return root;
+        }
+
+        /**
+         * Returns the positional parameter index (1 based) holding the root resource.
+         * 
+         * @return the positional parameter index, or 0 if the root is given literally.
+         */
+        public int getIndex()
+        {
+            return index;
+        }
+
+        /**
+         * Checks if the condition is negated.
+         * 
+         * @return <code>true</code> if the condition is negated.
+         */
+        public boolean isNegated()
+        {
+            return negated;
+        }
+    }
+
+    /**
+     * A FIND RESOURCE statement translated into SQL.
+     */
+    static class CompiledQuery
+    {
+        private final String sql;
+
+        private final int bodyStart;
+
+        private final int bodyEnd;
+
+        private final int limit;
+
+        private final int offset;
+
+        private final String[][] from;
+
+        private final String[] select;
+
+        private final List<Binding> bindings;
+
+        private final List<Descendants> descendants;
+
+        private final int parameterCount;
+
+        private final MemoryQueryExecutor.Plan plan;
+
+        CompiledQuery(String sql, int bodyStart, int bodyEnd, int limit, int offset,
+            String[][] from, String[] select, List<Binding> bindings,
+            List<Descendants> descendants, int parameterCount, MemoryQueryExecutor.Plan plan)
+        {
+            this.sql = sql;
+            this.bodyStart = bodyStart;
+            this.bodyEnd = bodyEnd;
+            this.limit = limit;
+            this.offset = offset;
+            this.from = from;
+            this.select = select;
+            this.bindings = bindings;
+            this.descendants = descendants;
+            this.parameterCount = parameterCount;
+            this.plan = plan;
+        }
+
+        /**
+         * Returns the SQL statement.
+         * 
+         * @return the SQL statement.
+         */
+        public String getSql()
+        {
+            return sql;
+        }
+
+        /**
+         * Returns the position of the FROM clause in the SQL statement.
+         * 
+         * @return the position of the FROM clause.
+         */
+        public int getBodyStart()
+        {
+            return bodyStart;
+        }
+
+        /**
+         * Returns the position of the end of the WHERE clause in the SQL statement.
+         * 
+         * @return the position of the end of the WHERE clause.
+         */
+        public int getBodyEnd()
+        {
+            return bodyEnd;
+        }
+
+        /**
+         * Returns the LIMIT of the query.
+         * 
+         * @return the LIMIT, or 0 if none.
+         */
+        public int getLimit()
+        {
+            return limit;
+        }
+
+        /**
+         * Returns the OFFSET of the query.
+         * 
+         * @return the OFFSET, or 0 if none.
+         */
+        public int getOffset()
+        {
+            return offset;
+        }
+
+        /**
+         * Returns the FROM list (type, alias).
+         * 
+         * @return the FROM list.
+         */
+        public String[][] getFrom()
+        {
+            return from;
+        }
+
+        /**
+         * Returns the SELECT list.
+         * 
+         * @return the SELECT list, or <code>null</code>.
+         */
+        public String[] getSelect()
+        {
+            return select;
+        }
+
+        /**
+         * Returns statement parameter bindings, in statement order.
+         * 
+         * @return statement parameter bindings.
+         */
+        public List<Binding> getBindings()
+        {
+            return bindings;
+        }
+
+        /**
+         * Returns DESCENDANT OF conditions, in statement order.
+         * 
+         * @return DESCENDANT OF conditions.
+         */
+        public List<Descendants> getDescendants()
+        {
+            return descendants;
+        }
+
+        /**
+         * Returns the number of positional parameters the query requires.
+         * 
+         * @return the number of positional parameters.
+         */
+        public int getParameterCount()
+        {
+            return parameterCount;
+        }
+
+        /**
+         * Returns the plan for evaluation in memory.
+         * 
+         * @return the plan, or <code>null</code> if the query is executed in the database.
+         */
+        public MemoryQueryExecutor.Plan getPlan()
+        {
+            return plan;
+        }
+    }
 }
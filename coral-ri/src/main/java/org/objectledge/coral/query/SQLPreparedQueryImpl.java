@@ -0,0 +1,239 @@
+package org.objectledge.coral.query;
+
+import org.objectledge.coral.entity.Entity;
+import org.objectledge.coral.schema.AttributeClass;
+
+/**
+ * A PreparedQuery implementation that executes a compiled query using JDBC bind parameters.
+ *
+ * <p>The instances are not thread safe, but any number of instances may be created for a single
+ * compiled query.</p>
+ */
+public class SQLPreparedQueryImpl
+    implements PreparedQuery
+{
+    // instance variables ////////////////////////////////////////////////////
+
+    /** The query implementation. */
+    private final SQLCoralQueryImpl coralQuery;
+
+    /** The compiled query. */
+    private final SQLCoralQueryImpl.CompiledQuery compiled;
+
+    /** Positional parameter values. */
+    private final Object[] parameters;
+
+    // initialization ////////////////////////////////////////////////////////
+
+    /**
+     * Constructs a SQLPreparedQueryImpl.
+     *
+     * @param coralQuery the query implementation.
+     * @param compiled the compiled query.
+     */
+    SQLPreparedQueryImpl(SQLCoralQueryImpl coralQuery, SQLCoralQueryImpl.CompiledQuery compiled)
+    {
+        this.coralQuery = coralQuery;
+        this.compiled = compiled;
+        this.parameters = new Object[compiled.getParameterCount()];
+    }
+
+    // query execution ///////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    public QueryResults execute()
+        throws IllegalStateException
+    {
+        checkParameters();
+        try
+        {
+            return coralQuery.execute(compiled, parameters);
+        }
+        catch(MalformedQueryException e)
+        {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public QueryResults execute(Object[] values)
+        throws IllegalStateException
+    {
+        if(values.length < parameters.length)
+        {
+            throw new IllegalStateException(parameters.length + " parameters required, "
+                + values.length + " provided");
+        }
+        for(int i = 0; i < parameters.length; i++)
+        {
+            if(values[i] == null)
+            {
+                throw new IllegalStateException("parameter $" + (i + 1) + " is null");
+            }
+        }
+        try
+        {
+            return coralQuery.execute(compiled, values);
+        }
+        catch(MalformedQueryException e)
+        {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public StreamingQueryResults executeStreaming(int fetchSize)
+        throws IllegalStateException
+    {
+        checkParameters();
+        try
+        {
+            return coralQuery.executeStreaming(compiled, parameters, fetchSize);
+        }
+        catch(MalformedQueryException e)
+        {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long count()
+        throws IllegalStateException
+    {
+        checkParameters();
+        try
+        {
+            return coralQuery.count(compiled, parameters);
+        }
+        catch(MalformedQueryException e)
+        {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean exists()
+        throws IllegalStateException
+    {
+        checkParameters();
+        try
+        {
+            return coralQuery.exists(compiled, parameters);
+        }
+        catch(MalformedQueryException e)
+        {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long[] executeIds()
+        throws IllegalStateException
+    {
+        checkParameters();
+        try
+        {
+            return coralQuery.executeIds(compiled, parameters);
+        }
+        catch(MalformedQueryException e)
+        {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    // value setting /////////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setParameter(int index, Entity value)
+        throws IndexOutOfBoundsException, IllegalArgumentException
+    {
+        set(index, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> void setParameter(int index, AttributeClass<T> type, T value)
+        throws IndexOutOfBoundsException, IllegalArgumentException
+    {
+        set(index, type.getHandler().toAttributeValue(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setParameter(int index, boolean value)
+        throws IndexOutOfBoundsException
+    {
+        set(index, Boolean.valueOf(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setParameter(int index, int value)
+        throws IndexOutOfBoundsException
+    {
+        set(index, Integer.valueOf(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setParameter(int index, long value)
+        throws IndexOutOfBoundsException
+    {
+        set(index, Long.valueOf(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setParameter(int index, String value)
+        throws IndexOutOfBoundsException
+    {
+        set(index, value);
+    }
+
+    // implementation ////////////////////////////////////////////////////////
+
+    private void checkParameters()
+        throws IllegalStateException
+    {
+        for(int i = 0; i < parameters.length; i++)
+        {
+            if(parameters[i] == null)
+            {
+                throw new IllegalStateException("parameter $" + (i + 1) + " was not set");
+            }
+        }
+    }
+
+    private void set(int index, Object value)
+        throws IndexOutOfBoundsException, IllegalArgumentException
+    {
+        if(index < 1 || index > parameters.length)
+        {
+            throw new IndexOutOfBoundsException("no parameter $" + index + " in the query");
+        }
+        if(value == null)
+        {
+            throw new IllegalArgumentException("null value not allowed");
+        }
+        parameters[index - 1] = value;
+    }
+}
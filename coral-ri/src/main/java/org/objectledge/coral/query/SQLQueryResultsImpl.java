@@ -5,12 +5,15 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.objectledge.coral.BackendException;
 import org.objectledge.coral.entity.EntityDoesNotExistException;
+import org.objectledge.coral.schema.AttributeDefinition;
 import org.objectledge.coral.schema.CoralSchema;
 import org.objectledge.coral.schema.ResourceClass;
 import org.objectledge.coral.store.CoralStore;
@@ -19,6 +22,12 @@ import org.objectledge.coral.store.Resource;
 /**
  * Represents the results of a query as tuples of Resources. This is an implementation of
  * QueryResults over an java.sql.ResultSet containing tuples of resource identifiers.
+ * <p>
+ * The resources of all rows are loaded with a single {@link CoralStore#getResource(long[])} call
+ * when any of them is first accessed. When filtered results are requested, the values of the
+ * selected attributes are loaded for all rows with {@link CoralStore#prefetch(java.util.Collection,
+ * Set)}, rather than one by one as the rows are read.
+ * </p>
  * 
  * @author <a href="rkrzewsk@ngo.pl">Rafal Krzewski</a>
  * @version $Id: SQLQueryResultsImpl.java,v 1.3 2005-05-05 08:27:04 rafal Exp $
@@ -40,6 +49,12 @@ public class SQLQueryResultsImpl
      */
     private ArrayList<long[]> resultList = null;
 
+    /**
+     * Resources of consecutive tuples of the result, row by row, or <code>null</code> if not
+     * loaded yet.
+     */
+    private Resource[] resources = null;
+
     /** A mapping of column names into indices */
     private Map<String, Integer> nameIndex = new HashMap<String, Integer>();
 
@@ -65,6 +80,21 @@ public class SQLQueryResultsImpl
      */
     public SQLQueryResultsImpl(CoralSchema schema, CoralStore store, ResultSet resultSet, 
         String[][] from, String[] select)
+    {
+        this(schema, store, readRows(resultSet, from.length), from, select);
+    }
+
+    /**
+     * Constructs a SQLQueryResultsImpl from rows that were already read.
+     *
+     * @param schema the Coral Schema.
+     * @param store the Coral Store.
+     * @param rows the ids of the resources in consecutive rows of the results.
+     * @param from the FROM list.
+     * @param select the SELECT list, or <code>null</code>
+     */
+    public SQLQueryResultsImpl(CoralSchema schema, CoralStore store, List<long[]> rows,
+        String[][] from, String[] select)
     {
         this.store = store;
         this.schema = schema;
@@ -91,7 +121,7 @@ public class SQLQueryResultsImpl
         {
             throw new BackendException("resource class missing", e);
         }
-        fillList(resultSet);
+        resultList = new ArrayList<long[]>(rows);
     }
 
     // result filtering //////////////////////////////////////////////////////
@@ -113,7 +143,9 @@ public class SQLQueryResultsImpl
         {
             throw new IllegalStateException("the query contains no SELECT clause");
         }
-        return new FilteredQueryResultsImpl(schema, this, select);
+        FilteredQueryResultsImpl filtered = new FilteredQueryResultsImpl(schema, this, select);
+        prefetch(filtered);
+        return filtered;
     }
 
     // iteration over results ////////////////////////////////////////////////
@@ -140,7 +172,7 @@ public class SQLQueryResultsImpl
                 {
                     if(i<resultList.size())
                     {
-                        return new RowImpl(resultList.get(i++));
+                        return new RowImpl(i++);
                     }
                     else
                     {
@@ -206,19 +238,13 @@ public class SQLQueryResultsImpl
             throw new IndexOutOfBoundsException("index "+index+"requested "+
                                                 "range 1.."+from.length);
         }
+        Resource[] resources = getResources();
         Resource[] result = new Resource[resultList.size()];
-        try
+        for(int i=0; i<result.length; i++)
         {
-            for(int i=0; i<result.length; i++)
-            {
-                result[i] = store.getResource(((long[])resultList.get(i))[index-1]);
-            }
-            return result;
-        }
-        catch(EntityDoesNotExistException e)
-        {
-            throw new BackendException("resource missing", e);
+            result[i] = resources[i * from.length + index - 1];
         }
+        return result;
     }
 
     /**
@@ -251,19 +277,13 @@ public class SQLQueryResultsImpl
             throw new IndexOutOfBoundsException("index "+index+"requested "+
                                                 "range 1.."+from.length);
         }
+        Resource[] resources = getResources();
         List<Resource> result = new ArrayList<Resource>(resultList.size());
-        try
+        for(int i=0; i<resultList.size(); i++)
         {
-            for(int i=0; i<resultList.size(); i++)
-            {
-                result.add(store.getResource((resultList.get(i))[index - 1]));
-            }
-            return result;
-        }
-        catch(EntityDoesNotExistException e)
-        {
-            throw new BackendException("resource missing", e);
+            result.add(resources[i * from.length + index - 1]);
         }
+        return result;
     }
 
     // results metadata //////////////////////////////////////////////////////
@@ -366,22 +386,23 @@ public class SQLQueryResultsImpl
     // implementation ////////////////////////////////////////////////////////
 
     /**
-     * Fills the result list with data.
+     * Reads the rows of the result set.
      */
-    private void fillList(ResultSet resultSet)
+    private static List<long[]> readRows(ResultSet resultSet, int width)
     {
         try
         {
-            resultList = new ArrayList<long[]>();
+            List<long[]> rows = new ArrayList<long[]>();
             while(resultSet.next())
             {
-                long[] row = new long[from.length];
-                for(int i=0; i<from.length; i++)
+                long[] row = new long[width];
+                for(int i=0; i<width; i++)
                 {
                     row[i] = resultSet.getLong(i+1);
                 }
-                resultList.add(row);
+                rows.add(row);
             }
+            return rows;
         }
         catch(SQLException e)
         {
@@ -395,6 +416,55 @@ public class SQLQueryResultsImpl
         return resultList.size();
     }
 
+    /**
+     * Returns the resources of all rows, loading them if necessary.
+     *
+     * @return resources of consecutive tuples of the result, row by row.
+     */
+    private Resource[] getResources()
+    {
+        if(resources == null)
+        {
+            long[] ids = new long[resultList.size() * from.length];
+            for(int i=0; i<resultList.size(); i++)
+            {
+                System.arraycopy(resultList.get(i), 0, ids, i * from.length, from.length);
+            }
+            try
+            {
+                resources = store.getResource(ids);
+            }
+            catch(EntityDoesNotExistException e)
+            {
+                throw new BackendException("resource missing", e);
+            }
+        }
+        return resources;
+    }
+
+    /**
+     * Loads the values of the attributes selected by filtered results for all rows.
+     *
+     * @param filtered the filtered results.
+     */
+    private void prefetch(FilteredQueryResultsImpl filtered)
+    {
+        Resource[] resources = getResources();
+        for(int i=0; i<from.length; i++)
+        {
+            Set<AttributeDefinition<?>> attributes = filtered.getSelectedAttributes(i+1);
+            if(!attributes.isEmpty())
+            {
+                Set<Resource> column = new LinkedHashSet<Resource>();
+                for(int j=i; j<resources.length; j+=from.length)
+                {
+                    column.add(resources[j]);
+                }
+                store.prefetch(column, attributes);
+            }
+        }
+    }
+
     // Row implementation ////////////////////////////////////////////////////
 
     /**
@@ -407,17 +477,21 @@ public class SQLQueryResultsImpl
 
         /** The ids of the resources in the row. */
         private long[] ids;
+
+        /** The index of the row (0 based). */
+        private int row;
         
         // initialization ////////////////////////////////////////////////////
         
         /**
          * Constructs a row. 
          *
-         * @param ids The ids of the resources in the row.
+         * @param row the index of the row (0 based).
          */
-        public RowImpl(long[] ids)
+        public RowImpl(int row)
         {
-            this.ids = ids;
+            this.ids = resultList.get(row);
+            this.row = row;
         }
 
         /**
@@ -465,14 +539,7 @@ public class SQLQueryResultsImpl
                 throw new IndexOutOfBoundsException("index "+index+"requested "+
                                                     "range 1.."+from.length);
             }
-            try
-            {
-                return store.getResource(ids[index-1]);
-            }
-            catch(EntityDoesNotExistException e)
-            {
-                throw new BackendException("resource missing", e);
-            }
+            return getResources()[row * from.length + index - 1];
         }
 
         /**
@@ -540,10 +607,7 @@ public class SQLQueryResultsImpl
         public Resource[] getArray()
         {
             Resource[] result = new Resource[from.length];
-            for(int i=1; i<=result.length; i++)
-            {
-                result[i-1] = get(i);
-            }
+            System.arraycopy(getResources(), row * from.length, result, 0, from.length);
             return result;
         }
 
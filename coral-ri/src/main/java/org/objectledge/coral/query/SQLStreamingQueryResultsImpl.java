@@ -0,0 +1,566 @@
+package org.objectledge.coral.query;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.objectledge.coral.BackendException;
+import org.objectledge.coral.entity.EntityDoesNotExistException;
+import org.objectledge.coral.schema.AttributeDefinition;
+import org.objectledge.coral.schema.CoralSchema;
+import org.objectledge.coral.schema.ResourceClass;
+import org.objectledge.coral.store.CoralStore;
+import org.objectledge.coral.store.Resource;
+import org.objectledge.database.DatabaseUtils;
+
+/**
+ * Represents the results of a query as tuples of Resources, read incrementally from an open
+ * java.sql.ResultSet.
+ * <p>
+ * Resource identifiers are read into a page buffer of <code>fetchSize</code> rows, and the
+ * resources of the whole page are loaded with a single {@link CoralStore#getResource(long[])}
+ * call. When filtered results are requested, the values of the selected attributes are loaded
+ * for the whole page in the same way. The JDBC connection is released when the last row is read,
+ * or when the results are closed.
+ * </p>
+ */
+public class SQLStreamingQueryResultsImpl
+    implements StreamingQueryResults
+{
+    // instance variables ////////////////////////////////////////////////////
+
+    /** The FROM list (type, alias) */
+    private final String[][] from;
+
+    /** The SELECT list */
+    private final String[] select;
+
+    /** A mapping of column names into indices */
+    private final Map<String, Integer> nameIndex = new HashMap<String, Integer>();
+
+    /** Types of resources in each column. */
+    private final ResourceClass<?>[] columnType;
+
+    /** The Coral store. */
+    private final CoralStore store;
+
+    /** The Coral schema. */
+    private final CoralSchema schema;
+
+    /** The connection, or <code>null</code> when closed. */
+    private Connection conn;
+
+    /** The statement. */
+    private Statement stmt;
+
+    /** The result set. */
+    private ResultSet resultSet;
+
+    /** Auto-commit state of the connection to be restored on close. */
+    private final boolean autoCommit;
+
+    /** Number of rows read at a time. */
+    private final int fetchSize;
+
+    /** The filter applied to the rows read, or <code>null</code>. */
+    private final RowFilter rowFilter;
+
+    /** Resource ids of the current page, row by row. */
+    private final long[] page;
+
+    /** Resources of the current page. */
+    private Resource[] pageResources;
+
+    /** Number of rows in the current page. */
+    private int pageRows = 0;
+
+    /** Position of the next row in the current page. */
+    private int pagePosition = 0;
+
+    /** The filtered results, or <code>null</code> if not requested. */
+    private FilteredQueryResultsImpl filtered;
+
+    /** <code>true</code> once traversal of the results started. */
+    private boolean consumed = false;
+
+    // initialization ////////////////////////////////////////////////////////
+
+    /**
+     * Constructs a SQLStreamingQueryResultsImpl.
+     *
+     * @param schema the Coral Schema.
+     * @param store the Coral Store.
+     * @param conn the connection the result set belongs to, closed together with the results.
+     * @param autoCommit auto-commit state of the connection to be restored on close.
+     * @param stmt the statement the result set belongs to, closed together with the results.
+     * @param resultSet the ResultSet, closed together with the results.
+     * @param from the FROM list.
+     * @param select the SELECT list, or <code>null</code>
+     * @param fetchSize the number of rows read at a time.
+     * @param rowFilter the filter applied to the rows read, or <code>null</code>.
+     */
+    SQLStreamingQueryResultsImpl(CoralSchema schema, CoralStore store, Connection conn,
+        boolean autoCommit, Statement stmt, ResultSet resultSet, String[][] from, String[] select,
+        int fetchSize, RowFilter rowFilter)
+    {
+        this.store = store;
+        this.schema = schema;
+        this.conn = conn;
+        this.autoCommit = autoCommit;
+        this.stmt = stmt;
+        this.resultSet = resultSet;
+        this.from = from;
+        this.select = select;
+        this.fetchSize = fetchSize;
+        this.rowFilter = rowFilter;
+        this.page = new long[fetchSize * from.length];
+        columnType = new ResourceClass[from.length];
+        try
+        {
+            for(int i = 0; i < from.length; i++)
+            {
+                nameIndex.put(from[i][1], new Integer(i + 1));
+                if(from[i][0] != null)
+                {
+                    columnType[i] = schema.getResourceClass(from[i][0]);
+                }
+                else
+                {
+                    columnType[i] = null;
+                }
+            }
+        }
+        catch(EntityDoesNotExistException e)
+        {
+            close();
+            throw new BackendException("resource class missing", e);
+        }
+    }
+
+    // result filtering //////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    public FilteredQueryResults getFiltered()
+        throws IllegalStateException
+    {
+        if(select == null)
+        {
+            throw new IllegalStateException("the query contains no SELECT clause");
+        }
+        filtered = new FilteredQueryResultsImpl(schema, this, select);
+        return filtered;
+    }
+
+    // iteration over results ////////////////////////////////////////////////
+
+    /**
+     * Returns an Iterator over a list of {@link QueryResults.Row} objects.
+     * <p>
+     * The iterator does not support <code>remove</code> operation. This method may be called only
+     * once.
+     * </p>
+     *
+     * @return an Iterator over a list of {@link QueryResults.Row} objects.
+     * @throws IllegalStateException if the results were already traversed.
+     */
+    public Iterator<QueryResults.Row> iterator()
+    {
+        startTraversal();
+        return new Iterator<QueryResults.Row>()
+            {
+                public boolean hasNext()
+                {
+                    return pagePosition < pageRows || fetchPage();
+                }
+
+                public QueryResults.Row next()
+                {
+                    if(!hasNext())
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    int offset = pagePosition * from.length;
+                    pagePosition++;
+                    return new RowImpl(Arrays.copyOfRange(page, offset, offset + from.length),
+                        Arrays.copyOfRange(pageResources, offset, offset + from.length));
+                }
+
+                public void remove()
+                {
+                    throw new UnsupportedOperationException();
+                }
+            };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<QueryResults.Row> getList()
+    {
+        ArrayList<QueryResults.Row> temp = new ArrayList<QueryResults.Row>();
+        Iterator<QueryResults.Row> i = iterator();
+        while(i.hasNext())
+        {
+            temp.add(i.next());
+        }
+        return temp;
+    }
+
+    // access to a colum of results at once (possibly memory consuming) //////
+
+    /**
+     * {@inheritDoc}
+     */
+    public Resource[] getArray(String name)
+        throws IllegalArgumentException
+    {
+        return getArray(getColumnIndex(name));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Resource[] getArray(int index)
+        throws IndexOutOfBoundsException
+    {
+        List<Resource> list = getList(index);
+        Resource[] result = new Resource[list.size()];
+        list.toArray(result);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Resource> getList(String name)
+        throws IllegalArgumentException
+    {
+        return getList(getColumnIndex(name));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Resource> getList(int index)
+        throws IndexOutOfBoundsException
+    {
+        checkIndex(index);
+        List<Resource> result = new ArrayList<Resource>();
+        Iterator<QueryResults.Row> i = iterator();
+        while(i.hasNext())
+        {
+            result.add(i.next().get(index));
+        }
+        return result;
+    }
+
+    // results metadata //////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getColumnCount()
+    {
+        return from.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getColumnName(int index)
+        throws IndexOutOfBoundsException
+    {
+        checkIndex(index);
+        return from[index - 1][1];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getColumnIndex(String name)
+        throws IllegalArgumentException
+    {
+        Integer i = nameIndex.get(name);
+        if(i == null)
+        {
+            throw new IllegalArgumentException("no column named " + name);
+        }
+        return i.intValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ResourceClass<?> getColumnType(int index)
+        throws IndexOutOfBoundsException
+    {
+        checkIndex(index);
+        return columnType[index - 1];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ResourceClass<?> getColumnType(String name)
+        throws IllegalArgumentException
+    {
+        return getColumnType(getColumnIndex(name));
+    }
+
+    /**
+     * Not supported by streaming results.
+     *
+     * @return never returns normally.
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public int rowCount()
+    {
+        throw new UnsupportedOperationException("row count is not known for streaming results");
+    }
+
+    // StreamingQueryResults interface ///////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close()
+    {
+        if(conn != null)
+        {
+            DatabaseUtils.close(resultSet);
+            DatabaseUtils.close(stmt);
+            try
+            {
+                if(autoCommit)
+                {
+                    conn.commit();
+                    conn.setAutoCommit(true);
+                }
+            }
+            catch(SQLException e)
+            {
+                throw new BackendException("failed to restore connection state", e);
+            }
+            finally
+            {
+                DatabaseUtils.close(conn);
+                resultSet = null;
+                stmt = null;
+                conn = null;
+            }
+        }
+    }
+
+    // implementation ////////////////////////////////////////////////////////
+
+    private void checkIndex(int index)
+    {
+        if(index < 1 || index > from.length)
+        {
+            throw new IndexOutOfBoundsException("index " + index + "requested " + "range 1.."
+                + from.length);
+        }
+    }
+
+    private void startTraversal()
+    {
+        if(consumed)
+        {
+            throw new IllegalStateException("streaming results may be traversed only once");
+        }
+        consumed = true;
+    }
+
+    /**
+     * Reads the next page of rows and loads the resources.
+     *
+     * @return <code>false</code> if there are no more rows.
+     */
+    private boolean fetchPage()
+    {
+        if(conn == null)
+        {
+            return false;
+        }
+        try
+        {
+            int rows = 0;
+            int offset = 0;
+            while(rows < fetchSize && (rowFilter == null || !rowFilter.isComplete())
+                && resultSet.next())
+            {
+                if(rowFilter != null && !rowFilter.accept(resultSet))
+                {
+                    continue;
+                }
+                for(int i = 0; i < from.length; i++)
+                {
+                    page[offset++] = resultSet.getLong(i + 1);
+                }
+                rows++;
+            }
+            if(rows < fetchSize)
+            {
+                close();
+            }
+            pageRows = rows;
+            pagePosition = 0;
+            pageResources = rows > 0 ? store.getResource(Arrays.copyOf(page, offset)) : null;
+            if(rows > 0 && filtered != null)
+            {
+                prefetch();
+            }
+            return rows > 0;
+        }
+        catch(SQLException e)
+        {
+            close();
+            throw new BackendException("failed to read data", e);
+        }
+        catch(EntityDoesNotExistException e)
+        {
+            close();
+            throw new BackendException("resource missing", e);
+        }
+    }
+
+    /**
+     * Loads the values of the attributes selected by the filtered results for the current page.
+     */
+    private void prefetch()
+    {
+        for(int i = 0; i < from.length; i++)
+        {
+            Set<AttributeDefinition<?>> attributes = filtered.getSelectedAttributes(i + 1);
+            if(!attributes.isEmpty())
+            {
+                Set<Resource> column = new LinkedHashSet<Resource>();
+                for(int j = i; j < pageResources.length; j += from.length)
+                {
+                    column.add(pageResources[j]);
+                }
+                store.prefetch(column, attributes);
+            }
+        }
+    }
+
+    // Row implementation ////////////////////////////////////////////////////
+
+    /**
+     * Represents a single query result.
+     */
+    private class RowImpl
+        implements QueryResults.Row
+    {
+        /** The ids of the resources in the row. */
+        private final long[] ids;
+
+        /** The resources in the row. */
+        private final Resource[] resources;
+
+        /**
+         * Constructs a row.
+         *
+         * @param ids The ids of the resources in the row.
+         * @param resources The resources in the row.
+         */
+        public RowImpl(long[] ids, Resource[] resources)
+        {
+            this.ids = ids;
+            this.resources = resources;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public Resource get(String name)
+            throws IllegalArgumentException
+        {
+            return get(getColumnIndex(name));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public long getId(String name)
+            throws IllegalArgumentException
+        {
+            return getId(getColumnIndex(name));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public Resource get(int index)
+            throws IndexOutOfBoundsException
+        {
+            checkIndex(index);
+            return resources[index - 1];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public long getId(int index)
+            throws IndexOutOfBoundsException
+        {
+            checkIndex(index);
+            return ids[index - 1];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public Resource get()
+            throws IllegalStateException
+        {
+            if(from.length > 1)
+            {
+                throw new IllegalStateException("more than 1 column");
+            }
+            return resources[0];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public long getId()
+            throws IllegalStateException
+        {
+            if(from.length > 1)
+            {
+                throw new IllegalStateException("more than 1 column");
+            }
+            return ids[0];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public Resource[] getArray()
+        {
+            return resources.clone();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public long[] getIdArray()
+        {
+            return ids.clone();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.objectledge.coral.relation;
+
+import java.util.Arrays;
+
+import org.objectledge.coral.util.LongBitmapSet;
+import org.objectledge.coral.util.PrimitiveCollections;
+
+import bak.pcj.LongIterator;
+import bak.pcj.map.LongKeyMap;
+import bak.pcj.map.LongKeyMapIterator;
+import bak.pcj.map.LongKeyOpenHashMap;
+import bak.pcj.set.LongSet;
+
+/**
+ * Relation storage based on an open hash map of compressed bitmaps of 64 bit ids.
+ * <p>
+ * Takes a fraction of the memory of {@link HashRelationStorage} for large relations, and the
+ * mapped sets support fast intersection and union through {@link LongBitmapSet}.
+ * </p>
+ */
+class BitmapRelationStorage
+    implements RelationStorage
+{
+    /** Map id -&gt; set of ids. */
+    private final LongKeyMap map;
+
+    /** Number of pairs. */
+    private int size = 0;
+
+    /**
+     * Creates a storage instance.
+     *
+     * @param expectedKeys expected number of keys, or 0 if unknown.
+     */
+    BitmapRelationStorage(int expectedKeys)
+    {
+        map = expectedKeys <= 0 ? new LongKeyOpenHashMap() : new LongKeyOpenHashMap(expectedKeys);
+    }
+
+    public LongSet get(long id)
+    {
+        LongBitmapSet set = (LongBitmapSet)map.get(id);
+        if(set != null)
+        {
+            return set.unmodifiableView();
+        }
+        else
+        {
+            return PrimitiveCollections.EMPTY_LONG_SET;
+        }
+    }
+
+    public boolean contains(long id, long idInv)
+    {
+        LongBitmapSet set = (LongBitmapSet)map.get(id);
+        return set != null && set.contains(idInv);
+    }
+
+    public boolean add(long id, long idInv)
+    {
+        LongBitmapSet set = (LongBitmapSet)map.get(id);
+        if(set == null)
+        {
+            set = new LongBitmapSet();
+            map.put(id, set);
+        }
+        if(set.add(idInv))
+        {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean remove(long id, long idInv)
+    {
+        LongBitmapSet set = (LongBitmapSet)map.get(id);
+        if(set == null || !set.remove(idInv))
+        {
+            return false;
+        }
+        size--;
+        if(set.isEmpty())
+        {
+            map.remove(id);
+        }
+        return true;
+    }
+
+    public int keyCount()
+    {
+        return map.size();
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public long[][] getPairs()
+    {
+        long[] ids = map.keySet().toArray();
+        Arrays.sort(ids);
+        long[][] pairs = new long[size][];
+        int n = 0;
+        for(long id : ids)
+        {
+            // bitmap sets iterate in ascending order, so the pairs come out sorted
+            for(LongIterator i = ((LongBitmapSet)map.get(id)).iterator(); i.hasNext();)
+            {
+                pairs[n++] = new long[] { id, i.next() };
+            }
+        }
+        return pairs;
+    }
+
+    public void clear()
+    {
+        map.clear();
+        size = 0;
+    }
+
+    /**
+     * Compacts the mapped sets after bulk loading.
+     */
+    void trimToSize()
+    {
+        for(LongKeyMapIterator i = map.entries(); i.hasNext();)
+        {
+            i.next();
+            ((LongBitmapSet)i.getValue()).trimToSize();
+        }
+    }
+}
@@ -43,6 +43,8 @@ import org.jcontainer.dna.ConfigurationException;
 import org.jcontainer.dna.Logger;
 import org.objectledge.cache.CacheFactory;
 import org.objectledge.coral.BackendException;
+import org.objectledge.coral.CacheStatisticsRegistry;
+import org.objectledge.coral.CoralConfig;
 import org.objectledge.coral.CoralCore;
 import org.objectledge.coral.Instantiator;
 import org.objectledge.coral.PreloadingParticipant;
@@ -86,6 +88,7 @@ public class CoralRelationManagerImpl
      * 
      * @param persistence used to modify relation metadata
      * @param cacheFactory used to create caches for relation objects
+     * @param cacheStatistics used to report statistics of the relation caches
      * @param coralEventHub TODO http://objectledge.org/jira/browse/CORAL-73 may be used to clean relations on resource deletions
      * @param coral used to get coral facilities
      * @param instantiator used to instantiate relation objects
@@ -94,7 +97,8 @@ public class CoralRelationManagerImpl
      * @throws ConfigurationException on problems with configuration values
      */
     public CoralRelationManagerImpl(Persistence persistence, CacheFactory cacheFactory, 
-        CoralEventHub coralEventHub, CoralCore coral, Instantiator instantiator, Logger log)
+        CacheStatisticsRegistry cacheStatistics, CoralEventHub coralEventHub, CoralCore coral,
+        Instantiator instantiator, Logger log)
         throws ConfigurationException
     {
         this.persistence = persistence;
@@ -104,8 +108,8 @@ public class CoralRelationManagerImpl
 
         this.relationCache = new WeakHashMap();
         this.relationFactory = instantiator.getPersistentFactory(RelationImpl.class);
-        this.relationRegistry = new EntityRegistry(persistence, cacheFactory, instantiator, log, 
-			"relation", RelationImpl.class);
+        this.relationRegistry = new EntityRegistry(persistence, cacheFactory, cacheStatistics,
+            instantiator, log, "relation", RelationImpl.class);
         this.relationRegistry.addSynthetic(new ResourceHierarchyRelationImpl(persistence, coral.getStore(), this));
     }
 
@@ -435,6 +439,18 @@ public class CoralRelationManagerImpl
         }
     }
 
+    /**
+     * Checks if the relation should keep its contents in compressed bitmaps.
+     * 
+     * @param name the name of the relation.
+     * @return <code>true</code> if {@link BitmapRelationStorage} should be used.
+     */
+    boolean isBitmapStorage(String name)
+    {
+        CoralConfig config = coral.getConfig();
+        return config != null && config.getBitmapRelations().contains(name);
+    }
+
     /**
      * {@inheritDoc}
      */
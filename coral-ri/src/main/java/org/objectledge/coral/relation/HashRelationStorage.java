@@ -0,0 +1,139 @@
+package org.objectledge.coral.relation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.objectledge.coral.util.PrimitiveCollections;
+
+import bak.pcj.IntIterator;
+import bak.pcj.map.IntKeyMap;
+import bak.pcj.map.IntKeyMapIterator;
+import bak.pcj.map.IntKeyOpenHashMap;
+import bak.pcj.set.IntOpenHashSet;
+import bak.pcj.set.IntSet;
+import bak.pcj.set.LongSet;
+
+/**
+ * Relation storage based on open hash maps of open hash sets of 32 bit ids.
+ */
+class HashRelationStorage
+    implements RelationStorage
+{
+    private static final long[][] BLANK = new long[0][];
+
+    private static int initialSetCapacity = 128;
+
+    /** Map id -&gt; set of ids. */
+    private final IntKeyMap map;
+
+    /**
+     * Creates a storage instance.
+     *
+     * @param expectedKeys expected number of keys, or 0 if unknown.
+     */
+    HashRelationStorage(int expectedKeys)
+    {
+        map = expectedKeys <= 0 ? new IntKeyOpenHashMap() : new IntKeyOpenHashMap(expectedKeys);
+    }
+
+    public LongSet get(long id)
+    {
+        checkRange(id);
+        IntSet set = (IntSet)map.get((int)id);
+        if(set != null)
+        {
+            return PrimitiveCollections.unmodifiableLongSet(set);
+        }
+        else
+        {
+            return PrimitiveCollections.EMPTY_LONG_SET;
+        }
+    }
+
+    public boolean contains(long id, long idInv)
+    {
+        checkRange(id, idInv);
+        IntSet set = (IntSet)map.get((int)id);
+        return set != null && set.contains((int)idInv);
+    }
+
+    public boolean add(long id, long idInv)
+    {
+        checkRange(id, idInv);
+        IntSet set = (IntSet)map.get((int)id);
+        if(set == null)
+        {
+            set = new IntOpenHashSet(initialSetCapacity);
+            map.put((int)id, set);
+        }
+        return set.add((int)idInv);
+    }
+
+    public boolean remove(long id, long idInv)
+    {
+        checkRange(id, idInv);
+        IntSet set = (IntSet)map.get((int)id);
+        if(set == null)
+        {
+            return false;
+        }
+        boolean removed = set.remove((int)idInv);
+        if(set.size() == 0)
+        {
+            map.remove((int)id);
+        }
+        return removed;
+    }
+
+    public int keyCount()
+    {
+        return map.size();
+    }
+
+    public int size()
+    {
+        int totalSize = 0;
+        for(IntKeyMapIterator i = map.entries(); i.hasNext();)
+        {
+            i.next();
+            totalSize += ((IntSet)i.getValue()).size();
+        }
+        return totalSize;
+    }
+
+    public long[][] getPairs()
+    {
+        List<long[]> temp = new ArrayList<long[]>();
+        for(IntKeyMapIterator i = map.entries(); i.hasNext();)
+        {
+            i.next();
+            IntSet tailSet = (IntSet)i.getValue();
+            for(IntIterator j = tailSet.iterator(); j.hasNext();)
+            {
+                long[] pair = new long[2];
+                pair[0] = (long)i.getKey();
+                pair[1] = (long)j.next();
+                temp.add(pair);
+            }
+        }
+        Collections.sort(temp, PairComparator.INSTANCE);
+        return temp.toArray(BLANK);
+    }
+
+    public void clear()
+    {
+        map.clear();
+    }
+
+    private static void checkRange(long... vals)
+    {
+        for(long val : vals)
+        {
+            if(val > Integer.MAX_VALUE || val < Integer.MIN_VALUE)
+            {
+                throw new IllegalArgumentException("value " + val + " is out of supported range");
+            }
+        }
+    }
+}
@@ -28,25 +28,16 @@
 package org.objectledge.coral.relation;
 
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 import org.objectledge.coral.BackendException;
 import org.objectledge.coral.entity.AbstractEntity;
 import org.objectledge.coral.entity.EntityDoesNotExistException;
 import org.objectledge.coral.store.CoralStore;
 import org.objectledge.coral.store.Resource;
-import org.objectledge.coral.util.PrimitiveCollections;
 import org.objectledge.database.persistence.InputRecord;
 import org.objectledge.database.persistence.Persistence;
 
-import bak.pcj.IntIterator;
-import bak.pcj.map.IntKeyMap;
-import bak.pcj.map.IntKeyMapIterator;
-import bak.pcj.map.IntKeyOpenHashMap;
-import bak.pcj.set.IntOpenHashSet;
-import bak.pcj.set.IntSet;
+import bak.pcj.set.LongOpenHashSet;
 import bak.pcj.set.LongSet;
 
 /**
@@ -61,10 +52,6 @@ public class RelationImpl
 {
     // implementation -----------------------------------------------------------------------------
 
-    private static int initialSetCapacity = 128;
-
-    private static final long[][] BLANK = new long[0][];
-
     /** Store is used to retrieve resources. */
     private CoralStore store;
 
@@ -72,10 +59,10 @@ public class RelationImpl
     private CoralRelationManager coralRelationManager;
 
     /** Map r1 -&gt; set of r2. */
-    private IntKeyMap rel = new IntKeyOpenHashMap();
+    private RelationStorage rel;
 
     /** Map r2 -&gt; set of r1. */
-    private IntKeyMap invRel = new IntKeyOpenHashMap();
+    private RelationStorage invRel;
 
     /** Number of unique resource pairs. */
     private int resourceIdPairsNum = 0;
@@ -98,6 +85,8 @@ public class RelationImpl
 
         this.store = store;
         this.coralRelationManager = coralRelationManager;
+        this.rel = new HashRelationStorage(0);
+        this.invRel = new HashRelationStorage(0);
     }
 
     /**
@@ -115,6 +104,8 @@ public class RelationImpl
 
         this.store = store;
         this.coralRelationManager = coralRelationManager;
+        this.rel = createStorage(0);
+        this.invRel = createStorage(0);
     }
 
     // public api ---------------------------------------------------------------------------------
@@ -148,7 +139,7 @@ public class RelationImpl
      */
     public synchronized LongSet get(long id)
     {
-        return get(rel, id);
+        return rel.get(id);
     }
 
     /**
@@ -164,13 +155,7 @@ public class RelationImpl
      */
     public synchronized boolean hasRef(long id, long idInv)
     {
-        checkRange(id, idInv);
-        IntSet set = (IntSet)rel.get((int)id);
-        if(set != null)
-        {
-            return set.contains((int)idInv);
-        }
-        return false;
+        return rel.contains(id, idInv);
     }
 
     /**
@@ -178,7 +163,7 @@ public class RelationImpl
      */
     public synchronized int size()
     {
-        return calcSetsSizeSum(rel);
+        return rel.size();
     }
 
     /**
@@ -229,37 +214,35 @@ public class RelationImpl
         super.setData(record);
         long[] def = coralRelationManager.getRelationDefinition(this);
 
-        IntSet set1 = makeIntSet(def.length / 4);
-        IntSet set2 = makeIntSet(def.length / 4);
-
+        LongSet set1 = makeLongSet(def.length / 4);
+        LongSet set2 = makeLongSet(def.length / 4);
         for(int i = 0; i < def.length / 2; i++)
         {
-            checkRange(def[2 * i], def[2 * i + 1]);
-            set1.add((int)def[2 * i]);
-            set2.add((int)def[2 * i + 1]);
+            set1.add(def[2 * i]);
+            set2.add(def[2 * i + 1]);
         }
 
-        rel = makeIntKeyMap((int)(set1.size() * 1.5));
-        invRel = makeIntKeyMap((int)(set2.size() * 1.5));
+        rel = createStorage((int)(set1.size() * 1.5));
+        invRel = createStorage((int)(set2.size() * 1.5));
 
         for(int i = 0; i < def.length / 2; i++)
         {
             long id1 = def[i * 2];
             long id2 = def[2 * i + 1];
-            checkRange(id1, id2);
-
-            set1 = maybeCreateSet(rel, id1);
-            set2 = maybeCreateSet(invRel, id2);
-
-            set1.add((int)id2);
-            set2.add((int)id1);
+            rel.add(id1, id2);
+            invRel.add(id2, id1);
+        }
+        if(rel instanceof BitmapRelationStorage)
+        {
+            ((BitmapRelationStorage)rel).trimToSize();
+            ((BitmapRelationStorage)invRel).trimToSize();
         }
-        this.resourceIdPairsNum = calcSetsSizeSum(rel);
+        this.resourceIdPairsNum = rel.size();
     }
 
     public synchronized long[][] getPairs()
     {
-        return getPairs(rel);
+        return rel.getPairs();
     }
 
     // implementation api -------------------------------------------------------------------------
@@ -282,29 +265,8 @@ public class RelationImpl
      */
     synchronized void remove(long id1, long id2)
     {
-        checkRange(id1, id2);
-        IntSet set1 = (IntSet)rel.get((int)id1);
-        IntSet set2 = (IntSet)invRel.get((int)id2);
-
-        boolean p1 = false;
-        if(set1 != null)
-        {
-            p1 = set1.remove((int)id2);
-            if(set1.size() == 0)
-            {
-                rel.remove((int)id1);
-            }
-        }
-
-        boolean p2 = false;
-        if(set2 != null)
-        {
-            p2 = set2.remove((int)id1);
-            if(set2.size() == 0)
-            {
-                invRel.remove((int)id2);
-            }
-        }
+        boolean p1 = rel.remove(id1, id2);
+        boolean p2 = invRel.remove(id2, id1);
 
         if(p1 && p2)
         {
@@ -325,13 +287,9 @@ public class RelationImpl
      */
     synchronized void add(long id1, long id2)
     {
-        checkRange(id1, id2);
-        IntSet set1 = maybeCreateSet(rel, id1);
-        IntSet set2 = maybeCreateSet(invRel, id2);
-
-        boolean p1 = set1.add((int)id2);
+        boolean p1 = rel.add(id1, id2);
         // -- this the moment in which the relationship is directed r1 -> r2
-        boolean p2 = set2.add((int)id1);
+        boolean p2 = invRel.add(id2, id1);
 
         if(p1 && p2)
         {
@@ -346,32 +304,37 @@ public class RelationImpl
 
     // implementation -----------------------------------------------------------------------------
 
-    private static void checkRange(long... vals)
+    /**
+     * Creates the storage for the relation contents, according to Coral configuration.
+     *
+     * @param expectedKeys expected number of keys, or 0 if unknown.
+     * @return a RelationStorage instance.
+     */
+    private RelationStorage createStorage(int expectedKeys)
     {
-        for(long val : vals)
+        if(coralRelationManager instanceof CoralRelationManagerImpl
+            && ((CoralRelationManagerImpl)coralRelationManager).isBitmapStorage(getName()))
         {
-            if(val > Integer.MAX_VALUE || val < Integer.MIN_VALUE)
-            {
-                throw new IllegalArgumentException("value " + val + " is out of supported range");
-            }
+            return new BitmapRelationStorage(expectedKeys);
         }
+        return new HashRelationStorage(expectedKeys);
     }
 
-    private static int calcSetsSizeSum(IntKeyMap relation)
+    private static LongSet makeLongSet(int size)
     {
-        int totalSize = 0;
-        for(IntKeyMapIterator i = relation.entries(); i.hasNext();)
+        if(size <= 0)
+        {
+            return new LongOpenHashSet();
+        }
+        else
         {
-            i.next();
-            IntSet relSet = (IntSet)i.getValue();
-            totalSize += relSet.size();
+            return new LongOpenHashSet(size);
         }
-        return totalSize;
     }
 
-    private static float getAvgMappingSize(IntKeyMap relation, int numPairs)
+    private static float getAvgMappingSize(RelationStorage relation, int numPairs)
     {
-        int numSets = relation.size();
+        int numSets = relation.keyCount();
         if(numSets != 0)
         {
             return (float)numPairs / (float)numSets;
@@ -386,132 +349,22 @@ public class RelationImpl
         }
     }
 
-    private static long[][] getPairs(IntKeyMap relation)
-    {
-        List<long[]> temp = new ArrayList<long[]>();
-        for(IntKeyMapIterator i = relation.entries(); i.hasNext();)
-        {
-            i.next();
-            IntSet tailSet = (IntSet)i.getValue();
-            for(IntIterator j = tailSet.iterator(); j.hasNext();)
-            {
-                long[] pair = new long[2];
-                pair[0] = (long)i.getKey();
-                pair[1] = (long)j.next();
-                temp.add(pair);
-            }
-        }
-        Collections.sort(temp, PairComparator.INSTANCE);
-        return temp.toArray(BLANK);
-    }
-
-    /**
-     * Returns a set for a given id key and relation, maybe creates it.
-     */
-    private static IntSet maybeCreateSet(IntKeyMap relation, long idk)
-    {
-        return maybeCreateSet(relation, idk, initialSetCapacity);
-    }
-
-    /**
-     * Returns a set for a given id key and relation, maybe creates it.
-     */
-    private static IntSet maybeCreateSet(IntKeyMap relation, long idk, int initialCapacity)
-    {
-        // checkRange(idk) was already performed by the caller
-        IntSet set = (IntSet)relation.get((int)idk);
-        if(set == null)
-        {
-            set = makeIntSet(initialCapacity);
-            relation.put((int)idk, set);
-        }
-        return set;
-    }
-
     /**
      * Returns resources referenced by a given resource in the relation.
      * 
      * @param store CoralStore
      */
-    private static Resource[] get(IntKeyMap relation, Resource r, CoralStore store)
+    private static Resource[] get(RelationStorage relation, Resource r, CoralStore store)
     {
-        checkRange(r.getId());
-        IntSet set = (IntSet)relation.get((int)r.getId());
-        if(set != null)
-        {
-            return instantiate(set, store);
-        }
-        else
-        {
-            return new Resource[0];
-        }
-    }
-
-    /**
-     * Return an array of ids contained in the map under given id.
-     */
-    private static LongSet get(IntKeyMap relation, long id)
-    {
-        checkRange(id);
-        IntSet set = (IntSet)relation.get((int)id);
-        if(set != null)
-        {
-            return PrimitiveCollections.unmodifiableLongSet(set);
-        }
-        else
-        {
-            return PrimitiveCollections.EMPTY_LONG_SET;
-        }
-    }
-
-    /**
-     * Returns an array of Resources with given identifiers.
-     *
-     * @param a indentifier array.
-     * @param store CoralStore
-     * @return Resource array.
-     */
-    static private Resource[] instantiate(IntSet a, CoralStore store)
-    {
-        Resource[] res = new Resource[a.size()];
+        LongSet set = relation.get(r.getId());
         try
         {
-            int i = 0;
-            for(IntIterator iter = a.iterator(); iter.hasNext(); i++)
-            {
-                long id = (long)iter.next();
-                res[i] = store.getResource(id);
-            }
+            return store.getResource(set.toArray());
         }
         catch(EntityDoesNotExistException e)
         {
             throw new BackendException("inconsistent data", e);
         }
-        return res;
-    }
-
-    private static IntKeyMap makeIntKeyMap(int size)
-    {
-        if(size <= 0)
-        {
-            return new IntKeyOpenHashMap();
-        }
-        else
-        {
-            return new IntKeyOpenHashMap(size);
-        }
-    }
-
-    private static IntSet makeIntSet(int size)
-    {
-        if(size <= 0)
-        {
-            return new IntOpenHashSet();
-        }
-        else
-        {
-            return new IntOpenHashSet(size);
-        }
     }
 
     // relation invertion -------------------------------------------------------------------------
@@ -554,7 +407,7 @@ public class RelationImpl
         {
             synchronized(RelationImpl.this)
             {
-                return RelationImpl.get(invRel, id);
+                return invRel.get(id);
             }
         }
 
@@ -633,7 +486,7 @@ public class RelationImpl
         {
             synchronized(RelationImpl.this)
             {
-                return RelationImpl.getPairs(invRel);
+                return invRel.getPairs();
             }
         }
     }
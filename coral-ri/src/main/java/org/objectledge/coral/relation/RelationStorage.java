@@ -0,0 +1,73 @@
+package org.objectledge.coral.relation;
+
+import bak.pcj.set.LongSet;
+
+/**
+ * Keeps one direction of a relation: a mapping from a resource id to a set of resource ids.
+ *
+ * @see HashRelationStorage
+ * @see BitmapRelationStorage
+ */
+interface RelationStorage
+{
+    /**
+     * Returns an unmodifiable view of the set mapped to the given id.
+     *
+     * @param id the key id.
+     * @return the mapped ids, possibly empty.
+     */
+    LongSet get(long id);
+
+    /**
+     * Checks if the pair is present.
+     *
+     * @param id the key id.
+     * @param idInv the mapped id.
+     * @return <code>true</code> if the pair is present.
+     */
+    boolean contains(long id, long idInv);
+
+    /**
+     * Adds a pair.
+     *
+     * @param id the key id.
+     * @param idInv the mapped id.
+     * @return <code>true</code> if the pair was not present before.
+     */
+    boolean add(long id, long idInv);
+
+    /**
+     * Removes a pair.
+     *
+     * @param id the key id.
+     * @param idInv the mapped id.
+     * @return <code>true</code> if the pair was present.
+     */
+    boolean remove(long id, long idInv);
+
+    /**
+     * Returns the number of ids with a non empty mapping.
+     *
+     * @return the number of ids with a non empty mapping.
+     */
+    int keyCount();
+
+    /**
+     * Returns the number of pairs.
+     *
+     * @return the number of pairs.
+     */
+    int size();
+
+    /**
+     * Returns all pairs, sorted using {@link PairComparator}.
+     *
+     * @return all pairs.
+     */
+    long[][] getPairs();
+
+    /**
+     * Removes all pairs.
+     */
+    void clear();
+}
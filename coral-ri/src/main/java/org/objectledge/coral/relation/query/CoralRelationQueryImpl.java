@@ -38,7 +38,6 @@ import org.objectledge.coral.relation.query.parser.SimpleNode;
 import org.objectledge.coral.store.CoralStore;
 import org.objectledge.coral.store.Resource;
 
-import bak.pcj.LongIterator;
 import bak.pcj.set.LongSet;
 
 /**
@@ -136,12 +135,6 @@ public class CoralRelationQueryImpl implements CoralRelationQuery
     {
 	    LongSet idSet = queryIds(query, resolver, initialIdSet);
 	    
-        Resource[] resources = new Resource[idSet.size()];
-        int j=0;
-        for(LongIterator i=idSet.iterator(); i.hasNext(); j++)
-        {
-            resources[j] = store.getResource(i.next());
-        }
-        return resources;
+        return store.getResource(idSet.toArray());
     }
 }
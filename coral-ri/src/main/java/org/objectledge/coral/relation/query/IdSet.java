@@ -27,28 +27,45 @@
 //
 package org.objectledge.coral.relation.query;
 
-import java.util.Set;
+import org.objectledge.coral.util.LongBitmapSet;
 
 import bak.pcj.set.LongSet;
 
 /**
  * Id set represents a set of resource ids. It is used during query execution.
+ * <p>
+ * The ids are kept in a {@link LongBitmapSet}. Sets provided by relations and resolvers are used
+ * without copying when they are bitmaps already, and the operations never modify them - the result
+ * of each operation is a new bitmap owned by this id set.
+ * </p>
  * 
  * @author <a href="mailto:dgajda@caltha.pl">Damian Gajda</a>
  * @version $Id: IdSet.java,v 1.2 2005-04-01 12:32:12 zwierzem Exp $
  */
 public class IdSet
 {
-	private LongSet set;
+	private LongBitmapSet set;
+
+	/** <code>true</code> if the set is not owned by this object and must not be modified. */
+	private boolean shared;
 
 	/**
-	 * Constucts an id set from a set of {@link Long} objects.
+	 * Constucts an id set from a set of ids.
 	 *  
 	 * @param set set of ids
 	 */
 	public IdSet(LongSet set)
 	{
-		this.set = set;
+		if(set instanceof LongBitmapSet)
+		{
+			this.set = (LongBitmapSet)set;
+			this.shared = true;
+		}
+		else
+		{
+			this.set = new LongBitmapSet(set.toArray());
+			this.shared = false;
+		}
 	}
 
 	/**
@@ -58,7 +75,15 @@ public class IdSet
 	 */
 	public void sum(IdSet other)
 	{
-		set.addAll(other.set);
+		if(shared)
+		{
+			set = LongBitmapSet.or(set, other.set);
+			shared = false;
+		}
+		else
+		{
+			set.addAll(other.set);
+		}
 	}
 
 	/**
@@ -68,16 +93,32 @@ public class IdSet
 	 */
 	public void intersect(IdSet other)
 	{
-		set.retainAll(other.set);
+		set = LongBitmapSet.and(set, other.set);
+		shared = false;
 	}
 	
+    /**
+     * Returns the ids for reading, without copying a shared set.
+     * 
+     * @return the ids, not to be modified.
+     */
+    LongSet getIds()
+    {
+        return set;
+    }
+
     /**
      * Returns a set stored in this id set.
      * 
-     * @return internal set of {@link Long} objects
+     * @return internal set of ids, owned by this object.
      */
     public LongSet getSet()
     {
+        if(shared)
+        {
+            set = new LongBitmapSet(set);
+            shared = false;
+        }
         return set;
     }
 }
@@ -41,9 +41,9 @@ import org.objectledge.coral.relation.query.parser.ASTResourceIdentifierPath;
 import org.objectledge.coral.relation.query.parser.ASTSumExpression;
 import org.objectledge.coral.relation.query.parser.ASTTransitiveRelationMapExpression;
 import org.objectledge.coral.relation.query.parser.SimpleNode;
+import org.objectledge.coral.util.LongBitmapSet;
 
 import bak.pcj.LongIterator;
-import bak.pcj.set.LongOpenHashSet;
 import bak.pcj.set.LongSet;
 
 /**
@@ -142,8 +142,8 @@ public class QueryExecutor extends AbstractQueryVisitor
 	 */
 	public Object doVisit(ASTRelationMapExpression node, Object data, Relation relation)
 	{
-		LongSet mapSet = getMapSet(node, data).getSet();
-		LongSet resultSet = new LongOpenHashSet(mapSet.size());
+		LongSet mapSet = getMapSet(node, data).getIds();
+		LongSet resultSet = new LongBitmapSet();
 		for (LongIterator iter = mapSet.iterator(); iter.hasNext();)
         {
 			resultSet.addAll(relation.get(iter.next()));
@@ -163,8 +163,8 @@ public class QueryExecutor extends AbstractQueryVisitor
 	 */
 	public Object doVisit(ASTTransitiveRelationMapExpression node, Object data, Relation relation)
 	{
-		LongSet mapSet = getMapSet(node, data).getSet();
-		LongSet resultSet = new LongOpenHashSet(mapSet.size());
+		LongSet mapSet = getMapSet(node, data).getIds();
+		LongSet resultSet = new LongBitmapSet();
 		for (LongIterator iter = mapSet.iterator(); iter.hasNext();)
 		{
 			buildTransitiveSet(relation, iter.next(), mapSet, resultSet);
@@ -210,7 +210,7 @@ public class QueryExecutor extends AbstractQueryVisitor
 		}
 		catch(Exception e)
 		{
-			return new IdSet(new LongOpenHashSet());
+			return new IdSet(new LongBitmapSet());
 		}
 	}
 }
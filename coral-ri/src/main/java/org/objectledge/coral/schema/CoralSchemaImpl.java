@@ -2,7 +2,9 @@ package org.objectledge.coral.schema;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -11,6 +13,7 @@ import org.objectledge.collections.ImmutableSet;
 import org.objectledge.coral.BackendException;
 import org.objectledge.coral.CoralCore;
 import org.objectledge.coral.Instantiator;
+import org.objectledge.coral.PreloadScheduler;
 import org.objectledge.coral.PreloadingParticipant;
 import org.objectledge.coral.entity.EntityDoesNotExistException;
 import org.objectledge.coral.entity.EntityExistsException;
@@ -951,7 +954,7 @@ public class CoralSchemaImpl
      * {@inheritDoc}
      */
     public void preloadData(int phase)
-        throws SQLException
+        throws Exception
     {
         if(phase == 4)
         {
@@ -960,33 +963,42 @@ public class CoralSchemaImpl
     }
     
     private void preloadAttributes()
-        throws SQLException
+        throws Exception
     {
-        Connection conn = null;
-        try
+        long time = System.currentTimeMillis();
+        log.info("preloading attribute values");
+        ImmutableSet<AttributeClass<?>> classes = getAllAttributeClasses();
+        Set<AttributeHandler<?>> handlers = new HashSet<AttributeHandler<?>>();
+        List<PreloadScheduler.Step> steps = new ArrayList<>();
+        for(AttributeClass<?> cl : classes)
         {
-            long time = System.currentTimeMillis();
-            log.info("preloading attribute values");
-            conn = persistence.getDatabase().getConnection();
-            ImmutableSet<AttributeClass<?>> classes = getAllAttributeClasses();
-            Set<AttributeHandler<?>> handlers = new HashSet<AttributeHandler<?>>();
-            for(AttributeClass<?> cl : classes)
+            final AttributeHandler<?> handler = cl.getHandler();
+            if(!handlers.contains(handler))
             {
-                AttributeHandler<?> handler = cl.getHandler();
-                if(!handlers.contains(handler))
-                {
-                    log.info("preloading attribute values: "+cl.getName());
-                    handler.preload(conn);
-                    handlers.add(handler);
-                }
+                // handlers keep separate state, and may be preloaded concurrently
+                steps.add(new PreloadScheduler.Step("attributes:" + cl.getName())
+                    {
+                        public void run()
+                            throws SQLException
+                        {
+                            Connection conn = null;
+                            try
+                            {
+                                conn = persistence.getDatabase().getConnection();
+                                handler.preload(conn);
+                            }
+                            finally
+                            {
+                                DatabaseUtils.close(conn);
+                            }
+                        }
+                    });
+                handlers.add(handler);
             }
-            time = System.currentTimeMillis() - time;
-            log.info("finished preloading attribute values in "+time+"ms");
-        }
-        finally
-        {
-            DatabaseUtils.close(conn);
         }
+        coral.getPreloadScheduler().execute(steps);
+        time = System.currentTimeMillis() - time;
+        log.info("finished preloading attribute values in "+time+"ms");
     }
 
     @Override
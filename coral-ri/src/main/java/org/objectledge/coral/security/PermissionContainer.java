@@ -10,6 +10,8 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import org.objectledge.coral.CacheStatistics;
+import org.objectledge.coral.CacheStatisticsRegistry;
 import org.objectledge.coral.CoralCore;
 import org.objectledge.coral.entity.EntityReferenceQueue;
 import org.objectledge.coral.entity.WeakEntityReference;
@@ -20,9 +22,14 @@ import org.objectledge.coral.store.Resource;
 import org.objectledge.coral.store.ResourceInheritance;
 import org.objectledge.coral.store.ResourceRef;
 
+import bak.pcj.LongCollection;
+import bak.pcj.LongIterator;
 import bak.pcj.list.LongArrayDeque;
+import bak.pcj.list.LongArrayList;
 import bak.pcj.list.LongDeque;
 import bak.pcj.list.LongList;
+import bak.pcj.map.LongKeyMap;
+import bak.pcj.map.LongKeyOpenHashMap;
 import bak.pcj.set.LongOpenHashSet;
 import bak.pcj.set.LongSet;
 
@@ -49,10 +56,32 @@ public class PermissionContainer
     /** Cache of permission information */
     private ConcurrentMap<ResourceRef, PermissionsInfo> piCache = new ConcurrentHashMap<ResourceRef, PermissionsInfo>();
 
+    /**
+     * Reverse index of piCache: resource id to a LongSet of ids of the cached resources that have
+     * it on their ancestor chain. Guarded by itself, as are modifications of piCache.
+     */
+    private final LongKeyMap dependents = new LongKeyOpenHashMap();
+
+    /**
+     * Effective permissions on resources, keyed by resource id. Each value is an immutable bitset
+     * indexed by permission id. The map is never modified once published: it is read without
+     * locking and replaced with a modified copy while holding the monitor of dependents.
+     */
+    private volatile LongKeyMap effective = new LongKeyOpenHashMap();
+
+    /** Incremented whenever entries are removed from piCache. Guarded by dependents. */
+    private long flushCount = 0;
+
     private final EntityReferenceQueue<Resource> queue = new EntityReferenceQueue<>();
 
     private static final int DRAIN_LIMIT = 16;
 
+    /** Name of the statistics shared by the permission caches of all containers. */
+    private static final String STATISTICS_NAME = "coral.permissions";
+
+    /** Statistics of piCache. */
+    private final CacheStatistics statistics;
+
     // Initialization ///////////////////////////////////////////////////////////////////////////
 
     /**
@@ -67,6 +96,17 @@ public class PermissionContainer
         this.coralEventHub = coralEventHub;
         this.coral = coral;
         this.roles = roles;
+        CacheStatisticsRegistry registry = coral.getCacheStatistics();
+        synchronized(registry)
+        {
+            CacheStatistics shared = registry.get(STATISTICS_NAME);
+            if(shared == null)
+            {
+                shared = registry.register(new CacheStatistics(CacheStatistics.Group.PERMISSION,
+                    STATISTICS_NAME));
+            }
+            this.statistics = shared;
+        }
     }
 
     // Permissions //////////////////////////////////////////////////////////////////////////////
@@ -93,6 +133,11 @@ public class PermissionContainer
     /**
      * Check if the entity this container describes has a specific permission on a specific
      * resource.
+     * <p>
+     * Once computed, effective permissions on a resource are cached as a bitset over permission
+     * ids, so that subsequent checks take a single lock-free hash lookup. Collected resources are
+     * purged from the cache only when the permission information is loaded or flushed.
+     * </p>
      * 
      * @param res the resource.
      * @param perm the permission.
@@ -100,16 +145,14 @@ public class PermissionContainer
      */
     public boolean hasPermission(Resource res, Permission perm)
     {
-        List<PermissionsInfo> piList = getPermissionsInfo(res);
-        PermissionsInfo piRes = piList.get(0);
-        for(PermissionsInfo pi : piList)
+        long[] bits = (long[])effective.get(res.getId());
+        if(bits == null)
         {
-            if(pi.hasPermission(perm, pi == piRes))
-            {
-                return true;
-            }
+            bits = getEffectivePermissions(res);
         }
-        return false;
+        long id = perm.getId();
+        int word = (int)(id >>> 6);
+        return word < bits.length && (bits[word] & (1L << id)) != 0;
     }
 
     // PermissionAssignmentChangeListener interface /////////////////////////////////////////////
@@ -173,15 +216,29 @@ public class PermissionContainer
         while(cur != null)
         {
             PermissionsInfo pi = piCache.get(new ResourceRef(cur.getId(), coral));
-            if(pi == null)
+            if(pi != null)
+            {
+                statistics.hit();
+            }
+            else
             {
+                statistics.miss();
+                long startTime = System.nanoTime();
                 coralEventHub.getGlobal().addPermissionAssignmentChangeListener(this, cur);
                 coralEventHub.getGlobal().addResourceTreeChangeListener(this, cur);
 
                 pi = new PermissionsInfo(roles.getMatchingRoles(), coral.getRegistry()
                     .getPermissionAssignments(cur), resourceChain);
+                statistics.loaded(startTime);
 
-                piCache.put(new ResourceRef(cur, coral, queue), pi);
+                synchronized(dependents)
+                {
+                    if(piCache.put(new ResourceRef(cur, coral, queue), pi) == null)
+                    {
+                        statistics.stored();
+                    }
+                    index(cur.getId(), pi);
+                }
             }
             piList.add(pi);
             cur = cur.getParent();
@@ -190,6 +247,50 @@ public class PermissionContainer
         return piList;
     }
 
+    /**
+     * Computes the effective permission bitset of a resource, and caches it if the permission
+     * information it was computed from was not flushed in the meantime.
+     * 
+     * @param res the resource.
+     * @return the bitset, long enough to hold the highest permission id present.
+     */
+    private long[] getEffectivePermissions(Resource res)
+    {
+        long version;
+        synchronized(dependents)
+        {
+            version = flushCount;
+        }
+        List<PermissionsInfo> piList = getPermissionsInfo(res);
+        List<Permission> pList = new ArrayList<Permission>();
+        PermissionsInfo piRes = piList.get(0);
+        for(PermissionsInfo pi : piList)
+        {
+            pi.addTo(pList, pi == piRes);
+        }
+        long maxId = 0;
+        for(Permission p : pList)
+        {
+            maxId = Math.max(maxId, p.getId());
+        }
+        long[] bits = new long[(int)(maxId >>> 6) + 1];
+        for(Permission p : pList)
+        {
+            bits[(int)(p.getId() >>> 6)] |= 1L << p.getId();
+        }
+        synchronized(dependents)
+        {
+            // the entry is cleared along with the piCache entry of the resource
+            if(version == flushCount && piCache.containsKey(new ResourceRef(res.getId(), coral)))
+            {
+                LongKeyMap copy = new LongKeyOpenHashMap(effective);
+                copy.put(res.getId(), bits);
+                effective = copy;
+            }
+        }
+        return bits;
+    }
+
     /**
      * Flushes permission information on all resources.
      * <p>
@@ -200,24 +301,41 @@ public class PermissionContainer
     void flush()
     {
         drainQueue();
-        piCache.clear();
+        synchronized(dependents)
+        {
+            statistics.removed(piCache.size());
+            piCache.clear();
+            dependents.clear();
+            flushCount++;
+            effective = new LongKeyOpenHashMap();
+        }
     }
 
     /**
      * Flushes permission information on a particular resource and it's children.
+     * <p>
+     * Only the entries that have the resource on their ancestor chain are touched, as found in the
+     * reverse index.
+     * </p>
      * 
      * @param r the resource to flush permissions information on.
      */
     void flush(Resource r)
     {
         drainQueue();
-        Iterator<PermissionsInfo> i = piCache.values().iterator();
-        final long id = r.getId();
-        while(i.hasNext())
+        synchronized(dependents)
         {
-            if(i.next().dependsOn(id))
+            LongSet ids = (LongSet)dependents.remove(r.getId());
+            if(ids != null)
             {
-                i.remove();
+                for(LongIterator i = ids.iterator(); i.hasNext();)
+                {
+                    if(remove(i.next()))
+                    {
+                        statistics.removed(1);
+                    }
+                }
+                uncacheEffective(ids);
             }
         }
     }
@@ -225,10 +343,116 @@ public class PermissionContainer
     private void drainQueue()
     {
         int drainCount = DRAIN_LIMIT;
+        LongList ids = null;
         WeakEntityReference<Resource> r;
         while(drainCount-- > 0 && (r = queue.poll()) != null)
         {
-            piCache.remove(new ResourceRef(r.getId(), coral));
+            if(ids == null)
+            {
+                ids = new LongArrayList(DRAIN_LIMIT);
+            }
+            ids.add(r.getId());
+        }
+        if(ids != null)
+        {
+            synchronized(dependents)
+            {
+                for(LongIterator i = ids.iterator(); i.hasNext();)
+                {
+                    if(remove(i.next()))
+                    {
+                        statistics.evicted(1);
+                    }
+                }
+                uncacheEffective(ids);
+            }
+        }
+    }
+
+    /**
+     * Records the dependencies of a newly cached entry in the reverse index.
+     * <p>
+     * Caller must hold the monitor of dependents.
+     * </p>
+     * 
+     * @param id the resource id.
+     * @param pi the permission information cached for the resource.
+     */
+    private void index(long id, PermissionsInfo pi)
+    {
+        for(LongIterator i = pi.getDependencies().iterator(); i.hasNext();)
+        {
+            long dep = i.next();
+            LongSet ids = (LongSet)dependents.get(dep);
+            if(ids == null)
+            {
+                ids = new LongOpenHashSet();
+                dependents.put(dep, ids);
+            }
+            ids.add(id);
+        }
+    }
+
+    /**
+     * Removes a cache entry, together with its reverse index entries.
+     * <p>
+     * The effective permissions of the resource are left in place, see
+     * {@link #uncacheEffective(LongCollection)}. Caller must hold the monitor of dependents.
+     * </p>
+     * 
+     * @param id the resource id.
+     * @return <code>true</code> if the entry was present.
+     */
+    private boolean remove(long id)
+    {
+        PermissionsInfo pi = piCache.remove(new ResourceRef(id, coral));
+        if(pi != null)
+        {
+            flushCount++;
+            for(LongIterator i = pi.getDependencies().iterator(); i.hasNext();)
+            {
+                long dep = i.next();
+                LongSet ids = (LongSet)dependents.get(dep);
+                if(ids != null)
+                {
+                    ids.remove(id);
+                    if(ids.isEmpty())
+                    {
+                        dependents.remove(dep);
+                    }
+                }
+            }
+        }
+        return pi != null;
+    }
+
+    /**
+     * Drops the effective permissions of a group of resources, copying the map at most once.
+     * <p>
+     * Caller must hold the monitor of dependents.
+     * </p>
+     * 
+     * @param ids the resource ids.
+     */
+    private void uncacheEffective(LongCollection ids)
+    {
+        LongKeyMap current = effective;
+        LongKeyMap copy = null;
+        for(LongIterator i = ids.iterator(); i.hasNext();)
+        {
+            long id = i.next();
+            if(current.containsKey(id))
+            {
+                if(copy == null)
+                {
+                    copy = new LongKeyOpenHashMap(current);
+                }
+                copy.remove(id);
+            }
+        }
+        if(copy != null)
+        {
+            effective = copy;
         }
     }
 
@@ -269,12 +493,6 @@ public class PermissionContainer
             this.resourceSet.addAll(resourceChain);
         }
 
-        public boolean hasPermission(Permission p, boolean includeNonInherited)
-        {
-            return (inherited != null && inherited.contains(p))
-                || (includeNonInherited && nonInherited != null && nonInherited.contains(p));
-        }
-
         public void addTo(Collection<Permission> pCol, boolean includeNotInherited)
         {
             if(inherited != null)
@@ -287,9 +505,15 @@ public class PermissionContainer
             }
         }
 
-        public boolean dependsOn(long resourceId)
+        /**
+         * Returns ids of the resources this information depends on: the resource itself and all
+         * of its ancestors.
+         * 
+         * @return resource ids.
+         */
+        public LongSet getDependencies()
         {
-            return resourceSet.contains(resourceId);
+            return resourceSet;
         }
 
         public String toString()
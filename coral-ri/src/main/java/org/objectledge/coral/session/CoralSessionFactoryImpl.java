@@ -29,14 +29,9 @@ package org.objectledge.coral.session;
 
 import java.security.Principal;
 import java.util.List;
-import java.util.NoSuchElementException;
 
-import org.apache.commons.pool.BaseKeyedPoolableObjectFactory;
-import org.apache.commons.pool.KeyedObjectPool;
-import org.apache.commons.pool.impl.GenericKeyedObjectPool;
 import org.jcontainer.dna.Logger;
 import org.objectledge.coral.BackendException;
-import org.objectledge.coral.CoralConfig;
 import org.objectledge.coral.CoralCore;
 import org.objectledge.coral.entity.EntityDoesNotExistException;
 import org.objectledge.coral.security.Subject;
@@ -54,12 +49,12 @@ import org.objectledge.statistics.StatisticsProvider;
 public class CoralSessionFactoryImpl
     implements CoralSessionFactory, StatisticsProvider
 {
-    private KeyedObjectPool pool;
+    private SessionPoolImpl pool;
+    
+    private SessionPoolImpl scopedPool;
     
     private CoralCore coral;
 
-    private final Logger log;
-
     /**
      * Constructs a session factory instance.
      * 
@@ -69,20 +64,10 @@ public class CoralSessionFactoryImpl
     public CoralSessionFactoryImpl(CoralCore coral, FileSystem fileSystem, Logger log)
     {
         this.coral = coral;
-        this.log = log;
-        pool = new GenericKeyedObjectPool(new Factory(), poolConfig(coral.getConfig()));
-        graphs = new MuninGraph[] { new SessionPoolGraph(fileSystem) };
-    }
-
-    private GenericKeyedObjectPool.Config poolConfig(CoralConfig config)
-    {
-        GenericKeyedObjectPool.Config poolConfig = new GenericKeyedObjectPool.Config();
-        poolConfig.whenExhaustedAction = GenericKeyedObjectPool.WHEN_EXHAUSTED_GROW;
-        poolConfig.maxIdle = config.getSessionPoolSizePerUser();
-        poolConfig.minEvictableIdleTimeMillis = config.getSessionEvictionThreashold() * 1000;
-        poolConfig.timeBetweenEvictionRunsMillis = config.getSessionEvictionInterval() * 1000;
-        poolConfig.numTestsPerEvictionRun = config.getSessionTestsPerEvictionRun();
-        return poolConfig;
+        pool = new SessionPoolImpl(coral, log, false);
+        scopedPool = new SessionPoolImpl(coral, log, true);
+        graphs = new MuninGraph[] { new SessionPoolGraph(fileSystem),
+                        new SessionAcquireGraph(fileSystem) };
     }
     
     /** 
@@ -90,28 +75,31 @@ public class CoralSessionFactoryImpl
      */
     public CoralSession getSession(Principal user)
         throws EntityDoesNotExistException
+    {
+        return borrowSession(pool, user);
+    }
+
+    /** 
+     * {@inheritDoc}
+     */
+    public CoralSession getScopedSession(Principal user)
+        throws EntityDoesNotExistException
+    {
+        return borrowSession(scopedPool, user);
+    }
+
+    private CoralSession borrowSession(SessionPoolImpl pool, Principal user)
+        throws EntityDoesNotExistException
     {
         try
         {
-            return (CoralSession)pool.borrowObject(user);
-        }
-        catch(NoSuchElementException e)
-        {
-            // commons-pools does not set exception root cause
-            if(e.getMessage().matches(".* subject .* does not exist"))
-            {
-                throw new EntityDoesNotExistException(e.getMessage());
-            }
-            else
-            {
-                throw new BackendException("unxpected exception for commons-pool", e);
-            }
+            return pool.borrowSession(user);
         }
         catch(EntityDoesNotExistException e)
         {
             throw e;
         }
-        catch(Exception e)
+        catch(RuntimeException e)
         {
             throw new BackendException("failed to open session", e);
         }
@@ -171,31 +159,6 @@ public class CoralSessionFactoryImpl
         return coral.getAllSessions();
     }
 
-    /**
-     * Commons pool integration point.
-     */
-    private class Factory extends BaseKeyedPoolableObjectFactory
-    {    
-        /** 
-         * {@inheritDoc}
-         */
-        public void activateObject(Object principalObject, Object sessionObject) throws Exception
-        {
-            CoralSessionImpl session = (CoralSessionImpl)sessionObject;
-            Principal principal = (Principal)principalObject;
-            Subject subject = coral.getSecurity().getSubject(principal.getName());
-            session.open(principal, subject);
-        }
-
-        /** 
-         * {@inheritDoc}
-         */
-        public Object makeObject(Object arg0) throws Exception
-        {
-            return new CoralSessionImpl(coral, pool, log);
-        }
-    }    
-
     @Override
     public MuninGraph[] getGraphs()
     {
@@ -220,12 +183,52 @@ public class CoralSessionFactoryImpl
 
         public int getActive()
         {
-            return pool.getNumActive();
+            return pool.getNumActive() + scopedPool.getNumActive();
         }
 
         public int getIdle()
         {
-            return pool.getNumIdle();
+            return pool.getNumIdle() + scopedPool.getNumIdle();
+        }
+    }
+
+    public class SessionAcquireGraph
+        extends AbstractMuninGraph
+    {
+        private long lastAcquired;
+
+        private long lastAcquireTime;
+
+        public SessionAcquireGraph(FileSystem fs)
+        {
+            super(fs);
+        }
+
+        @Override
+        public String getId()
+        {
+            return "coral_session_acquire";
+        }
+
+        public long getAcquired()
+        {
+            return pool.getNumAcquired() + scopedPool.getNumAcquired();
+        }
+
+        /**
+         * Returns average session acquire latency since the previous call, in microseconds.
+         * 
+         * @return average session acquire latency in microseconds.
+         */
+        public synchronized double getLatency()
+        {
+            long acquired = getAcquired();
+            long acquireTime = pool.getAcquireTime() + scopedPool.getAcquireTime();
+            long count = acquired - lastAcquired;
+            double latency = count > 0 ? (acquireTime - lastAcquireTime) / 1000.0 / count : 0.0;
+            lastAcquired = acquired;
+            lastAcquireTime = acquireTime;
+            return latency;
         }
     }
 }
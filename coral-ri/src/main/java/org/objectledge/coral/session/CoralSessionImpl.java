@@ -29,10 +29,9 @@ package org.objectledge.coral.session;
 
 import java.lang.ref.WeakReference;
 import java.security.Principal;
+import java.util.concurrent.Callable;
 
-import org.apache.commons.pool.KeyedObjectPool;
 import org.jcontainer.dna.Logger;
-import org.objectledge.coral.BackendException;
 import org.objectledge.coral.CoralCore;
 import org.objectledge.coral.event.CoralEventWhiteboard;
 import org.objectledge.coral.query.CoralQuery;
@@ -68,17 +67,42 @@ public class CoralSessionImpl
     private Subject subject;
     private Principal principal;
     
-    private KeyedObjectPool pool;
-    private boolean open;
+    private SessionPool pool;
+    private volatile boolean open;
     private WeakReference ownerThread;
     private final Logger log;
     private TracingException openingStackTrace;
+    private final boolean scoped;
 
-    CoralSessionImpl(CoralCore coral, KeyedObjectPool pool, Logger log)
+    CoralSessionImpl(CoralCore coral, SessionPool pool, Logger log)
+    {
+        this(coral, pool, log, false);
+    }
+
+    /**
+     * Creates a session instance.
+     * <p>
+     * A scoped session is not associated with the opening thread. It may be passed as a value to
+     * other threads and used by concurrent tasks until it is closed, which may happen on any
+     * thread. Operations of the session's store and security components that modify data bind
+     * the session to the calling thread for their duration, so that operations recording the
+     * acting subject, like resource creation or granting roles, act on behalf of the session's
+     * user. Read operations only check that the session is open. Other work is bound once for a
+     * whole task by {@link #execute(Callable)}. Like any other session, a scoped session is
+     * returned to the pool when closed, and must not be used afterwards.
+     * </p>
+     *
+     * @param coral the component hub.
+     * @param pool the pool the session is returned to when closed.
+     * @param log the logger.
+     * @param scoped <code>true</code> to create a scoped session.
+     */
+    CoralSessionImpl(CoralCore coral, SessionPool pool, Logger log, boolean scoped)
     {
         this.coral = coral;
         this.pool = pool;
         this.log = log;
+        this.scoped = scoped;
                 
         schema = new SessionCoralSchema(coral, this);
         security = new SessionCoralSecurity(coral, this);
@@ -94,25 +118,71 @@ public class CoralSessionImpl
     {
         this.subject = subject;
         this.principal = principal;
-        ownerThread = new WeakReference(Thread.currentThread());
-        open = true;
-        coral.pushSession(this);
-        coral.setCurrentSession(this);
         if(log != null && log.isDebugEnabled())
         {
             openingStackTrace = new TracingException();
         }
+        if(scoped)
+        {
+            open = true;
+            return;
+        }
+        ownerThread = new WeakReference(Thread.currentThread());
+        open = true;
+        coral.pushSession(this);
+        coral.setCurrentSession(this);
     }
     
     /**
      * Verify that the calling thread can perform an operation using this session.
+     * <p>
+     * For scoped sessions, only verifies that the session is open. Scoped sessions are never
+     * reopened, so this also rejects stale references to a closed session.
+     * </p>
      */
     void verify()
     {
+        if(scoped)
+        {
+            if(!open)
+            {
+                throw new IllegalStateException("session is closed");
+            }
+            return;
+        }
         verifyStateAndOwnership();
         verifyAssociation();
     }
 
+    /**
+     * Verify that the calling thread can perform an operation using this session, and make a
+     * scoped session the thread's current session for the duration of the operation.
+     * <p>
+     * Used by operations that record the acting subject. The caller must pass the returned value
+     * to {@link #unbind(CoralSession)} once the operation completes.
+     * </p>
+     *
+     * @return the previously current session, or <code>null</code> if this session is not scoped.
+     */
+    CoralSession bind()
+    {
+        verify();
+        return scoped ? coral.setCurrentSession(this) : null;
+    }
+
+    /**
+     * Restore the session that was current before {@link #bind()}.
+     *
+     * @param previous the value returned by {@link #bind()}.
+     */
+    void unbind(CoralSession previous)
+    {
+        if(scoped)
+        {
+            coral.setCurrentSession(previous);
+        }
+    }
+
     /**
      * Verify that this CoralSession is the Thread's currently active session.
      */
@@ -162,22 +232,45 @@ public class CoralSessionImpl
      */
     public void close()
     {
+        if(scoped)
+        {
+            synchronized(this)
+            {
+                if(!open)
+                {
+                    throw new IllegalStateException("session is closed");
+                }
+                open = false;
+            }
+            recycle();
+            return;
+        }
         verifyStateAndOwnership();
         // restore previously active session
         coral.removeSession(this);
         coral.setCurrentSession(coral.peekSession());
-        // return the session to the pool.
-        try
-        {
-            open = false;
-            ownerThread = null;
-            subject = null;
-            pool.returnObject(principal, this);
-        }
-        catch(Exception e)
-        {
-            throw new BackendException("failed to recycle session object", e);
-        }
+        open = false;
+        ownerThread = null;
+        recycle();
+    }
+
+    /**
+     * Returns the session to the pool.
+     */
+    private void recycle()
+    {
+        subject = null;
+        pool.returnSession(principal, this);
+    }
+    
+    /**
+     * Returns <code>true</code> for scoped sessions.
+     *
+     * @return <code>true</code> for scoped sessions.
+     */
+    boolean isScoped()
+    {
+        return scoped;
     }
     
     /**
@@ -188,6 +281,23 @@ public class CoralSessionImpl
         return coral.setCurrentSession(this);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T execute(Callable<T> task)
+        throws Exception
+    {
+        CoralSession previous = bind();
+        try
+        {
+            return task.call();
+        }
+        finally
+        {
+            unbind(previous);
+        }
+    }
+
     /** 
      * {@inheritDoc}
      */
@@ -32,6 +32,7 @@ import org.objectledge.coral.query.CoralQuery;
 import org.objectledge.coral.query.MalformedQueryException;
 import org.objectledge.coral.query.PreparedQuery;
 import org.objectledge.coral.query.QueryResults;
+import org.objectledge.coral.query.StreamingQueryResults;
 import org.objectledge.coral.script.parser.ASTfindResourceStatement;
 
 /**
@@ -76,6 +77,46 @@ public class SessionCoralQuery
         return coral.getQuery().executeQuery(node);
     }
 
+    /** 
+     * {@inheritDoc}
+     */
+    public StreamingQueryResults executeQueryStreaming(String query, int fetchSize)
+        throws MalformedQueryException
+    {
+        session.verify();
+        return coral.getQuery().executeQueryStreaming(query, fetchSize);
+    }
+
+    /** 
+     * {@inheritDoc}
+     */
+    public long count(String query)
+        throws MalformedQueryException
+    {
+        session.verify();
+        return coral.getQuery().count(query);
+    }
+
+    /** 
+     * {@inheritDoc}
+     */
+    public boolean exists(String query)
+        throws MalformedQueryException
+    {
+        session.verify();
+        return coral.getQuery().exists(query);
+    }
+
+    /** 
+     * {@inheritDoc}
+     */
+    public long[] executeIds(String query)
+        throws MalformedQueryException
+    {
+        session.verify();
+        return coral.getQuery().executeIds(query);
+    }
+
     /** 
      * {@inheritDoc}
      */
@@ -96,8 +96,15 @@ public class SessionCoralSecurity implements CoralSecurity
      */
     public Subject createSubject(String name) throws EntityExistsException
     {
-        session.verify();
+        CoralSession previous = session.bind();
+        try
+        {
             return coral.getSecurity().createSubject(name);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -105,8 +112,15 @@ public class SessionCoralSecurity implements CoralSecurity
      */
     public void deleteSubject(Subject subject) throws EntityInUseException
     {
-        session.verify();
-        coral.getSecurity().deleteSubject(subject);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getSecurity().deleteSubject(subject);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -114,8 +128,15 @@ public class SessionCoralSecurity implements CoralSecurity
      */
     public void setName(Subject subject, String name) throws EntityExistsException
     {
-        session.verify();
-        coral.getSecurity().setName(subject, name);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getSecurity().setName(subject, name);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -159,8 +180,15 @@ public class SessionCoralSecurity implements CoralSecurity
      */
     public Role createRole(String name)
     {
-        session.verify();
-        return coral.getSecurity().createRole(name);
+        CoralSession previous = session.bind();
+        try
+        {
+            return coral.getSecurity().createRole(name);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -168,8 +196,15 @@ public class SessionCoralSecurity implements CoralSecurity
      */
     public void deleteRole(Role role) throws EntityInUseException
     {
-        session.verify();
-        coral.getSecurity().deleteRole(role);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getSecurity().deleteRole(role);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -177,8 +212,15 @@ public class SessionCoralSecurity implements CoralSecurity
      */
     public void setName(Role role, String name)
     {
-        session.verify();
-        coral.getSecurity().setName(role, name);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getSecurity().setName(role, name);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -186,8 +228,15 @@ public class SessionCoralSecurity implements CoralSecurity
      */
     public void addSubRole(Role superRole, Role subRole) throws CircularDependencyException
     {
-        session.verify();
-        coral.getSecurity().addSubRole(superRole, subRole);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getSecurity().addSubRole(superRole, subRole);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -195,8 +244,15 @@ public class SessionCoralSecurity implements CoralSecurity
      */
     public void deleteSubRole(Role superRole, Role subRole) throws IllegalArgumentException
     {
-        session.verify();
-        coral.getSecurity().deleteSubRole(superRole, subRole);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getSecurity().deleteSubRole(superRole, subRole);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -205,8 +261,15 @@ public class SessionCoralSecurity implements CoralSecurity
     public void grant(Role role, Subject subject, boolean grantingAllowed)
         throws SecurityException
     {
-        session.verify();
-        coral.getSecurity().grant(role, subject, grantingAllowed);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getSecurity().grant(role, subject, grantingAllowed);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -215,8 +278,15 @@ public class SessionCoralSecurity implements CoralSecurity
     public void revoke(Role role, Subject subject)
         throws IllegalArgumentException, SecurityException
     {
-        session.verify();
-        coral.getSecurity().revoke(role, subject);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getSecurity().revoke(role, subject);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -260,8 +330,15 @@ public class SessionCoralSecurity implements CoralSecurity
      */
     public Permission createPermission(String name)
     {
-        session.verify();
-        return coral.getSecurity().createPermission(name);
+        CoralSession previous = session.bind();
+        try
+        {
+            return coral.getSecurity().createPermission(name);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -269,8 +346,15 @@ public class SessionCoralSecurity implements CoralSecurity
      */
     public void deletePermission(Permission permission) throws EntityInUseException
     {
-        session.verify();
-        coral.getSecurity().deletePermission(permission);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getSecurity().deletePermission(permission);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -278,8 +362,15 @@ public class SessionCoralSecurity implements CoralSecurity
      */
     public void setName(Permission permission, String name)
     {
-        session.verify();
-        coral.getSecurity().setName(permission, name);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getSecurity().setName(permission, name);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -287,8 +378,15 @@ public class SessionCoralSecurity implements CoralSecurity
      */
     public void addPermission(ResourceClass resourceClass, Permission permission)
     {
-        session.verify();
-        coral.getSecurity().addPermission(resourceClass, permission);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getSecurity().addPermission(resourceClass, permission);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -297,8 +395,15 @@ public class SessionCoralSecurity implements CoralSecurity
     public void deletePermission(ResourceClass resourceClass, Permission permission)
         throws IllegalArgumentException
     {
-        session.verify();
-        coral.getSecurity().deletePermission(resourceClass, permission);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getSecurity().deletePermission(resourceClass, permission);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -311,8 +416,15 @@ public class SessionCoralSecurity implements CoralSecurity
         boolean inherited)
         throws SecurityException
     {
-        session.verify();
-        coral.getSecurity().grant(resource, role, permission, inherited);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getSecurity().grant(resource, role, permission, inherited);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -321,8 +433,15 @@ public class SessionCoralSecurity implements CoralSecurity
     public void revoke(Resource resource, Role role, Permission permission)
         throws IllegalArgumentException, SecurityException
     {
-        session.verify();
-        coral.getSecurity().revoke(resource, role, permission);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getSecurity().revoke(resource, role, permission);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
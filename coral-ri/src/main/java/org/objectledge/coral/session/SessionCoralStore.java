@@ -27,7 +27,9 @@
 // 
 package org.objectledge.coral.session;
 
+import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 
 import org.objectledge.coral.CoralCore;
 import org.objectledge.coral.entity.AmbigousEntityNameException;
@@ -95,6 +97,24 @@ public class SessionCoralStore implements CoralStore
         return coral.getStore().getResource(id);
     }
 
+    /** 
+     * {@inheritDoc}
+     */
+    public Resource[] getResource(long[] ids) throws EntityDoesNotExistException
+    {
+        session.verify();
+        return coral.getStore().getResource(ids);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void prefetch(Collection<Resource> resources, Set<AttributeDefinition<?>> attributes)
+    {
+        session.verify();
+        coral.getStore().prefetch(resources, attributes);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -190,8 +210,15 @@ public class SessionCoralStore implements CoralStore
         Map attributes)
         throws UnknownAttributeException, ValueRequiredException, InvalidResourceNameException
     {
-        session.verify();
-        return coral.getStore().createResource(name, parent, resourceClass, attributes);
+        CoralSession previous = session.bind();
+        try
+        {
+            return coral.getStore().createResource(name, parent, resourceClass, attributes);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -200,8 +227,15 @@ public class SessionCoralStore implements CoralStore
     public void deleteResource(Resource resource)
         throws EntityInUseException, IllegalArgumentException
     {
-        session.verify();
-        coral.getStore().deleteResource(resource);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getStore().deleteResource(resource);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -209,8 +243,15 @@ public class SessionCoralStore implements CoralStore
      */
     public int deleteTree(Resource res) throws EntityInUseException
     {
-        session.verify();
-        return coral.getStore().deleteTree(res);
+        CoralSession previous = session.bind();
+        try
+        {
+            return coral.getStore().deleteTree(res);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -219,8 +260,15 @@ public class SessionCoralStore implements CoralStore
     public void setName(Resource resource, String name)
         throws InvalidResourceNameException
     {
-        session.verify();
-        coral.getStore().setName(resource, name);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getStore().setName(resource, name);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -228,8 +276,15 @@ public class SessionCoralStore implements CoralStore
      */
     public void setParent(Resource child, Resource parent) throws CircularDependencyException
     {
-        session.verify();
-        coral.getStore().setParent(child, parent);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getStore().setParent(child, parent);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -237,8 +292,15 @@ public class SessionCoralStore implements CoralStore
      */
     public void unsetParent(Resource child)
     {
-        session.verify();
-        coral.getStore().unsetParent(child);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getStore().unsetParent(child);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -246,8 +308,15 @@ public class SessionCoralStore implements CoralStore
      */
     public void setOwner(Resource resource, Subject owner)
     {
-        session.verify();
-        coral.getStore().setOwner(resource, owner);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getStore().setOwner(resource, owner);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -259,8 +328,15 @@ public class SessionCoralStore implements CoralStore
         String destinationName)
         throws InvalidResourceNameException
     {
-        session.verify();
-        return coral.getStore().copyResource(source, destinationParent, destinationName);
+        CoralSession previous = session.bind();
+        try
+        {
+            return coral.getStore().copyResource(source, destinationParent, destinationName);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 
     /** 
@@ -272,8 +348,15 @@ public class SessionCoralStore implements CoralStore
         String destinationName)
         throws CircularDependencyException, InvalidResourceNameException
     {
-        session.verify();
-        coral.getStore().copyTree(sourceRoot, destinationParent, destinationName);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getStore().copyTree(sourceRoot, destinationParent, destinationName);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
     
     /** 
@@ -323,7 +406,14 @@ public class SessionCoralStore implements CoralStore
     public void replaceSubjectReferences(Subject fromSubject, Subject toSubject)
         throws ModificationNotPermitedException
     {
-        session.verify();
-        coral.getStore().replaceSubjectReferences(fromSubject, toSubject);
+        CoralSession previous = session.bind();
+        try
+        {
+            coral.getStore().replaceSubjectReferences(fromSubject, toSubject);
+        }
+        finally
+        {
+            session.unbind(previous);
+        }
     }
 }
@@ -0,0 +1,17 @@
+package org.objectledge.coral.session;
+
+import java.security.Principal;
+
+/**
+ * A pool of Coral sessions, keyed by user.
+ */
+interface SessionPool
+{
+    /**
+     * Returns a closed session to the pool.
+     *
+     * @param principal the user the session was opened for.
+     * @param session the session.
+     */
+    public void returnSession(Principal principal, CoralSessionImpl session);
+}
@@ -0,0 +1,259 @@
+package org.objectledge.coral.session;
+
+import java.security.Principal;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jcontainer.dna.Logger;
+import org.objectledge.coral.CoralConfig;
+import org.objectledge.coral.CoralCore;
+import org.objectledge.coral.entity.EntityDoesNotExistException;
+import org.objectledge.coral.security.Subject;
+
+/**
+ * A low contention pool of Coral sessions.
+ * <p>
+ * Idle sessions are kept in per-user lock free stacks, so that concurrent requests of different
+ * users do not contend, and the most recently used session is reused first. The user's Subject
+ * is resolved on each borrow, so that renamed or deleted Subjects are never handed out.
+ * </p>
+ * <p>
+ * There is no background evictor thread: once per eviction interval, the thread borrowing a
+ * session discards sessions that were idle longer than the eviction threshold. An eviction
+ * interval of zero or less disables eviction.
+ * </p>
+ */
+class SessionPoolImpl
+    implements SessionPool
+{
+    private final ConcurrentMap<String, Slot> slots = new ConcurrentHashMap<String, Slot>();
+
+    private final CoralCore coral;
+
+    private final Logger log;
+
+    private final boolean scoped;
+
+    /** Maximum number of idle sessions per user. */
+    private final int maxIdle;
+
+    /** Eviction interval in nanoseconds. */
+    private final long evictionInterval;
+
+    /** Session idle time threshold in nanoseconds. */
+    private final long evictionThreshold;
+
+    /** Time of the next eviction run, as returned by System.nanoTime(). */
+    private final AtomicLong nextEviction;
+
+    private final AtomicInteger numActive = new AtomicInteger();
+
+    private final AtomicInteger numIdle = new AtomicInteger();
+
+    private final AtomicLong numAcquired = new AtomicLong();
+
+    private final AtomicLong acquireTime = new AtomicLong();
+
+    /**
+     * Creates a pool instance.
+     *
+     * @param coral the component hub.
+     * @param log the logger to be used by the sessions.
+     * @param scoped <code>true</code> to pool scoped sessions.
+     */
+    SessionPoolImpl(CoralCore coral, Logger log, boolean scoped)
+    {
+        this.coral = coral;
+        this.log = log;
+        this.scoped = scoped;
+        CoralConfig config = coral.getConfig();
+        maxIdle = config.getSessionPoolSizePerUser();
+        evictionInterval = config.getSessionEvictionInterval() * 1000000000L;
+        evictionThreshold = config.getSessionEvictionThreashold() * 1000000000L;
+        nextEviction = new AtomicLong(System.nanoTime() + evictionInterval);
+    }
+
+    /**
+     * Borrows a session from the pool and opens it.
+     *
+     * @param user the user.
+     * @return an open session.
+     * @throws EntityDoesNotExistException if the user does not have a corresponding Coral Subject.
+     */
+    CoralSessionImpl borrowSession(Principal user)
+        throws EntityDoesNotExistException
+    {
+        long start = System.nanoTime();
+        evictIfDue(start);
+        Subject subject = coral.getSecurity().getSubject(user.getName());
+        Slot slot = getSlot(user.getName());
+        IdleSession idle = slot.sessions.pollFirst();
+        CoralSessionImpl session;
+        if(idle != null)
+        {
+            slot.size.decrementAndGet();
+            numIdle.decrementAndGet();
+            session = idle.session;
+        }
+        else
+        {
+            session = new CoralSessionImpl(coral, this, log, scoped);
+        }
+        slot.lastUsed = start;
+        session.open(user, subject);
+        numActive.incrementAndGet();
+        numAcquired.incrementAndGet();
+        acquireTime.addAndGet(System.nanoTime() - start);
+        return session;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void returnSession(Principal principal, CoralSessionImpl session)
+    {
+        numActive.decrementAndGet();
+        Slot slot = slots.get(principal.getName());
+        // the slot might have been evicted while the session was in use
+        if(slot != null && slot.size.incrementAndGet() <= maxIdle)
+        {
+            long now = System.nanoTime();
+            slot.lastUsed = now;
+            slot.sessions.offerFirst(new IdleSession(session, now));
+            numIdle.incrementAndGet();
+        }
+        else if(slot != null)
+        {
+            slot.size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of sessions currently in use.
+     *
+     * @return the number of sessions currently in use.
+     */
+    int getNumActive()
+    {
+        return numActive.get();
+    }
+
+    /**
+     * Returns the number of idle sessions in the pool.
+     *
+     * @return the number of idle sessions in the pool.
+     */
+    int getNumIdle()
+    {
+        return numIdle.get();
+    }
+
+    /**
+     * Returns the number of sessions borrowed since the pool was created.
+     *
+     * @return the number of sessions borrowed since the pool was created.
+     */
+    long getNumAcquired()
+    {
+        return numAcquired.get();
+    }
+
+    /**
+     * Returns the total time spent borrowing sessions, in nanoseconds.
+     *
+     * @return the total time spent borrowing sessions, in nanoseconds.
+     */
+    long getAcquireTime()
+    {
+        return acquireTime.get();
+    }
+
+    private Slot getSlot(String name)
+    {
+        Slot slot = slots.get(name);
+        if(slot == null)
+        {
+            slot = new Slot();
+            Slot existing = slots.putIfAbsent(name, slot);
+            if(existing != null)
+            {
+                slot = existing;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Discards sessions idle longer than the eviction threshold, if the eviction interval has
+     * elapsed. Only one of the threads calling concurrently performs the eviction. Does nothing
+     * if eviction is disabled.
+     *
+     * @param now current time, as returned by System.nanoTime().
+     */
+    private void evictIfDue(long now)
+    {
+        if(evictionInterval <= 0)
+        {
+            return;
+        }
+        long next = nextEviction.get();
+        if(now - next < 0 || !nextEviction.compareAndSet(next, now + evictionInterval))
+        {
+            return;
+        }
+        for(Iterator<Slot> i = slots.values().iterator(); i.hasNext();)
+        {
+            Slot slot = i.next();
+            // idle sessions are pushed to the front, the oldest ones are at the back
+            IdleSession idle;
+            while((idle = slot.sessions.peekLast()) != null
+                && now - idle.returned > evictionThreshold)
+            {
+                if(slot.sessions.removeLastOccurrence(idle))
+                {
+                    slot.size.decrementAndGet();
+                    numIdle.decrementAndGet();
+                }
+            }
+            // forget the users that did not use Coral recently
+            if(slot.sessions.isEmpty() && now - slot.lastUsed > evictionThreshold)
+            {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Pooled sessions of a single user.
+     */
+    private static class Slot
+    {
+        private final ConcurrentLinkedDeque<IdleSession> sessions =
+            new ConcurrentLinkedDeque<IdleSession>();
+
+        /** Number of idle sessions, including the ones being returned. */
+        private final AtomicInteger size = new AtomicInteger();
+
+        private volatile long lastUsed = System.nanoTime();
+    }
+
+    /**
+     * An idle session, with the time it was returned to the pool.
+     */
+    private static class IdleSession
+    {
+        private final CoralSessionImpl session;
+
+        private final long returned;
+
+        public IdleSession(CoralSessionImpl session, long returned)
+        {
+            this.session = session;
+            this.returned = returned;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.objectledge.coral.store;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lossy buffer of cache hits, used to refresh the recency of entries in a cache that is read
+ * without holding its monitor.
+ * <p>
+ * Hits are recorded into one of several fixed size ring buffers, chosen by the recording thread,
+ * without locking or allocation. The owner of the cache periodically replays the recorded hits as
+ * <code>get</code> calls on the cache map, while holding its monitor, so that an access ordered
+ * cache policy sees them. When a ring is full, or another thread is recording into the same slot,
+ * the hit is dropped. Recency is thus approximate, but hot entries, being hit often, are refreshed
+ * anyway.
+ * </p>
+ *
+ * @param <K> the type of cache keys.
+ */
+class AccessBuffer<K>
+{
+    /** Capacity of a single ring, a power of two. */
+    static final int CAPACITY = 32;
+
+    /** Number of pending hits in a ring after which a drain is requested. */
+    static final int DRAIN_THRESHOLD = CAPACITY / 2;
+
+    /** Number of rings, a power of two. */
+    private final int stripes;
+
+    /** Recorded keys, ring by ring. */
+    private final AtomicReferenceArray<K> slots;
+
+    /** Number of hits recorded into each ring. */
+    private final AtomicLongArray writes;
+
+    /** Number of hits drained from each ring. */
+    private final AtomicLongArray reads;
+
+    /**
+     * Creates a buffer with a ring for every two available processors.
+     */
+    AccessBuffer()
+    {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * Creates a buffer.
+     *
+     * @param stripes the minimum number of rings.
+     */
+    AccessBuffer(int stripes)
+    {
+        int n = 1;
+        while(n < stripes)
+        {
+            n <<= 1;
+        }
+        this.stripes = n;
+        slots = new AtomicReferenceArray<K>(n * CAPACITY);
+        writes = new AtomicLongArray(n);
+        reads = new AtomicLongArray(n);
+    }
+
+    /**
+     * Records a cache hit.
+     *
+     * @param key the key of the entry that was hit.
+     * @return <code>true</code> if the buffer should be drained.
+     */
+    boolean record(K key)
+    {
+        int stripe = stripe();
+        long w = writes.get(stripe);
+        long pending = w - reads.get(stripe);
+        if(pending >= CAPACITY)
+        {
+            return true;
+        }
+        if(writes.compareAndSet(stripe, w, w + 1))
+        {
+            slots.lazySet(stripe * CAPACITY + (int)(w & (CAPACITY - 1)), key);
+            pending++;
+        }
+        return pending >= DRAIN_THRESHOLD;
+    }
+
+    /**
+     * Replays the recorded hits on a cache map.
+     * <p>
+     * Caller must hold the monitor that guards the map. Drains are thus serialized.
+     * </p>
+     *
+     * @param map the cache map.
+     */
+    void drainTo(Map<K, ?> map)
+    {
+        for(int stripe = 0; stripe < stripes; stripe++)
+        {
+            long r = reads.get(stripe);
+            long w = writes.get(stripe);
+            for(; r < w; r++)
+            {
+                int index = stripe * CAPACITY + (int)(r & (CAPACITY - 1));
+                K key = slots.get(index);
+                if(key == null)
+                {
+                    // the recording thread has not stored the key yet
+                    break;
+                }
+                slots.lazySet(index, null);
+                map.get(key);
+            }
+            reads.set(stripe, r);
+        }
+    }
+
+    private int stripe()
+    {
+        long id = Thread.currentThread().getId();
+        return (int)((id * 0x9E3779B97F4A7C15L) >>> 32) & (stripes - 1);
+    }
+}
@@ -5,18 +5,22 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -24,14 +28,21 @@ import org.jcontainer.dna.ConfigurationException;
 import org.jcontainer.dna.Logger;
 import org.objectledge.cache.CacheFactory;
 import org.objectledge.coral.BackendException;
+import org.objectledge.coral.CacheStatistics;
+import org.objectledge.coral.CacheStatisticsRegistry;
+import org.objectledge.coral.CoralConfig;
 import org.objectledge.coral.CoralCore;
 import org.objectledge.coral.Feature;
 import org.objectledge.coral.Instantiator;
 import org.objectledge.coral.PreloadingParticipant;
 import org.objectledge.coral.entity.AmbigousEntityNameException;
+import org.objectledge.coral.entity.ConcurrentLoader;
 import org.objectledge.coral.entity.EntityDoesNotExistException;
 import org.objectledge.coral.entity.EntityFactory;
 import org.objectledge.coral.entity.EntityInUseException;
+import org.objectledge.coral.entity.EntityReferenceQueue;
+import org.objectledge.coral.entity.RemovalLog;
+import org.objectledge.coral.entity.WeakEntityReference;
 import org.objectledge.coral.event.CoralEventHub;
 import org.objectledge.coral.schema.AttributeClass;
 import org.objectledge.coral.schema.AttributeDefinition;
@@ -49,6 +60,13 @@ import org.objectledge.database.persistence.Persistence;
 import org.objectledge.database.persistence.Persistent;
 import org.objectledge.database.persistence.PersistentFactory;
 
+import bak.pcj.LongIterator;
+import bak.pcj.list.LongArrayList;
+import bak.pcj.map.LongKeyIntMap;
+import bak.pcj.map.LongKeyIntOpenHashMap;
+import bak.pcj.set.LongOpenHashSet;
+import bak.pcj.set.LongSet;
+
 /**
  * Manages resource instances.
  * 
@@ -65,6 +83,9 @@ public class CoralStoreImpl
     private static final Pattern ILLEGAL_NAME_PATTERN = Pattern.compile("[" + ILLEGAL_CHARACTERS
         + "]");
 
+    /** Maximum number of identifiers in a single IN (...) condition. */
+    private static final int BATCH_SIZE = 256;
+
     // Instance variables ////////////////////////////////////////////////////////////////////////
 
     private Persistence persistence;
@@ -98,7 +119,61 @@ public class CoralStoreImpl
     /** All resources in the system. */
     private Map<String, Set<Resource>> resourceSet;
 
-    private final Object lock = new Object();
+    /** Statistics of resourceById. */
+    private CacheStatistics byIdStatistics;
+
+    /** Statistics of resourceByName. */
+    private CacheStatistics byNameStatistics;
+
+    /** Statistics of resourceByParent. */
+    private CacheStatistics byParentStatistics;
+
+    /** Statistics of resourceByParentAndName. */
+    private CacheStatistics byParentAndNameStatistics;
+
+    /**
+     * Lock free index of the resources held in resourceById: <code>Long</code> id -&gt; weak
+     * reference to the <code>Resource</code>.
+     * <p>
+     * resourceById decides which resources are retained, according to the configured cache policy,
+     * while lookups that hit this index do not need to acquire its monitor. Each of the cache maps
+     * is guarded by its own monitor.
+     * </p>
+     */
+    private final ConcurrentMap<Long, WeakEntityReference<Resource>> liveResources = new ConcurrentHashMap<Long, WeakEntityReference<Resource>>();
+
+    /**
+     * Hits on liveResources, replayed on resourceById while holding its monitor, so that its
+     * cache policy sees resources that are looked up without the monitor as recently used.
+     */
+    private final AccessBuffer<Long> accesses = new AccessBuffer<Long>();
+
+    /** Ancestor chains and paths of resources. */
+    private final ResourceHierarchy hierarchy;
+
+    /**
+     * Recent resource deletions, checked before a loaded resource is cached. Guarded by
+     * resourceById.
+     */
+    private final RemovalLog removals = new RemovalLog();
+
+    /** Queue of cleared liveResources references. */
+    private final EntityReferenceQueue<Resource> liveQueue = new EntityReferenceQueue<Resource>();
+
+    /** Loads resources missing from the cache, one load per resource at a time. */
+    private final ConcurrentLoader<Resource> loader = new ConcurrentLoader<Resource>()
+        {
+            protected Resource loadEntity(long id)
+                throws EntityDoesNotExistException
+            {
+                Resource res = getCached(Long.valueOf(id));
+                if(res != null)
+                {
+                    return res;
+                }
+                return loadResource(id);
+            }
+        };
 
     // Initialization ///////////////////////////////////////////////////////////////////////////
 
@@ -116,17 +191,50 @@ public class CoralStoreImpl
     public CoralStoreImpl(CacheFactory cacheFactory, Persistence persistence,
         CoralEventHub coralEventHub, Instantiator instantiator, CoralCore coral, Logger log)
         throws ConfigurationException
+    {
+        this(cacheFactory, new CacheStatisticsRegistry(), persistence, coralEventHub,
+                        instantiator, coral, log);
+    }
+
+    /**
+     * Constructs the {@link CoralStore} implementation.
+     * 
+     * @param cacheFactory the cache factory.
+     * @param cacheStatistics the registry of cache statistics.
+     * @param persistence the persistence subsystem.
+     * @param coralEventHub the event hub.
+     * @param instantiator the instantiator.
+     * @param coral the component hub.
+     * @param log the logger.
+     * @throws ConfigurationException if the cache is not configured properly.
+     */
+    public CoralStoreImpl(CacheFactory cacheFactory, CacheStatisticsRegistry cacheStatistics,
+        Persistence persistence, CoralEventHub coralEventHub, Instantiator instantiator,
+        CoralCore coral, Logger log)
+        throws ConfigurationException
     {
         this.persistence = persistence;
         this.coral = coral;
         this.coralEventHub = coralEventHub;
         this.resourceFactory = instantiator.getPersistentFactory(ResourceImpl.class);
         this.log = log;
+        this.hierarchy = new ResourceHierarchy(coralEventHub);
         setupCache(cacheFactory, "resource");
         resourceByParent = new WeakHashMap<Object, Set<ResourceRef>>();
         resourceByParentAndName = new WeakHashMap<Object, Map<String, Set<ResourceRef>>>();
         cacheFactory.registerForPeriodicExpunge((WeakHashMap<?, ?>)resourceByParent);
         cacheFactory.registerForPeriodicExpunge((WeakHashMap<?, ?>)resourceByParentAndName);
+        byIdStatistics = cacheStatistics.register(new CacheStatistics(
+            CacheStatistics.Group.RESOURCE, "coral.resource.byId", resourceById, resourceById));
+        byNameStatistics = cacheStatistics.register(new CacheStatistics(
+            CacheStatistics.Group.RESOURCE, "coral.resource.byName", resourceByName,
+            resourceByName));
+        byParentStatistics = cacheStatistics.register(new CacheStatistics(
+            CacheStatistics.Group.RESOURCE, "coral.resource.byParent", resourceByParent,
+            resourceByParent));
+        byParentAndNameStatistics = cacheStatistics.register(new CacheStatistics(
+            CacheStatistics.Group.RESOURCE, "coral.resource.byParentAndName",
+            resourceByParentAndName, resourceByParentAndName));
     }
 
     /**
@@ -161,7 +269,7 @@ public class CoralStoreImpl
     {
         Set<Resource> rs;
         Resource[] result = null;
-        synchronized(lock)
+        synchronized(resourceSet)
         {
             rs = resourceSet.get("all");
             if(rs != null)
@@ -177,8 +285,9 @@ public class CoralStoreImpl
             try
             {
                 conn = persistence.getDatabase().getConnection();
+                long version = getRemovalVersion();
                 List<ResourceImpl> list = persistence.load(resourceFactory);
-                rs = instantiate(list, conn);
+                rs = instantiate(list, conn, version);
             }
             catch(Exception e)
             {
@@ -191,7 +300,7 @@ public class CoralStoreImpl
             result = new Resource[rs.size()];
             rs.toArray(result);
 
-            synchronized(lock)
+            synchronized(resourceSet)
             {
                 resourceSet.put("all", rs);
             }
@@ -212,7 +321,7 @@ public class CoralStoreImpl
         Set<ResourceRef> rrs = null;
         Collection<ResourceRef> rrsc = null;
 
-        synchronized(lock)
+        synchronized(resourceByParent)
         {
             rrs = (Set<ResourceRef>)resourceByParent.get(parent);
             if(rrs != null)
@@ -223,15 +332,19 @@ public class CoralStoreImpl
 
         if(rrsc != null)
         {
+            byParentStatistics.hit();
             rs = deref(rrsc);
         }
         else
         {
+            byParentStatistics.miss();
+            long startTime = System.nanoTime();
             Connection conn = null;
             try
             {
                 conn = persistence.getDatabase().getConnection();
                 List<ResourceImpl> list;
+                long version = getRemovalVersion();
                 if(parent != null)
                 {
                     list = persistence.load(resourceFactory, "parent = ?", parent.getId());
@@ -240,7 +353,7 @@ public class CoralStoreImpl
                 {
                     list = persistence.load(resourceFactory, "parent IS NULL");
                 }
-                rs = instantiate(list, conn);
+                rs = instantiate(list, conn, version);
                 rrs = ref(rs);
             }
             catch(Exception e)
@@ -252,9 +365,13 @@ public class CoralStoreImpl
                 DatabaseUtils.close(conn);
             }
 
-            synchronized(lock)
+            byParentStatistics.loaded(startTime);
+            synchronized(resourceByParent)
             {
-                resourceByParent.put(parent, rrs);
+                if(resourceByParent.put(parent, rrs) == null)
+                {
+                    byParentStatistics.stored();
+                }
             }
         }
 
@@ -275,51 +392,190 @@ public class CoralStoreImpl
         throws EntityDoesNotExistException
     {
         Long idObj = Long.valueOf(id);
+        Resource res = getCached(idObj);
+        if(res != null)
+        {
+            byIdStatistics.hit();
+            return res;
+        }
+        byIdStatistics.miss();
+        return loader.load(id);
+    }
+
+    /**
+     * Loads the resource with the given identifier from the database and puts it into the cache.
+     * 
+     * @param id the identifier.
+     * @return the <code>Resource</code>.
+     * @throws EntityDoesNotExistException if the <code>Resource</code> with the specified
+     *         identifier does not exist.
+     */
+    private Resource loadResource(long id)
+        throws EntityDoesNotExistException
+    {
         Resource res;
+        long startTime = System.nanoTime();
+        long version = getRemovalVersion();
+        Connection conn = null;
+        try
+        {
+            conn = persistence.getDatabase().getConnection();
+            res = (Resource)persistence.load(resourceFactory, id);
+            if(res != null)
+            {
+                res = res.getResourceClass().getHandler().retrieve(res, conn, null);
+            }
+            else
+            {
+                throw new EntityDoesNotExistException("resource #" + id + " does not exist");
+            }
+        }
+        catch(Exception e)
+        {
+            if(e instanceof EntityDoesNotExistException)
+            {
+                throw (EntityDoesNotExistException)e;
+            }
+            else
+            {
+                throw new BackendException("failed to load resource #" + id, e);
+            }
+        }
+        finally
+        {
+            DatabaseUtils.close(conn);
+        }
+        byIdStatistics.loaded(startTime);
+        cache(res, version);
+        return res;
+    }
 
-        synchronized(lock)
+    /**
+     * Retrieves the resources with the given identifiers.
+     * 
+     * @param ids the identifiers.
+     * @return the <code>Resource</code>s, in the order of <code>ids</code>.
+     * @throws EntityDoesNotExistException if any of the <code>Resource</code>s does not exist.
+     */
+    public Resource[] getResource(long[] ids)
+        throws EntityDoesNotExistException
+    {
+        Resource[] result = new Resource[ids.length];
+        Set<Long> missing = new LinkedHashSet<Long>();
+
+        for(int i = 0; i < ids.length; i++)
         {
-            res = (Resource)resourceById.get(idObj);
+            Long idObj = Long.valueOf(ids[i]);
+            result[i] = getCached(idObj);
+            if(result[i] == null)
+            {
+                byIdStatistics.miss();
+                missing.add(idObj);
+            }
+            else
+            {
+                byIdStatistics.hit();
+            }
         }
 
-        if(res == null)
+        if(!missing.isEmpty())
         {
+            Map<Long, Resource> loaded = new HashMap<Long, Resource>();
             Connection conn = null;
             try
             {
                 conn = persistence.getDatabase().getConnection();
-                res = (Resource)persistence.load(resourceFactory, id);
-                if(res != null)
-                {
-                    res = res.getResourceClass().getHandler().retrieve(res, conn, null);
-                }
-                else
+                List<Long> idList = new ArrayList<Long>(missing);
+                for(int start = 0; start < idList.size(); start += BATCH_SIZE)
                 {
-                    throw new EntityDoesNotExistException("resource #" + id + " does not exist");
+                    List<Long> chunk = idList.subList(start,
+                        Math.min(start + BATCH_SIZE, idList.size()));
+                    StringBuilder where = new StringBuilder("resource_id IN (");
+                    for(int i = 0; i < chunk.size(); i++)
+                    {
+                        where.append(i == 0 ? "?" : ", ?");
+                    }
+                    where.append(")");
+                    long startTime = System.nanoTime();
+                    long version = getRemovalVersion();
+                    List<ResourceImpl> list = persistence.load(resourceFactory, where.toString(),
+                        chunk.toArray());
+                    for(Resource r : instantiate(list, conn, version))
+                    {
+                        loaded.put(r.getIdObject(), r);
+                    }
+                    byIdStatistics.loaded(startTime);
                 }
             }
             catch(Exception e)
             {
-                if(e instanceof EntityDoesNotExistException)
-                {
-                    throw (EntityDoesNotExistException)e;
-                }
-                else
-                {
-                    throw new BackendException("failed to load resource #" + id, e);
-                }
+                throw new BackendException("failed to load resource objects", e);
             }
             finally
             {
                 DatabaseUtils.close(conn);
             }
+            for(int i = 0; i < ids.length; i++)
+            {
+                if(result[i] == null)
+                {
+                    result[i] = loaded.get(Long.valueOf(ids[i]));
+                    if(result[i] == null)
+                    {
+                        throw new EntityDoesNotExistException("resource #" + ids[i]
+                            + " does not exist");
+                    }
+                }
+            }
+        }
+        return result;
+    }
 
-            synchronized(lock)
+    /**
+     * {@inheritDoc}
+     */
+    public void prefetch(Collection<Resource> resources, Set<AttributeDefinition<?>> attributes)
+    {
+        if(resources.isEmpty() || attributes.isEmpty())
+        {
+            return;
+        }
+        // resolve the concrete resource objects, retrieving the missing ones in bulk
+        long[] ids = new long[resources.size()];
+        int i = 0;
+        for(Resource r : resources)
+        {
+            ids[i++] = r.getId();
+        }
+        Map<ResourceClass<?>, List<Resource>> byClass =
+            new HashMap<ResourceClass<?>, List<Resource>>();
+        Connection conn = null;
+        try
+        {
+            for(Resource r : getResource(ids))
             {
-                resourceById.put(idObj, res);
+                List<Resource> group = byClass.get(r.getResourceClass());
+                if(group == null)
+                {
+                    group = new ArrayList<Resource>();
+                    byClass.put(r.getResourceClass(), group);
+                }
+                group.add(r);
+            }
+            conn = persistence.getDatabase().getConnection();
+            for(Map.Entry<ResourceClass<?>, List<Resource>> entry : byClass.entrySet())
+            {
+                entry.getKey().getHandler().prefetch(entry.getValue(), attributes, conn);
             }
         }
-        return res;
+        catch(Exception e)
+        {
+            throw new BackendException("failed to prefetch attribute values", e);
+        }
+        finally
+        {
+            DatabaseUtils.close(conn);
+        }
     }
 
     /**
@@ -332,7 +588,7 @@ public class CoralStoreImpl
     {
         Resource[] result = null;
         Set<Resource> rs;
-        synchronized(lock)
+        synchronized(resourceByName)
         {
             rs = resourceByName.get(name);
             if(rs != null)
@@ -342,14 +598,21 @@ public class CoralStoreImpl
             }
         }
 
-        if(rs == null)
+        if(rs != null)
+        {
+            byNameStatistics.hit();
+        }
+        else
         {
+            byNameStatistics.miss();
+            long startTime = System.nanoTime();
             Connection conn = null;
             try
             {
                 conn = persistence.getDatabase().getConnection();
+                long version = getRemovalVersion();
                 List<ResourceImpl> list = persistence.load(resourceFactory, "name = ?", name);
-                rs = instantiate(list, conn);
+                rs = instantiate(list, conn, version);
             }
             catch(Exception e)
             {
@@ -362,9 +625,13 @@ public class CoralStoreImpl
             result = new Resource[rs.size()];
             rs.toArray(result);
 
-            synchronized(lock)
+            byNameStatistics.loaded(startTime);
+            synchronized(resourceByName)
             {
-                resourceByName.put(name, rs);
+                if(resourceByName.put(name, rs) == null)
+                {
+                    byNameStatistics.stored();
+                }
             }
         }
         return result;
@@ -406,7 +673,7 @@ public class CoralStoreImpl
         Set<Resource> rs = null;
         Map<String, Set<ResourceRef>> nameMap;
 
-        synchronized(lock)
+        synchronized(resourceByParentAndName)
         {
             nameMap = resourceByParentAndName.get(parent);
             if(nameMap != null)
@@ -421,17 +688,21 @@ public class CoralStoreImpl
 
         if(rrsc != null)
         {
+            byParentAndNameStatistics.hit();
             rs = deref(rrsc);
         }
         else
         {
+            byParentAndNameStatistics.miss();
+            long startTime = System.nanoTime();
             Connection conn = null;
             try
             {
                 conn = persistence.getDatabase().getConnection();
+                long version = getRemovalVersion();
                 List<ResourceImpl> list = persistence.load(resourceFactory,
                     "parent = ? AND name = ?", parent.getId(), name);
-                rs = instantiate(list, conn);
+                rs = instantiate(list, conn, version);
                 rrs = ref(rs);
             }
             catch(Exception e)
@@ -443,13 +714,15 @@ public class CoralStoreImpl
                 DatabaseUtils.close(conn);
             }
 
-            synchronized(lock)
+            byParentAndNameStatistics.loaded(startTime);
+            synchronized(resourceByParentAndName)
             {
                 nameMap = resourceByParentAndName.get(parent);
                 if(nameMap == null)
                 {
                     nameMap = new HashMap<String, Set<ResourceRef>>();
                     resourceByParentAndName.put(parent, nameMap);
+                    byParentAndNameStatistics.stored();
                 }
                 nameMap.put(name, rrs);
             }
@@ -739,32 +1012,41 @@ public class CoralStoreImpl
             DatabaseUtils.close(conn);
         }
 
-        synchronized(lock)
+        cache(res);
+        synchronized(resourceByName)
         {
-            resourceById.put(res.getIdObject(), res);
             Set<Resource> rs = resourceByName.get(res.getName());
             if(rs != null)
             {
                 rs.add(res);
             }
-            if(parent != null)
+        }
+        if(parent != null)
+        {
+            synchronized(resourceByParent)
             {
                 Set<ResourceRef> rrs = resourceByParent.get(parent);
                 if(rrs != null)
                 {
                     rrs.add(new ResourceRef(res, coral));
                 }
+            }
+            synchronized(resourceByParentAndName)
+            {
                 Map<String, Set<ResourceRef>> nameMap = resourceByParentAndName.get(parent);
                 if(nameMap != null)
                 {
-                    rrs = nameMap.get(res.getName());
+                    Set<ResourceRef> rrs = nameMap.get(res.getName());
                     if(rrs != null)
                     {
                         rrs.add(new ResourceRef(res, coral));
                     }
                 }
             }
-            rs = resourceSet.get("all");
+        }
+        synchronized(resourceSet)
+        {
+            Set<Resource> rs = resourceSet.get("all");
             if(rs != null)
             {
                 rs.add(res);
@@ -798,7 +1080,7 @@ public class CoralStoreImpl
             int count = 0;
             Set<ResourceRef> children;
 
-            synchronized(lock)
+            synchronized(resourceByParent)
             {
                 children = resourceByParent.get(resource);
                 if(children != null)
@@ -825,30 +1107,40 @@ public class CoralStoreImpl
             resource.getResourceClass().getHandler().delete(resource, conn);
             persistence.delete((Persistent)resource.getDelegate());
 
-            synchronized(lock)
+            uncache(resource.getIdObject());
+            hierarchy.invalidate(resource.getId());
+            synchronized(resourceByName)
             {
-                resourceById.remove(resource.getIdObject());
                 Set<Resource> rs = resourceByName.get(resource.getName());
                 if(rs != null)
                 {
                     rs.remove(resource);
                 }
+            }
+            ResourceRef ref = new ResourceRef(resource, coral);
+            synchronized(resourceByParent)
+            {
                 Set<ResourceRef> rrs = resourceByParent.get(resource.getParent());
-                ResourceRef ref = new ResourceRef(resource, coral);
                 if(rrs != null)
                 {
                     rrs.remove(ref);
                 }
+            }
+            synchronized(resourceByParentAndName)
+            {
                 Map<String, Set<ResourceRef>> nameMap = resourceByParentAndName.get(resource
                     .getParent());
                 if(nameMap != null)
                 {
-                    rrs = nameMap.get(resource.getName());
+                    Set<ResourceRef> rrs = nameMap.get(resource.getName());
                     if(rrs != null)
                     {
                         rrs.remove(ref);
                     }
                 }
+            }
+            synchronized(resourceSet)
+            {
                 Set<Resource> all = resourceSet.get("all");
                 if(all != null)
                 {
@@ -1086,8 +1378,10 @@ public class CoralStoreImpl
         {
             ((ResourceImpl)delegate).setResourceName(name);
             persistence.save(delegate);
+            // rename events are not delivered locally
+            hierarchy.invalidate(resource.getId());
 
-            synchronized(lock)
+            synchronized(resourceByName)
             {
                 Set<Resource> rs = resourceByName.get(oldName);
                 if(rs != null)
@@ -1099,8 +1393,11 @@ public class CoralStoreImpl
                 {
                     rs.add(resource);
                 }
-                Resource parent = resource.getParent();
-                if(parent != null)
+            }
+            Resource parent = resource.getParent();
+            if(parent != null)
+            {
+                synchronized(resourceByParentAndName)
                 {
                     Map<String, Set<ResourceRef>> nameMap = resourceByParentAndName.get(parent);
                     if(nameMap != null)
@@ -1125,6 +1422,7 @@ public class CoralStoreImpl
         catch(SQLException e)
         {
             delegate.setResourceName(oldName);
+            hierarchy.invalidate(resource.getId());
             throw new BackendException("failed to update the resource object", e);
         }
     }
@@ -1161,10 +1459,10 @@ public class CoralStoreImpl
             delegate.setParent(parent);
             persistence.save(delegate);
 
-            synchronized(lock)
+            ResourceRef ref = new ResourceRef(child, coral);
+            synchronized(resourceByParent)
             {
                 Set<ResourceRef> rrs = resourceByParent.get(oldParent);
-                ResourceRef ref = new ResourceRef(child, coral);
                 if(rrs != null)
                 {
                     rrs.remove(ref);
@@ -1174,12 +1472,14 @@ public class CoralStoreImpl
                 {
                     rrs.add(ref);
                 }
-
+            }
+            synchronized(resourceByParentAndName)
+            {
                 String name = child.getName();
                 Map<String, Set<ResourceRef>> nameMap = resourceByParentAndName.get(oldParent);
                 if(nameMap != null)
                 {
-                    rrs = nameMap.get(name);
+                    Set<ResourceRef> rrs = nameMap.get(name);
                     if(rrs != null)
                     {
                         rrs.remove(ref);
@@ -1188,7 +1488,7 @@ public class CoralStoreImpl
                 nameMap = resourceByParentAndName.get(parent);
                 if(nameMap != null)
                 {
-                    rrs = nameMap.get(name);
+                    Set<ResourceRef> rrs = nameMap.get(name);
                     if(rrs != null)
                     {
                         rrs.add(ref);
@@ -1207,6 +1507,7 @@ public class CoralStoreImpl
         catch(SQLException e)
         {
             delegate.setParent(oldParent);
+            hierarchy.invalidate(child.getId());
             throw new BackendException("failed to update the resource object", e);
         }
     }
@@ -1225,20 +1526,22 @@ public class CoralStoreImpl
             delegate.setParent(null);
             persistence.save(delegate);
 
-            synchronized(lock)
+            ResourceRef ref = new ResourceRef(child, coral);
+            synchronized(resourceByParent)
             {
                 Set<ResourceRef> rrs = resourceByParent.get(oldParent);
-                ResourceRef ref = new ResourceRef(child, coral);
                 if(rrs != null)
                 {
                     rrs.remove(ref);
                 }
-
+            }
+            synchronized(resourceByParentAndName)
+            {
                 String name = child.getName();
                 Map<String, Set<ResourceRef>> nameMap = resourceByParentAndName.get(oldParent);
                 if(nameMap != null)
                 {
-                    rrs = nameMap.get(name);
+                    Set<ResourceRef> rrs = nameMap.get(name);
                     if(rrs != null)
                     {
                         rrs.remove(ref);
@@ -1252,6 +1555,7 @@ public class CoralStoreImpl
         catch(SQLException e)
         {
             delegate.setParent(oldParent);
+            hierarchy.invalidate(child.getId());
             throw new BackendException("failed to update the resource object", e);
         }
     }
@@ -1282,53 +1586,201 @@ public class CoralStoreImpl
         }
     }
 
+    // statistics ////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the number of resources loaded from the database one at a time, on cache miss.
+     * 
+     * @return the number of resource loads.
+     */
+    public long getResourceLoadCount()
+    {
+        return loader.getLoadCount();
+    }
+
+    /**
+     * Returns the number of cache misses that were served by a load performed on behalf of another
+     * thread.
+     * 
+     * @return the number of shared resource loads.
+     */
+    public long getSharedResourceLoadCount()
+    {
+        return loader.getSharedLoadCount();
+    }
+
     // private ///////////////////////////////////////////////////////////////
 
     /**
      * Instantiates concrete resource objects.
+     * <p>
+     * Resources missing from the cache are grouped by resource class and retrieved using
+     * {@link ResourceHandler#retrieveAll(Collection, Connection)}.
+     * </p>
      * 
      * @param list the list of security delegate objects.
      * @param conn the JDBC connection to use.
+     * @param version the removal version taken before the delegates were loaded.
      * @return a set of concrete resource objects.
      */
-    private Set<Resource> instantiate(List<ResourceImpl> list, Connection conn)
+    private Set<Resource> instantiate(List<ResourceImpl> list, Connection conn, long version)
         throws SQLException
     {
         Set<Resource> result = new HashSet<Resource>();
-        Set<ResourceImpl> toLoad = new HashSet<ResourceImpl>();
-        Map<Long, Resource> loaded = new HashMap<Long, Resource>();
+        Map<ResourceClass<?>, List<Resource>> toLoad = new HashMap<ResourceClass<?>, List<Resource>>();
 
-        synchronized(lock)
+        for(ResourceImpl rd : list)
         {
-            for(ResourceImpl rd : list)
+            Resource cached = getCached(rd.getIdObject());
+            if(cached != null)
+            {
+                result.add(cached);
+            }
+            else
             {
-                Long key = rd.getIdObject();
-                Resource cached = (Resource)resourceById.get(key);
-                if(cached != null)
+                List<Resource> group = toLoad.get(rd.getResourceClass());
+                if(group == null)
                 {
-                    result.add(cached);
+                    group = new ArrayList<Resource>();
+                    toLoad.put(rd.getResourceClass(), group);
                 }
-                else
+                group.add(rd);
+            }
+        }
+
+        for(Map.Entry<ResourceClass<?>, List<Resource>> entry : toLoad.entrySet())
+        {
+            ResourceHandler<?> handler = entry.getKey().getHandler();
+            for(Resource r : handler.retrieveAll(entry.getValue(), conn))
+            {
+                result.add(r);
+                cache(r, version);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the cached resource with the given identifier.
+     * 
+     * @param id the identifier.
+     * @return the cached <code>Resource</code>, or <code>null</code>.
+     */
+    private Resource getCached(Long id)
+    {
+        WeakEntityReference<Resource> ref = liveResources.get(id);
+        Resource res = ref != null ? ref.get() : null;
+        if(res != null)
+        {
+            if(accesses.record(id))
+            {
+                synchronized(resourceById)
+                {
+                    accesses.drainTo(resourceById);
+                }
+            }
+        }
+        else
+        {
+            synchronized(resourceById)
+            {
+                res = resourceById.get(id);
+                // under the monitor, so that a concurrent uncache() is not undone
+                if(res != null)
                 {
-                    toLoad.add(rd);
+                    liveResources.put(id, new WeakEntityReference<Resource>(res, liveQueue));
                 }
             }
         }
+        return res;
+    }
 
-        for(ResourceImpl rd : toLoad)
+    /**
+     * Puts a resource into the cache.
+     * 
+     * @param res the resource.
+     */
+    private void cache(Resource res)
+    {
+        synchronized(resourceById)
         {
-            ResourceHandler<?> handler = rd.getResourceClass().getHandler();
-            Resource r = handler.retrieve(rd, conn, null);
-            result.add(r);
-            loaded.put(rd.getIdObject(), r);
+            accesses.drainTo(resourceById);
+            if(resourceById.put(res.getIdObject(), res) == null)
+            {
+                byIdStatistics.stored();
+            }
+            liveResources.put(res.getIdObject(), new WeakEntityReference<Resource>(res, liveQueue));
         }
+        expungeLiveResources();
+    }
 
-        synchronized(lock)
+    /**
+     * Puts a resource loaded from the database into the cache, unless it was deleted in the
+     * meantime.
+     * 
+     * @param res the resource.
+     * @param version the removal version taken before the resource was loaded.
+     */
+    private void cache(Resource res, long version)
+    {
+        synchronized(resourceById)
         {
-            resourceById.putAll(loaded);
+            accesses.drainTo(resourceById);
+            if(removals.isRemovedSince(res.getId(), version))
+            {
+                return;
+            }
+            if(resourceById.put(res.getIdObject(), res) == null)
+            {
+                byIdStatistics.stored();
+            }
+            liveResources.put(res.getIdObject(), new WeakEntityReference<Resource>(res, liveQueue));
         }
+        expungeLiveResources();
+    }
 
-        return result;
+    /**
+     * Returns the removal version, to be taken before resources are loaded from the database.
+     * 
+     * @return the removal version.
+     */
+    private long getRemovalVersion()
+    {
+        synchronized(resourceById)
+        {
+            return removals.getVersion();
+        }
+    }
+
+    /**
+     * Removes a resource from the cache.
+     * 
+     * @param id the identifier of the resource.
+     */
+    private void uncache(Long id)
+    {
+        synchronized(resourceById)
+        {
+            if(resourceById.remove(id) != null)
+            {
+                byIdStatistics.removed(1);
+            }
+            liveResources.remove(id);
+            removals.removed(id.longValue());
+        }
+    }
+
+    /**
+     * Removes the cleared references from the liveResources index.
+     */
+    private void expungeLiveResources()
+    {
+        WeakEntityReference<Resource> ref;
+        while((ref = liveQueue.poll()) != null)
+        {
+            liveResources.remove(Long.valueOf(ref.getId()), ref);
+        }
     }
 
     private Set<ResourceRef> ref(Set<Resource> set)
@@ -1514,16 +1966,17 @@ public class CoralStoreImpl
         {
             return false;
         }
-        Resource parent = descendant.getParent();
-        while(parent != null)
-        {
-            if(parent.equals(ancestor))
-            {
-                return true;
-            }
-            parent = parent.getParent();
-        }
-        return false;
+        return hierarchy.isAncestor(ancestor, descendant);
+    }
+
+    /**
+     * Returns the index of resource ancestor chains and paths.
+     * 
+     * @return the resource hierarchy index.
+     */
+    ResourceHierarchy getHierarchy()
+    {
+        return hierarchy;
     }
 
     /**
@@ -1742,7 +2195,14 @@ public class CoralStoreImpl
 
     // startup //////////////////////////////////////////////////////////////////////////////////
 
-    private static final int[] STARTUP_PHASES = {};
+    /** Resources are preloaded after attribute values and relations. */
+    private static final int[] STARTUP_PHASES = { 6 };
+
+    /** Number of resources hydrated in a single batch during preloading. */
+    private static final int PRELOAD_BATCH_SIZE = 4096;
+
+    /** Parent id of the top level resources. */
+    private static final long NO_PARENT = -1L;
 
     /**
      * {@inheritDoc}
@@ -1758,6 +2218,363 @@ public class CoralStoreImpl
     public void preloadData(int phase)
         throws Exception
     {
+        if(phase == 6 && coral.isEnabled(Feature.RESOURCE_PRELOAD))
+        {
+            preloadResources();
+        }
+    }
+
+    /**
+     * Loads the resources selected by the configuration into the caches.
+     * <p>
+     * The identifiers, parents and classes of all resources are read in a single streamed scan of
+     * <code>coral_resource</code>. The selected resources are then hydrated in class-grouped
+     * batches, and the parent indexes are populated for the parents whose children were all
+     * loaded.
+     * </p>
+     * 
+     * @throws SQLException if the resources could not be loaded.
+     * @throws EntityDoesNotExistException if a configured resource class does not exist.
+     */
+    private void preloadResources()
+        throws SQLException, EntityDoesNotExistException
+    {
+        long time = System.currentTimeMillis();
+        log.info("preloading resources");
+        LongArrayList ids = new LongArrayList();
+        LongArrayList parents = new LongArrayList();
+        LongArrayList classes = new LongArrayList();
+        scanResources(ids, parents, classes);
+
+        boolean[] selected = selectPreloadedResources(ids, parents, classes);
+        Map<Long, LongArrayList> byClass = new HashMap<Long, LongArrayList>();
+        int count = 0;
+        for(int i = 0; i < ids.size(); i++)
+        {
+            if(selected[i])
+            {
+                Long classId = Long.valueOf(classes.get(i));
+                LongArrayList group = byClass.get(classId);
+                if(group == null)
+                {
+                    group = new LongArrayList();
+                    byClass.put(classId, group);
+                }
+                group.add(ids.get(i));
+                count++;
+            }
+        }
+
+        for(LongArrayList group : byClass.values())
+        {
+            long[] groupIds = group.toArray();
+            for(int start = 0; start < groupIds.length; start += PRELOAD_BATCH_SIZE)
+            {
+                int end = Math.min(start + PRELOAD_BATCH_SIZE, groupIds.length);
+                long[] batch = new long[end - start];
+                System.arraycopy(groupIds, start, batch, 0, batch.length);
+                getResource(batch);
+            }
+        }
+
+        for(Map.Entry<Long, LongArrayList> entry : getCompleteChildren(ids, parents, selected)
+            .entrySet())
+        {
+            preloadChildren(entry.getKey(), entry.getValue());
+        }
+        time = System.currentTimeMillis() - time;
+        log.info("preloaded " + count + " resources in " + time + "ms");
+    }
+
+    /**
+     * Reads the identifiers, parent identifiers and class identifiers of all resources.
+     * 
+     * @param ids the list to add resource identifiers to.
+     * @param parents the list to add parent identifiers to, {@link #NO_PARENT} for top level
+     *        resources.
+     * @param classes the list to add resource class identifiers to.
+     * @throws SQLException if the scan fails.
+     */
+    private void scanResources(LongArrayList ids, LongArrayList parents, LongArrayList classes)
+        throws SQLException
+    {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet result = null;
+        boolean autoCommit = false;
+        try
+        {
+            conn = persistence.getDatabase().getConnection();
+            // some drivers stream the results only outside of auto commit mode
+            autoCommit = conn.getAutoCommit();
+            if(autoCommit)
+            {
+                conn.setAutoCommit(false);
+            }
+            stmt = conn.prepareStatement(
+                "SELECT resource_id, parent, resource_class_id FROM coral_resource",
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(PRELOAD_BATCH_SIZE);
+            result = stmt.executeQuery();
+            while(result.next())
+            {
+                ids.add(result.getLong(1));
+                long parent = result.getLong(2);
+                parents.add(result.wasNull() ? NO_PARENT : parent);
+                classes.add(result.getLong(3));
+            }
+        }
+        finally
+        {
+            DatabaseUtils.close(result);
+            DatabaseUtils.close(stmt);
+            if(conn != null && autoCommit)
+            {
+                try
+                {
+                    conn.commit();
+                    conn.setAutoCommit(true);
+                }
+                catch(SQLException e)
+                {
+                    log.error("failed to restore auto commit mode", e);
+                }
+            }
+            DatabaseUtils.close(conn);
+        }
+    }
+
+    /**
+     * Applies the configured subtree and resource class restrictions to the scanned resources.
+     * 
+     * @param ids the resource identifiers.
+     * @param parents the parent identifiers.
+     * @param classes the resource class identifiers.
+     * @return flags marking the resources that should be preloaded.
+     * @throws EntityDoesNotExistException if a configured resource class does not exist.
+     */
+    private boolean[] selectPreloadedResources(LongArrayList ids, LongArrayList parents,
+        LongArrayList classes)
+        throws EntityDoesNotExistException
+    {
+        CoralConfig config = coral.getConfig();
+        LongSet rootIds = null;
+        if(!config.getPreloadRoots().isEmpty())
+        {
+            rootIds = new LongOpenHashSet();
+            for(String path : config.getPreloadRoots())
+            {
+                for(Resource root : getResourceByPath(path))
+                {
+                    rootIds.add(root.getId());
+                }
+            }
+        }
+        LongSet classIds = null;
+        if(!config.getPreloadResourceClasses().isEmpty())
+        {
+            classIds = new LongOpenHashSet();
+            for(String name : config.getPreloadResourceClasses())
+            {
+                classIds.add(coral.getSchema().getResourceClass(name).getId());
+            }
+        }
+        return selectResources(ids, parents, classes, rootIds, classIds);
+    }
+
+    /**
+     * Selects the scanned resources that belong to the given subtrees and resource classes.
+     * <p>
+     * The subtrees are walked breadth first from the roots, over a parent to children index built
+     * in a single pass over the scanned resources.
+     * </p>
+     * 
+     * @param ids the resource identifiers.
+     * @param parents the parent identifiers, {@link #NO_PARENT} for top level resources.
+     * @param classes the resource class identifiers.
+     * @param rootIds the identifiers of the subtree roots, or <code>null</code> to select all
+     *        resources.
+     * @param classIds the identifiers of the resource classes, or <code>null</code> to select
+     *        resources of all classes.
+     * @return flags marking the selected resources.
+     */
+    static boolean[] selectResources(LongArrayList ids, LongArrayList parents,
+        LongArrayList classes, LongSet rootIds, LongSet classIds)
+    {
+        int size = ids.size();
+        boolean[] selected = new boolean[size];
+        if(rootIds == null)
+        {
+            Arrays.fill(selected, true);
+        }
+        else
+        {
+            LongKeyIntMap positions = new LongKeyIntOpenHashMap(size);
+            for(int i = 0; i < size; i++)
+            {
+                positions.put(ids.get(i), i);
+            }
+            // children of each resource, as linked lists of positions
+            int[] firstChild = new int[size];
+            int[] nextSibling = new int[size];
+            Arrays.fill(firstChild, -1);
+            for(int i = size - 1; i >= 0; i--)
+            {
+                long parent = parents.get(i);
+                if(parent != NO_PARENT && positions.containsKey(parent))
+                {
+                    int p = positions.get(parent);
+                    nextSibling[i] = firstChild[p];
+                    firstChild[p] = i;
+                }
+                else
+                {
+                    nextSibling[i] = -1;
+                }
+            }
+            int[] queue = new int[size];
+            int head = 0;
+            int tail = 0;
+            for(LongIterator it = rootIds.iterator(); it.hasNext();)
+            {
+                long id = it.next();
+                if(positions.containsKey(id))
+                {
+                    int i = positions.get(id);
+                    if(!selected[i])
+                    {
+                        selected[i] = true;
+                        queue[tail++] = i;
+                    }
+                }
+            }
+            while(head < tail)
+            {
+                for(int c = firstChild[queue[head++]]; c != -1; c = nextSibling[c])
+                {
+                    if(!selected[c])
+                    {
+                        selected[c] = true;
+                        queue[tail++] = c;
+                    }
+                }
+            }
+        }
+        if(classIds != null)
+        {
+            for(int i = 0; i < size; i++)
+            {
+                selected[i] = selected[i] && classIds.contains(classes.get(i));
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Groups the selected resources by parent, for the parents whose all children were selected.
+     * 
+     * @param ids the resource identifiers.
+     * @param parents the parent identifiers, {@link #NO_PARENT} for top level resources.
+     * @param selected flags marking the selected resources.
+     * @return identifiers of the children, keyed by parent identifier.
+     */
+    static Map<Long, LongArrayList> getCompleteChildren(LongArrayList ids, LongArrayList parents,
+        boolean[] selected)
+    {
+        Map<Long, LongArrayList> byParent = new HashMap<Long, LongArrayList>();
+        LongSet incompleteParents = new LongOpenHashSet();
+        for(int i = 0; i < ids.size(); i++)
+        {
+            if(selected[i])
+            {
+                Long parentId = Long.valueOf(parents.get(i));
+                LongArrayList children = byParent.get(parentId);
+                if(children == null)
+                {
+                    children = new LongArrayList();
+                    byParent.put(parentId, children);
+                }
+                children.add(ids.get(i));
+            }
+            else
+            {
+                incompleteParents.add(parents.get(i));
+            }
+        }
+        for(LongIterator it = incompleteParents.iterator(); it.hasNext();)
+        {
+            byParent.remove(Long.valueOf(it.next()));
+        }
+        return byParent;
+    }
+
+    /**
+     * Populates the parent indexes for a parent whose all children were preloaded.
+     * 
+     * @param parentId the parent identifier, {@link #NO_PARENT} for top level resources.
+     * @param childIds the identifiers of the children.
+     */
+    private void preloadChildren(Long parentId, LongArrayList childIds)
+    {
+        Resource parent = null;
+        if(parentId.longValue() != NO_PARENT)
+        {
+            parent = getCached(parentId);
+            if(parent == null)
+            {
+                return;
+            }
+        }
+        Set<ResourceRef> rrs = new HashSet<ResourceRef>(childIds.size());
+        Map<String, Set<ResourceRef>> byName = new HashMap<String, Set<ResourceRef>>();
+        for(int i = 0; i < childIds.size(); i++)
+        {
+            Resource child = getCached(Long.valueOf(childIds.get(i)));
+            if(child == null)
+            {
+                // evicted by cache policy
+                return;
+            }
+            ResourceRef rr = new ResourceRef(child, coral);
+            rrs.add(rr);
+            Set<ResourceRef> named = byName.get(child.getName());
+            if(named == null)
+            {
+                named = new HashSet<ResourceRef>();
+                byName.put(child.getName(), named);
+            }
+            named.add(rr);
+        }
+        synchronized(resourceByParent)
+        {
+            if(!resourceByParent.containsKey(parent))
+            {
+                resourceByParent.put(parent, rrs);
+                byParentStatistics.stored();
+            }
+        }
+        if(parent != null)
+        {
+            synchronized(resourceByParentAndName)
+            {
+                Map<String, Set<ResourceRef>> nameMap = resourceByParentAndName.get(parent);
+                if(nameMap == null)
+                {
+                    resourceByParentAndName.put(parent, byName);
+                    byParentAndNameStatistics.stored();
+                }
+                else
+                {
+                    for(Map.Entry<String, Set<ResourceRef>> entry : byName.entrySet())
+                    {
+                        if(!nameMap.containsKey(entry.getKey()))
+                        {
+                            nameMap.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                }
+            }
+        }
     }
 
     @Override
@@ -0,0 +1,256 @@
+package org.objectledge.coral.store;
+
+import org.objectledge.coral.event.CoralEventHub;
+import org.objectledge.coral.event.ResourceChangeListener;
+import org.objectledge.coral.event.ResourceTreeChangeListener;
+import org.objectledge.coral.security.Subject;
+
+import bak.pcj.LongIterator;
+import bak.pcj.map.LongKeyMap;
+import bak.pcj.map.LongKeyOpenHashMap;
+import bak.pcj.set.LongOpenHashSet;
+import bak.pcj.set.LongSet;
+
+/**
+ * An in-memory index of resource ancestor chains and paths.
+ * <p>
+ * For each indexed resource the identifiers of its ancestors are kept in an array ordered from
+ * the top level resource down to the resource itself, so that the position of a resource in any
+ * chain equals its depth. A resource is an ancestor of another one exactly when its depth is
+ * lower, and the other resource's chain holds its identifier at that position. This takes two
+ * index lookups, regardless of the depth of the tree. Paths are built from the cached path of the
+ * parent resource, and interned.
+ * </p>
+ * <p>
+ * Entries are built on demand and kept current by resource tree change and resource change
+ * events. A reverse index maps each resource to the cached entries that have it on their chain,
+ * so that moving or renaming a resource drops the entries of its subtree and nothing else. When
+ * the number of entries exceeds {@link #MAX_ENTRIES}, the index is cleared.
+ * </p>
+ */
+class ResourceHierarchy
+    implements ResourceTreeChangeListener, ResourceChangeListener
+{
+    /** Maximum number of cached entries. */
+    static final int MAX_ENTRIES = 1 << 16;
+
+    /** Entries, keyed by resource id. Guarded by this object's monitor. */
+    private final LongKeyMap entries = new LongKeyOpenHashMap();
+
+    /**
+     * Resource id to a LongSet of ids of the cached entries that have it on their ancestor chain.
+     * Guarded by this object's monitor.
+     */
+    private final LongKeyMap dependents = new LongKeyOpenHashMap();
+
+    /** Incremented whenever entries are removed. Guarded by this object's monitor. */
+    private long flushCount = 0;
+
+    /**
+     * Creates a hierarchy index.
+     *
+     * @param coralEventHub the event hub.
+     */
+    ResourceHierarchy(CoralEventHub coralEventHub)
+    {
+        coralEventHub.getGlobal().addResourceTreeChangeListener(this, null);
+        coralEventHub.getGlobal().addResourceChangeListener(this, null);
+    }
+
+    /**
+     * Checks if a resource is an ancestor of another resource.
+     *
+     * @param ancestor the ancestor resource.
+     * @param descendant the descendant resource.
+     * @return <code>true</code> if the <code>ancestor</code> is an ancestor of the
+     *         <code>descendant</code>.
+     */
+    boolean isAncestor(Resource ancestor, Resource descendant)
+    {
+        int depth = getEntry(ancestor).ids.length - 1;
+        long[] ids = getEntry(descendant).ids;
+        return depth < ids.length - 1 && ids[depth] == ancestor.getId();
+    }
+
+    /**
+     * Returns the path name of a resource.
+     *
+     * @param res the resource.
+     * @return the interned path name of the resource.
+     * @see Resource#getPath()
+     */
+    String getPath(Resource res)
+    {
+        return getEntry(res).path;
+    }
+
+    /**
+     * Returns the identifiers of a resource's ancestors.
+     *
+     * @param res the resource.
+     * @return identifiers of the ancestors, starting with the top level resource, and ending with
+     *         the resource itself. The array must not be modified.
+     */
+    long[] getAncestorIds(Resource res)
+    {
+        return getEntry(res).ids;
+    }
+
+    /**
+     * Drops the entries of a resource and all resources below it.
+     *
+     * @param id the resource id.
+     */
+    synchronized void invalidate(long id)
+    {
+        flushCount++;
+        LongSet ids = (LongSet)dependents.remove(id);
+        if(ids != null)
+        {
+            for(LongIterator i = ids.iterator(); i.hasNext();)
+            {
+                long dependent = i.next();
+                Entry entry = (Entry)entries.remove(dependent);
+                if(entry != null)
+                {
+                    for(long ancestor : entry.ids)
+                    {
+                        if(ancestor != id)
+                        {
+                            LongSet siblings = (LongSet)dependents.get(ancestor);
+                            if(siblings != null)
+                            {
+                                siblings.remove(dependent);
+                                if(siblings.isEmpty())
+                                {
+                                    dependents.remove(ancestor);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return the number of cached entries.
+     */
+    synchronized int size()
+    {
+        return entries.size();
+    }
+
+    // ResourceTreeChangeListener interface /////////////////////////////////////////////////////
+
+    /**
+     * {@inheritDoc}
+     */
+    public void resourceTreeChanged(ResourceInheritance item, boolean added)
+    {
+        invalidate(item.getChild().getId());
+    }
+
+    // ResourceChangeListener interface /////////////////////////////////////////////////////////
+
+    /**
+     * Called when resource's data change.
+     * <p>
+     * Entries of the resource's subtree are dropped if the resource was renamed.
+     * </p>
+     *
+     * @param resource the resource that changed.
+     * @param subject the subject that performed the change.
+     */
+    public void resourceChanged(Resource resource, Subject subject)
+    {
+        Entry entry;
+        synchronized(this)
+        {
+            entry = (Entry)entries.get(resource.getId());
+        }
+        if(entry != null && !entry.name.equals(resource.getName()))
+        {
+            invalidate(resource.getId());
+        }
+    }
+
+    // implementation ///////////////////////////////////////////////////////////////////////////
+
+    private Entry getEntry(Resource res)
+    {
+        long version;
+        synchronized(this)
+        {
+            Entry entry = (Entry)entries.get(res.getId());
+            if(entry != null)
+            {
+                return entry;
+            }
+            version = flushCount;
+        }
+        Resource parent = res.getParent();
+        Entry entry = new Entry(res, parent != null ? getEntry(parent) : null);
+        synchronized(this)
+        {
+            // the parent's entry might have been dropped while this one was being built
+            if(version == flushCount)
+            {
+                if(entries.size() >= MAX_ENTRIES)
+                {
+                    entries.clear();
+                    dependents.clear();
+                    flushCount++;
+                }
+                entries.put(entry.id(), entry);
+                for(long ancestor : entry.ids)
+                {
+                    LongSet ids = (LongSet)dependents.get(ancestor);
+                    if(ids == null)
+                    {
+                        ids = new LongOpenHashSet();
+                        dependents.put(ancestor, ids);
+                    }
+                    ids.add(entry.id());
+                }
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Ancestor chain and path of a single resource.
+     */
+    private static class Entry
+    {
+        private final long[] ids;
+
+        private final String name;
+
+        private final String path;
+
+        Entry(Resource res, Entry parent)
+        {
+            name = res.getName();
+            if(parent == null)
+            {
+                ids = new long[] { res.getId() };
+                path = res.getId() == CoralStore.ROOT_RESOURCE ? "/" : name.intern();
+            }
+            else
+            {
+                ids = new long[parent.ids.length + 1];
+                System.arraycopy(parent.ids, 0, ids, 0, parent.ids.length);
+                ids[parent.ids.length] = res.getId();
+                path = (parent.path.equals("/") ? "/" + name : parent.path + "/" + name).intern();
+            }
+        }
+
+        private long id()
+        {
+            return ids[ids.length - 1];
+        }
+    }
+}
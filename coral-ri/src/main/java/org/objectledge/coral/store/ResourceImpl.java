@@ -340,10 +340,17 @@ public class ResourceImpl
      * denote other resources than this one, unless all resources in your
      * system have unique names.</p>
      *
+     * <p>Paths are cached by the store's {@link ResourceHierarchy} index.</p>
+     *
      * @return the pathname of the resource.
      */
     public String getPath()
     {
+        CoralStore store = coral.getStore();
+        if(store instanceof CoralStoreImpl)
+        {
+            return ((CoralStoreImpl)store).getHierarchy().getPath(this);
+        }
         StringBuilder buff = new StringBuilder();
         Resource r = this;
         while(r != null)
@@ -0,0 +1,114 @@
+package org.objectledge.coral;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jcontainer.dna.Logger;
+import org.jcontainer.dna.impl.Log4JLogger;
+import org.objectledge.test.LedgeTestCase;
+
+public class PreloadSchedulerTest
+    extends LedgeTestCase
+{
+    private Logger logger;
+
+    public void setUp()
+    {
+        logger = new Log4JLogger(org.apache.log4j.Logger.getLogger(getClass()));
+    }
+
+    public void testParallel()
+        throws Exception
+    {
+        PreloadScheduler scheduler = new PreloadScheduler(2, logger);
+        // both steps need to run at the same time to complete
+        final CountDownLatch latch = new CountDownLatch(2);
+        List<PreloadScheduler.Step> steps = new ArrayList<PreloadScheduler.Step>();
+        for(String name : new String[] { "a", "b" })
+        {
+            steps.add(new PreloadScheduler.Step(name)
+                {
+                    public void run()
+                        throws Exception
+                    {
+                        latch.countDown();
+                        assertTrue(latch.await(10, TimeUnit.SECONDS));
+                    }
+                });
+        }
+        scheduler.execute(steps);
+        scheduler.shutdown();
+        assertEquals(2, scheduler.getTimings().size());
+        assertTrue(scheduler.getTiming("a") >= 0);
+        assertEquals(-1L, scheduler.getTiming("c"));
+    }
+
+    public void testNested()
+        throws Exception
+    {
+        // nested groups do not exhaust a single thread pool
+        final PreloadScheduler scheduler = new PreloadScheduler(1, logger);
+        List<PreloadScheduler.Step> steps = new ArrayList<PreloadScheduler.Step>();
+        for(final String name : new String[] { "a", "b" })
+        {
+            steps.add(new PreloadScheduler.Step(name)
+                {
+                    public void run()
+                        throws Exception
+                    {
+                        List<PreloadScheduler.Step> nested =
+                            new ArrayList<PreloadScheduler.Step>();
+                        for(int i = 0; i < 3; i++)
+                        {
+                            nested.add(new PreloadScheduler.Step(name + i)
+                                {
+                                    public void run()
+                                    {
+                                        // nothing to do
+                                    }
+                                });
+                        }
+                        scheduler.execute(nested);
+                    }
+                });
+        }
+        scheduler.execute(steps);
+        scheduler.shutdown();
+        assertEquals(8, scheduler.getTimings().size());
+    }
+
+    public void testFailure()
+        throws Exception
+    {
+        PreloadScheduler scheduler = new PreloadScheduler(2, logger);
+        List<PreloadScheduler.Step> steps = new ArrayList<PreloadScheduler.Step>();
+        steps.add(new PreloadScheduler.Step("failing")
+            {
+                public void run()
+                    throws Exception
+                {
+                    throw new IllegalStateException("failure");
+                }
+            });
+        steps.add(new PreloadScheduler.Step("ok")
+            {
+                public void run()
+                {
+                    // nothing to do
+                }
+            });
+        try
+        {
+            scheduler.execute(steps);
+            fail("exception expected");
+        }
+        catch(IllegalStateException e)
+        {
+            assertEquals("failure", e.getMessage());
+        }
+        scheduler.shutdown();
+        assertTrue(scheduler.getTiming("ok") >= 0);
+    }
+}
@@ -0,0 +1,112 @@
+package org.objectledge.coral.entity;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.objectledge.database.persistence.Persistence;
+import org.objectledge.test.LedgeTestCase;
+
+public class ConcurrentLoaderTest
+    extends LedgeTestCase
+{
+    private Persistence persistence;
+
+    public void setUp()
+    {
+        persistence = (Persistence)mock(Persistence.class).proxy();
+    }
+
+    public void testLoad()
+        throws Exception
+    {
+        ConcurrentLoader<RedEntity> loader = new ConcurrentLoader<RedEntity>()
+            {
+                protected RedEntity loadEntity(long id)
+                    throws EntityDoesNotExistException
+                {
+                    if(id == 0)
+                    {
+                        throw new EntityDoesNotExistException("#0 does not exist");
+                    }
+                    return new RedEntity(persistence, "red" + id);
+                }
+            };
+        assertEquals("red1", loader.load(1L).getName());
+        try
+        {
+            loader.load(0L);
+            fail("should throw the exception");
+        }
+        catch(EntityDoesNotExistException e)
+        {
+            // OK
+        }
+        assertEquals(2, loader.getLoadCount());
+        assertEquals(0, loader.getSharedLoadCount());
+    }
+
+    public void testSharedLoad()
+        throws Exception
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ConcurrentLoader<RedEntity> loader = new ConcurrentLoader<RedEntity>()
+            {
+                protected RedEntity loadEntity(long id)
+                {
+                    started.countDown();
+                    try
+                    {
+                        release.await(10, TimeUnit.SECONDS);
+                    }
+                    catch(InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new RedEntity(persistence, "red" + id);
+                }
+            };
+        final RedEntity[] results = new RedEntity[4];
+        Thread[] threads = new Thread[results.length];
+        for(int i = 0; i < threads.length; i++)
+        {
+            final int index = i;
+            threads[i] = new Thread()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            results[index] = loader.load(1L);
+                        }
+                        catch(EntityDoesNotExistException e)
+                        {
+                            // leave null
+                        }
+                    }
+                };
+        }
+        threads[0].start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        for(int i = 1; i < threads.length; i++)
+        {
+            threads[i].start();
+        }
+        while(loader.getSharedLoadCount() < threads.length - 1)
+        {
+            Thread.sleep(10);
+        }
+        release.countDown();
+        for(int i = 0; i < threads.length; i++)
+        {
+            threads[i].join(10000);
+        }
+        for(int i = 0; i < results.length; i++)
+        {
+            assertSame(results[0], results[i]);
+        }
+        assertNotNull(results[0]);
+        assertEquals(1, loader.getLoadCount());
+        assertEquals(threads.length - 1, loader.getSharedLoadCount());
+    }
+}
@@ -36,6 +36,8 @@ import java.util.Set;
 import org.jcontainer.dna.Logger;
 import org.jmock.Mock;
 import org.objectledge.cache.CacheFactory;
+import org.objectledge.coral.CacheStatistics;
+import org.objectledge.coral.CacheStatisticsRegistry;
 import org.objectledge.coral.Instantiator;
 import org.objectledge.database.Database;
 import org.objectledge.database.persistence.Persistence;
@@ -163,6 +165,23 @@ public class EntityRegistryTest
         reg.add(redEntity);
     }
 
+    public void testAddStatistics()
+        throws Exception
+    {
+        CacheStatisticsRegistry statistics = new CacheStatisticsRegistry();
+        EntityRegistry reg = new EntityRegistry(persistence, cacheFactory, statistics,
+            instantiator, log, "redEntity", RedEntity.class);
+        redEntity.setId(1L);
+        redEntity.setName("fred");
+        mockPersistence.expects(exactly(2)).method("save").with(same(redEntity));
+        reg.add(redEntity);
+        // saving an entity again replaces the cached entry, it is not a new store
+        reg.add(redEntity);
+        CacheStatistics byId = statistics.get("coral.redEntity.byId");
+        assertEquals(1L, byId.getStores());
+        assertEquals(0L, byId.getEvictions());
+    }
+
     public void testAddUnique()
         throws Exception
     {
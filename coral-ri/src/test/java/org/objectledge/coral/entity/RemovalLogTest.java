@@ -0,0 +1,52 @@
+package org.objectledge.coral.entity;
+
+import org.objectledge.test.LedgeTestCase;
+
+public class RemovalLogTest
+    extends LedgeTestCase
+{
+    public void testRemovedSince()
+    {
+        RemovalLog log = new RemovalLog();
+        long before = log.getVersion();
+        assertFalse(log.isRemovedSince(1L, before));
+        log.removed(1L);
+        long after = log.getVersion();
+        assertTrue(log.isRemovedSince(1L, before));
+        assertFalse(log.isRemovedSince(2L, before));
+        assertFalse(log.isRemovedSince(1L, after));
+        log.removed(2L);
+        assertTrue(log.isRemovedSince(2L, after));
+        assertFalse(log.isRemovedSince(1L, after));
+    }
+
+    public void testRemovedAgain()
+    {
+        RemovalLog log = new RemovalLog(3);
+        log.removed(1L);
+        log.removed(2L);
+        long version = log.getVersion();
+        log.removed(1L);
+        log.removed(3L);
+        log.removed(4L);
+        // the first removal of 1 was superseded, so 2 is the one forgotten
+        assertTrue(log.isRemovedSince(1L, version));
+        assertTrue(log.isRemovedSince(4L, version));
+        assertFalse(log.isRemovedSince(5L, version));
+    }
+
+    public void testForgotten()
+    {
+        RemovalLog log = new RemovalLog(2);
+        long version = log.getVersion();
+        log.removed(1L);
+        log.removed(2L);
+        assertFalse(log.isRemovedSince(3L, version));
+        log.removed(3L);
+        // removal of 1 was forgotten, any entity might have been removed
+        assertTrue(log.isRemovedSince(4L, version));
+        long later = log.getVersion();
+        assertFalse(log.isRemovedSince(4L, later));
+        assertFalse(log.isRemovedSince(1L, later));
+    }
+}
@@ -0,0 +1,65 @@
+package org.objectledge.coral.event;
+
+import org.jcontainer.dna.Logger;
+import org.jmock.Mock;
+
+public class DirectCoralEventWhiteboardTest
+    extends CoralEventTestCase
+{
+    private Mock mockLogger;
+
+    private CoralEventWhiteboard coralEventWhiteboard;
+
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        mockLogger = mock(Logger.class);
+        coralEventWhiteboard = new DirectCoralEventWhiteboard((Logger)mockLogger.proxy());
+    }
+
+    public void testFirePermissionAssociationChangeListener()
+    {
+        coralEventWhiteboard.addPermissionAssociationChangeListener(
+            permissionAssoicationChangeListener, permission);
+        coralEventWhiteboard.addPermissionAssociationChangeListener(
+            permissionAssoicationChangeListener, resourceClass);
+        coralEventWhiteboard.addPermissionAssociationChangeListener(
+            permissionAssoicationChangeListener, null);
+        // repeated registration has no effect
+        coralEventWhiteboard.addPermissionAssociationChangeListener(
+            permissionAssoicationChangeListener, null);
+        mockPermissionAssociation.expects(once()).method("getResourceClass").will(
+            returnValue(resourceClass));
+        mockPermissionAssociation.expects(once()).method("getPermission").will(
+            returnValue(permission));
+        mockPermissionAssociationChangeListener.expects(exactly(3)).method("permissionsChanged")
+            .with(same(permissionAssociation), eq(true));
+        coralEventWhiteboard.firePermissionAssociationChangeEvent(permissionAssociation, true);
+    }
+
+    public void testRemoveListener()
+    {
+        coralEventWhiteboard.addPermissionChangeListener(permissionChangeListener, permission);
+        coralEventWhiteboard.addPermissionChangeListener(permissionChangeListener, null);
+        coralEventWhiteboard.removePermissionChangeListener(permissionChangeListener, permission);
+        mockPermissionChangeListener.expects(once()).method("permissionChanged").with(
+            same(permission));
+        coralEventWhiteboard.firePermissionChangeEvent(permission);
+        coralEventWhiteboard.removePermissionChangeListener(permissionChangeListener, null);
+        coralEventWhiteboard.firePermissionChangeEvent(permission);
+    }
+
+    public void testFailingListener()
+    {
+        Mock mockOtherListener = mock(PermissionChangeListener.class, "otherListener");
+        coralEventWhiteboard.addPermissionChangeListener(permissionChangeListener, null);
+        coralEventWhiteboard.addPermissionChangeListener(
+            (PermissionChangeListener)mockOtherListener.proxy(), null);
+        mockPermissionChangeListener.expects(once()).method("permissionChanged").will(
+            throwException(new IllegalStateException("failure")));
+        mockOtherListener.expects(once()).method("permissionChanged").with(same(permission));
+        mockLogger.expects(once()).method("error");
+        coralEventWhiteboard.firePermissionChangeEvent(permission);
+    }
+}
@@ -0,0 +1,60 @@
+package org.objectledge.coral.event;
+
+import org.objectledge.test.LedgeTestCase;
+
+public class ListenerRegistryTest
+    extends LedgeTestCase
+{
+    private final Runnable first = new Runnable()
+        {
+            public void run()
+            {
+            }
+        };
+
+    private final Runnable second = new Runnable()
+        {
+            public void run()
+            {
+            }
+        };
+
+    public void testAddRemove()
+    {
+        ListenerRegistry<Runnable> registry = new ListenerRegistry<Runnable>(Runnable.class);
+        Object anchor = new Object();
+        assertEquals(0, registry.get(anchor).length);
+        registry.add(first, anchor);
+        registry.add(second, anchor);
+        // repeated registration is ignored
+        registry.add(first, anchor);
+        assertEquals(2, registry.get(anchor).length);
+        assertEquals(0, registry.get(new Object()).length);
+        assertEquals(0, registry.get(null).length);
+        registry.remove(first, anchor);
+        assertEquals(1, registry.get(anchor).length);
+        assertSame(second, registry.get(anchor)[0]);
+        registry.remove(second, anchor);
+        assertEquals(0, registry.get(anchor).length);
+    }
+
+    public void testGlobal()
+    {
+        ListenerRegistry<Runnable> registry = new ListenerRegistry<Runnable>(Runnable.class);
+        registry.add(first, null);
+        assertEquals(1, registry.get(null).length);
+        assertEquals(0, registry.get(new Object()).length);
+        registry.remove(first, null);
+        assertEquals(0, registry.get(null).length);
+    }
+
+    public void testEqualAnchors()
+    {
+        ListenerRegistry<Runnable> registry = new ListenerRegistry<Runnable>(Runnable.class);
+        registry.add(first, new String("anchor"));
+        // anchors are matched by equality, as in a WeakHashMap
+        assertEquals(1, registry.get(new String("anchor")).length);
+        registry.remove(first, new String("anchor"));
+        assertEquals(0, registry.get("anchor").length);
+    }
+}
@@ -0,0 +1,264 @@
+package org.objectledge.coral.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.jcontainer.dna.Logger;
+import org.jmock.Mock;
+import org.jmock.core.Invocation;
+import org.jmock.core.Stub;
+import org.objectledge.coral.BackendException;
+import org.objectledge.coral.CoralCore;
+import org.objectledge.coral.Instantiator;
+import org.objectledge.coral.event.NotificationEventBridgeImpl.EventRecord;
+import org.objectledge.coral.schema.ResourceClass;
+import org.objectledge.coral.security.CoralSecurity;
+import org.objectledge.coral.security.Subject;
+import org.objectledge.coral.store.CoralStore;
+import org.objectledge.coral.store.Resource;
+import org.objectledge.database.persistence.Persistence;
+import org.objectledge.database.persistence.PersistentFactory;
+import org.objectledge.event.EventWhiteboard;
+import org.objectledge.notification.Notification;
+import org.objectledge.test.LedgeTestCase;
+
+public class NotificationEventBridgeImplTest
+    extends LedgeTestCase
+{
+    private static final int SUBJECT_CHANGE = 8;
+
+    private static final int RESOURCE_CREATION = 11;
+
+    private static final int RESOURCE_CHANGE = 12;
+
+    private static final int RESOURCE_DELETION = 13;
+
+    private Mock mockPersistence;
+
+    private Mock mockNotification;
+
+    private Mock mockInstantiator;
+
+    private Mock mockPersistentFactory;
+
+    private Mock mockCoralCore;
+
+    private Mock mockLogger;
+
+    private Mock mockIn;
+
+    private Mock mockOut;
+
+    /** Notifications sent by the bridge. */
+    private BlockingQueue<byte[]> sent;
+
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        mockPersistence = mock(Persistence.class);
+        mockNotification = mock(Notification.class);
+        mockInstantiator = mock(Instantiator.class);
+        mockPersistentFactory = mock(PersistentFactory.class);
+        mockCoralCore = mock(CoralCore.class);
+        mockLogger = mock(Logger.class);
+        mockIn = mock(EventWhiteboard.class, "in");
+        mockOut = mock(EventWhiteboard.class, "out");
+        mockInstantiator.stubs().method("getPersistentFactory").will(
+            returnValue(mockPersistentFactory.proxy()));
+        mockNotification.stubs().method("addReceiver");
+        mockNotification.stubs().method("removeReceiver");
+        mockOut.stubs().method("addListener");
+        mockOut.stubs().method("removeListener");
+        mockLogger.stubs().method("isDebugEnabled").will(returnValue(false));
+        sent = new LinkedBlockingQueue<byte[]>();
+        mockNotification.stubs().method("sendNotification").will(new Stub()
+            {
+                public Object invoke(Invocation invocation)
+                {
+                    sent.add((byte[])invocation.parameterValues.get(1));
+                    return null;
+                }
+
+                public StringBuffer describeTo(StringBuffer buffer)
+                {
+                    return buffer.append("records the message");
+                }
+            });
+    }
+
+    private NotificationEventBridgeImpl attach(long flushInterval)
+    {
+        NotificationEventBridgeImpl bridge = new NotificationEventBridgeImpl(
+            (Persistence)mockPersistence.proxy(), (Notification)mockNotification.proxy(),
+            (Instantiator)mockInstantiator.proxy(), (CoralCore)mockCoralCore.proxy(),
+            (Logger)mockLogger.proxy(), flushInterval);
+        bridge.attach((EventWhiteboard)mockIn.proxy(), (EventWhiteboard)mockOut.proxy());
+        return bridge;
+    }
+
+    private void assertRecord(EventRecord record, int code, long entity1, long entity2)
+    {
+        assertEquals(code, record.getCode());
+        assertEquals(entity1, record.getEntity1());
+        assertEquals(entity2, record.getEntity2());
+    }
+    public void testEncodeDecode()
+        throws Exception
+    {
+        List<EventRecord> batch = new ArrayList<EventRecord>();
+        batch.add(new EventRecord(1, 10L, 20L, 30L, true));
+        batch.add(new EventRecord(12, 10L, -1L, -1L, false));
+        batch.add(new EventRecord(6, 1L, 2L, -1L, false));
+        byte[] message = NotificationEventBridgeImpl.encode(batch);
+        // count + (code, flags, 3 ids) + (code, flags, 1 id) + (code, flags, 2 ids)
+        assertEquals(4 + 26 + 10 + 18, message.length);
+        List<EventRecord> decoded = NotificationEventBridgeImpl.decode(message);
+        assertEquals(3, decoded.size());
+        for(int i = 0; i < batch.size(); i++)
+        {
+            EventRecord expected = batch.get(i);
+            EventRecord actual = decoded.get(i);
+            assertEquals(expected.getCode(), actual.getCode());
+            assertEquals(expected.getEntity1(), actual.getEntity1());
+            assertEquals(expected.getEntity2(), actual.getEntity2());
+            assertEquals(expected.getEntity3(), actual.getEntity3());
+            assertEquals(expected.isAdded(), actual.isAdded());
+        }
+    }
+
+    public void testCoalescing()
+    {
+        // same entities, different 'added' flag
+        assertEquals(new EventRecord(1, 10L, 20L, 30L, true), new EventRecord(1, 10L, 20L, 30L,
+            false));
+        assertFalse(new EventRecord(1, 10L, 20L, 30L, true).equals(new EventRecord(1, 10L, 20L,
+            31L, true)));
+        // resource changes are coalesced regardless of the subject
+        EventRecord change1 = new EventRecord(12, 10L, 5L, -1L, false);
+        EventRecord change2 = new EventRecord(12, 10L, -1L, -1L, false);
+        assertEquals(change1, change2);
+        assertEquals(change1.hashCode(), change2.hashCode());
+        assertFalse(change1.equals(new EventRecord(13, 10L, -1L, -1L, false)));
+    }
+
+    public void testEventCoalescing()
+        throws Exception
+    {
+        NotificationEventBridgeImpl bridge = attach(3600000L);
+        bridge.event("ResourceChange", 10L, 5L, -1L, false);
+        bridge.event("ResourceChange", 11L, -1L, -1L, false);
+        bridge.event("SubjectChange", 3L, -1L, -1L, false);
+        bridge.event("ResourceChange", 10L, -1L, -1L, false);
+        bridge.event("ResourceDeletion", 11L, -1L, -1L, false);
+        assertTrue(sent.isEmpty());
+        bridge.detach();
+        assertEquals(1, sent.size());
+        List<EventRecord> batch = NotificationEventBridgeImpl.decode(sent.take());
+        assertEquals(3, batch.size());
+        assertRecord(batch.get(0), SUBJECT_CHANGE, 3L, -1L);
+        assertRecord(batch.get(1), RESOURCE_CHANGE, 10L, -1L);
+        assertRecord(batch.get(2), RESOURCE_DELETION, 11L, -1L);
+    }
+
+    public void testFlushOnBatchSize()
+        throws Exception
+    {
+        NotificationEventBridgeImpl bridge = attach(3600000L);
+        for(long id = 0; id < 1024; id++)
+        {
+            bridge.event("SubjectChange", id, -1L, -1L, false);
+        }
+        byte[] message = sent.poll(10, TimeUnit.SECONDS);
+        assertNotNull(message);
+        List<EventRecord> batch = NotificationEventBridgeImpl.decode(message);
+        assertEquals(1024, batch.size());
+        assertRecord(batch.get(0), SUBJECT_CHANGE, 0L, -1L);
+        assertRecord(batch.get(1023), SUBJECT_CHANGE, 1023L, -1L);
+        bridge.detach();
+        assertTrue(sent.isEmpty());
+    }
+
+    public void testFlushOnDetach()
+        throws Exception
+    {
+        NotificationEventBridgeImpl bridge = attach(3600000L);
+        bridge.event("SubjectChange", 1L, -1L, -1L, false);
+        bridge.event("SubjectChange", 2L, -1L, -1L, false);
+        assertTrue(sent.isEmpty());
+        bridge.detach();
+        assertEquals(1, sent.size());
+        assertEquals(2, NotificationEventBridgeImpl.decode(sent.take()).size());
+        // the gate is closed
+        bridge.event("SubjectChange", 3L, -1L, -1L, false);
+        assertTrue(sent.isEmpty());
+    }
+
+    public void testSendFailure()
+        throws Exception
+    {
+        NotificationEventBridgeImpl bridge = attach(0L);
+        mockNotification.expects(once()).method("sendNotification").will(
+            throwException(new BackendException("channel down")));
+        try
+        {
+            bridge.event("ResourceChange", 10L, 5L, -1L, false);
+            fail("should throw");
+        }
+        catch(BackendException e)
+        {
+            // expected
+        }
+        assertTrue(sent.isEmpty());
+        // the failed batch goes out with the next one, ahead of the new events
+        bridge.event("SubjectChange", 3L, -1L, -1L, false);
+        bridge.event("ResourceChange", 11L, -1L, -1L, false);
+        assertEquals(2, sent.size());
+        List<EventRecord> batch = NotificationEventBridgeImpl.decode(sent.take());
+        assertEquals(2, batch.size());
+        assertRecord(batch.get(0), RESOURCE_CHANGE, 10L, 5L);
+        assertRecord(batch.get(1), SUBJECT_CHANGE, 3L, -1L);
+        batch = NotificationEventBridgeImpl.decode(sent.take());
+        assertEquals(1, batch.size());
+        assertRecord(batch.get(0), RESOURCE_CHANGE, 11L, -1L);
+        bridge.detach();
+        assertTrue(sent.isEmpty());
+    }
+
+    public void testApply()
+        throws Exception
+    {
+        NotificationEventBridgeImpl bridge = attach(0L);
+        Mock mockCoralStore = mock(CoralStore.class);
+        Mock mockCoralSecurity = mock(CoralSecurity.class);
+        Mock mockResource = mock(Resource.class);
+        Mock mockResourceClass = mock(ResourceClass.class);
+        Mock mockSubject = mock(Subject.class);
+        mockCoralCore.stubs().method("getStore").will(returnValue(mockCoralStore.proxy()));
+        mockCoralCore.stubs().method("getSecurity").will(returnValue(mockCoralSecurity.proxy()));
+        mockResource.stubs().method("getParent").will(returnValue(null));
+        mockResource.stubs().method("getResourceClass").will(
+            returnValue(mockResourceClass.proxy()));
+        mockResourceClass.stubs().method("getParentClasses").will(
+            returnValue(new ResourceClass[0]));
+        // referenced resources are loaded in bulk before the events are dispatched
+        mockCoralStore.expects(once()).method("getResource").with(isA(long[].class)).will(
+            returnValue(new Resource[] { (Resource)mockResource.proxy() }));
+        mockCoralStore.expects(once()).method("getResource").with(eq(10L)).will(
+            returnValue(mockResource.proxy()));
+        mockCoralSecurity.expects(once()).method("getSubject").with(eq(3L)).will(
+            returnValue(mockSubject.proxy()));
+        mockIn.stubs().method("fireEvent");
+        mockIn.expects(exactly(2)).method("fireEvent").with(ANYTHING, ANYTHING, NULL);
+
+        List<EventRecord> batch = new ArrayList<EventRecord>();
+        batch.add(new EventRecord(RESOURCE_CREATION, 10L, -1L, -1L, false));
+        batch.add(new EventRecord(SUBJECT_CHANGE, 3L, -1L, -1L, false));
+        bridge.receive(NotificationEventBridgeImpl.CHANNEL_DEFAULT,
+            NotificationEventBridgeImpl.encode(batch));
+        bridge.detach();
+    }
+}
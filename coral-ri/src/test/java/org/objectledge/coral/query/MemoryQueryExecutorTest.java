@@ -0,0 +1,139 @@
+package org.objectledge.coral.query;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.regex.Pattern;
+
+import org.jmock.Mock;
+import org.objectledge.coral.store.Resource;
+import org.objectledge.test.LedgeTestCase;
+
+public class MemoryQueryExecutorTest
+    extends LedgeTestCase
+{
+    public void testLikePattern()
+    {
+        Pattern p = MemoryQueryExecutor.likePattern("a%b_c", true);
+        assertTrue(p.matcher("abxc").matches());
+        assertTrue(p.matcher("a123bxc").matches());
+        assertFalse(p.matcher("abc").matches());
+        assertFalse(p.matcher("Abxc").matches());
+        assertTrue(MemoryQueryExecutor.likePattern("a%b_c", false).matcher("Abxc").matches());
+        // regular expression metacharacters are matched literally
+        p = MemoryQueryExecutor.likePattern("1.5*(x)%", true);
+        assertTrue(p.matcher("1.5*(x) and more").matches());
+        assertFalse(p.matcher("125*(x)").matches());
+    }
+
+    public void testCompare()
+    {
+        Mock mockA = mock(Resource.class, "a");
+        mockA.stubs().method("getId").will(returnValue(1L));
+        Mock mockB = mock(Resource.class, "b");
+        mockB.stubs().method("getId").will(returnValue(2L));
+        Comparator<Object> byName = new Comparator<Object>()
+            {
+                public int compare(Object o1, Object o2)
+                {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        // entities are compared by id, regardless of the comparator
+        assertTrue(MemoryQueryExecutor.compare(byName, mockA.proxy(), mockB.proxy()) < 0);
+        assertEquals(0, MemoryQueryExecutor.compare(byName, mockA.proxy(), mockA.proxy()));
+        assertTrue(MemoryQueryExecutor.compare(null, "b", "a") > 0);
+        assertTrue(MemoryQueryExecutor.compare(String.CASE_INSENSITIVE_ORDER, "a", "B") < 0);
+    }
+
+    public void testThreeValuedLogic()
+    {
+        MemoryQueryExecutor.Condition t = constant(Boolean.TRUE);
+        MemoryQueryExecutor.Condition f = constant(Boolean.FALSE);
+        MemoryQueryExecutor.Condition u = constant(null);
+
+        assertEquals(Boolean.TRUE, and(t, t));
+        assertEquals(Boolean.FALSE, and(t, f));
+        assertEquals(Boolean.FALSE, and(u, f));
+        assertNull(and(t, u));
+        assertNull(and(u, u));
+
+        assertEquals(Boolean.TRUE, or(f, t));
+        assertEquals(Boolean.TRUE, or(u, t));
+        assertEquals(Boolean.FALSE, or(f, f));
+        assertNull(or(f, u));
+        assertNull(or(u, u));
+
+        assertEquals(Boolean.FALSE, new MemoryQueryExecutor.Not(t).evaluate(null, null));
+        assertEquals(Boolean.TRUE, new MemoryQueryExecutor.Not(f).evaluate(null, null));
+        // NOT of an unknown condition is unknown, so that the row is not returned either way
+        assertNull(new MemoryQueryExecutor.Not(u).evaluate(null, null));
+    }
+
+    public void testAttributeIndex()
+    {
+        MemoryQueryExecutor.AttributeIndex index = new MemoryQueryExecutor.AttributeIndex();
+        index.put(1L, "a");
+        index.put(2L, "b");
+        index.put(3L, "a");
+        index.put(4L, null);
+        assertIds(index.get("a"), 1L, 3L);
+        assertIds(index.get("b"), 2L);
+        assertIds(index.get("c"));
+
+        // changed instances are returned by every lookup, until the index is rebuilt
+        index.markChanged(2L);
+        assertIds(index.get("a"), 1L, 2L, 3L);
+        assertIds(index.get("b"), 2L);
+        assertIds(index.get("c"), 2L);
+
+        // deleted instances are dropped
+        index.remove(2L);
+        index.remove(3L);
+        assertIds(index.get("a"), 1L);
+        assertIds(index.get("c"));
+        assertFalse(index.isOutdated());
+    }
+
+    public void testAttributeIndexOutdated()
+    {
+        MemoryQueryExecutor.AttributeIndex index = new MemoryQueryExecutor.AttributeIndex();
+        for(long id = 1; id <= MemoryQueryExecutor.MIN_STALE_ENTRIES * 2; id++)
+        {
+            index.put(id, Long.valueOf(id % 3));
+        }
+        for(long id = 1; id <= MemoryQueryExecutor.MIN_STALE_ENTRIES; id++)
+        {
+            index.markChanged(id);
+        }
+        assertFalse(index.isOutdated());
+        index.markChanged(MemoryQueryExecutor.MIN_STALE_ENTRIES + 1);
+        assertTrue(index.isOutdated());
+    }
+
+    private static MemoryQueryExecutor.Condition constant(final Boolean value)
+    {
+        return new MemoryQueryExecutor.Condition()
+            {
+                public Boolean evaluate(Resource[] row, Object[] parameters)
+                {
+                    return value;
+                }
+            };
+    }
+
+    private static Boolean and(MemoryQueryExecutor.Condition... children)
+    {
+        return new MemoryQueryExecutor.And(children).evaluate(null, null);
+    }
+
+    private static Boolean or(MemoryQueryExecutor.Condition... children)
+    {
+        return new MemoryQueryExecutor.Or(children).evaluate(null, null);
+    }
+
+    private static void assertIds(long[] actual, long... expected)
+    {
+        Arrays.sort(actual);
+        assertTrue(Arrays.toString(actual), Arrays.equals(expected, actual));
+    }
+}
@@ -31,9 +31,11 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.jmock.Mock;
 import org.objectledge.coral.entity.AmbigousEntityNameException;
@@ -410,6 +412,20 @@ public class RelationImplTest extends LedgeTestCase
             return clazz.cast(resource);
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        public Resource[] getResource(long[] ids)
+            throws EntityDoesNotExistException
+        {
+            Resource[] resources = new Resource[ids.length];
+            for(int i = 0; i < ids.length; i++)
+            {
+                resources[i] = getResource(ids[i]);
+            }
+            return resources;
+        }
+
 		// uimplemented methods -------------------------------------------------------------------
 
         /**
@@ -420,6 +436,15 @@ public class RelationImplTest extends LedgeTestCase
 			throw new UnsupportedOperationException();
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        public void prefetch(Collection<Resource> resources,
+            Set<AttributeDefinition<?>> attributes)
+        {
+            throw new UnsupportedOperationException();
+        }
+
         /**
          * {@inheritDoc}
          */
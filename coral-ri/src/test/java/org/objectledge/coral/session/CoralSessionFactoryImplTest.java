@@ -28,10 +28,12 @@
 package org.objectledge.coral.session;
 
 import java.security.Principal;
+import java.util.EnumSet;
 
 import org.jmock.Mock;
 import org.objectledge.coral.CoralConfig;
 import org.objectledge.coral.CoralCore;
+import org.objectledge.coral.Feature;
 import org.objectledge.coral.security.CoralSecurity;
 import org.objectledge.coral.security.Subject;
 import org.objectledge.test.LedgeTestCase;
@@ -127,6 +129,91 @@ public class CoralSessionFactoryImplTest extends LedgeTestCase
         session.close();
     }
     
+    public void testPooling()
+        throws Exception
+    {
+        mockCoralCore.stubs().method("pushSession").with(isA(CoralSession.class)).isVoid();
+        mockCoralCore.stubs().method("setCurrentSession").isVoid();
+        mockCoralCore.stubs().method("removeSession").isVoid();
+        mockCoralCore.stubs().method("peekSession").will(returnValue(null));
+        CoralSession session = coralSessionFactoryImpl.getSession(principal);
+        mockCoralCore.stubs().method("getCurrentSession").will(returnValue(session));
+        CoralSessionFactoryImpl.SessionPoolGraph poolGraph = 
+            (CoralSessionFactoryImpl.SessionPoolGraph)coralSessionFactoryImpl.getGraphs()[0];
+        assertEquals(1, poolGraph.getActive());
+        assertEquals(0, poolGraph.getIdle());
+        session.close();
+        assertEquals(0, poolGraph.getActive());
+        assertEquals(1, poolGraph.getIdle());
+        // the idle session is reused
+        assertSame(session, coralSessionFactoryImpl.getSession(principal));
+        CoralSessionFactoryImpl.SessionAcquireGraph acquireGraph = 
+            (CoralSessionFactoryImpl.SessionAcquireGraph)coralSessionFactoryImpl.getGraphs()[1];
+        assertEquals(2, acquireGraph.getAcquired());
+        assertTrue(acquireGraph.getLatency() >= 0.0);
+    }
+    
+    public void testSubjectResolvedOnBorrow()
+        throws Exception
+    {
+        mockCoralCore.stubs().method("pushSession").with(isA(CoralSession.class)).isVoid();
+        mockCoralCore.stubs().method("setCurrentSession").isVoid();
+        mockCoralCore.stubs().method("removeSession").isVoid();
+        mockCoralCore.stubs().method("peekSession").will(returnValue(null));
+        CoralSession session = coralSessionFactoryImpl.getSession(principal);
+        mockCoralCore.stubs().method("getCurrentSession").will(returnValue(session));
+        session.close();
+        // the user's Subject was replaced while the session was idle
+        Mock mockOtherSubject = mock(Subject.class, "otherSubject");
+        Subject otherSubject = (Subject)mockOtherSubject.proxy();
+        mockCoralSecurity.stubs().method("getSubject").with(eq("<user>")).will(
+            returnValue(otherSubject));
+        assertSame(session, coralSessionFactoryImpl.getSession(principal));
+        assertSame(otherSubject, session.getUserSubject());
+    }
+
+    public void testEvictionDisabled()
+        throws Exception
+    {
+        // negative interval disables eviction, even though the threshold is zero
+        mockCoralCore.stubs().method("getConfig").will(
+            returnValue(new CoralConfig(EnumSet.noneOf(Feature.class), 8, -1, 0)));
+        CoralSessionFactoryImpl factory = new CoralSessionFactoryImpl(coralCore, getFileSystem(),
+            null);
+        mockCoralCore.stubs().method("pushSession").with(isA(CoralSession.class)).isVoid();
+        mockCoralCore.stubs().method("setCurrentSession").isVoid();
+        mockCoralCore.stubs().method("removeSession").isVoid();
+        mockCoralCore.stubs().method("peekSession").will(returnValue(null));
+        CoralSession session = factory.getSession(principal);
+        mockCoralCore.stubs().method("getCurrentSession").will(returnValue(session));
+        session.close();
+        Thread.sleep(1);
+        assertSame(session, factory.getSession(principal));
+    }
+
+    public void testScopedSession()
+        throws Exception
+    {
+        // scoped sessions are not associated with the thread
+        CoralSession session = coralSessionFactoryImpl.getScopedSession(principal);
+        assertSame(subject, session.getUserSubject());
+        assertSame(principal, session.getUserPrincipal());         
+        session.close();
+        
+        try
+        {
+            session.getStore().getResource();
+            fail("exception expected");
+        }
+        catch(IllegalStateException e)
+        {
+            assertEquals("session is closed", e.getMessage());
+        }
+        // closed scoped sessions are pooled
+        assertSame(session, coralSessionFactoryImpl.getScopedSession(principal));
+        session.close();
+    }
+    
     public void testRootSession()
     {
         mockCoralCore.stubs().method("pushSession").with(isA(CoralSession.class)).isVoid();
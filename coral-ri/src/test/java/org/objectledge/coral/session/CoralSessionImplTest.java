@@ -28,8 +28,8 @@
 package org.objectledge.coral.session;
 
 import java.security.Principal;
+import java.util.concurrent.Callable;
 
-import org.apache.commons.pool.KeyedObjectPool;
 import org.jmock.Mock;
 import org.objectledge.coral.CoralCore;
 import org.objectledge.coral.security.Subject;
@@ -45,8 +45,8 @@ public class CoralSessionImplTest extends LedgeTestCase
 {
     private Mock mockCoralCore;
     private CoralCore coralCore;
-    private Mock mockKeyedObjectPool;
-    private KeyedObjectPool keyedObjectPool;
+    private Mock mockSessionPool;
+    private SessionPool sessionPool;
     private Mock mockCoralStore;
     private CoralStore coralStore;
     
@@ -66,10 +66,10 @@ public class CoralSessionImplTest extends LedgeTestCase
         mockCoralCore.stubs().method("getStore").will(returnValue(coralStore));
         mockCoralCore.stubs().method("getInstantiator").will(returnValue(null));
         mockCoralCore.stubs().method("getRMLParserFactory").will(returnValue(null));        
-        mockKeyedObjectPool = mock(KeyedObjectPool.class);
-        keyedObjectPool = (KeyedObjectPool)mockKeyedObjectPool.proxy();
+        mockSessionPool = mock(SessionPool.class);
+        sessionPool = (SessionPool)mockSessionPool.proxy();
         
-        coralSession = new CoralSessionImpl(coralCore, keyedObjectPool, null);
+        coralSession = new CoralSessionImpl(coralCore, sessionPool, null);
         
         mockSubject = mock(Subject.class);
         subject = (Subject)mockSubject.proxy();
@@ -84,7 +84,7 @@ public class CoralSessionImplTest extends LedgeTestCase
         mockCoralCore.stubs().method("getCurrentSession").will(returnValue(coralSession));
         coralSession.open(principal, subject);
         
-        mockKeyedObjectPool.expects(once()).method("returnObject").with(same(principal), same(coralSession)).isVoid();
+        mockSessionPool.expects(once()).method("returnSession").with(same(principal), same(coralSession)).isVoid();
         assertEquals(principal, coralSession.getUserPrincipal());
         assertEquals(subject, coralSession.getUserSubject());
 
@@ -120,7 +120,7 @@ public class CoralSessionImplTest extends LedgeTestCase
         mockCoralCore.expects(once()).method("setCurrentSession").with(same(coralSession)).isVoid();
         mockCoralCore.stubs().method("getCurrentSession").will(returnValue(coralSession));
         coralSession.open(principal, subject);
-        mockKeyedObjectPool.expects(once()).method("returnObject").with(same(principal), same(coralSession)).isVoid();
+        mockSessionPool.expects(once()).method("returnSession").with(same(principal), same(coralSession)).isVoid();
         mockCoralCore.expects(once()).method("removeSession").with(eq(coralSession)).isVoid();
         mockCoralCore.expects(once()).method("peekSession").will(returnValue(null));
         mockCoralCore.expects(once()).method("setCurrentSession").with(NULL).isVoid();
@@ -168,6 +168,141 @@ public class CoralSessionImplTest extends LedgeTestCase
         }
     }
     
+    public void testScopedSession()
+        throws Exception
+    {
+        final CoralSessionImpl scopedSession = new CoralSessionImpl(coralCore, sessionPool,
+            null, true);
+        scopedSession.open(principal, subject);
+        // read operations do not touch the current session
+        mockCoralStore.expects(exactly(2)).method("getResource").will(returnValue(null));
+        scopedSession.getStore().getResource();
+        
+        // another thread uses the session and closes it
+        final Throwable[] failure = new Throwable[1];
+        mockSessionPool.expects(once()).method("returnSession").with(same(principal),
+            same(scopedSession)).isVoid();
+        Thread otherThread = new Thread(new Runnable() {
+            public void run()
+            {
+                try
+                {
+                    scopedSession.getStore().getResource();
+                    scopedSession.close();
+                }
+                catch(Throwable e)
+                {
+                    failure[0] = e;
+                }
+            }
+        });
+        otherThread.start();
+        otherThread.join();
+        assertNull(failure[0]);
+        
+        try
+        {
+            scopedSession.getStore().getResource();
+            fail("exception expected");
+        }
+        catch(Exception e)
+        {
+            assertEquals(IllegalStateException.class, e.getClass());
+            assertEquals("session is closed", e.getMessage());
+        }
+    }
+    
+    public void testScopedSessionSubject()
+        throws Exception
+    {
+        final CoralSessionImpl scopedSession = new CoralSessionImpl(coralCore, sessionPool,
+            null, true);
+        scopedSession.open(principal, subject);
+        
+        // modifications bind the session to the thread for the duration of the call, and the
+        // session that was current before is restored afterwards
+        Mock mockOtherSession = mock(CoralSession.class);
+        CoralSession otherSession = (CoralSession)mockOtherSession.proxy();
+        mockCoralCore.expects(once()).method("setCurrentSession").with(same(scopedSession))
+            .will(returnValue(otherSession)).id("bind");
+        mockCoralStore.expects(once()).method("deleteResource").with(NULL).after(mockCoralCore,
+            "bind").isVoid().id("call");
+        mockCoralCore.expects(once()).method("setCurrentSession").with(same(otherSession))
+            .after(mockCoralStore, "call").will(returnValue(scopedSession));
+        scopedSession.getStore().deleteResource(null);
+        
+        // exceptions thrown by the component are propagated, and the previous session is restored
+        mockCoralCore.expects(once()).method("setCurrentSession").with(same(scopedSession))
+            .will(returnValue(otherSession));
+        mockCoralStore.expects(once()).method("deleteResource").with(NULL).will(
+            throwException(new IllegalArgumentException("<failure>")));
+        mockCoralCore.expects(once()).method("setCurrentSession").with(same(otherSession))
+            .will(returnValue(scopedSession));
+        try
+        {
+            scopedSession.getStore().deleteResource(null);
+            fail("exception expected");
+        }
+        catch(Exception e)
+        {
+            assertEquals(IllegalArgumentException.class, e.getClass());
+            assertEquals("<failure>", e.getMessage());
+        }
+        
+        // tasks not invoked through the session are bound in the same way
+        mockCoralCore.expects(once()).method("setCurrentSession").with(same(scopedSession))
+            .will(returnValue(null));
+        mockCoralCore.expects(once()).method("setCurrentSession").with(NULL)
+            .will(returnValue(scopedSession));
+        assertEquals("<result>", scopedSession.execute(new Callable<String>()
+            {
+                public String call()
+                {
+                    return "<result>";
+                }
+            }));
+    }
+    
+    public void testStaleScopedSession()
+        throws Exception
+    {
+        final CoralSessionImpl scopedSession = new CoralSessionImpl(coralCore, sessionPool,
+            null, true);
+        scopedSession.open(principal, subject);
+        CoralStore store = scopedSession.getStore();
+        mockSessionPool.expects(once()).method("returnSession").with(same(principal),
+            same(scopedSession)).isVoid();
+        scopedSession.close();
+        
+        // a task holding on to the session's components after it was closed
+        try
+        {
+            store.getResource();
+            fail("exception expected");
+        }
+        catch(Exception e)
+        {
+            assertEquals(IllegalStateException.class, e.getClass());
+            assertEquals("session is closed", e.getMessage());
+        }
+        try
+        {
+            scopedSession.execute(new Callable<Object>()
+                {
+                    public Object call()
+                    {
+                        return null;
+                    }
+                });
+            fail("exception expected");
+        }
+        catch(Exception e)
+        {
+            assertEquals(IllegalStateException.class, e.getClass());
+            assertEquals("session is closed", e.getMessage());
+        }
+    }
+    
     public void testCrossSessionMischief()
         throws Exception
     {
@@ -176,7 +311,7 @@ public class CoralSessionImplTest extends LedgeTestCase
         mockCoralCore.stubs().method("getCurrentSession").will(returnValue(coralSession));
         coralSession.open(principal, subject);
         
-        CoralSessionImpl coralSession2 = new CoralSessionImpl(coralCore, keyedObjectPool, null);
+        CoralSessionImpl coralSession2 = new CoralSessionImpl(coralCore, sessionPool, null);
         mockCoralCore.stubs().method("pushSession").with(same(coralSession2)).isVoid();
         mockCoralCore.expects(once()).method("setCurrentSession").with(same(coralSession2)).isVoid();
         mockCoralCore.stubs().method("getCurrentSession").will(returnValue(coralSession2));
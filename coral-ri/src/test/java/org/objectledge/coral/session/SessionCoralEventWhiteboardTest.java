@@ -27,7 +27,6 @@
 // 
 package org.objectledge.coral.session;
 
-import org.apache.commons.pool.KeyedObjectPool;
 import org.jmock.Mock;
 import org.objectledge.coral.CoralCore;
 import org.objectledge.coral.event.CoralEventWhiteboard;
@@ -45,8 +44,8 @@ public class SessionCoralEventWhiteboardTest extends LedgeTestCase
     private CoralCore coralCore;
     private Mock mockCoralEventWhiteboard;
     private CoralEventWhiteboard coralEventWhiteboard;
-    private Mock mockKeyedObjectPool;
-    private KeyedObjectPool keyedObjectPool;
+    private Mock mockSessionPool;
+    private SessionPool sessionPool;
     
     private CoralSessionImpl session;
     private SessionCoralEventWhiteboard sessionCoralEventWhiteboard;
@@ -63,12 +62,12 @@ public class SessionCoralEventWhiteboardTest extends LedgeTestCase
         mockCoralEventWhiteboard = mock(CoralEventWhiteboard.class);
         coralEventWhiteboard = (CoralEventWhiteboard)mockCoralEventWhiteboard.proxy();
         mockCoralCore.stubs().method("getEventWhiteboard").will(returnValue(coralEventWhiteboard));
-        mockKeyedObjectPool = mock(KeyedObjectPool.class);
-        keyedObjectPool = (KeyedObjectPool)mockKeyedObjectPool.proxy();
+        mockSessionPool = mock(SessionPool.class);
+        sessionPool = (SessionPool)mockSessionPool.proxy();
         mockCoralCore.stubs().method("getInstantiator").will(returnValue(null));
         mockCoralCore.stubs().method("getRMLParserFactory").will(returnValue(null));        
 
-        session = new CoralSessionImpl(coralCore, keyedObjectPool, null);
+        session = new CoralSessionImpl(coralCore, sessionPool, null);
         mockCoralCore.stubs().method("pushSession").with(same(session)).isVoid();
         mockCoralCore.expects(once()).method("setCurrentSession").with(same(session)).isVoid();
         session.open(null, null);
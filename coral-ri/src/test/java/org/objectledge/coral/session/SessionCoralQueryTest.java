@@ -27,7 +27,6 @@
 // 
 package org.objectledge.coral.session;
 
-import org.apache.commons.pool.KeyedObjectPool;
 import org.jmock.Mock;
 import org.objectledge.coral.CoralCore;
 import org.objectledge.coral.query.CoralQuery;
@@ -44,8 +43,8 @@ public class SessionCoralQueryTest extends LedgeTestCase
     private CoralCore coralCore;
     private Mock mockCoralQuery;
     private CoralQuery coralQuery;
-    private Mock mockKeyedObjectPool;
-    private KeyedObjectPool keyedObjectPool;
+    private Mock mockSessionPool;
+    private SessionPool sessionPool;
     
     private CoralSessionImpl session;
     private SessionCoralQuery sessionCoralQuery;
@@ -59,10 +58,10 @@ public class SessionCoralQueryTest extends LedgeTestCase
         mockCoralCore.stubs().method("getQuery").will(returnValue(coralQuery));
         mockCoralCore.stubs().method("getInstantiator").will(returnValue(null));
         mockCoralCore.stubs().method("getRMLParserFactory").will(returnValue(null));        
-        mockKeyedObjectPool = mock(KeyedObjectPool.class);
-        keyedObjectPool = (KeyedObjectPool)mockKeyedObjectPool.proxy();
+        mockSessionPool = mock(SessionPool.class);
+        sessionPool = (SessionPool)mockSessionPool.proxy();
 
-        session = new CoralSessionImpl(coralCore, keyedObjectPool, null);
+        session = new CoralSessionImpl(coralCore, sessionPool, null);
         mockCoralCore.stubs().method("pushSession").with(same(session)).isVoid();
         mockCoralCore.expects(once()).method("setCurrentSession").with(same(session)).isVoid();
         mockCoralCore.stubs().method("getCurrentSession").will(returnValue(session));
@@ -82,6 +81,13 @@ public class SessionCoralQueryTest extends LedgeTestCase
         sessionCoralQuery.executeQuery("<query>");
     }
 
+    public void testExecuteQueryStreaming()
+        throws Exception
+    {
+        mockCoralQuery.expects(once()).method("executeQueryStreaming").will(returnValue(null));
+        sessionCoralQuery.executeQueryStreaming("<query>", 100);
+    }
+
     public void testPrepareQuery()
         throws Exception
     {
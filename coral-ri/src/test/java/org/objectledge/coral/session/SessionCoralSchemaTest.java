@@ -27,7 +27,6 @@
 // 
 package org.objectledge.coral.session;
 
-import org.apache.commons.pool.KeyedObjectPool;
 import org.jmock.Mock;
 import org.objectledge.collections.ImmutableHashSet;
 import org.objectledge.coral.CoralCore;
@@ -46,8 +45,8 @@ public class SessionCoralSchemaTest extends LedgeTestCase
     private CoralCore coralCore;
     private Mock mockCoralSchema;
     private CoralSchema coralSchema;
-    private Mock mockKeyedObjectPool;
-    private KeyedObjectPool keyedObjectPool;
+    private Mock mockSessionPool;
+    private SessionPool sessionPool;
     
     private CoralSessionImpl session;
     private SessionCoralSchema sessionCoralSchema;
@@ -61,10 +60,10 @@ public class SessionCoralSchemaTest extends LedgeTestCase
         mockCoralCore.stubs().method("getSchema").will(returnValue(coralSchema));
         mockCoralCore.stubs().method("getInstantiator").will(returnValue(null));
         mockCoralCore.stubs().method("getRMLParserFactory").will(returnValue(null));        
-        mockKeyedObjectPool = mock(KeyedObjectPool.class);
-        keyedObjectPool = (KeyedObjectPool)mockKeyedObjectPool.proxy();
+        mockSessionPool = mock(SessionPool.class);
+        sessionPool = (SessionPool)mockSessionPool.proxy();
 
-        session = new CoralSessionImpl(coralCore, keyedObjectPool, null);
+        session = new CoralSessionImpl(coralCore, sessionPool, null);
         mockCoralCore.stubs().method("pushSession").with(same(session)).isVoid();
         mockCoralCore.expects(once()).method("setCurrentSession").with(same(session)).isVoid();
         mockCoralCore.stubs().method("getCurrentSession").will(returnValue(session));
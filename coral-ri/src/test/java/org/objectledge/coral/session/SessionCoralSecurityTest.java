@@ -27,7 +27,6 @@
 // 
 package org.objectledge.coral.session;
 
-import org.apache.commons.pool.KeyedObjectPool;
 import org.jmock.Mock;
 import org.objectledge.coral.CoralCore;
 import org.objectledge.coral.store.CoralStore;
@@ -45,8 +44,8 @@ public class SessionCoralSecurityTest extends LedgeTestCase
     private CoralCore coralCore;
     private Mock mockCoralStore;
     private CoralStore coralStore;
-    private Mock mockKeyedObjectPool;
-    private KeyedObjectPool keyedObjectPool;
+    private Mock mockSessionPool;
+    private SessionPool sessionPool;
     
     private CoralSessionImpl session;
     private SessionCoralStore sessionCoralStore;
@@ -60,10 +59,10 @@ public class SessionCoralSecurityTest extends LedgeTestCase
         mockCoralCore.stubs().method("getStore").will(returnValue(coralStore));
         mockCoralCore.stubs().method("getInstantiator").will(returnValue(null));
         mockCoralCore.stubs().method("getRMLParserFactory").will(returnValue(null));        
-        mockKeyedObjectPool = mock(KeyedObjectPool.class);
-        keyedObjectPool = (KeyedObjectPool)mockKeyedObjectPool.proxy();
+        mockSessionPool = mock(SessionPool.class);
+        sessionPool = (SessionPool)mockSessionPool.proxy();
 
-        session = new CoralSessionImpl(coralCore, keyedObjectPool, null);
+        session = new CoralSessionImpl(coralCore, sessionPool, null);
         mockCoralCore.stubs().method("pushSession").with(same(session)).isVoid();
         mockCoralCore.expects(once()).method("setCurrentSession").with(same(session)).isVoid();
         mockCoralCore.stubs().method("getCurrentSession").will(returnValue(session));
@@ -0,0 +1,63 @@
+package org.objectledge.coral.store;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectledge.test.LedgeTestCase;
+
+public class AccessBufferTest
+    extends LedgeTestCase
+{
+    private Map<Long, String> lru()
+    {
+        Map<Long, String> map = new LinkedHashMap<Long, String>(16, 0.75f, true);
+        for(long i = 0; i < 4; i++)
+        {
+            map.put(i, Long.toString(i));
+        }
+        return map;
+    }
+
+    public void testReplay()
+    {
+        AccessBuffer<Long> buffer = new AccessBuffer<Long>(1);
+        Map<Long, String> map = lru();
+        assertFalse(buffer.record(0L));
+        assertFalse(buffer.record(1L));
+        buffer.drainTo(map);
+        List<Long> expected = new ArrayList<Long>();
+        expected.add(2L);
+        expected.add(3L);
+        expected.add(0L);
+        expected.add(1L);
+        assertEquals(expected, new ArrayList<Long>(map.keySet()));
+    }
+
+    public void testDrainThreshold()
+    {
+        AccessBuffer<Long> buffer = new AccessBuffer<Long>(1);
+        for(int i = 1; i < AccessBuffer.DRAIN_THRESHOLD; i++)
+        {
+            assertFalse(buffer.record(0L));
+        }
+        assertTrue(buffer.record(0L));
+        buffer.drainTo(lru());
+        assertFalse(buffer.record(0L));
+    }
+
+    public void testFull()
+    {
+        AccessBuffer<Long> buffer = new AccessBuffer<Long>(1);
+        for(int i = 0; i < AccessBuffer.CAPACITY * 2; i++)
+        {
+            buffer.record(0L);
+        }
+        // hits recorded while the buffer is full are dropped
+        buffer.record(3L);
+        Map<Long, String> map = lru();
+        buffer.drainTo(map);
+        assertEquals(Long.valueOf(0L), new ArrayList<Long>(map.keySet()).get(3));
+    }
+}
@@ -1,17 +1,24 @@
 package org.objectledge.coral.store;
 
 import java.util.HashMap;
+import java.util.Map;
 
 import org.jcontainer.dna.Logger;
 import org.jmock.Mock;
 import org.objectledge.cache.CacheFactory;
 import org.objectledge.coral.CoralCore;
+import org.objectledge.coral.Feature;
 import org.objectledge.coral.Instantiator;
 import org.objectledge.coral.event.CoralEventHub;
+import org.objectledge.coral.event.CoralEventWhiteboard;
 import org.objectledge.database.persistence.Persistence;
 import org.objectledge.database.persistence.PersistentFactory;
 import org.objectledge.test.LedgeTestCase;
 
+import bak.pcj.list.LongArrayList;
+import bak.pcj.set.LongOpenHashSet;
+import bak.pcj.set.LongSet;
+
 public class CoralStoreImplTest
     extends LedgeTestCase
 {
@@ -53,6 +60,11 @@ public class CoralStoreImplTest
         mockLogger = mock(Logger.class);
         logger = (Logger)mockLogger.proxy();
 
+        Mock mockCoralEventWhiteboard = mock(CoralEventWhiteboard.class);
+        mockCoralEventWhiteboard.stubs().method("addResourceTreeChangeListener").isVoid();
+        mockCoralEventWhiteboard.stubs().method("addResourceChangeListener").isVoid();
+        mockCoralEventHub.stubs().method("getGlobal").will(
+            returnValue(mockCoralEventWhiteboard.proxy()));
         mockCacheFactory.stubs().method("getInstance").will(returnValue(new HashMap()));
         mockCacheFactory.stubs().method("registerForPeriodicExpunge").isVoid();
         mockInstantiator.stubs().method("getPersistentFactory").with(same(ResourceImpl.class))
@@ -69,4 +81,93 @@ public class CoralStoreImplTest
         assertEquals("",coralStore.getInvalidResourceNameCharacters("abc"));
         assertEquals("/",coralStore.getInvalidResourceNameCharacters("a/bc"));
     }    
+
+    public void testPreloadDisabled()
+        throws Exception
+    {
+        assertEquals(1, coralStore.getPhases().length);
+        mockCoralCore.expects(once()).method("isEnabled").with(eq(Feature.RESOURCE_PRELOAD))
+            .will(returnValue(false));
+        // persistence is not touched unless resource preloading is enabled
+        coralStore.preloadData(coralStore.getPhases()[0]);
+    }
+
+    // resources scanned children first: 1 { 2 { 3 }, 4 }, 5 { 6 }
+    private static final LongArrayList IDS = list(3, 1, 2, 6, 4, 5);
+
+    private static final LongArrayList PARENTS = list(2, -1, 1, 5, 1, -1);
+
+    private static final LongArrayList CLASSES = list(10, 10, 11, 10, 11, 10);
+
+    private static LongArrayList list(long... values)
+    {
+        LongArrayList list = new LongArrayList();
+        for(long value : values)
+        {
+            list.add(value);
+        }
+        return list;
+    }
+
+    private static LongSet set(long... values)
+    {
+        LongSet set = new LongOpenHashSet();
+        for(long value : values)
+        {
+            set.add(value);
+        }
+        return set;
+    }
+
+    private void assertSelected(boolean[] selected, long... ids)
+    {
+        LongSet expected = set(ids);
+        for(int i = 0; i < IDS.size(); i++)
+        {
+            assertEquals("resource #" + IDS.get(i), expected.contains(IDS.get(i)), selected[i]);
+        }
+    }
+
+    public void testSelectRoots()
+    {
+        assertSelected(CoralStoreImpl.selectResources(IDS, PARENTS, CLASSES, null, null), 1, 2, 3,
+            4, 5, 6);
+        assertSelected(CoralStoreImpl.selectResources(IDS, PARENTS, CLASSES, set(2), null), 2, 3);
+        assertSelected(CoralStoreImpl.selectResources(IDS, PARENTS, CLASSES, set(1), null), 1, 2,
+            3, 4);
+        // nested and disjoint roots
+        assertSelected(CoralStoreImpl.selectResources(IDS, PARENTS, CLASSES, set(1, 2, 6), null),
+            1, 2, 3, 4, 6);
+        // root not among the scanned resources
+        assertSelected(CoralStoreImpl.selectResources(IDS, PARENTS, CLASSES, set(99), null));
+    }
+
+    public void testSelectClasses()
+    {
+        assertSelected(CoralStoreImpl.selectResources(IDS, PARENTS, CLASSES, null, set(10)), 1,
+            3, 5, 6);
+        // descendants of a resource of another class are still reached
+        assertSelected(CoralStoreImpl.selectResources(IDS, PARENTS, CLASSES, set(1), set(10)), 1,
+            3);
+        assertSelected(CoralStoreImpl.selectResources(IDS, PARENTS, CLASSES, set(5), set(11)));
+    }
+
+    public void testCompleteChildren()
+    {
+        boolean[] selected = CoralStoreImpl.selectResources(IDS, PARENTS, CLASSES, set(1),
+            set(10));
+        Map<Long, LongArrayList> children = CoralStoreImpl.getCompleteChildren(IDS, PARENTS,
+            selected);
+        // 1 has an unselected child, and so do the top level
+        assertEquals(1, children.size());
+        assertEquals(list(3), children.get(2L));
+
+        selected = CoralStoreImpl.selectResources(IDS, PARENTS, CLASSES, null, null);
+        children = CoralStoreImpl.getCompleteChildren(IDS, PARENTS, selected);
+        assertEquals(4, children.size());
+        assertEquals(list(1, 5), children.get(-1L));
+        assertEquals(list(2, 4), children.get(1L));
+        assertEquals(list(3), children.get(2L));
+        assertEquals(list(6), children.get(5L));
+    }
 }
@@ -0,0 +1,107 @@
+package org.objectledge.coral.store;
+
+import org.jmock.Mock;
+import org.objectledge.coral.event.CoralEventHub;
+import org.objectledge.coral.event.CoralEventWhiteboard;
+import org.objectledge.test.LedgeTestCase;
+
+public class ResourceHierarchyTest
+    extends LedgeTestCase
+{
+    private ResourceHierarchy hierarchy;
+
+    private Mock mockRoot;
+
+    private Resource root;
+
+    private Mock mockA;
+
+    private Resource a;
+
+    private Mock mockB;
+
+    private Resource b;
+
+    private Mock mockC;
+
+    private Resource c;
+
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        Mock mockCoralEventWhiteboard = mock(CoralEventWhiteboard.class);
+        mockCoralEventWhiteboard.stubs().method("addResourceTreeChangeListener").isVoid();
+        mockCoralEventWhiteboard.stubs().method("addResourceChangeListener").isVoid();
+        Mock mockCoralEventHub = mock(CoralEventHub.class);
+        mockCoralEventHub.stubs().method("getGlobal").will(
+            returnValue(mockCoralEventWhiteboard.proxy()));
+        hierarchy = new ResourceHierarchy((CoralEventHub)mockCoralEventHub.proxy());
+
+        mockRoot = mock(Resource.class, "root");
+        root = (Resource)mockRoot.proxy();
+        mockA = mock(Resource.class, "a");
+        a = (Resource)mockA.proxy();
+        mockB = mock(Resource.class, "b");
+        b = (Resource)mockB.proxy();
+        mockC = mock(Resource.class, "c");
+        c = (Resource)mockC.proxy();
+        stub(mockRoot, 1L, "root", null);
+        stub(mockA, 2L, "a", root);
+        stub(mockB, 3L, "b", a);
+        stub(mockC, 4L, "c", null);
+    }
+
+    private void stub(Mock mock, long id, String name, Resource parent)
+    {
+        mock.stubs().method("getId").will(returnValue(id));
+        mock.stubs().method("getName").will(returnValue(name));
+        mock.stubs().method("getParent").will(returnValue(parent));
+    }
+
+    public void testPath()
+    {
+        assertEquals("/", hierarchy.getPath(root));
+        assertEquals("/a", hierarchy.getPath(a));
+        assertEquals("/a/b", hierarchy.getPath(b));
+        assertEquals("c", hierarchy.getPath(c));
+        assertSame("/a/b", hierarchy.getPath(b));
+        assertEquals(3, hierarchy.getAncestorIds(b).length);
+    }
+
+    public void testIsAncestor()
+    {
+        assertTrue(hierarchy.isAncestor(root, a));
+        assertTrue(hierarchy.isAncestor(root, b));
+        assertTrue(hierarchy.isAncestor(a, b));
+        assertFalse(hierarchy.isAncestor(b, a));
+        assertFalse(hierarchy.isAncestor(b, b));
+        assertFalse(hierarchy.isAncestor(c, b));
+        assertFalse(hierarchy.isAncestor(root, c));
+    }
+
+    public void testMove()
+    {
+        assertEquals("/a/b", hierarchy.getPath(b));
+        assertEquals(3, hierarchy.size());
+        mockA.stubs().method("getParent").will(returnValue(c));
+        Mock mockInheritance = mock(ResourceInheritance.class);
+        mockInheritance.stubs().method("getChild").will(returnValue(a));
+        hierarchy.resourceTreeChanged((ResourceInheritance)mockInheritance.proxy(), true);
+        // the root entry is retained
+        assertEquals(1, hierarchy.size());
+        assertEquals("c/a/b", hierarchy.getPath(b));
+        assertTrue(hierarchy.isAncestor(c, b));
+        assertFalse(hierarchy.isAncestor(root, b));
+    }
+
+    public void testRename()
+    {
+        assertEquals("/a/b", hierarchy.getPath(b));
+        hierarchy.resourceChanged(a, null);
+        assertEquals(3, hierarchy.size());
+        mockA.stubs().method("getName").will(returnValue("d"));
+        hierarchy.resourceChanged(a, null);
+        assertEquals("/d/b", hierarchy.getPath(b));
+    }
+}
@@ -86,7 +86,7 @@ public abstract class CoralTestCase extends TestCase
     {
         super.setUp();
         FileSystem fs = FileSystem.getStandardFileSystem("src/test/resources");
-        container = new LedgeContainer(fs, "/config", getClass().getClassLoader()); 
+        container = new LedgeContainer(fs, getConfigPath(), getClass().getClassLoader()); 
         coralSessionFactory = (CoralSessionFactory)container.getContainer().
             getComponentInstance(CoralSessionFactory.class);
         dataSource = (DataSource)container.getContainer().
@@ -105,6 +105,16 @@ public abstract class CoralTestCase extends TestCase
         container.killContainer();
     }
     
+    /**
+     * Returns the directory of the container configuration used by the test.
+     * 
+     * @return the configuration directory path.
+     */
+    protected String getConfigPath()
+    {
+        return "/config";
+    }
+    
     // DbUnit assertions
     
     protected void expTable(String table, Column... columns)
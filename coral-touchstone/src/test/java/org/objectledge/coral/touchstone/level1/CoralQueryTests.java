@@ -14,7 +14,9 @@ import org.objectledge.coral.datatypes.StandardResource;
 import org.objectledge.coral.query.CoralQuery;
 import org.objectledge.coral.query.FilteredQueryResults;
 import org.objectledge.coral.query.MalformedQueryException;
+import org.objectledge.coral.query.PreparedQuery;
 import org.objectledge.coral.query.QueryResults;
+import org.objectledge.coral.query.StreamingQueryResults;
 import org.objectledge.coral.schema.AttributeClass;
 import org.objectledge.coral.schema.AttributeDefinition;
 import org.objectledge.coral.schema.CoralSchema;
@@ -525,6 +527,108 @@ public class CoralQueryTests
         expectMalformed("FIND RESOURCE FROM second WHERE a3 > 1");
         expectMalformed("FIND RESOURCE FROM second WHERE path LIKE 'first1'");
         expectMalformed("FIND RESOURCE FROM second WHERE path > 1");
+        expectMalformed("FIND RESOURCE FROM first WHERE a1 DESCENDANT OF 1");
+        expectMalformed("FIND RESOURCE FROM first WHERE id DESCENDANT OF 'first1'");
+        expectMalformed("FIND RESOURCE FROM first WHERE id DESCENDANT OF $1");
+        expectMalformed("FIND RESOURCE FROM first WHERE id DESCENDANT OF 1 OR a1 = 'foo'");
+        expectMalformed("FIND RESOURCE FROM first WHERE NOT (id DESCENDANT OF 1 AND a1 = 'foo')");
+    }
+
+    private void prepared()
+        throws Exception
+    {
+        PreparedQuery pq = query.prepareQuery("FIND RESOURCE FROM first WHERE a1 = ? ORDER BY id");
+        pq.setParameter(1, "foo");
+        results = pq.execute();
+        expected.clear();
+        expectRow(first1);
+        assertExpectedResults();
+        pq.setParameter(1, "abab");
+        results = pq.execute();
+        expected.clear();
+        expectRow(first2);
+        assertExpectedResults();
+
+        pq = query.prepareQuery("FIND RESOURCE FROM first WHERE a2 > $1 AND a1 LIKE_NC $2");
+        results = pq.execute(new Object[] { 8, "A%" });
+        expected.clear();
+        expectRow(first2);
+        assertExpectedResults();
+
+        pq = query.prepareQuery("FIND RESOURCE FROM second WHERE a3 = $1");
+        pq.setParameter(1, first1);
+        results = pq.execute();
+        expected.clear();
+        expectRow(second1);
+        assertExpectedResults();
+
+        try
+        {
+            query.prepareQuery("FIND RESOURCE FROM first WHERE a1 = ?").execute();
+            fail("expected IllegalStateException");
+        }
+        catch(IllegalStateException e)
+        {
+            // OK
+        }
+        expectMalformed("FIND RESOURCE FROM first WHERE a1 = $1");
+    }
+
+    private void streaming()
+        throws Exception
+    {
+        try(StreamingQueryResults sqr = query.executeQueryStreaming(
+            "FIND RESOURCE FROM first ORDER BY id", 2))
+        {
+            results = sqr;
+            expected.clear();
+            expectRow(first1);
+            expectRow(first2);
+            expectRow(third1);
+            assertExpectedResults();
+            try
+            {
+                sqr.iterator();
+                fail("expected IllegalStateException");
+            }
+            catch(IllegalStateException e)
+            {
+                // OK
+            }
+        }
+
+        try(StreamingQueryResults sqr = query.executeQueryStreaming(
+            "FIND RESOURCE FROM first ORDER BY id", 1))
+        {
+            Iterator<QueryResults.Row> i = sqr.iterator();
+            assertEquals(first1, i.next().get());
+            sqr.close();
+            assertFalse(i.hasNext());
+        }
+    }
+
+    private void countsAndIds()
+        throws Exception
+    {
+        assertEquals(3, query.count("FIND RESOURCE FROM first"));
+        assertEquals(2, query.count("FIND RESOURCE FROM first ORDER BY a1 LIMIT 2"));
+        assertEquals(1, query.count("FIND RESOURCE FROM first ORDER BY a1 LIMIT 2 OFFSET 2"));
+        assertEquals(0, query.count("FIND RESOURCE FROM first WHERE a1 = 'none'"));
+
+        assertTrue(query.exists("FIND RESOURCE FROM first WHERE a1 = 'foo'"));
+        assertFalse(query.exists("FIND RESOURCE FROM first WHERE a1 = 'none'"));
+        assertFalse(query.exists("FIND RESOURCE FROM first OFFSET 3"));
+
+        assertTrue(Arrays.equals(new long[] { first2.getId(), first1.getId(), third1.getId() },
+            query.executeIds("FIND RESOURCE FROM first ORDER BY a1")));
+        assertTrue(Arrays.equals(new long[] { first1.getId(), second1.getId() },
+            query.executeIds("FIND RESOURCE FROM first AS f, second AS s WHERE s.a3 = f")));
+
+        PreparedQuery pq = query.prepareQuery("FIND RESOURCE FROM first WHERE a2 > ?");
+        pq.setParameter(1, 8);
+        assertEquals(2, pq.count());
+        assertTrue(pq.exists());
+        assertEquals(2, pq.executeIds().length);
     }
 
     private void filtered()
@@ -546,6 +650,195 @@ public class CoralQueryTests
         }
     }
 
+    private void unstoredModifications()
+        throws Exception
+    {
+        // queries see the values stored with update()
+        AttributeDefinition<String> a1 = first1.getResourceClass().getAttribute("a1",
+            String.class);
+        first1.set(a1, "changed");
+        run("FIND RESOURCE FROM first WHERE a1 = 'foo'");
+        expectRow(first1);
+        assertExpectedResults();
+
+        run("FIND RESOURCE FROM first WHERE a1 = 'changed'");
+        assertExpectedResults();
+
+        run("FIND RESOURCE FROM first ORDER BY a1");
+        expectRow(first2);
+        expectRow(first1);
+        expectRow(third1);
+        assertExpectedResults();
+
+        first1.update();
+        run("FIND RESOURCE FROM first WHERE a1 = 'changed'");
+        expectRow(first1);
+        assertExpectedResults();
+
+        run("FIND RESOURCE FROM first WHERE a1 = 'foo'");
+        assertExpectedResults();
+
+        first1.set(a1, "foo");
+        first1.update();
+        run("FIND RESOURCE FROM first WHERE a1 = 'foo'");
+        expectRow(first1);
+        assertExpectedResults();
+    }
+
+    private void createdAndDeleted()
+        throws Exception
+    {
+        CoralStore store = coral.getStore();
+        ResourceClass<?> firstClass = first1.getResourceClass();
+        AttributeDefinition<String> a1 = firstClass.getAttribute("a1", String.class);
+        AttributeDefinition<Integer> a2 = firstClass.getAttribute("a2", Integer.class);
+        Map<AttributeDefinition<?>, Object> attributes = new HashMap<AttributeDefinition<?>, Object>();
+        attributes.put(a1, "foo");
+        attributes.put(a2, 13);
+        Resource first3 = store.createResource("first3", store
+            .getResource(CoralStore.ROOT_RESOURCE), firstClass, attributes);
+
+        run("FIND RESOURCE FROM first WHERE a1 = 'foo' ORDER BY id");
+        expectRow(first1);
+        expectRow(first3);
+        assertExpectedResults();
+        assertEquals(4, query.count("FIND RESOURCE FROM first"));
+
+        first3.set(a1, "bar");
+        first3.update();
+        run("FIND RESOURCE FROM first WHERE a1 = 'foo' ORDER BY id");
+        expectRow(first1);
+        assertExpectedResults();
+
+        run("FIND RESOURCE FROM first WHERE a1 = 'bar'");
+        expectRow(first3);
+        assertExpectedResults();
+
+        store.deleteResource(first3);
+        run("FIND RESOURCE FROM first WHERE a1 = 'bar'");
+        assertExpectedResults();
+        assertEquals(3, query.count("FIND RESOURCE FROM first"));
+    }
+
+    private void descendants()
+        throws Exception
+    {
+        CoralStore store = coral.getStore();
+        ResourceClass<?> firstClass = first1.getResourceClass();
+        AttributeDefinition<String> a1 = firstClass.getAttribute("a1", String.class);
+        AttributeDefinition<Integer> a2 = firstClass.getAttribute("a2", Integer.class);
+        Map<AttributeDefinition<?>, Object> attributes = new HashMap<AttributeDefinition<?>, Object>();
+        attributes.put(a1, "bar");
+        attributes.put(a2, 13);
+        Resource first4 = store.createResource("first4", first1, firstClass, attributes);
+        attributes.put(a2, 5);
+        Resource first5 = store.createResource("first5", first4, firstClass, attributes);
+
+        run("FIND RESOURCE FROM first WHERE id DESCENDANT OF " + first1.getId() + " ORDER BY id");
+        expectRow(first4);
+        expectRow(first5);
+        assertExpectedResults();
+
+        run("FIND RESOURCE FROM first WHERE id DESCENDANT OF " + CoralStore.ROOT_RESOURCE
+            + " ORDER BY id");
+        expectRow(first1);
+        expectRow(first2);
+        expectRow(third1);
+        expectRow(first4);
+        expectRow(first5);
+        assertExpectedResults();
+
+        run("FIND RESOURCE FROM first WHERE id DESCENDANT OF " + first5.getId());
+        assertExpectedResults();
+
+        // LIMIT and OFFSET apply to the matching rows
+        run("FIND RESOURCE FROM first WHERE id DESCENDANT OF " + CoralStore.ROOT_RESOURCE
+            + " ORDER BY id LIMIT 2 OFFSET 1");
+        expectRow(first2);
+        expectRow(third1);
+        assertExpectedResults();
+        assertEquals(2, query.count("FIND RESOURCE FROM first WHERE (a1 = 'foo' OR a2 > 0) AND "
+            + "id DESCENDANT OF " + first1.getId() + " LIMIT 3 OFFSET 0"));
+
+        run("FIND RESOURCE FROM first WHERE NOT id DESCENDANT OF " + first1.getId()
+            + " ORDER BY id");
+        expectRow(first1);
+        expectRow(first2);
+        expectRow(third1);
+        assertExpectedResults();
+
+        // a3 of second2 is not defined, and matches neither the condition nor its negation
+        run("FIND RESOURCE FROM second WHERE a3 DESCENDANT OF " + CoralStore.ROOT_RESOURCE);
+        expectRow(second1);
+        assertExpectedResults();
+
+        run("FIND RESOURCE FROM second WHERE NOT a3 DESCENDANT OF " + CoralStore.ROOT_RESOURCE);
+        assertExpectedResults();
+
+        run("FIND RESOURCE FROM second WHERE a3 DESCENDANT OF " + first1.getId());
+        assertExpectedResults();
+
+        run("FIND RESOURCE FROM first AS f, second AS s WHERE f.id DESCENDANT OF "
+            + first1.getId() + " AND s.a3 DESCENDANT OF " + CoralStore.ROOT_RESOURCE
+            + " ORDER BY f.id");
+        expectRow(first4, second1);
+        expectRow(first5, second1);
+        assertExpectedResults();
+
+        // statement parameters before and after the condition
+        PreparedQuery pq = query
+            .prepareQuery("FIND RESOURCE FROM first WHERE a2 > ? AND id DESCENDANT OF ? AND a1 = ?");
+        results = pq.execute(new Object[] { 8, first1, "bar" });
+        expected.clear();
+        expectRow(first4);
+        assertExpectedResults();
+        results = pq.execute(new Object[] { 1, first4.getId(), "bar" });
+        expected.clear();
+        expectRow(first5);
+        assertExpectedResults();
+        results = pq.execute(new Object[] { 1, Long.toString(first2.getId()), "bar" });
+        expected.clear();
+        assertExpectedResults();
+
+        pq = query.prepareQuery("FIND RESOURCE FROM first WHERE id DESCENDANT OF $1 ORDER BY id");
+        pq.setParameter(1, first1);
+        assertEquals(2, pq.count());
+        assertTrue(pq.exists());
+        assertTrue(Arrays.equals(new long[] { first4.getId(), first5.getId() }, pq.executeIds()));
+        assertEquals(2, query.count("FIND RESOURCE FROM first WHERE id DESCENDANT OF "
+            + first1.getId()));
+        assertFalse(query.exists("FIND RESOURCE FROM first WHERE id DESCENDANT OF "
+            + first5.getId()));
+
+        // the tree grows deeper
+        Resource first6 = store.createResource("first6", first5, firstClass, attributes);
+        results = pq.execute();
+        expected.clear();
+        expectRow(first4);
+        expectRow(first5);
+        expectRow(first6);
+        assertExpectedResults();
+
+        // a subtree is moved
+        store.setParent(first5, first2);
+        results = pq.execute();
+        expected.clear();
+        expectRow(first4);
+        assertExpectedResults();
+        pq.setParameter(1, first2);
+        results = pq.execute();
+        expected.clear();
+        expectRow(first5);
+        expectRow(first6);
+        assertExpectedResults();
+
+        store.deleteResource(first6);
+        store.deleteResource(first5);
+        store.deleteResource(first4);
+        run("FIND RESOURCE FROM first WHERE id DESCENDANT OF " + first1.getId());
+        assertExpectedResults();
+    }
+
     private void runTests()
         throws Exception
     {
@@ -573,7 +866,14 @@ public class CoralQueryTests
         queryUsingBuiltinAttribute();
         queryUsingReferenceAttribute();
 
+        prepared();
+        streaming();
+        countsAndIds();
         filtered();
+
+        unstoredModifications();
+        createdAndDeleted();
+        descendants();
     }
 
     public void testGeneric()
@@ -0,0 +1,15 @@
+package org.objectledge.coral.touchstone.level1;
+
+/**
+ * Runs the query tests with the fixture classes marked as memory-resident, so that the queries
+ * are evaluated in memory. The results are expected to be the same as in the database.
+ */
+public class MemoryResidentQueryTests
+    extends CoralQueryTests
+{
+    @Override
+    protected String getConfigPath()
+    {
+        return "/config-memory";
+    }
+}
@@ -13,6 +13,9 @@ import org.objectledge.table.TableRowSet;
 import org.objectledge.table.TableState;
 import org.objectledge.table.generic.GenericTreeRowSet;
 
+import bak.pcj.map.LongKeyMap;
+import bak.pcj.map.LongKeyOpenHashMap;
+
 
 /**
  * A table model for Coral relations.
@@ -35,6 +38,9 @@ public class GraphTableModel<T extends Resource>
     /** coral session */
     protected CoralSession coralSession;
 
+    /** Resource[] children, keyed by parent id. */
+    private final LongKeyMap childrenByParentId = new LongKeyOpenHashMap();
+
     /**
      * Constructs a new model.
      *
@@ -68,9 +74,14 @@ public class GraphTableModel<T extends Resource>
     {
         if(parent instanceof Resource)
         {
-            Resource[] resources = ref.get((Resource)parent);
-            Resource[] children = new Resource[resources.length];
-            System.arraycopy(resources, 0, children, 0, resources.length);
+            Resource[] children = (Resource[])childrenByParentId.get(parent.getId());
+            if(children == null)
+            {
+                Resource[] resources = ref.get((Resource)parent);
+                children = new Resource[resources.length];
+                System.arraycopy(resources, 0, children, 0, resources.length);
+                childrenByParentId.put(parent.getId(), children);
+            }
             return children;
         }
         else
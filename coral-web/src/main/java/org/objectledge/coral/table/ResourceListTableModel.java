@@ -104,6 +104,16 @@ public class ResourceListTableModel<T extends Resource>
      * @return model object
      */
     public T getObject(String id)
+    {
+        return getResourcesById().get(id);
+    }
+
+    /**
+     * Returns the resources keyed by their id, building the map on first use.
+     * 
+     * @return the resources keyed by their id.
+     */
+    protected Map<String, T> getResourcesById()
     {
         if(resourcesById == null)
         {
@@ -114,7 +124,7 @@ public class ResourceListTableModel<T extends Resource>
                 resourcesById.put(res.getIdString(), res);
             }
         }
-        return resourcesById.get(id);
+        return resourcesById;
     }
 
     /**
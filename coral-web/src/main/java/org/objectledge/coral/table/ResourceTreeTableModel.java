@@ -1,7 +1,6 @@
 package org.objectledge.coral.table;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -10,27 +9,63 @@ import org.objectledge.coral.store.CoralStore;
 import org.objectledge.coral.store.Resource;
 import org.objectledge.table.TableException;
 
+import bak.pcj.map.LongKeyMap;
+import bak.pcj.map.LongKeyMapIterator;
+import bak.pcj.map.LongKeyOpenHashMap;
+import bak.pcj.set.LongOpenHashSet;
+import bak.pcj.set.LongSet;
+
 /**
  * A variant of ResourceListTableModel that exposes tree structure of the provided resource list.
- * 
+ * <p>
+ * The children of all resources are indexed in a single pass over the list, when first requested.
+ * For very large trees, the model may be created with a {@link CoralStore}, in which case the list
+ * only needs to contain the top level resources, and children of each resource are loaded from the
+ * store when the resource is expanded.
+ * </p>
+ *
  * @author rafal.krzewski@caltha.pl
  * @param <T>
  */
 public class ResourceTreeTableModel<T extends Resource>
     extends ResourceListTableModel<T>
 {
-    private Map<T, T[]> childrenByParentId;
+    /** Key of the top level resources in the children index. */
+    private static final long TOP_LEVEL = -1L;
+
+    /** The store used for loading children on demand, or <code>null</code>. */
+    private final CoralStore coralStore;
+
+    /** T[] children, keyed by parent id. */
+    private LongKeyMap childrenByParentId;
 
     public ResourceTreeTableModel(List<T> list, Locale locale)
         throws TableException
     {
         super(list, locale);
+        this.coralStore = null;
     }
 
     public ResourceTreeTableModel(T[] array, Locale locale)
         throws TableException
     {
         super(array, locale);
+        this.coralStore = null;
+    }
+
+    /**
+     * Creates a model that loads children of the resources on demand.
+     *
+     * @param list the top level resources.
+     * @param locale the locale to be used by comparators.
+     * @param coralStore the store to load children from.
+     * @throws TableException if there is a problem creating the model.
+     */
+    public ResourceTreeTableModel(List<T> list, Locale locale, CoralStore coralStore)
+        throws TableException
+    {
+        super(list, locale);
+        this.coralStore = coralStore;
     }
 
     @Override
@@ -39,42 +74,75 @@ public class ResourceTreeTableModel<T extends Resource>
     {
         if(childrenByParentId == null)
         {
-            childrenByParentId = new HashMap<>();
+            childrenByParentId = buildIndex();
         }
-        T[] children = childrenByParentId.get(parent);
+        long key = parent != null ? parent.getId() : TOP_LEVEL;
+        T[] children = (T[])childrenByParentId.get(key);
         if(children == null)
         {
-            children = (T[])findChildren(parent);
-            childrenByParentId.put(parent, children);
+            children = coralStore != null ? loadChildren(parent) : (T[])new Resource[0];
+            childrenByParentId.put(key, children);
         }
         return children;
     }
 
-    private Resource[] findChildren(Resource parent)
+    /**
+     * Groups the resources on the list by parent.
+     * <p>
+     * Resources whose parent is not on the list are considered top level. When children are
+     * loaded on demand, only the top level resources are indexed.
+     * </p>
+     *
+     * @return T[] children, keyed by parent id.
+     */
+    @SuppressWarnings("unchecked")
+    private LongKeyMap buildIndex()
     {
-        ArrayList<T> children = new ArrayList<>();
-        if(parent == null)
+        LongSet ids = new LongOpenHashSet(list.size());
+        for(T res : list)
         {
-            for(Map.Entry<String, T> entry : resourcesById.entrySet())
-            {
-                if(entry.getValue().getId() == CoralStore.ROOT_RESOURCE
-                    || getObject(entry.getValue().getParent().getIdString()) == null)
-                {
-                    children.add(entry.getValue());
-                }
-            }
+            ids.add(res.getId());
         }
-        else
+        LongKeyMap groups = new LongKeyOpenHashMap();
+        for(T res : list)
         {
-            for(Map.Entry<String, T> entry : resourcesById.entrySet())
+            Resource parent = res.getParent();
+            long key = res.getId() == CoralStore.ROOT_RESOURCE || parent == null
+                || !ids.contains(parent.getId()) ? TOP_LEVEL : parent.getId();
+            if(key == TOP_LEVEL || coralStore == null)
             {
-                if(entry.getValue().getParent() != null
-                    && entry.getValue().getParent().getId() == parent.getId())
+                List<T> group = (List<T>)groups.get(key);
+                if(group == null)
                 {
-                    children.add(entry.getValue());
+                    group = new ArrayList<>();
+                    groups.put(key, group);
                 }
+                group.add(res);
             }
         }
-        return children.toArray(new Resource[children.size()]);
+        LongKeyMap index = new LongKeyOpenHashMap(groups.size());
+        for(LongKeyMapIterator i = groups.entries(); i.hasNext();)
+        {
+            i.next();
+            List<T> group = (List<T>)i.getValue();
+            index.put(i.getKey(), group.toArray(new Resource[group.size()]));
+        }
+        return index;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T[] loadChildren(T parent)
+    {
+        if(parent == null)
+        {
+            return (T[])new Resource[0];
+        }
+        Resource[] children = coralStore.getResource(parent);
+        Map<String, T> byId = getResourcesById();
+        for(Resource child : children)
+        {
+            byId.put(child.getIdString(), (T)child);
+        }
+        return (T[])children;
     }
 }